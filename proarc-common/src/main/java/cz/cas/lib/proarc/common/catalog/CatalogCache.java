@@ -0,0 +1,224 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.xml.transform.TransformerException;
+
+/**
+ * The cache of catalog lookups shared by {@link #decorate decorated} catalogs.
+ * Entries are keyed by the catalog, field, value and locale. Entries expire
+ * after the configured time and the least recently used entries are evicted
+ * once the size limit is reached. Empty results expire sooner. Concurrent
+ * identical lookups wait for the single remote query. Failures are not cached.
+ *
+ * @author Jan Pokorsky
+ */
+public final class CatalogCache {
+
+    private static CatalogCache INSTANCE;
+
+    private final long ttl;
+    private final long emptyTtl;
+    private final LruMap entries;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+
+    /**
+     * Gets the shared cache.
+     * @return the cache or {@code null} if no cache is configured
+     */
+    public static synchronized CatalogCache getDefault() {
+        return INSTANCE;
+    }
+
+    public static synchronized void setDefault(CatalogCache cache) {
+        INSTANCE = cache;
+    }
+
+    public CatalogCache(CatalogCacheOptions options) {
+        this.ttl = options.getTtl() * 1000L;
+        this.emptyTtl = options.getEmptyTtl() * 1000L;
+        this.entries = new LruMap(options.getSize());
+    }
+
+    /**
+     * Wraps the catalog to cache its lookups.
+     * @param catalogId the catalog ID
+     * @param catalog the catalog to query on cache misses
+     * @return the caching catalog
+     */
+    public BibliographicCatalog decorate(String catalogId, BibliographicCatalog catalog) {
+        return new CachedCatalog(catalogId, catalog, this);
+    }
+
+    /**
+     * Gets the cached result or runs the lookup.
+     */
+    List<MetadataItem> find(final BibliographicCatalog catalog, String catalogId,
+            final String fieldName, final String value, final Locale locale)
+            throws TransformerException, IOException {
+
+        String key = catalogId + '\u0000' + fieldName + '\u0000' + value + '\u0000' + locale;
+        Entry entry;
+        boolean owner = false;
+        synchronized (this) {
+            entry = entries.get(key);
+            if (entry != null && entry.expires < System.currentTimeMillis()) {
+                entries.remove(key);
+                entry = null;
+            }
+            if (entry == null) {
+                entry = new Entry(new FutureTask<List<MetadataItem>>(new Callable<List<MetadataItem>>() {
+
+                    @Override
+                    public List<MetadataItem> call() throws Exception {
+                        return catalog.find(fieldName, value, locale);
+                    }
+                }));
+                entries.put(key, entry);
+                owner = true;
+            }
+        }
+        if (owner) {
+            misses.incrementAndGet();
+            entry.result.run();
+        } else {
+            hits.incrementAndGet();
+        }
+        List<MetadataItem> result;
+        try {
+            result = entry.result.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            if (owner) {
+                remove(key, entry);
+            }
+            Throwable cause = ex.getCause();
+            if (cause instanceof TransformerException) {
+                throw (TransformerException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+        if (owner) {
+            if (result.isEmpty() && emptyTtl == 0) {
+                remove(key, entry);
+            } else {
+                synchronized (this) {
+                    entry.expires = System.currentTimeMillis() + (result.isEmpty() ? emptyTtl : ttl);
+                }
+            }
+        }
+        return new ArrayList<MetadataItem>(result);
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private synchronized void remove(String key, Entry entry) {
+        if (entries.get(key) == entry) {
+            entries.remove(key);
+        }
+    }
+
+    private static final class Entry {
+
+        private final FutureTask<List<MetadataItem>> result;
+        /** Pending lookups do not expire. Guarded by the cache. */
+        private long expires = Long.MAX_VALUE;
+
+        Entry(FutureTask<List<MetadataItem>> result) {
+            this.result = result;
+        }
+
+    }
+
+    /**
+     * Entries in the LRU order.
+     */
+    private static final class LruMap extends LinkedHashMap<String, Entry> {
+
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > maxSize;
+        }
+
+    }
+
+    /**
+     * Queries the catalog through the cache.
+     */
+    private static final class CachedCatalog implements BibliographicCatalog {
+
+        private final String catalogId;
+        private final BibliographicCatalog catalog;
+        private final CatalogCache cache;
+
+        CachedCatalog(String catalogId, BibliographicCatalog catalog, CatalogCache cache) {
+            this.catalogId = catalogId;
+            this.catalog = catalog;
+            this.cache = cache;
+        }
+
+        @Override
+        public List<MetadataItem> find(String fieldName, String value, Locale locale)
+                throws TransformerException, IOException {
+
+            return cache.find(catalog, catalogId, fieldName, value, locale);
+        }
+
+    }
+
+}
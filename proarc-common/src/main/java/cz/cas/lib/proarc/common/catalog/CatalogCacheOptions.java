@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+
+/**
+ * Settings of the {@link CatalogCache}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class CatalogCacheOptions {
+
+    static final String PROP_SIZE = "catalog.cache.size";
+    static final String PROP_TTL = "catalog.cache.ttl";
+    static final String PROP_EMPTY_TTL = "catalog.cache.emptyTtl";
+
+    /** The max number of cached lookups; 0 disables the cache. */
+    private int size = 1000;
+    /** The number of seconds a found result is valid. */
+    private int ttl = 600;
+    /** The number of seconds an empty result is valid; 0 does not cache empty results. */
+    private int emptyTtl = 60;
+
+    public static CatalogCacheOptions from(Configuration config) {
+        CatalogCacheOptions options = new CatalogCacheOptions();
+        int size = config.getInt(PROP_SIZE, options.getSize());
+        if (size < 0) {
+            throw new ConversionException(PROP_SIZE + " expects non-negative integer!");
+        }
+        options.setSize(size);
+
+        int ttl = config.getInt(PROP_TTL, options.getTtl());
+        if (ttl < 1) {
+            throw new ConversionException(PROP_TTL + " expects positive integer!");
+        }
+        options.setTtl(ttl);
+
+        int emptyTtl = config.getInt(PROP_EMPTY_TTL, options.getEmptyTtl());
+        if (emptyTtl < 0) {
+            throw new ConversionException(PROP_EMPTY_TTL + " expects non-negative integer!");
+        }
+        options.setEmptyTtl(emptyTtl);
+        return options;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public CatalogCacheOptions setSize(int size) {
+        this.size = size;
+        return this;
+    }
+
+    public int getTtl() {
+        return ttl;
+    }
+
+    public CatalogCacheOptions setTtl(int ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+    public int getEmptyTtl() {
+        return emptyTtl;
+    }
+
+    public CatalogCacheOptions setEmptyTtl(int emptyTtl) {
+        this.emptyTtl = emptyTtl;
+        return this;
+    }
+
+}
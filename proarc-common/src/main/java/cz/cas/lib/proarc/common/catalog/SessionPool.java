@@ -0,0 +1,242 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Keeps idle sessions of remote catalogs alive for reuse.
+ * Sessions idle longer than the timeout are disposed on the next borrow
+ * or by a background task running while there are idle sessions.
+ * Borrowed sessions are used exclusively by the borrower.
+ *
+ * @param <S> the session type
+ * @author Jan Pokorsky
+ */
+final class SessionPool<S> {
+
+    private static final Logger LOG = Logger.getLogger(SessionPool.class.getName());
+
+    /** catalog key -> idle sessions; the most recently released first */
+    private final Map<String, Deque<IdleSession<S>>> idles = new HashMap<String, Deque<IdleSession<S>>>();
+    private final Disposer<S> disposer;
+    private final long reapInterval;
+    /** disposes expired sessions; guarded by this */
+    private ScheduledExecutorService reaper;
+
+    SessionPool(Disposer<S> disposer) {
+        this(disposer, 30 * 1000);
+    }
+
+    /**
+     * @param reapInterval milliseconds between checks of expired sessions
+     */
+    SessionPool(Disposer<S> disposer, long reapInterval) {
+        this.disposer = disposer;
+        this.reapInterval = reapInterval;
+    }
+
+    /**
+     * Gets an idle session.
+     * @param key the catalog key
+     * @param idleTimeout the max number of milliseconds the session may be idle
+     * @return the session or {@code null} if there is no usable idle session
+     */
+    public S borrow(String key, long idleTimeout) {
+        List<S> expired = new ArrayList<S>();
+        S session = null;
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Deque<IdleSession<S>> sessions = idles.get(key);
+            IdleSession<S> idle = sessions == null ? null : sessions.pollFirst();
+            if (idle != null && now - idle.released <= idleTimeout) {
+                session = idle.session;
+            } else if (idle != null) {
+                // older sessions expired as well
+                expired.add(idle.session);
+                for (IdleSession<S> older : sessions) {
+                    expired.add(older.session);
+                }
+                sessions.clear();
+            }
+        }
+        dispose(expired);
+        return session;
+    }
+
+    /**
+     * Returns the session to the pool.
+     * @param key the catalog key
+     * @param session the healthy session
+     * @param maxIdle the max number of idle sessions of the catalog;
+     *          the session is disposed if the limit is reached
+     * @param idleTimeout the max number of milliseconds the session may be idle
+     */
+    public void release(String key, S session, int maxIdle, long idleTimeout) {
+        synchronized (this) {
+            Deque<IdleSession<S>> sessions = idles.get(key);
+            if (sessions == null) {
+                sessions = new ArrayDeque<IdleSession<S>>();
+                idles.put(key, sessions);
+            }
+            if (sessions.size() < maxIdle) {
+                sessions.addFirst(new IdleSession<S>(session, System.currentTimeMillis(), idleTimeout));
+                startReaper();
+                return ;
+            }
+        }
+        dispose(session);
+    }
+
+    /**
+     * Disposes sessions idle longer than their timeout.
+     */
+    void reap() {
+        List<S> expired = new ArrayList<S>();
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            for (Iterator<Deque<IdleSession<S>>> it = idles.values().iterator(); it.hasNext();) {
+                Deque<IdleSession<S>> sessions = it.next();
+                for (Iterator<IdleSession<S>> sit = sessions.iterator(); sit.hasNext();) {
+                    IdleSession<S> idle = sit.next();
+                    if (now - idle.released > idle.idleTimeout) {
+                        expired.add(idle.session);
+                        sit.remove();
+                    }
+                }
+                if (sessions.isEmpty()) {
+                    it.remove();
+                }
+            }
+            if (idles.isEmpty()) {
+                stopReaper();
+            }
+        }
+        dispose(expired);
+    }
+
+    private void startReaper() {
+        if (reaper != null) {
+            return ;
+        }
+        reaper = Executors.newSingleThreadScheduledExecutor(new ReaperThreadFactory());
+        reaper.scheduleWithFixedDelay(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    reap();
+                } catch (Throwable ex) {
+                    LOG.log(Level.SEVERE, null, ex);
+                }
+            }
+        }, reapInterval, reapInterval, TimeUnit.MILLISECONDS);
+    }
+
+    private void stopReaper() {
+        if (reaper != null) {
+            reaper.shutdown();
+            reaper = null;
+        }
+    }
+
+    /**
+     * Disposes the broken or superfluous session.
+     */
+    public void dispose(S session) {
+        try {
+            disposer.dispose(session);
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, String.valueOf(session), ex);
+        }
+    }
+
+    public synchronized int getIdleCount(String key) {
+        Deque<IdleSession<S>> sessions = idles.get(key);
+        return sessions == null ? 0 : sessions.size();
+    }
+
+    /**
+     * Disposes all idle sessions.
+     */
+    public void close() {
+        List<S> sessions = new ArrayList<S>();
+        synchronized (this) {
+            for (Deque<IdleSession<S>> idle : idles.values()) {
+                for (IdleSession<S> s : idle) {
+                    sessions.add(s.session);
+                }
+            }
+            idles.clear();
+            stopReaper();
+        }
+        dispose(sessions);
+    }
+
+    private void dispose(List<S> sessions) {
+        for (S session : sessions) {
+            dispose(session);
+        }
+    }
+
+    /**
+     * Releases resources of a session.
+     */
+    interface Disposer<S> {
+
+        void dispose(S session) throws Exception;
+
+    }
+
+    private static final class IdleSession<S> {
+
+        private final S session;
+        private final long released;
+        private final long idleTimeout;
+
+        IdleSession(S session, long released, long idleTimeout) {
+            this.session = session;
+            this.released = released;
+            this.idleTimeout = idleTimeout;
+        }
+
+    }
+
+    private static final class ReaperThreadFactory implements ThreadFactory {
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "proarc-catalog-session-reaper");
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
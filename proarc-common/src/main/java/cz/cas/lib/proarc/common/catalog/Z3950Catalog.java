@@ -40,6 +40,8 @@ import javax.xml.transform.Source;
 import javax.xml.transform.TransformerException;
 import javax.xml.transform.dom.DOMSource;
 import javax.xml.transform.stream.StreamSource;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
 import org.w3c.dom.Document;
 
 /**
@@ -47,7 +49,7 @@ import org.w3c.dom.Document;
  *
  * @author Jan Pokorsky
  */
-public final class Z3950Catalog implements BibliographicCatalog {
+public class Z3950Catalog implements BibliographicCatalog {
 
     public static final String TYPE = "Z3950Catalog";
     /** Configuration property name to define database. */
@@ -56,16 +58,37 @@ public final class Z3950Catalog implements BibliographicCatalog {
     static final String PROPERTY_RECORD_CHARSET = "recordCharset";
     /** Configuration property name to define field's query. */
     static final String PROPERTY_FIELD_QUERY = "query";
-    
+    /** Configuration property name to define the max number of idle sessions kept alive. */
+    static final String PROPERTY_POOL_SIZE = "poolSize";
+    /** Configuration property name to define seconds an idle session is kept alive. */
+    static final String PROPERTY_IDLE_TIMEOUT = "idleTimeout";
+    /** Configuration property name to define the max number of records of a lookup. */
+    static final String PROPERTY_MAX_RESULTS = "maxResults";
+    /** Configuration property name to define the number of records fetched at once. */
+    static final String PROPERTY_PAGE_SIZE = "pageSize";
+
     private static final Logger LOG = Logger.getLogger(Z3950Catalog.class.getName());
+    /** Sessions shared by catalog instances. */
+    private static final SessionPool<Z3950Client> SESSIONS = new SessionPool<Z3950Client>(
+            new SessionPool.Disposer<Z3950Client>() {
+
+        @Override
+        public void dispose(Z3950Client session) {
+            session.close();
+        }
+    });
+
     private Transformers transformers = new Transformers();
-    private final Z3950Client client;
     private final String host;
     private final String base;
     private final int port;
     private final Charset recordCharset;
     /** fieldId -> field */
     private final Map<String, Z3950Field> fields;
+    private int poolSize = 2;
+    private long idleTimeout = 60 * 1000;
+    private int maxResults = 100;
+    private int pageSize = 100;
 
     public static Z3950Catalog get(CatalogConfiguration c) {
         if (c == null || !TYPE.equals(c.getType())) {
@@ -104,7 +127,25 @@ public final class Z3950Catalog implements BibliographicCatalog {
         }
 
         Map<String, Z3950Field> fields = readFields(c);
-        return new Z3950Catalog(host, port, base, charset, fields);
+        Z3950Catalog catalog = new Z3950Catalog(host, port, base, charset, fields);
+        try {
+            Configuration props = c.getProperties();
+            catalog.setPoolSize(props.getInt(PROPERTY_POOL_SIZE, catalog.poolSize));
+            catalog.setIdleTimeout(props.getLong(PROPERTY_IDLE_TIMEOUT, catalog.idleTimeout / 1000) * 1000);
+            catalog.setMaxResults(props.getInt(PROPERTY_MAX_RESULTS, catalog.maxResults));
+            catalog.setPageSize(props.getInt(PROPERTY_PAGE_SIZE, catalog.pageSize));
+        } catch (ConversionException ex) {
+            LOG.log(Level.SEVERE, c.toString(), ex);
+            return null;
+        }
+        return catalog;
+    }
+
+    /**
+     * Disposes idle sessions of all catalogs.
+     */
+    public static void closeSessions() {
+        SESSIONS.close();
     }
 
     static Map<String, Z3950Field> readFields(CatalogConfiguration c) {
@@ -121,10 +162,43 @@ public final class Z3950Catalog implements BibliographicCatalog {
         this.port = port;
         this.base = base;
         this.recordCharset = recordCharset;
-        client = new Z3950Client(host, port, base);
         this.fields = fields;
     }
 
+    /**
+     * Sets the max number of idle sessions kept alive; 0 disconnects after each lookup.
+     */
+    public void setPoolSize(int poolSize) {
+        if (poolSize < 0) {
+            throw new ConversionException(PROPERTY_POOL_SIZE + " expects non-negative integer!");
+        }
+        this.poolSize = poolSize;
+    }
+
+    /**
+     * Sets milliseconds an idle session is kept alive.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        if (idleTimeout < 0) {
+            throw new ConversionException(PROPERTY_IDLE_TIMEOUT + " expects non-negative integer!");
+        }
+        this.idleTimeout = idleTimeout;
+    }
+
+    public void setMaxResults(int maxResults) {
+        if (maxResults < 1) {
+            throw new ConversionException(PROPERTY_MAX_RESULTS + " expects positive integer!");
+        }
+        this.maxResults = maxResults;
+    }
+
+    public void setPageSize(int pageSize) {
+        if (pageSize < 1) {
+            throw new ConversionException(PROPERTY_PAGE_SIZE + " expects positive integer!");
+        }
+        this.pageSize = pageSize;
+    }
+
     @Override
     public List<MetadataItem> find(String fieldId, String value, Locale locale) throws TransformerException, IOException {
         String query = buildQuery(fieldId, value);
@@ -132,31 +206,68 @@ public final class Z3950Catalog implements BibliographicCatalog {
         if (query == null) {
             return Collections.emptyList();
         }
+        String sessionKey = host + ':' + port + '/' + base;
+        Z3950Client client = SESSIONS.borrow(sessionKey, idleTimeout);
+        boolean reused = client != null;
+        while (true) {
+            if (client == null) {
+                client = createClient();
+            }
+            client.setMaxResults(maxResults);
+            client.setPageSize(pageSize);
+            boolean healthy = false;
+            try {
+                List<MetadataItem> result = find(client, query, locale);
+                healthy = true;
+                return result;
+            } catch (Z3950ClientException ex) {
+                if (!reused) {
+                    throw new IOException(ex);
+                }
+                // the kept alive session is broken; try a new one
+                LOG.log(Level.FINE, String.valueOf(client), ex);
+            } finally {
+                if (healthy) {
+                    SESSIONS.release(sessionKey, client, poolSize, idleTimeout);
+                } else {
+                    SESSIONS.dispose(client);
+                }
+            }
+            client = null;
+            reused = false;
+        }
+    }
+
+    private List<MetadataItem> find(Z3950Client client, String query, Locale locale)
+            throws Z3950ClientException, TransformerException, IOException {
+
         ArrayList<MetadataItem> result = new ArrayList<MetadataItem>();
         int index = 1;
-        try {
-            for (byte[] content : client.search(query)) {
-                String charset = recordCharset == null ? null : recordCharset.name();
-                if (LOG.isLoggable(Level.FINE)) {
-                    String marc21 = new String(content, charset == null ? "UTF-8" : charset);
-                    LOG.fine(marc21);
-                }
+        for (byte[] content : search(client, query)) {
+            String charset = recordCharset == null ? null : recordCharset.name();
+            if (LOG.isLoggable(Level.FINE)) {
+                String marc21 = new String(content, charset == null ? "UTF-8" : charset);
+                LOG.fine(marc21);
+            }
 
-                Document marcXml = Z3950Client.toMarcXml(content, charset);
-                if (LOG.isLoggable(Level.FINE)) {
-                    StringBuilder sb = new StringBuilder();
-                    transformers.dump(new DOMSource(marcXml), sb);
-                    LOG.fine(sb.toString());
-                }
-                MetadataItem item = createResponse(index++, new DOMSource(marcXml), locale);
-                result.add(item);
+            Document marcXml = Z3950Client.toMarcXml(content, charset);
+            if (LOG.isLoggable(Level.FINE)) {
+                StringBuilder sb = new StringBuilder();
+                transformers.dump(new DOMSource(marcXml), sb);
+                LOG.fine(sb.toString());
             }
-            return result;
-        } catch (Z3950ClientException ex) {
-            throw new IOException(ex);
-        } finally {
-            client.close();
+            MetadataItem item = createResponse(index++, new DOMSource(marcXml), locale);
+            result.add(item);
         }
+        return result;
+    }
+
+    Z3950Client createClient() {
+        return new Z3950Client(host, port, base);
+    }
+
+    Iterable<byte[]> search(Z3950Client client, String query) throws Z3950ClientException {
+        return client.search(query);
     }
 
     Charset getRecordCharset() {
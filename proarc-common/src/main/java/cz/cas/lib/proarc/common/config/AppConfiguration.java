@@ -16,8 +16,17 @@
  */
 package cz.cas.lib.proarc.common.config;
 
+import cz.cas.lib.proarc.common.export.DesaExportOptions;
+import cz.cas.lib.proarc.common.export.ExportDispatcherOptions;
 import cz.cas.lib.proarc.common.export.Kramerius4ExportOptions;
+import cz.cas.lib.proarc.common.export.NdkExportOptions;
+import cz.cas.lib.proarc.common.catalog.CatalogCacheOptions;
 import cz.cas.lib.proarc.common.export.desa.DesaServices;
+import cz.cas.lib.proarc.common.fedora.ObjectIndexOptions;
+import cz.cas.lib.proarc.common.fedora.SearchCacheOptions;
+import cz.cas.lib.proarc.common.fedora.SearchViewOptions;
+import cz.cas.lib.proarc.common.fedora.RenditionCacheOptions;
+import cz.cas.lib.proarc.common.imports.ImportDispatcherOptions;
 import cz.cas.lib.proarc.common.imports.ImportProfile;
 import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
 import cz.cas.lib.proarc.common.urnnbn.UrnNbnConfiguration;
@@ -37,6 +46,7 @@ import java.util.logging.Logger;
 import org.apache.commons.configuration.CompositeConfiguration;
 import org.apache.commons.configuration.Configuration;
 import org.apache.commons.configuration.ConfigurationException;
+import org.apache.commons.configuration.ConversionException;
 import org.apache.commons.configuration.PropertiesConfiguration;
 import org.apache.commons.configuration.reloading.FileChangedReloadingStrategy;
 
@@ -71,7 +81,9 @@ public final class AppConfiguration {
     private static final String PROPERTY_FEDORA_CLIENT_PASSWORD = "fedora.client.password";
     private static final String PROPERTY_FEDORA_CLIENT_URL = "fedora.client.url";
     private static final String PROPERTY_FEDORA_CLIENT_USERNAME = "fedora.client.username";
+    private static final String PROPERTY_JHOVE_POOL_SIZE = "jhove.poolSize";
     private static final String PROPERTY_USERS_HOME = "proarc.users.home";
+    private static final String PROPERTY_USERS_CACHE_TTL = "proarc.users.cacheTtl";
     
     private static final Logger LOG = Logger.getLogger(AppConfiguration.class.getName());
     private static final String DEFAULT_PROPERTIES_RESOURCE = "cz/cas/lib/proarc/common/config/proarc.properties";
@@ -118,6 +130,10 @@ public final class AppConfiguration {
         return new Catalogs(config);
     }
 
+    public CatalogCacheOptions getCatalogCacheOptions() {
+        return CatalogCacheOptions.from(config);
+    }
+
     public File getConfigHome() {
         return configHome;
     }
@@ -153,10 +169,65 @@ public final class AppConfiguration {
         return new ImportProfile(config, ConfigurationProfile.DEFAULT);
     }
 
+    public ImportDispatcherOptions getImportDispatcherOptions() {
+        return ImportDispatcherOptions.from(config);
+    }
+
+    public ExportDispatcherOptions getExportDispatcherOptions() {
+        return ExportDispatcherOptions.from(config);
+    }
+
+    /**
+     * Gets the max number of JHOVE instances shared by the import and the export.
+     */
+    public int getJhovePoolSize() {
+        int size = config.getInt(PROPERTY_JHOVE_POOL_SIZE, 0);
+        if (size < 0) {
+            throw new ConversionException(PROPERTY_JHOVE_POOL_SIZE + " expects non-negative integer!");
+        }
+        return size == 0 ? Runtime.getRuntime().availableProcessors() : size;
+    }
+
+    /**
+     * Gets the number of seconds cached permissions and groups of users are valid.
+     * @return the TTL or 0 to disable the cache
+     */
+    public int getUsersCacheTtl() {
+        int ttl = config.getInt(PROPERTY_USERS_CACHE_TTL, 60);
+        if (ttl < 0) {
+            throw new ConversionException(PROPERTY_USERS_CACHE_TTL + " expects non-negative integer!");
+        }
+        return ttl;
+    }
+
+    /**
+     * Gets settings of the cache of image renditions. The default folder
+     * is {@code ${proarc.home}/cache/renditions}.
+     */
+    public RenditionCacheOptions getRenditionCacheOptions() {
+        return RenditionCacheOptions.from(config, new File(configHome, "cache" + File.separatorChar + "renditions"));
+    }
+
+    public ObjectIndexOptions getObjectIndexOptions() {
+        return ObjectIndexOptions.from(config);
+    }
+
+    public SearchCacheOptions getSearchCacheOptions() {
+        return SearchCacheOptions.from(config);
+    }
+
+    public SearchViewOptions getSearchViewOptions() {
+        return SearchViewOptions.from(config);
+    }
+
     public Kramerius4ExportOptions getKramerius4Export() {
         return Kramerius4ExportOptions.from(config);
     }
 
+    public NdkExportOptions getNdkExportOptions() {
+        return NdkExportOptions.from(config);
+    }
+
     public Configuration getAuthenticators() {
         return config;
     }
@@ -165,6 +236,10 @@ public final class AppConfiguration {
         return new DesaServices(config);
     }
 
+    public DesaExportOptions getDesaExportOptions() {
+        return DesaExportOptions.from(config);
+    }
+
     public UrnNbnConfiguration getUrnNbnConfiguration() {
         return new UrnNbnConfiguration(config);
     }
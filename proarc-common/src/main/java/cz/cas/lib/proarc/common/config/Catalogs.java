@@ -18,6 +18,7 @@ package cz.cas.lib.proarc.common.config;
 
 import cz.cas.lib.proarc.common.catalog.AlephXServer;
 import cz.cas.lib.proarc.common.catalog.BibliographicCatalog;
+import cz.cas.lib.proarc.common.catalog.CatalogCache;
 import cz.cas.lib.proarc.common.catalog.DigitizationRegistryCatalog;
 import cz.cas.lib.proarc.common.catalog.OaiCatalog;
 import cz.cas.lib.proarc.common.catalog.Z3950Catalog;
@@ -60,11 +61,21 @@ public final class Catalogs {
     }
 
     /**
-     * Finds particular catalog.
+     * Finds particular catalog. Its lookups use the {@link CatalogCache}
+     * if configured.
      * @param id catalog id
      * @return catalog or {@code null}
      */
     public BibliographicCatalog findCatalog(String id) {
+        BibliographicCatalog catalog = createCatalog(id);
+        CatalogCache cache = CatalogCache.getDefault();
+        if (catalog != null && cache != null) {
+            catalog = cache.decorate(id, catalog);
+        }
+        return catalog;
+    }
+
+    private BibliographicCatalog createCatalog(String id) {
         CatalogConfiguration props = findConfiguration(id);
         if (props == null) {
             return null;
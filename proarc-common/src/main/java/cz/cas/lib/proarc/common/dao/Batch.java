@@ -17,10 +17,13 @@
 package cz.cas.lib.proarc.common.dao;
 
 import java.sql.Timestamp;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
 
 /**
  * The batch describes group of {@link BatchItem items} related to some task
- * e.g. import.
+ * e.g. import or export.
  *
  * @author Jan Pokorsky
  */
@@ -28,9 +31,18 @@ public class Batch {
 
     public enum State {
 
-        EMPTY, LOADING, LOADING_FAILED, LOADED, INGESTING, INGESTING_FAILED, INGESTED
+        EMPTY, LOADING, LOADING_FAILED, LOADED, INGESTING, INGESTING_FAILED, INGESTED,
+        EXPORT_PLANNED, EXPORTING, EXPORT_FAILED, EXPORT_CANCELED, EXPORT_DONE
     }
-    
+
+    /** States of export jobs. */
+    public static final Set<State> EXPORT_STATES = Collections.unmodifiableSet(EnumSet.of(
+            State.EXPORT_PLANNED, State.EXPORTING, State.EXPORT_FAILED,
+            State.EXPORT_CANCELED, State.EXPORT_DONE));
+    /** States of import batches. */
+    public static final Set<State> IMPORT_STATES = Collections.unmodifiableSet(
+            EnumSet.complementOf(EnumSet.copyOf(EXPORT_STATES)));
+
     private Integer id;
     private String folder;
     private String title;
@@ -45,6 +57,7 @@ public class Batch {
     private boolean generateIndices;
     private String log;
     private String profileId;
+    private Integer priority;
 
     public Integer getId() {
         return id;
@@ -158,6 +171,18 @@ public class Batch {
         this.profileId = profileId;
     }
 
+    /**
+     * Gets the priority of the scheduled import.
+     * @return the priority or {@code null} for the normal priority
+     */
+    public Integer getPriority() {
+        return priority;
+    }
+
+    public void setPriority(Integer priority) {
+        this.priority = priority;
+    }
+
     @Override
     public String toString() {
         return "Batch{" + "id=" + id + ", folder=" + folder + ", title=" + title
@@ -165,7 +190,8 @@ public class Batch {
                 + ", timestamp=" + timestamp + ", state=" + state
                 + ", userId=" + userId + ", estimateItemNumber=" + estimateItemNumber
                 + ", device=" + device + ", generateIndices=" + generateIndices
-                + ", profileId=" + profileId + ", log=" + log + '}';
+                + ", profileId=" + profileId + ", priority=" + priority
+                + ", log=" + log + '}';
     }
 
 }
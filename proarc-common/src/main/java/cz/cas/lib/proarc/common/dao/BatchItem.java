@@ -33,7 +33,8 @@ public class BatchItem {
     }
 
     public enum ObjectState {
-        EXCLUDED, LOADING, LOADING_FAILED, LOADED, INGESTING_FAILED, INGESTED;
+        EXCLUDED, LOADING, LOADING_FAILED, LOADED, INGESTING_FAILED, INGESTED,
+        EXPORT_PLANNED, EXPORT_FAILED, EXPORTED;
     }
 
     public enum StreamState {
@@ -16,6 +16,7 @@
  */
 package cz.cas.lib.proarc.common.dao;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -35,4 +36,13 @@ public interface BatchItemDao extends Dao {
 
     void update(BatchItem item);
 
+    /**
+     * Inserts new items and updates existing items with JDBC batches.
+     * Existing items are updated only if not modified by someone else.
+     *
+     * @param items items to write
+     * @throws ConcurrentModificationException some item has been modified already
+     */
+    void update(Collection<BatchItem> items) throws ConcurrentModificationException;
+
 }
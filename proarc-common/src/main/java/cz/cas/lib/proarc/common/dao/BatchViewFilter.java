@@ -38,6 +38,8 @@ public class BatchViewFilter {
     private String sortBy;
     private int offset = 0;
     private int maxCount = 100;
+    private Timestamp afterCreated;
+    private Integer afterId;
 
     public Integer getUserId() {
         return userId;
@@ -83,6 +85,14 @@ public class BatchViewFilter {
         return maxCount;
     }
 
+    public Timestamp getAfterCreated() {
+        return afterCreated;
+    }
+
+    public Integer getAfterId() {
+        return afterId;
+    }
+
     public BatchViewFilter setUserId(Integer userId) {
         this.userId = userId;
         return this;
@@ -141,4 +151,18 @@ public class BatchViewFilter {
         return this;
     }
 
+    /**
+     * Selects batches following the last batch of the previous page.
+     * It is faster than the offset for deep pages. The offset is counted
+     * from the last batch then. It applies just to the default sort.
+     *
+     * @param created the creation date of the last batch
+     * @param batchId the ID of the last batch
+     */
+    public BatchViewFilter setAfter(Timestamp created, Integer batchId) {
+        this.afterCreated = created;
+        this.afterId = batchId;
+        return this;
+    }
+
 }
@@ -40,6 +40,8 @@ public interface DaoFactory {
 
     WorkflowTaskDao createWorkflowTaskDao();
 
+    ObjectIndexDao createObjectIndexDao();
+
     void init();
 
 }
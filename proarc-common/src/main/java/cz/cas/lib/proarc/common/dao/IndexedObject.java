@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.dao;
+
+import java.sql.Timestamp;
+
+/**
+ * The descriptor of a digital object held by the object index.
+ *
+ * @author Jan Pokorsky
+ */
+public class IndexedObject {
+
+    private String pid;
+    private String model;
+    private String label;
+    private String owner;
+    /** The Fedora state code (A, I, D). */
+    private String state;
+    private Timestamp created;
+    private Timestamp modified;
+    private String device;
+    private Boolean hasExport;
+
+    public String getPid() {
+        return pid;
+    }
+
+    public void setPid(String pid) {
+        this.pid = pid;
+    }
+
+    public String getModel() {
+        return model;
+    }
+
+    public void setModel(String model) {
+        this.model = model;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public String getOwner() {
+        return owner;
+    }
+
+    public void setOwner(String owner) {
+        this.owner = owner;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public Timestamp getCreated() {
+        return created;
+    }
+
+    public void setCreated(Timestamp created) {
+        this.created = created;
+    }
+
+    public Timestamp getModified() {
+        return modified;
+    }
+
+    public void setModified(Timestamp modified) {
+        this.modified = modified;
+    }
+
+    public String getDevice() {
+        return device;
+    }
+
+    public void setDevice(String device) {
+        this.device = device;
+    }
+
+    public Boolean getHasExport() {
+        return hasExport;
+    }
+
+    public void setHasExport(Boolean hasExport) {
+        this.hasExport = hasExport;
+    }
+
+    @Override
+    public String toString() {
+        return "IndexedObject{" + "pid=" + pid + ", model=" + model + ", state=" + state
+                + ", modified=" + modified + '}';
+    }
+
+}
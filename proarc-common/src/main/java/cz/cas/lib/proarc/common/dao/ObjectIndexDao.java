@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.dao;
+
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * DAO for the index of digital objects. Queries return only active objects.
+ *
+ * @author Jan Pokorsky
+ */
+public interface ObjectIndexDao extends Dao {
+
+    IndexedObject create();
+
+    IndexedObject find(String pid);
+
+    /**
+     * Inserts or updates the object and replaces its members.
+     *
+     * @param object the object descriptor
+     * @param members PIDs of members in the RELS-EXT order
+     */
+    void update(IndexedObject object, List<String> members);
+
+    /**
+     * Removes the object and its members from the index.
+     */
+    void remove(String pid);
+
+    /**
+     * Finds members of the object in the RELS-EXT order.
+     */
+    List<IndexedObject> findMembers(String parentPid);
+
+    /**
+     * Finds objects holding the passed PID as their member.
+     */
+    List<IndexedObject> findReferrers(String pid);
+
+    List<IndexedObject> findByModel(String model, int maxCount);
+
+    /**
+     * Finds the last created or modified objects of the passed models.
+     *
+     * @param models models to include
+     * @param modified {@code true} sorts by the date of the modification
+     *          otherwise by the date of the creation
+     */
+    List<IndexedObject> findLast(Collection<String> models, boolean modified, int offset, int maxCount);
+
+    boolean isDeviceInUse(String device);
+
+    /**
+     * Gets the last modification of each indexed object.
+     */
+    Map<String, Timestamp> findModified();
+
+}
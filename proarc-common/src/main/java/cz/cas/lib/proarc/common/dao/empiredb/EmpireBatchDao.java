@@ -124,6 +124,8 @@ public class EmpireBatchDao extends EmpireDao implements BatchDao {
     public List<Batch> findLoadingBatches() {
         BeanResult<Batch> result = new BeanResult<Batch>(Batch.class, table);
         result.getCommand().where(table.state.is(State.LOADING));
+        // keep the order of scheduled imports
+        result.getCommand().orderBy(table.id);
         result.fetch(getConnection());
         return Collections.unmodifiableList(result);
     }
@@ -200,11 +202,16 @@ public class EmpireBatchDao extends EmpireDao implements BatchDao {
                     .or(bitems.type.is(BatchItem.Type.FILE).and(bitems.file.like('%' + filePattern + '%')))
             );
         }
-        EmpireUtils.addOrderBy(cmd, filter.getSortBy(), table.create, true);
+        boolean defaultSort = EmpireUtils.addOrderBy(cmd, filter.getSortBy(), table.create, true, table.id);
+        if (defaultSort && filter.getAfterId() != null) {
+            EmpireUtils.addWhereAfter(cmd, table.create, true, filter.getAfterCreated(),
+                    table.id, filter.getAfterId());
+        }
+        boolean limited = EmpireUtils.addLimit(cmd, filter.getOffset(), filter.getMaxCount());
         DBReader reader = new DBReader();
         try {
             reader.open(cmd, getConnection());
-            if (!reader.skipRows(filter.getOffset())) {
+            if (!limited && !reader.skipRows(filter.getOffset())) {
                 return Collections.emptyList();
             }
             ArrayList<BatchView> viewItems = new ArrayList<BatchView>(filter.getMaxCount());
@@ -18,11 +18,18 @@ package cz.cas.lib.proarc.common.dao.empiredb;
 
 import cz.cas.lib.proarc.common.dao.BatchItemDao;
 import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.dao.ConcurrentModificationException;
 import cz.cas.lib.proarc.common.dao.empiredb.ProarcDatabase.BatchItemTable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import org.apache.empire.data.bean.BeanResult;
+import org.apache.empire.db.DBCmdParam;
 import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBRecord;
 
@@ -63,6 +70,92 @@ public class EmpireBatchItemDao extends EmpireDao implements BatchItemDao {
         }
     }
 
+    @Override
+    public void update(Collection<BatchItem> items) {
+        List<BatchItem> inserts = new ArrayList<BatchItem>();
+        List<BatchItem> updates = new ArrayList<BatchItem>();
+        for (BatchItem item : items) {
+            if (item.getId() == null) {
+                inserts.add(item);
+            } else {
+                updates.add(item);
+            }
+        }
+        try {
+            if (!inserts.isEmpty()) {
+                insert(inserts);
+            }
+            if (!updates.isEmpty()) {
+                update(updates);
+            }
+        } catch (SQLException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void insert(List<BatchItem> items) throws SQLException {
+        Connection c = getConnection();
+        DBCommand cmd = db.createCommand();
+        ItemParams params = new ItemParams(cmd);
+        cmd.set(table.id.to(params.id));
+        params.set(cmd);
+        PreparedStatement stmt = c.prepareStatement(cmd.getInsert());
+        try {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (BatchItem item : items) {
+                Object id = db.getNextSequenceValue(table.id.getSequenceName(), c);
+                item.setId(((Number) id).intValue());
+                if (item.getTimestamp() == null) {
+                    item.setTimestamp(now);
+                }
+                params.setValues(item, item.getTimestamp());
+                params.id.setValue(item.getId());
+                bind(stmt, cmd.getParamValues());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private void update(List<BatchItem> items) throws SQLException {
+        DBCommand cmd = db.createCommand();
+        ItemParams params = new ItemParams(cmd);
+        DBCmdParam oldTimestamp = cmd.addParam(table.timestamp, null);
+        params.set(cmd);
+        cmd.where(table.id.is(params.id));
+        cmd.where(table.timestamp.is(oldTimestamp));
+        PreparedStatement stmt = getConnection().prepareStatement(cmd.getUpdate());
+        try {
+            Timestamp now = new Timestamp(System.currentTimeMillis());
+            for (BatchItem item : items) {
+                params.setValues(item, now);
+                params.id.setValue(item.getId());
+                oldTimestamp.setValue(item.getTimestamp());
+                bind(stmt, cmd.getParamValues());
+                stmt.addBatch();
+            }
+            int[] counts = stmt.executeBatch();
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == 0) {
+                    throw new ConcurrentModificationException(String.valueOf(items.get(i)));
+                }
+            }
+            for (BatchItem item : items) {
+                item.setTimestamp(now);
+            }
+        } finally {
+            stmt.close();
+        }
+    }
+
+    private static void bind(PreparedStatement stmt, Object[] values) throws SQLException {
+        for (int i = 0; i < values.length; i++) {
+            stmt.setObject(i + 1, values[i]);
+        }
+    }
+
     @Override
     public BatchItem find(int id) {
         DBRecord dbr = new DBRecord();
@@ -106,4 +199,58 @@ public class EmpireBatchItemDao extends EmpireDao implements BatchItemDao {
         db.executeDelete(table, cmd, getConnection());
     }
 
+    /**
+     * Statement parameters of item columns.
+     */
+    private final class ItemParams {
+
+        private final DBCmdParam id;
+        private final DBCmdParam batchId;
+        private final DBCmdParam pid;
+        private final DBCmdParam dsId;
+        private final DBCmdParam file;
+        private final DBCmdParam state;
+        private final DBCmdParam type;
+        private final DBCmdParam log;
+        private final DBCmdParam timestamp;
+
+        ItemParams(DBCommand cmd) {
+            id = cmd.addParam(table.id, null);
+            batchId = cmd.addParam(table.batchId, null);
+            pid = cmd.addParam(table.pid, null);
+            dsId = cmd.addParam(table.dsId, null);
+            file = cmd.addParam(table.file, null);
+            state = cmd.addParam(table.state, null);
+            type = cmd.addParam(table.type, null);
+            log = cmd.addParam(table.log, null);
+            timestamp = cmd.addParam(table.timestamp, null);
+        }
+
+        /**
+         * Sets all columns except the ID.
+         */
+        void set(DBCommand cmd) {
+            cmd.set(table.batchId.to(batchId));
+            cmd.set(table.pid.to(pid));
+            cmd.set(table.dsId.to(dsId));
+            cmd.set(table.file.to(file));
+            cmd.set(table.state.to(state));
+            cmd.set(table.type.to(type));
+            cmd.set(table.log.to(log));
+            cmd.set(table.timestamp.to(timestamp));
+        }
+
+        void setValues(BatchItem item, Timestamp newTimestamp) {
+            batchId.setValue(item.getBatchId());
+            pid.setValue(item.getPid());
+            dsId.setValue(item.getDsId());
+            file.setValue(item.getFile());
+            state.setValue(item.getState());
+            type.setValue(item.getTypeAsString());
+            log.setValue(item.getLog());
+            timestamp.setValue(newTimestamp);
+        }
+
+    }
+
 }
@@ -100,5 +100,10 @@ public class EmpireDaoFactory implements DaoFactory {
     public EmpireWorkflowMaterialDao createWorkflowMaterialDao() {
         return new EmpireWorkflowMaterialDao(db);
     }
+
+    @Override
+    public EmpireObjectIndexDao createObjectIndexDao() {
+        return new EmpireObjectIndexDao(db);
+    }
     
 }
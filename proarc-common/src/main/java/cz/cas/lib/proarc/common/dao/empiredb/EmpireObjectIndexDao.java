@@ -0,0 +1,210 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.dao.empiredb;
+
+import cz.cas.lib.proarc.common.dao.IndexedObject;
+import cz.cas.lib.proarc.common.dao.ObjectIndexDao;
+import cz.cas.lib.proarc.common.dao.empiredb.ProarcDatabase.ObjectMemberTable;
+import cz.cas.lib.proarc.common.dao.empiredb.ProarcDatabase.ObjectTable;
+import java.sql.Connection;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import org.apache.empire.db.DBCommand;
+import org.apache.empire.db.DBReader;
+import org.apache.empire.db.DBRecord;
+import org.apache.empire.db.DBRecordData;
+import org.apache.empire.db.exceptions.RecordNotFoundException;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class EmpireObjectIndexDao extends EmpireDao implements ObjectIndexDao {
+
+    /** The Fedora code of the active state. */
+    static final String STATE_ACTIVE = "A";
+
+    private final ObjectTable table;
+    private final ObjectMemberTable tableMember;
+
+    public EmpireObjectIndexDao(ProarcDatabase db) {
+        super(db);
+        table = db.tableObject;
+        tableMember = db.tableObjectMember;
+    }
+
+    @Override
+    public IndexedObject create() {
+        return new IndexedObject();
+    }
+
+    @Override
+    public IndexedObject find(String pid) {
+        DBRecord record = new DBRecord();
+        try {
+            record.read(table, pid, getConnection());
+            IndexedObject object = new IndexedObject();
+            record.getBeanProperties(object);
+            return object;
+        } catch (RecordNotFoundException ex) {
+            return null;
+        } finally {
+            record.close();
+        }
+    }
+
+    @Override
+    public void update(IndexedObject object, List<String> members) {
+        if (object.getPid() == null) {
+            throw new IllegalArgumentException("Unsupported missing PID!");
+        }
+        Connection c = getConnection();
+        DBRecord record = new DBRecord();
+        try {
+            try {
+                record.read(table, object.getPid(), c);
+            } catch (RecordNotFoundException ex) {
+                record.create(table);
+            }
+            record.setBeanValues(object);
+            record.update(c);
+        } finally {
+            record.close();
+        }
+        removeMembers(object.getPid());
+        DBRecord r = new DBRecord();
+        int order = 0;
+        for (String member : members) {
+            r.create(tableMember);
+            r.setValue(tableMember.parentPid, object.getPid());
+            r.setValue(tableMember.memberPid, member);
+            r.setValue(tableMember.memberOrder, order++);
+            r.update(c);
+        }
+    }
+
+    @Override
+    public void remove(String pid) {
+        removeMembers(pid);
+        DBCommand cmd = db.createCommand();
+        cmd.where(table.pid.is(pid));
+        db.executeDelete(table, cmd, getConnection());
+    }
+
+    private void removeMembers(String parentPid) {
+        DBCommand cmd = db.createCommand();
+        cmd.where(tableMember.parentPid.is(parentPid));
+        db.executeDelete(tableMember, cmd, getConnection());
+    }
+
+    @Override
+    public List<IndexedObject> findMembers(String parentPid) {
+        DBCommand cmd = createActiveCommand();
+        cmd.join(table.pid, tableMember.memberPid);
+        cmd.where(tableMember.parentPid.is(parentPid));
+        cmd.orderBy(tableMember.memberOrder);
+        return fetch(cmd, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<IndexedObject> findReferrers(String pid) {
+        DBCommand cmd = createActiveCommand();
+        cmd.selectDistinct();
+        cmd.join(table.pid, tableMember.parentPid);
+        cmd.where(tableMember.memberPid.is(pid));
+        return fetch(cmd, 0, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<IndexedObject> findByModel(String model, int maxCount) {
+        DBCommand cmd = createActiveCommand();
+        cmd.where(table.model.is(model));
+        cmd.orderBy(table.pid);
+        return fetch(cmd, 0, maxCount);
+    }
+
+    @Override
+    public List<IndexedObject> findLast(Collection<String> models, boolean modified, int offset, int maxCount) {
+        if (models.isEmpty()) {
+            return Collections.emptyList();
+        }
+        DBCommand cmd = createActiveCommand();
+        cmd.where(table.model.in(models));
+        cmd.orderBy(modified ? table.modified : table.created, true);
+        cmd.orderBy(table.pid, true);
+        return fetch(cmd, offset, maxCount);
+    }
+
+    @Override
+    public boolean isDeviceInUse(String device) {
+        DBCommand cmd = createActiveCommand();
+        cmd.where(table.device.is(device));
+        return !fetch(cmd, 0, 1).isEmpty();
+    }
+
+    @Override
+    public Map<String, Timestamp> findModified() {
+        DBCommand cmd = db.createCommand();
+        cmd.select(table.pid, table.modified);
+        HashMap<String, Timestamp> result = new HashMap<String, Timestamp>();
+        DBReader reader = new DBReader();
+        try {
+            reader.open(cmd, getConnection());
+            while (reader.moveNext()) {
+                result.put(reader.getString(table.pid), new Timestamp(reader.getDateTime(table.modified).getTime()));
+            }
+            return result;
+        } finally {
+            reader.close();
+        }
+    }
+
+    private DBCommand createActiveCommand() {
+        DBCommand cmd = db.createCommand();
+        cmd.select(table.getColumns());
+        cmd.where(table.state.is(STATE_ACTIVE));
+        return cmd;
+    }
+
+    private List<IndexedObject> fetch(DBCommand cmd, int offset, int maxCount) {
+        boolean limited = EmpireUtils.addLimit(cmd, offset, maxCount);
+        DBReader reader = new DBReader();
+        try {
+            reader.open(cmd, getConnection());
+            if (!limited && !reader.skipRows(offset)) {
+                return Collections.emptyList();
+            }
+            ArrayList<IndexedObject> result = new ArrayList<IndexedObject>();
+            for (Iterator<DBRecordData> it = reader.iterator(maxCount); it.hasNext();) {
+                DBRecordData rec = it.next();
+                IndexedObject object = new IndexedObject();
+                rec.getBeanProperties(object);
+                result.add(object);
+            }
+            return result;
+        } finally {
+            reader.close();
+        }
+    }
+
+}
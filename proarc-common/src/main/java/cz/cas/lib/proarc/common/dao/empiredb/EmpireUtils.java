@@ -19,6 +19,7 @@ package cz.cas.lib.proarc.common.dao.empiredb;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -28,6 +29,7 @@ import org.apache.empire.commons.Options;
 import org.apache.empire.data.DataMode;
 import org.apache.empire.data.DataType;
 import org.apache.empire.db.DBCmdType;
+import org.apache.empire.db.DBCmpType;
 import org.apache.empire.db.DBColumn;
 import org.apache.empire.db.DBColumnExpr;
 import org.apache.empire.db.DBCommand;
@@ -41,6 +43,7 @@ import org.apache.empire.db.DBTable;
 import org.apache.empire.db.DBTableColumn;
 import org.apache.empire.db.expr.compare.DBCompareColExpr;
 import org.apache.empire.db.expr.compare.DBCompareExpr;
+import org.apache.empire.db.postgresql.DBDatabaseDriverPostgreSQL.DBCommandPostreSQL;
 
 /**
  * EmpireDb helpers.
@@ -97,7 +100,75 @@ class EmpireUtils {
         addOrderBy(cmd, selections, columnBeanPropertyName, defaultSortByColumn, defaultDescending);
     }
 
-    private static void addOrderBy(DBCommand cmd, List<? extends DBColumnExpr> selections,
+    /**
+     * Adds a column to the {@code order by} clause of the command followed
+     * with the key column. The key makes the order of rows with equal sort values
+     * stable across pages.
+     *
+     * @param keyColumn a unique column
+     * @return {@code true} if the default column is used to sort
+     * @see #addOrderBy(DBCommand, String, DBTableColumn, boolean)
+     */
+    public static boolean addOrderBy(DBCommand cmd,
+            String columnBeanPropertyName, DBTableColumn defaultSortByColumn,
+            boolean defaultDescending, DBTableColumn keyColumn
+    ) {
+        DBColumnExpr[] selectExprList = cmd.getSelectExprList();
+        List<? extends DBColumnExpr> selections = Arrays.asList(selectExprList);
+        Boolean descending = addOrderBy(cmd, selections, columnBeanPropertyName, defaultSortByColumn, defaultDescending);
+        if (descending == null) {
+            cmd.orderBy(keyColumn, false);
+            return false;
+        }
+        cmd.orderBy(keyColumn, descending);
+        return findSelection(selections, columnBeanPropertyName) == null;
+    }
+
+    /**
+     * Adds the condition to select rows following the key of the last row
+     * of the previous page (keyset pagination). It requires the order
+     * of {@link #addOrderBy(DBCommand, String, DBTableColumn, boolean, DBTableColumn)}.
+     *
+     * @param sortColumn the sort column
+     * @param descending the sort direction
+     * @param sortValue the value of the sort column of the last row
+     * @param keyColumn the unique column
+     * @param keyValue the value of the unique column of the last row
+     */
+    public static void addWhereAfter(DBCommand cmd,
+            DBTableColumn sortColumn, boolean descending, Object sortValue,
+            DBTableColumn keyColumn, Object keyValue
+    ) {
+        DBCmpType cmpType = descending ? DBCmpType.LESSTHAN : DBCmpType.GREATERTHAN;
+        // params keep milliseconds of timestamps
+        DBCompareExpr after = sortColumn.cmp(cmpType, cmd.addParam(sortColumn, sortValue))
+                .or(sortColumn.is(cmd.addParam(sortColumn, sortValue))
+                        .and(keyColumn.cmp(cmpType, cmd.addParam(keyColumn, keyValue))));
+        cmd.addWhereConstraints(Collections.<DBCompareExpr>singletonList(after));
+    }
+
+    /**
+     * Limits the selected rows in SQL if the driver supports it.
+     *
+     * @param cmd SQL command
+     * @param offset the number of rows to skip
+     * @param maxCount the max number of rows to select
+     * @return {@code false} if the caller has to skip rows itself
+     */
+    public static boolean addLimit(DBCommand cmd, int offset, int maxCount) {
+        if (cmd instanceof DBCommandPostreSQL) {
+            DBCommandPostreSQL pgCmd = (DBCommandPostreSQL) cmd;
+            pgCmd.limitRows(maxCount);
+            pgCmd.skipRows(offset);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return the sort direction or {@code null} if nothing is sorted
+     */
+    private static Boolean addOrderBy(DBCommand cmd, List<? extends DBColumnExpr> selections,
             String columnBeanPropertyName, DBTableColumn defaultSortByColumn,
             boolean defaultDescending
     ) {
@@ -109,9 +180,10 @@ class EmpireUtils {
             sortByCol = defaultSortByColumn;
             descending = defaultDescending;
         } else {
-            return ;
+            return null;
         }
         cmd.orderBy(sortByCol, descending);
+        return descending;
     }
 
     private static boolean isDescendingSort(String prefixedBeanPropertyName) {
@@ -119,12 +119,17 @@ public class EmpireWorkflowJobDao extends EmpireDao implements WorkflowJobDao {
         EmpireUtils.addWhereDate(cmd, tableJob.created, filter.getCreated());
         EmpireUtils.addWhereDate(cmd, tableJob.timestamp, filter.getModified());
 
-        EmpireUtils.addOrderBy(cmd, filter.getSortBy(), tableJob.timestamp, true);
+        boolean defaultSort = EmpireUtils.addOrderBy(cmd, filter.getSortBy(), tableJob.timestamp, true, tableJob.id);
+        if (defaultSort && filter.getAfterId() != null) {
+            EmpireUtils.addWhereAfter(cmd, tableJob.timestamp, true, filter.getAfterTimestamp(),
+                    tableJob.id, filter.getAfterId());
+        }
+        boolean limited = EmpireUtils.addLimit(cmd, filter.getOffset(), filter.getMaxCount());
 
         DBReader reader = new DBReader();
         try {
             reader.open(cmd, getConnection());
-            if (!reader.skipRows(filter.getOffset())) {
+            if (!limited && !reader.skipRows(filter.getOffset())) {
                 return Collections.emptyList();
             }
             ArrayList<JobView> viewItems = new ArrayList<JobView>(filter.getMaxCount());
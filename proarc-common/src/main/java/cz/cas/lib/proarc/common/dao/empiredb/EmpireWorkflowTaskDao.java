@@ -122,12 +122,17 @@ public class EmpireWorkflowTaskDao extends EmpireDao implements WorkflowTaskDao
         }
         EmpireUtils.addWhereDate(cmd, tableTask.created, filter.getCreated());
         EmpireUtils.addWhereDate(cmd, tableTask.timestamp, filter.getModified());
-        EmpireUtils.addOrderBy(cmd, filter.getSortBy(), tableTask.timestamp, false);
+        boolean defaultSort = EmpireUtils.addOrderBy(cmd, filter.getSortBy(), tableTask.timestamp, false, tableTask.id);
+        if (defaultSort && filter.getAfterId() != null) {
+            EmpireUtils.addWhereAfter(cmd, tableTask.timestamp, false, filter.getAfterTimestamp(),
+                    tableTask.id, filter.getAfterId());
+        }
+        boolean limited = EmpireUtils.addLimit(cmd, filter.getOffset(), filter.getMaxCount());
 
         DBReader reader = new DBReader();
         try {
             reader.open(cmd, getConnection());
-            if (!reader.skipRows(filter.getOffset())) {
+            if (!limited && !reader.skipRows(filter.getOffset())) {
                 return Collections.emptyList();
             }
             ArrayList<TaskView> viewItems = new ArrayList<TaskView>(filter.getMaxCount());
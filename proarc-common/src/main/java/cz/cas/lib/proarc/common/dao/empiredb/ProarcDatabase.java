@@ -33,6 +33,7 @@ import org.apache.empire.db.DBCommand;
 import org.apache.empire.db.DBDatabase;
 import static org.apache.empire.db.DBDatabase.SYSDATE;
 import org.apache.empire.db.DBDatabaseDriver;
+import org.apache.empire.db.DBIndex;
 import org.apache.empire.db.DBRecord;
 import org.apache.empire.db.DBSQLScript;
 import org.apache.empire.db.DBTable;
@@ -41,7 +42,8 @@ import org.apache.empire.db.exceptions.QueryFailedException;
 import org.apache.empire.db.postgresql.DBDatabaseDriverPostgreSQL;
 
 /**
- * Database schema version 4. It adds workflow stuff.
+ * Database schema version 6. It adds the index of digital objects
+ * and priorities of batches.
  *
  * <p><b>Warning:</b> declare sequence names the same way like PostgreSql
  * ({@code {tablename}_{column_name}_seq}).
@@ -53,7 +55,7 @@ public class ProarcDatabase extends DBDatabase {
     private static final long serialVersionUID = 1L;
     private static final Logger LOG = Logger.getLogger(ProarcDatabase.class.getName());
     /** the schema version */
-    public static final int VERSION = 4;
+    public static final int VERSION = 6;
 
     public final ProarcVersionTable tableProarcVersion = new ProarcVersionTable(this);
     public final BatchTable tableBatch = new BatchTable(this);
@@ -70,6 +72,8 @@ public class ProarcDatabase extends DBDatabase {
     public final WorkflowFolderTable tableWorkflowFolder = new WorkflowFolderTable(this);
     public final WorkflowDigObjTable tableWorkflowDigObj = new WorkflowDigObjTable(this);
     public final WorkflowPhysicalDocTable tableWorkflowPhysicalDoc = new WorkflowPhysicalDocTable(this);
+    public final ObjectTable tableObject = new ObjectTable(this);
+    public final ObjectMemberTable tableObjectMember = new ObjectMemberTable(this);
 
     public static class ProarcVersionTable extends DBTable {
 
@@ -104,6 +108,10 @@ public class ProarcDatabase extends DBDatabase {
         public final DBTableColumn generateIndices;
         public final DBTableColumn log;
         public final DBTableColumn profileId;
+        /** The priority of the scheduled import. */
+        public final DBTableColumn priority;
+        /** The index of the default sort to page batches. */
+        public final DBIndex pagingIndex;
 
         public BatchTable(DBDatabase db) {
             super("PROARC_BATCH", db);
@@ -122,8 +130,10 @@ public class ProarcDatabase extends DBDatabase {
             generateIndices = addColumn("GENERATE_INDICES", DataType.BOOL, 0, false);
             log = addColumn("LOG", DataType.CLOB, 0, false);
             profileId = addColumn("PROFILE_ID", DataType.TEXT, 2000, false);
+            priority = addColumn("PRIORITY", DataType.INTEGER, 0, false);
             setPrimaryKey(id);
             addIndex(String.format("%s_IDX", getName()), false, new DBColumn[] { create, state, title, userId });
+            pagingIndex = addIndex(String.format("%s_%s_IDX", getName(), create.getName()), false, new DBColumn[] { create, id });
         }
 
     }
@@ -294,6 +304,8 @@ public class ProarcDatabase extends DBDatabase {
         public final DBTableColumn profileName;
         public final DBTableColumn state;
         public final DBTableColumn timestamp;
+        /** The index of the default sort to page jobs. */
+        public final DBIndex pagingIndex;
 
         public WorkflowJobTable(DBDatabase db) {
             super("PROARC_WF_JOB", db);
@@ -310,6 +322,7 @@ public class ProarcDatabase extends DBDatabase {
             created = addColumn("CREATED", DataType.DATETIME, 0, true);
             timestamp = addTimestampColumn("TIMESTAMP");
             setPrimaryKey(id);
+            pagingIndex = addIndex(String.format("%s_%s_IDX", getName(), timestamp.getName()), false, new DBColumn[] { timestamp, id });
 //            addIndex(String.format("%s_IDX", getName()), false, new DBColumn[] {
 //                ownerId, created, timestamp, state, priority, financed });
         }
@@ -329,6 +342,8 @@ public class ProarcDatabase extends DBDatabase {
         /** The name of a task type in workflow profile. */
         public final DBTableColumn typeRef;
         public final DBTableColumn timestamp;
+        /** The index of the default sort to page tasks. */
+        public final DBIndex pagingIndex;
 
         public WorkflowTaskTable(DBDatabase db) {
             super("PROARC_WF_TASK", db);
@@ -345,6 +360,7 @@ public class ProarcDatabase extends DBDatabase {
             created = addColumn("CREATED", DataType.DATETIME, 0, true);
             timestamp = addTimestampColumn("TIMESTAMP");
             setPrimaryKey(id);
+            pagingIndex = addIndex(String.format("%s_%s_IDX", getName(), timestamp.getName()), false, new DBColumn[] { timestamp, id });
         }
     }
 
@@ -479,6 +495,65 @@ public class ProarcDatabase extends DBDatabase {
         }
     }
 
+    /**
+     * The index of digital objects stored in Fedora.
+     */
+    public static final class ObjectTable extends EnhancedDBTable {
+
+        private static final long serialVersionUID = 1L;
+
+        public final DBTableColumn pid;
+        public final DBTableColumn model;
+        public final DBTableColumn label;
+        public final DBTableColumn owner;
+        /** The Fedora state code (A, I, D). */
+        public final DBTableColumn state;
+        public final DBTableColumn created;
+        public final DBTableColumn modified;
+        /** digitization device ID (PID) */
+        public final DBTableColumn device;
+        public final DBTableColumn hasExport;
+
+        public ObjectTable(DBDatabase db) {
+            super("PROARC_OBJECT", db);
+            pid = addColumn("PID", DataType.TEXT, 100, true);
+            model = addColumn("MODEL", DataType.TEXT, 100, true);
+            label = addColumn("LABEL", DataType.TEXT, 2000, false);
+            owner = addColumn("OWNER", DataType.TEXT, 100, false);
+            state = addColumn("STATE", DataType.TEXT, 1, true);
+            created = addColumn("CREATED", DataType.DATETIME, 0, true);
+            modified = addColumn("MODIFIED", DataType.DATETIME, 0, true);
+            device = addColumn("DEVICE", DataType.TEXT, 100, false);
+            hasExport = addColumn("HAS_EXPORT", DataType.BOOL, 0, true);
+            setPrimaryKey(pid);
+            addIndex(String.format("%s_%s_IDX", getName(), created.getName()), false, new DBColumn[] { created, pid });
+            addIndex(String.format("%s_%s_IDX", getName(), modified.getName()), false, new DBColumn[] { modified, pid });
+            addIndex(String.format("%s_%s_IDX", getName(), model.getName()), false, new DBColumn[] { model });
+            addIndex(String.format("%s_%s_IDX", getName(), device.getName()), false, new DBColumn[] { device });
+        }
+    }
+
+    /**
+     * The ordered members of indexed digital objects.
+     */
+    public static final class ObjectMemberTable extends EnhancedDBTable {
+
+        private static final long serialVersionUID = 1L;
+
+        public final DBTableColumn parentPid;
+        public final DBTableColumn memberPid;
+        public final DBTableColumn memberOrder;
+
+        public ObjectMemberTable(DBDatabase db) {
+            super("PROARC_OBJECT_MEMBER", db);
+            parentPid = addColumn("PARENT_PID", DataType.TEXT, 100, true);
+            memberPid = addColumn("MEMBER_PID", DataType.TEXT, 100, true);
+            memberOrder = addColumn("MEMBER_ORDER", DataType.INTEGER, 0, true);
+            setPrimaryKey(parentPid, memberOrder);
+            addIndex(String.format("%s_%s_IDX", getName(), memberPid.getName()), false, new DBColumn[] { memberPid });
+        }
+    }
+
     public ProarcDatabase() {
         addRelation(tableBatch.userId.referenceOn(tableUser.id));
         addRelation(tableBatchItem.batchId.referenceOn(tableBatch.id));
@@ -495,6 +570,8 @@ public class ProarcDatabase extends DBDatabase {
         addRelation(tableWorkflowFolder.materialId.referenceOn(tableWorkflowMaterial.id));
         addRelation(tableWorkflowDigObj.materialId.referenceOn(tableWorkflowMaterial.id));
         addRelation(tableWorkflowPhysicalDoc.materialId.referenceOn(tableWorkflowMaterial.id));
+        // object index
+        addRelation(tableObjectMember.parentPid.referenceOn(tableObject.pid));
     }
 
     void init(EmpireConfiguration conf) throws SQLException {
@@ -504,7 +581,7 @@ public class ProarcDatabase extends DBDatabase {
         try {
             int schemaVersion = schemaExists(this, conn);
             if (schemaVersion > 0) {
-                schemaVersion = ProarcDatabaseV3.upgradeToVersion4(
+                schemaVersion = ProarcDatabaseV5.upgradeToVersion6(
                         schemaVersion, this, conn, conf);
                 if (schemaVersion != VERSION) {
                     throw new SQLException("Invalid schema version " + schemaVersion);
@@ -62,7 +62,7 @@ public class ProarcDatabaseV3 extends DBDatabase {
     public final GroupPermissionTable tableGroupPermission = new GroupPermissionTable(this);
 
     public static int upgradeToVersion4(
-            int currentSchemaVersion, ProarcDatabase schema,
+            int currentSchemaVersion,
             Connection conn, EmpireConfiguration conf) throws SQLException {
 
         if (currentSchemaVersion < VERSION) {
@@ -74,19 +74,20 @@ public class ProarcDatabaseV3 extends DBDatabase {
         } else if (currentSchemaVersion != VERSION) {
             throw new SQLException("Cannot upgrade from schema version " + currentSchemaVersion);
         }
-//        ProarcDatabaseV3 schema = new ProarcDatabaseV3();
+        ProarcDatabaseV4 schema = new ProarcDatabaseV4();
         try {
+            schema.open(conf.getDriver(), conn);
             upgradeDdl(schema, conn);
             int schemaVersion = schema.initVersion(conn, VERSION);
 
             conn.commit();
             return schemaVersion;
         } finally {
-//            schema.close(conn);
+            schema.close(conn);
         }
     }
 
-    private static void upgradeDdl(ProarcDatabase schema, Connection conn) throws SQLException {
+    private static void upgradeDdl(ProarcDatabaseV4 schema, Connection conn) throws SQLException {
         try {
             conn.setAutoCommit(true);
             DBDatabaseDriver driver = schema.getDriver();
@@ -0,0 +1,251 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import com.yourmediashelf.fedora.client.FedoraClient;
+import com.yourmediashelf.fedora.client.FedoraClientException;
+import com.yourmediashelf.fedora.client.request.GetDatastreamDissemination;
+import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
+import com.yourmediashelf.fedora.generated.foxml.DatastreamVersionType;
+import com.yourmediashelf.fedora.util.DateUtility;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils.ControlGroup;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventFactory;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLEventWriter;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.events.Attribute;
+import javax.xml.stream.events.EndElement;
+import javax.xml.stream.events.StartElement;
+import javax.xml.stream.events.XMLEvent;
+
+/**
+ * Embeds contents of managed data streams to an exported FOXML as base64
+ * encoded {@code binaryContent}. Contents are fetched to temporary files
+ * and streamed to the written FOXML. Unlike the FOXML export in the archive
+ * context it does not hold binaries in memory.
+ *
+ * @author Jan Pokorsky
+ */
+final class BinaryContentEmbedder {
+
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final XMLOutputFactory XML_OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+    private static final XMLEventFactory XML_EVENT_FACTORY = XMLEventFactory.newInstance();
+    /** The size of the encoded block. It must be a multiple of 3 to skip padding. */
+    private static final int CHUNK_SIZE = 3 * 16 * 1024;
+
+    private final File folder;
+    private final List<Content> contents = new ArrayList<Content>();
+
+    /**
+     * @param folder the folder to hold temporary files
+     */
+    BinaryContentEmbedder(File folder) {
+        this.folder = folder;
+    }
+
+    /**
+     * Fetches contents of managed versions of the data stream and removes
+     * their content locations. Call it before the data stream is renamed.
+     */
+    public void fetch(FedoraClient client, String pid, DatastreamType datastream)
+            throws FedoraClientException, IOException {
+
+        if (!ControlGroup.MANAGED.toExternal().equals(datastream.getCONTROLGROUP())) {
+            return ;
+        }
+        for (DatastreamVersionType version : datastream.getDatastreamVersion()) {
+            if (version.getBinaryContent() != null) {
+                continue;
+            }
+            GetDatastreamDissemination request = FedoraClient.getDatastreamDissemination(pid, datastream.getID());
+            if (version.getCREATED() != null) {
+                request.asOfDateTime(DateUtility.getXSDDateTime(version.getCREATED().toGregorianCalendar().getTime()));
+            }
+            File file = File.createTempFile("binary", ".tmp", folder);
+            add(datastream, version, file);
+            InputStream is = request.execute(client).getEntityInputStream();
+            try {
+                OutputStream os = new FileOutputStream(file);
+                try {
+                    FoxmlUtils.copy(is, os);
+                } finally {
+                    os.close();
+                }
+            } finally {
+                FoxmlUtils.closeQuietly(is, pid + '/' + datastream.getID());
+            }
+            version.setContentLocation(null);
+        }
+    }
+
+    /**
+     * Registers the content of the data stream version.
+     */
+    void add(DatastreamType datastream, DatastreamVersionType version, File content) {
+        contents.add(new Content(datastream, version, content));
+    }
+
+    /**
+     * Writes registered contents to the FOXML file.
+     */
+    public void embed(File foxml) throws IOException, XMLStreamException {
+        if (contents.isEmpty()) {
+            return ;
+        }
+        // data streams may be renamed since the fetch
+        Map<String, File> contentMap = new HashMap<String, File>();
+        for (Content content : contents) {
+            contentMap.put(content.getKey(), content.file);
+        }
+        File tmp = File.createTempFile("foxml", ".tmp", folder);
+        try {
+            InputStream is = new FileInputStream(foxml);
+            try {
+                OutputStream os = new FileOutputStream(tmp);
+                try {
+                    embed(is, os, contentMap);
+                } finally {
+                    os.close();
+                }
+            } finally {
+                is.close();
+            }
+            if (!foxml.delete() || !tmp.renameTo(foxml)) {
+                throw new IOException("Cannot replace " + foxml);
+            }
+        } finally {
+            tmp.delete();
+        }
+    }
+
+    private static void embed(InputStream is, OutputStream os, Map<String, File> contentMap)
+            throws IOException, XMLStreamException {
+
+        XMLEventReader reader = XML_INPUT_FACTORY.createXMLEventReader(is);
+        XMLEventWriter writer = XML_OUTPUT_FACTORY.createXMLEventWriter(os, "UTF-8");
+        String dsId = null;
+        String versionId = null;
+        while (reader.hasNext()) {
+            XMLEvent event = reader.nextEvent();
+            if (event.isStartElement()) {
+                StartElement start = event.asStartElement();
+                if (isFoxml(start.getName(), "datastream")) {
+                    dsId = getId(start);
+                } else if (isFoxml(start.getName(), "datastreamVersion")) {
+                    versionId = getId(start);
+                }
+            } else if (event.isEndElement()) {
+                EndElement end = event.asEndElement();
+                if (isFoxml(end.getName(), "datastreamVersion")) {
+                    File content = contentMap.get(dsId + '/' + versionId);
+                    if (content != null) {
+                        writeBinaryContent(writer, end.getName().getPrefix(), content);
+                    }
+                }
+            }
+            writer.add(event);
+        }
+        writer.flush();
+        writer.close();
+        reader.close();
+    }
+
+    private static void writeBinaryContent(XMLEventWriter writer, String prefix, File content)
+            throws IOException, XMLStreamException {
+
+        writer.add(XML_EVENT_FACTORY.createStartElement(prefix, FoxmlUtils.FOXML_NAMESPACE, "binaryContent"));
+        Base64.Encoder encoder = Base64.getEncoder();
+        byte[] buffer = new byte[CHUNK_SIZE];
+        InputStream is = new FileInputStream(content);
+        try {
+            for (int length; (length = readChunk(is, buffer)) > 0;) {
+                byte[] chunk = length == buffer.length ? buffer : Arrays.copyOf(buffer, length);
+                writer.add(XML_EVENT_FACTORY.createCharacters(encoder.encodeToString(chunk)));
+            }
+        } finally {
+            is.close();
+        }
+        writer.add(XML_EVENT_FACTORY.createEndElement(prefix, FoxmlUtils.FOXML_NAMESPACE, "binaryContent"));
+    }
+
+    /**
+     * Fills the whole buffer unless the stream ends.
+     */
+    private static int readChunk(InputStream is, byte[] buffer) throws IOException {
+        int offset = 0;
+        for (int length; offset < buffer.length
+                && (length = is.read(buffer, offset, buffer.length - offset)) >= 0;) {
+            offset += length;
+        }
+        return offset;
+    }
+
+    private static boolean isFoxml(QName name, String localName) {
+        return localName.equals(name.getLocalPart())
+                && FoxmlUtils.FOXML_NAMESPACE.equals(name.getNamespaceURI());
+    }
+
+    private static String getId(StartElement start) {
+        Attribute id = start.getAttributeByName(new QName("ID"));
+        return id == null ? null : id.getValue();
+    }
+
+    /**
+     * Deletes temporary files.
+     */
+    public void clear() {
+        for (Content content : contents) {
+            content.file.delete();
+        }
+        contents.clear();
+    }
+
+    private static final class Content {
+
+        private final DatastreamType datastream;
+        private final DatastreamVersionType version;
+        private final File file;
+
+        Content(DatastreamType datastream, DatastreamVersionType version, File file) {
+            this.datastream = datastream;
+            this.version = version;
+            this.file = file;
+        }
+
+        String getKey() {
+            return datastream.getID() + '/' + version.getID();
+        }
+    }
+
+}
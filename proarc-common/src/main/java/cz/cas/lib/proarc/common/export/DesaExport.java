@@ -51,11 +51,18 @@ public final class DesaExport {
     private final RemoteStorage rstorage;
     private final DesaServices desaServices;
     private final MetaModelRepository models;
+    private final DesaExportOptions options;
 
     public DesaExport(RemoteStorage rstorage, DesaServices desaServices, MetaModelRepository models) {
+        this(rstorage, desaServices, models, new DesaExportOptions());
+    }
+
+    public DesaExport(RemoteStorage rstorage, DesaServices desaServices,
+            MetaModelRepository models, DesaExportOptions options) {
         this.rstorage = rstorage;
         this.desaServices = desaServices;
         this.models = models;
+        this.options = options;
     }
 
     /**
@@ -185,6 +192,7 @@ public final class DesaExport {
         dc.setFedoraClient(fo.getClient());
         dc.setRemoteStorage(rstorage);
         dc.setPackageID(packageId);
+        dc.setExportOptions(options);
         dc.setOutputPath(targetFolder.getAbsolutePath());
         // transporter logs
         dc.setDesaResultPath(new File(targetFolder, "transporter").getAbsolutePath());
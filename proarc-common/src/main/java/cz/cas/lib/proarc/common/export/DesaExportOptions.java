@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.Deflater;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+
+/**
+ * Settings of the {@link DesaExport}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class DesaExportOptions {
+
+    static final String PROP_COMPRESSION_LEVEL = "export.desa.compressionLevel";
+    static final String PROP_STORED_MIMETYPES = "export.desa.storedMimeTypes";
+
+    /** The deflate level of SIP entries. */
+    private int compressionLevel = Deflater.DEFAULT_COMPRESSION;
+    /** MIME types of contents that are already compressed. */
+    private Set<String> storedMimeTypes = new HashSet<String>(Arrays.asList(
+            "image/jp2", "image/jpeg", "image/png", "image/gif",
+            "application/zip", "application/x-gzip"));
+
+    public static DesaExportOptions from(Configuration config) {
+        DesaExportOptions options = new DesaExportOptions();
+        int level = config.getInt(PROP_COMPRESSION_LEVEL, options.getCompressionLevel());
+        if (level != Deflater.DEFAULT_COMPRESSION
+                && (level < Deflater.NO_COMPRESSION || level > Deflater.BEST_COMPRESSION)) {
+            throw new ConversionException(PROP_COMPRESSION_LEVEL + " expects -1 or 0-9!");
+        }
+        options.setCompressionLevel(level);
+        if (config.containsKey(PROP_STORED_MIMETYPES)) {
+            options.setStoredMimeTypes(new HashSet<String>(
+                    Arrays.asList(config.getStringArray(PROP_STORED_MIMETYPES))));
+        }
+        return options;
+    }
+
+    public int getCompressionLevel() {
+        return compressionLevel;
+    }
+
+    public DesaExportOptions setCompressionLevel(int compressionLevel) {
+        this.compressionLevel = compressionLevel;
+        return this;
+    }
+
+    public Set<String> getStoredMimeTypes() {
+        return storedMimeTypes;
+    }
+
+    public DesaExportOptions setStoredMimeTypes(Set<String> storedMimeTypes) {
+        this.storedMimeTypes = storedMimeTypes;
+        return this;
+    }
+
+    /**
+     * Checks whether a content of the given MIME type should be compressed.
+     * @param mimeType MIME type or {@code null}
+     * @return {@code false} for contents to store as is
+     */
+    public boolean isCompressed(String mimeType) {
+        return compressionLevel != Deflater.NO_COMPRESSION
+                && (mimeType == null || !storedMimeTypes.contains(mimeType));
+    }
+
+}
@@ -0,0 +1,336 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import cz.cas.lib.proarc.common.config.AppConfiguration;
+import cz.cas.lib.proarc.common.dao.Batch;
+import cz.cas.lib.proarc.common.dao.BatchDao;
+import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.dao.BatchItemDao;
+import cz.cas.lib.proarc.common.dao.BatchView;
+import cz.cas.lib.proarc.common.dao.BatchViewFilter;
+import cz.cas.lib.proarc.common.dao.DaoFactory;
+import cz.cas.lib.proarc.common.dao.Transaction;
+import cz.cas.lib.proarc.common.user.UserManager;
+import cz.cas.lib.proarc.common.user.UserProfile;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs export jobs in the background.
+ *
+ * <p>A job is stored as a {@link Batch batch} with export states and an item
+ * per requested PID holding its result. Jobs run in up to
+ * {@link ExportDispatcherOptions#getThreadCount() threadCount} threads.
+ * Planned and running jobs left by the stopped application are started
+ * again with {@link #resumeAll}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class ExportDispatcher {
+
+    private static final Logger LOG = Logger.getLogger(ExportDispatcher.class.getName());
+    private static ExportDispatcher INSTANCE;
+
+    private final int threadCount;
+    private final AppConfiguration config;
+    private final DaoFactory daos;
+    private ExecutorService pool;
+    private volatile boolean stopping;
+    /** job ID to the scheduled process */
+    private final ConcurrentMap<Integer, ScheduledJob> jobs = new ConcurrentHashMap<Integer, ScheduledJob>();
+
+    public static ExportDispatcher getDefault() {
+        return INSTANCE;
+    }
+
+    public static void setDefault(ExportDispatcher dispatcher) {
+        INSTANCE = dispatcher;
+    }
+
+    public ExportDispatcher(ExportDispatcherOptions options, AppConfiguration config, DaoFactory daos) {
+        this.threadCount = options.getThreadCount();
+        this.config = config;
+        this.daos = daos;
+    }
+
+    public void init() {
+        pool = Executors.newFixedThreadPool(threadCount, new ExportDispatcherThreadFactory());
+    }
+
+    /**
+     * Stops running jobs. They and jobs waiting in the queue are resumed
+     * on the next start.
+     */
+    public void stop() {
+        if (pool == null) {
+            return ;
+        }
+        stopping = true;
+        pool.shutdownNow();
+        try {
+            if (!pool.awaitTermination(60, TimeUnit.SECONDS)) {
+                LOG.severe("ExportDispatcher thread pool did not terminate");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    boolean isStopping() {
+        return stopping;
+    }
+
+    /**
+     * Plans a new export job.
+     *
+     * @param kind the kind of export
+     * @param pids PIDs to export
+     * @param user the owner of the job
+     * @param log the message for storage logging
+     * @return the job
+     */
+    public Batch addExport(ExportProcess.Kind kind, List<String> pids, UserProfile user, String log) {
+        if (pool == null || stopping) {
+            throw new IllegalStateException("The dispatcher is not running!");
+        }
+        Batch batch = new Batch();
+        batch.setCreate(new Timestamp(System.currentTimeMillis()));
+        batch.setFolder(relativizeFolder(new File(user.getExportFolder())));
+        batch.setState(Batch.State.EXPORT_PLANNED);
+        batch.setTitle(kind.name() + ": " + pids.get(0));
+        batch.setUserId(user.getId());
+        batch.setProfileId(kind.name());
+        LinkedHashSet<String> uniquePids = new LinkedHashSet<String>(pids);
+        batch.setEstimateItemNumber(uniquePids.size());
+
+        BatchDao batchDao = daos.createBatch();
+        BatchItemDao itemDao = daos.createBatchItem();
+        Transaction tx = daos.createTransaction();
+        batchDao.setTransaction(tx);
+        itemDao.setTransaction(tx);
+        List<BatchItem> items = new ArrayList<BatchItem>(uniquePids.size());
+        try {
+            batchDao.update(batch);
+            for (String pid : uniquePids) {
+                BatchItem item = itemDao.create();
+                item.setBatchId(batch.getId());
+                item.setPid(pid);
+                item.setState(BatchItem.ObjectState.EXPORT_PLANNED.name());
+                item.setType(BatchItem.Type.OBJECT);
+                itemDao.update(item);
+                items.add(item);
+            }
+            tx.commit();
+        } catch (Throwable ex) {
+            tx.rollback();
+            throw new IllegalStateException(String.valueOf(batch), ex);
+        } finally {
+            tx.close();
+        }
+        schedule(new ExportProcess(this, config, batch, items, kind, user, log));
+        return batch;
+    }
+
+    /**
+     * Schedules planned and interrupted jobs again.
+     */
+    public void resumeAll(UserManager users) {
+        BatchViewFilter filter = new BatchViewFilter()
+                .setState(EnumSet.of(Batch.State.EXPORT_PLANNED, Batch.State.EXPORTING))
+                .setSortBy("create")
+                .setMaxCount(Integer.MAX_VALUE);
+        List<BatchView> views;
+        BatchDao batchDao = daos.createBatch();
+        Transaction tx = daos.createTransaction();
+        batchDao.setTransaction(tx);
+        try {
+            views = batchDao.view(filter);
+        } finally {
+            tx.close();
+        }
+        for (BatchView view : views) {
+            Batch batch = find(view.getId());
+            try {
+                ExportProcess.Kind kind = ExportProcess.Kind.valueOf(batch.getProfileId());
+                UserProfile user = users.find(batch.getUserId());
+                String log = String.format("{\"proarc\":{\"user\":\"%s\",\"resumed\":true}}", user.getUserName());
+                schedule(new ExportProcess(this, config, batch, findItems(batch.getId()), kind, user, log));
+            } catch (Exception ex) {
+                LOG.log(Level.SEVERE, String.valueOf(batch), ex);
+                batch.setState(Batch.State.EXPORT_FAILED);
+                batch.setLog(ExportUtils.toString(ex));
+                update(batch, null);
+            }
+        }
+    }
+
+    private void schedule(ExportProcess process) {
+        ScheduledJob job = new ScheduledJob(process);
+        jobs.put(process.getBatch().getId(), job);
+        job.future = pool.submit(job);
+    }
+
+    /**
+     * Cancels the job. A job waiting in the queue is not started.
+     * A running Kramerius 4 or NDK export stops before the next object.
+     * Other running exports are just interrupted and may run to the end.
+     *
+     * @return the job or {@code null} if it is not found
+     */
+    public Batch cancel(int jobId) {
+        ScheduledJob job = jobs.get(jobId);
+        if (job != null) {
+            boolean notStarted = job.process.cancel();
+            Future<?> future = job.future;
+            if (future != null) {
+                future.cancel(true);
+            }
+            if (notStarted) {
+                jobs.remove(jobId);
+            }
+        }
+        return find(jobId);
+    }
+
+    /**
+     * Finds the job.
+     * @return the job or {@code null}
+     */
+    public Batch find(int jobId) {
+        BatchDao dao = daos.createBatch();
+        Transaction tx = daos.createTransaction();
+        dao.setTransaction(tx);
+        try {
+            Batch batch = dao.find(jobId);
+            return batch != null && Batch.EXPORT_STATES.contains(batch.getState()) ? batch : null;
+        } finally {
+            tx.close();
+        }
+    }
+
+    /**
+     * Finds results of requested PIDs.
+     */
+    public List<BatchItem> findItems(int jobId) {
+        BatchItemDao dao = daos.createBatchItem();
+        Transaction tx = daos.createTransaction();
+        dao.setTransaction(tx);
+        try {
+            return dao.find(jobId, null, null, null, BatchItem.Type.OBJECT.name());
+        } finally {
+            tx.close();
+        }
+    }
+
+    /**
+     * Stores the job and its items in a single transaction.
+     */
+    void update(Batch batch, Collection<BatchItem> items) {
+        BatchDao batchDao = daos.createBatch();
+        BatchItemDao itemDao = daos.createBatchItem();
+        Transaction tx = daos.createTransaction();
+        batchDao.setTransaction(tx);
+        itemDao.setTransaction(tx);
+        try {
+            if (items != null && !items.isEmpty()) {
+                itemDao.update(items);
+            }
+            batchDao.update(batch);
+            tx.commit();
+        } catch (Throwable ex) {
+            tx.rollback();
+            throw new IllegalStateException(String.valueOf(batch), ex);
+        } finally {
+            tx.close();
+        }
+    }
+
+    /**
+     * Gets the folder path relative to users' home.
+     */
+    public String relativizeFolder(File folder) {
+        return getUsersRoot().relativize(folder.toURI()).toASCIIString();
+    }
+
+    /**
+     * Resolves the folder of the job.
+     */
+    public File resolveFolder(Batch job) {
+        return new File(getUsersRoot().resolve(job.getFolder()));
+    }
+
+    private URI getUsersRoot() {
+        try {
+            return config.getDefaultUsersHome().toURI();
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private final class ScheduledJob implements Runnable {
+
+        private final ExportProcess process;
+        private volatile Future<?> future;
+
+        ScheduledJob(ExportProcess process) {
+            this.process = process;
+        }
+
+        @Override
+        public void run() {
+            try {
+                process.run();
+            } catch (Throwable ex) {
+                LOG.log(Level.SEVERE, String.valueOf(process.getBatch()), ex);
+            } finally {
+                jobs.remove(process.getBatch().getId());
+            }
+        }
+
+    }
+
+    private static final class ExportDispatcherThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = factory.newThread(r);
+            thread.setName(ExportDispatcher.class.getSimpleName() + '-' + thread.getName());
+            return thread;
+        }
+
+    }
+
+}
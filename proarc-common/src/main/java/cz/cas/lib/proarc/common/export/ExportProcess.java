@@ -0,0 +1,294 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import cz.cas.lib.proarc.common.config.AppConfiguration;
+import cz.cas.lib.proarc.common.dao.Batch;
+import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.export.ExportResultLog.ResultError;
+import cz.cas.lib.proarc.common.export.ExportResultLog.ResultStatus;
+import cz.cas.lib.proarc.common.export.archive.ArchiveProducer;
+import cz.cas.lib.proarc.common.export.cejsh.CejshConfig;
+import cz.cas.lib.proarc.common.export.cejsh.CejshExport;
+import cz.cas.lib.proarc.common.export.cejsh.CejshStatusHandler;
+import cz.cas.lib.proarc.common.export.crossref.CrossrefExport;
+import cz.cas.lib.proarc.common.fedora.RemoteStorage;
+import cz.cas.lib.proarc.common.object.DigitalObjectManager;
+import cz.cas.lib.proarc.common.user.UserProfile;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs an export job planned by the {@link ExportDispatcher} and stores
+ * its state and per PID results.
+ *
+ * @author Jan Pokorsky
+ */
+public final class ExportProcess implements Runnable {
+
+    /**
+     * Kinds of export jobs. The kind is kept as the profile ID of the job.
+     */
+    public enum Kind {
+        /** Kramerius 4 export of selected objects and their children. */
+        KRAMERIUS4,
+        /** Kramerius 4 export of selected objects without children. */
+        KRAMERIUS4_SELECTION,
+        NDK, CEJSH, CROSSREF, ARCHIVE
+    }
+
+    private static final Logger LOG = Logger.getLogger(ExportProcess.class.getName());
+
+    private final ExportDispatcher dispatcher;
+    private final AppConfiguration config;
+    private final Batch batch;
+    private final List<BatchItem> items;
+    private final Kind kind;
+    private final UserProfile user;
+    private final String log;
+    private boolean started;
+    private volatile boolean canceled;
+    /** the running export that can stop between objects */
+    private volatile Object export;
+
+    ExportProcess(ExportDispatcher dispatcher, AppConfiguration config,
+            Batch batch, List<BatchItem> items, Kind kind, UserProfile user, String log) {
+
+        this.dispatcher = dispatcher;
+        this.config = config;
+        this.batch = batch;
+        this.items = items;
+        this.kind = kind;
+        this.user = user;
+        this.log = log;
+    }
+
+    Batch getBatch() {
+        return batch;
+    }
+
+    /**
+     * Marks the job as canceled. The job not started yet is stored at once.
+     * The running Kramerius 4 and NDK exports stop before the next object.
+     * Other exports run to the end unless they react to the interruption.
+     * The running job is stored as canceled when the export returns.
+     *
+     * @return {@code true} if the job has not started
+     */
+    boolean cancel() {
+        synchronized (this) {
+            canceled = true;
+            if (started) {
+                cancelExport();
+                return false;
+            }
+            started = true;
+        }
+        batch.setState(Batch.State.EXPORT_CANCELED);
+        dispatcher.update(batch, null);
+        return true;
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (started) {
+                return ;
+            }
+            started = true;
+        }
+        batch.setState(Batch.State.EXPORTING);
+        batch.setLog(null);
+        dispatcher.update(batch, null);
+        ExportResultLog reslog = new ExportResultLog();
+        File target = null;
+        Throwable failure = null;
+        try {
+            target = export(dispatcher.resolveFolder(batch), reslog);
+        } catch (Throwable ex) {
+            failure = ex;
+        }
+        // clear the interruption of the cancel
+        Thread.interrupted();
+        if (failure != null && !canceled && dispatcher.isStopping()) {
+            // interrupted by the shutdown; leave it EXPORTING to resume
+            LOG.log(Level.INFO, "Interrupted export job: " + batch.getId(), failure);
+            return ;
+        }
+        boolean failed = updateItems(reslog, failure);
+        if (target != null) {
+            batch.setFolder(dispatcher.relativizeFolder(target));
+        }
+        if (failure != null) {
+            batch.setLog(ExportUtils.toString(failure));
+        }
+        batch.setState(canceled ? Batch.State.EXPORT_CANCELED
+                : failed ? Batch.State.EXPORT_FAILED : Batch.State.EXPORT_DONE);
+        dispatcher.update(batch, items);
+    }
+
+    private void cancelExport() {
+        Object running = export;
+        if (running instanceof Kramerius4Export) {
+            ((Kramerius4Export) running).cancel();
+        } else if (running instanceof NdkExport) {
+            ((NdkExport) running).cancel();
+        }
+    }
+
+    /**
+     * Makes the export cancelable. The job might be canceled meanwhile.
+     */
+    private void setExport(Object export) {
+        this.export = export;
+        if (canceled) {
+            cancelExport();
+        }
+    }
+
+    private List<String> getPids() {
+        List<String> pids = new ArrayList<String>(items.size());
+        for (BatchItem item : items) {
+            pids.add(item.getPid());
+        }
+        return pids;
+    }
+
+    /**
+     * Runs the export.
+     * @return the target folder
+     */
+    private File export(File exportFolder, ExportResultLog reslog) throws Exception {
+        List<String> pids = getPids();
+        switch (kind) {
+            case KRAMERIUS4:
+            case KRAMERIUS4_SELECTION:
+                Kramerius4Export k4Export = new Kramerius4Export(
+                        RemoteStorage.getInstance(config), config.getKramerius4Export());
+                setExport(k4Export);
+                return k4Export.export(exportFolder, kind == Kind.KRAMERIUS4,
+                        log, pids.toArray(new String[pids.size()]));
+            case NDK:
+                NdkExport ndkExport = new NdkExport(RemoteStorage.getInstance(), config.getNdkExportOptions());
+                setExport(ndkExport);
+                List<NdkExport.Result> ndkResults = ndkExport.export(exportFolder, pids, true, true, log);
+                File ndkTarget = null;
+                for (int i = 0; i < ndkResults.size(); i++) {
+                    NdkExport.Result ndkResult = ndkResults.get(i);
+                    ExportResultLog.ExportResult logItem = new ExportResultLog.ExportResult();
+                    logItem.setInputPid(pids.get(i));
+                    NdkExport.logResult(ndkResult, logItem);
+                    reslog.getExports().add(logItem);
+                    ndkTarget = ndkResult.getTargetFolder();
+                }
+                return ndkTarget;
+            case CEJSH:
+                CejshExport cejshExport = new CejshExport(DigitalObjectManager.getDefault(),
+                        RemoteStorage.getInstance(), CejshConfig.from(config.getAuthenticators()));
+                return getResult(cejshExport.export(exportFolder, pids), reslog);
+            case CROSSREF:
+                CrossrefExport crossrefExport = new CrossrefExport(
+                        DigitalObjectManager.getDefault(), RemoteStorage.getInstance());
+                CejshStatusHandler status = new CejshStatusHandler();
+                crossrefExport.export(exportFolder, pids, status);
+                return getResult(status, reslog);
+            case ARCHIVE:
+                ArchiveProducer archive = new ArchiveProducer();
+                try {
+                    return archive.archive(pids, exportFolder);
+                } finally {
+                    if (archive.getResultLog() != null) {
+                        reslog.getExports().addAll(archive.getResultLog().getExports());
+                    }
+                }
+            default:
+                throw new IllegalStateException("Unsupported export: " + kind);
+        }
+    }
+
+    private static File getResult(CejshStatusHandler status, ExportResultLog reslog) {
+        reslog.getExports().addAll(status.getReslog().getExports());
+        return status.getTargetFolder();
+    }
+
+    /**
+     * Sets results of requested PIDs.
+     * @return {@code true} if some PID failed
+     */
+    private boolean updateItems(ExportResultLog reslog, Throwable failure) {
+        Map<String, List<ResultError>> errors = new HashMap<String, List<ResultError>>();
+        Map<String, ResultStatus> states = new HashMap<String, ResultStatus>();
+        for (ExportResultLog.ExportResult result : reslog.getExports()) {
+            String pid = result.getInputPid();
+            if (result.getStatus() != null) {
+                states.put(pid, result.getStatus());
+            }
+            if (!result.getError().isEmpty()) {
+                List<ResultError> pidErrors = errors.get(pid);
+                if (pidErrors == null) {
+                    pidErrors = new ArrayList<ResultError>();
+                    errors.put(pid, pidErrors);
+                }
+                pidErrors.addAll(result.getError());
+            }
+        }
+        boolean failed = failure != null;
+        for (BatchItem item : items) {
+            String pid = item.getPid();
+            List<ResultError> pidErrors = errors.get(pid);
+            boolean itemFailed = pidErrors != null
+                    || states.get(pid) == ResultStatus.FAILED
+                    || failure != null && states.get(pid) != ResultStatus.OK;
+            item.setState(itemFailed
+                    ? BatchItem.ObjectState.EXPORT_FAILED.name()
+                    : BatchItem.ObjectState.EXPORTED.name());
+            item.setLog(pidErrors == null ? null : toLog(pidErrors));
+            failed |= itemFailed;
+        }
+        return failed;
+    }
+
+    private static String toLog(List<ResultError> errors) {
+        StringBuilder sb = new StringBuilder();
+        for (ResultError error : errors) {
+            if (sb.length() > 0) {
+                sb.append('\n');
+            }
+            if (error.getPid() != null) {
+                sb.append(error.getPid()).append(": ");
+            }
+            if (error.getMessage() != null) {
+                sb.append(error.getMessage()).append('\n');
+            }
+            if (error.getDetails() != null) {
+                sb.append(error.getDetails());
+            }
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "ExportProcess{" + "kind=" + kind + ", batch=" + batch + '}';
+    }
+
+}
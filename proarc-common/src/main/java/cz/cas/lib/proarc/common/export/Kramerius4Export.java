@@ -45,21 +45,30 @@ import cz.cas.lib.proarc.common.object.DigitalObjectManager;
 import cz.cas.lib.proarc.oaidublincore.DcConstants;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.xml.XMLConstants;
 import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.stream.XMLStreamException;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -68,14 +77,16 @@ import org.w3c.dom.NodeList;
 /**
  * Exports digital object and transforms its data streams to Kramerius4 format.
  *
- * For now it exports FOXML in archive format. It is memory intensive but fast.
- * In case of OOME it should be rewritten to export FOXML in public or migrate
- * format and fetch each managed data streams with REST or build the whole FOXML
- * from scratch.
+ * It exports FOXML in migrate format and fetches each managed data stream
+ * with REST to a temporary file. Contents are embedded to the written FOXML
+ * with {@link BinaryContentEmbedder} so that binaries are never held in memory.
+ * <p>Selected objects and their descendants are exported by a pool
+ * of {@link Kramerius4ExportOptions#getThreadCount() workers}. Parents
+ * of selected objects are exported once all descendants are done.
  *
  * @author Jan Pokorsky
  */
-public final class Kramerius4Export {
+public class Kramerius4Export {
 
     public static final String KRAMERIUS_RELATION_NS = "http://www.nsdl.org/ontologies/relationships#";
     public static final String KRAMERIUS_RELATION_PREFIX = "kramerius";
@@ -86,12 +97,12 @@ public final class Kramerius4Export {
     private DigitalObjectCrawler crawler;
 
     private final SearchView search;
-    /** already exported PIDs to prevent loops */
-    private HashSet<String> exportedPids = new HashSet<String>();
-    /** PIDs scheduled for export */
-    private Queue<String> toExport = new LinkedList<String>();
-    
+    /** already exported PIDs to prevent loops; shared by workers */
+    private final Set<String> exportedPids = Collections.newSetFromMap(
+            new ConcurrentHashMap<String, Boolean>());
+
     private final Kramerius4ExportOptions options;
+    private volatile boolean canceled;
 
     public Kramerius4Export(RemoteStorage rstorage, Kramerius4ExportOptions options) {
         this.rstorage = rstorage;
@@ -100,6 +111,14 @@ public final class Kramerius4Export {
         this.crawler = new DigitalObjectCrawler(DigitalObjectManager.getDefault(), search);
     }
 
+    /**
+     * Stops the running export before the next object. It can be called
+     * from any thread.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
     public File export(File output, boolean hierarchy, String log, String... pids) {
         if (!output.exists() || !output.isDirectory()) {
             throw new IllegalStateException(String.valueOf(output));
@@ -115,10 +134,11 @@ public final class Kramerius4Export {
 
         File target = ExportUtils.createFolder(output, "k4_" + FoxmlUtils.pidAsUuid(pids[0]));
         HashSet<String> selectedPids = new HashSet<String>(Arrays.asList(pids));
-        toExport.addAll(selectedPids);
         try {
-            for (String pid = toExport.poll(); pid != null; pid = toExport.poll()) {
-                exportPid(target, hierarchy, pid);
+            if (options.getThreadCount() > 1) {
+                exportPids(target, hierarchy, selectedPids, options.getThreadCount());
+            } else {
+                exportPids(target, hierarchy, selectedPids);
             }
             exportParents(target, selectedPids);
             storeExportResult(target, log);
@@ -137,34 +157,114 @@ public final class Kramerius4Export {
         return target;
     }
 
-    void exportPid(File output, boolean hierarchy, String pid) {
+    private void exportPids(File output, boolean hierarchy, Collection<String> pids) {
+        Queue<String> toExport = new ArrayDeque<String>(pids);
+        for (String pid = toExport.poll(); pid != null; pid = toExport.poll()) {
+            toExport.addAll(exportPid(output, hierarchy, pid));
+        }
+    }
+
+    /**
+     * Exports objects with a pool of workers. Members of an object
+     * are submitted once the object is written, i.e. its datastreams are
+     * exported, flushed and embedded. The first failure stops the export
+     * and interrupts running workers.
+     */
+    void exportPids(File output, boolean hierarchy, Collection<String> pids, int threadCount) {
+        ExecutorService workers = Executors.newFixedThreadPool(threadCount);
+        CompletionService<List<String>> results = new ExecutorCompletionService<List<String>>(workers);
+        int pendings = 0;
         try {
-            if (exportedPids.contains(pid)) {
-                return ;
+            for (String pid : pids) {
+                results.submit(new ExportTask(output, hierarchy, pid));
+                pendings++;
             }
-            exportedPids.add(pid);
+            for (; pendings > 0; pendings--) {
+                for (String child : getResult(results.take())) {
+                    if (!exportedPids.contains(child)) {
+                        results.submit(new ExportTask(output, hierarchy, child));
+                        pendings++;
+                    }
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Export interrupted: " + output, ex);
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    private static List<String> getResult(Future<List<String>> result) throws InterruptedException {
+        try {
+            return result.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        }
+    }
+
+    /**
+     * Exports the object unless it is already exported.
+     *
+     * @return PIDs of members to export next or an empty list
+     */
+    List<String> exportPid(File output, boolean hierarchy, String pid) {
+        checkCanceled(pid);
+        if (!exportedPids.add(pid)) {
+            return Collections.emptyList();
+        }
+        return exportObject(output, hierarchy, pid);
+    }
+
+    /**
+     * Exports the object FOXML with its contents.
+     *
+     * @return PIDs of members or an empty list
+     */
+    List<String> exportObject(File output, boolean hierarchy, String pid) {
+        try {
             RemoteObject robject = rstorage.find(pid);
             FedoraClient client = robject.getClient();
-            DigitalObject dobj = FedoraClient.export(pid).context("archive")
-                    .format("info:fedora/fedora-system:FOXML-1.1")
-                    .execute(client).getEntity(DigitalObject.class);
+            DigitalObject dobj = exportFoxml(client, pid);
             File foxml = ExportUtils.pidAsXmlFile(output, pid);
             LocalObject local = lstorage.create(foxml, dobj);
             RelationEditor editor = new RelationEditor(local);
-            if (hierarchy) {
-                List<String> children = editor.getMembers();
-                toExport.addAll(children);
+            List<String> children = hierarchy
+                    ? editor.getMembers() : Collections.<String>emptyList();
+            BinaryContentEmbedder binaries = new BinaryContentEmbedder(output);
+            try {
+                exportDatastreams(local, editor, client, binaries);
+                local.flush();
+                binaries.embed(foxml);
+            } finally {
+                binaries.clear();
             }
-            exportDatastreams(local, editor);
-            local.flush();
+            return children;
         } catch (DigitalObjectException ex) {
             throw new IllegalStateException(pid, ex);
         } catch (FedoraClientException ex) {
             // replace with ExportException
             throw new IllegalStateException(pid, ex);
+        } catch (IOException | XMLStreamException ex) {
+            throw new IllegalStateException(pid, ex);
         }
     }
 
+    /**
+     * Exports FOXML without contents of managed data streams.
+     */
+    private static DigitalObject exportFoxml(FedoraClient client, String pid) throws FedoraClientException {
+        return FedoraClient.export(pid).context("migrate")
+                .format("info:fedora/fedora-system:FOXML-1.1")
+                .execute(client).getEntity(DigitalObject.class);
+    }
+
     /**
      * Exports hierarchy of parent objects. Leafs of the hierarchy are PIDs
      * that were selected for export.
@@ -184,22 +284,35 @@ public final class Kramerius4Export {
     }
 
     void exportParentPid(File output, String pid, Collection<String> includeChildPids) {
+        checkCanceled(pid);
         try {
             exportedPids.add(pid);
             RemoteObject robject = rstorage.find(pid);
             FedoraClient client = robject.getClient();
-            DigitalObject dobj = FedoraClient.export(pid).context("archive")
-                    .format("info:fedora/fedora-system:FOXML-1.1")
-                    .execute(client).getEntity(DigitalObject.class);
+            DigitalObject dobj = exportFoxml(client, pid);
             File foxml = ExportUtils.pidAsXmlFile(output, pid);
             LocalObject local = lstorage.create(foxml, dobj);
-            exportParentDatastreams(local, includeChildPids);
-            local.flush();
+            BinaryContentEmbedder binaries = new BinaryContentEmbedder(output);
+            try {
+                exportParentDatastreams(local, includeChildPids, client, binaries);
+                local.flush();
+                binaries.embed(foxml);
+            } finally {
+                binaries.clear();
+            }
         } catch (DigitalObjectException ex) {
             throw new IllegalStateException(pid, ex);
         } catch (FedoraClientException ex) {
             // replace with ExportException
             throw new IllegalStateException(pid, ex);
+        } catch (IOException | XMLStreamException ex) {
+            throw new IllegalStateException(pid, ex);
+        }
+    }
+
+    private void checkCanceled(String pid) {
+        if (canceled) {
+            throw new IllegalStateException("Export canceled: " + pid);
         }
     }
 
@@ -257,7 +370,9 @@ public final class Kramerius4Export {
         }
     }
 
-    private void exportDatastreams(LocalObject local, RelationEditor editor) {
+    private void exportDatastreams(LocalObject local, RelationEditor editor,
+            FedoraClient client, BinaryContentEmbedder binaries
+            ) throws FedoraClientException, IOException {
         DigitalObject dobj = local.getDigitalObject();
         // XXX replace DS only for other than image/* MIMEs?
         DatastreamType fullDs = FoxmlUtils.findDatastream(dobj, BinaryEditor.FULL_ID);
@@ -272,6 +387,7 @@ public final class Kramerius4Export {
                 }
             }
             excludeVersions(datastream);
+            binaries.fetch(client, dobj.getPID(), datastream);
             renameDatastream(datastream);
             processDublinCore(datastream);
             processMods(datastream);
@@ -279,7 +395,9 @@ public final class Kramerius4Export {
         }
     }
 
-    private void exportParentDatastreams(LocalObject local, Collection<String> includeChildPids) {
+    private void exportParentDatastreams(LocalObject local, Collection<String> includeChildPids,
+            FedoraClient client, BinaryContentEmbedder binaries
+            ) throws FedoraClientException, IOException {
         DigitalObject dobj = local.getDigitalObject();
         RelationEditor editor = new RelationEditor(local);
         for (Iterator<DatastreamType> it = dobj.getDatastream().iterator(); it.hasNext();) {
@@ -289,6 +407,7 @@ public final class Kramerius4Export {
                 continue;
             }
             excludeVersions(datastream);
+            binaries.fetch(client, dobj.getPID(), datastream);
             renameDatastream(datastream);
             processDublinCore(datastream);
             processMods(datastream);
@@ -532,4 +651,23 @@ public final class Kramerius4Export {
         }
     }
 
+    private final class ExportTask implements Callable<List<String>> {
+
+        private final File output;
+        private final boolean hierarchy;
+        private final String pid;
+
+        ExportTask(File output, boolean hierarchy, String pid) {
+            this.output = output;
+            this.hierarchy = hierarchy;
+            this.pid = pid;
+        }
+
+        @Override
+        public List<String> call() {
+            return exportPid(output, hierarchy, pid);
+        }
+
+    }
+
 }
@@ -28,6 +28,7 @@ import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
 
 /**
  * Settings for Kramerius4 export.
@@ -39,6 +40,7 @@ public final class Kramerius4ExportOptions {
     static final String PROP_EXCLUDE_DATASTREAM_ID = "export.kramerius4.excludeDatastreamId";
     static final String PROP_POLICY = "export.kramerius4.policy";
     static final String PROP_RENAME_PREFIX = "export.kramerius4.rename";
+    static final String PROP_THREAD_COUNT = "export.kramerius4.threadCount";
 
     public static Kramerius4ExportOptions from(Configuration config) {
         Kramerius4ExportOptions options = new Kramerius4ExportOptions();
@@ -61,12 +63,20 @@ public final class Kramerius4ExportOptions {
         if (policy != null && !policy.isEmpty()) {
             options.setPolicy(policy);
         }
+
+        int threadCount = config.getInt(PROP_THREAD_COUNT, options.getThreadCount());
+        if (threadCount < 1) {
+            throw new ConversionException(PROP_THREAD_COUNT + " expects positive integer!");
+        }
+        options.setThreadCount(threadCount);
         return options;
     }
 
     private Set<String> excludeDatastreams = Collections.emptySet();
     private Map<String, String> dsIdMap = Collections.emptyMap();
     private String policy;
+    /** The number of objects exported at once. */
+    private int threadCount = 1;
     // config options; it should go to proarc.properties
     private Map<String, String> relationMap = new HashMap<String, String>() {
         {
@@ -135,6 +145,14 @@ public final class Kramerius4ExportOptions {
         this.policy = policy;
     }
 
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
     public Map<String, String> getRelationMap() {
         return relationMap;
     }
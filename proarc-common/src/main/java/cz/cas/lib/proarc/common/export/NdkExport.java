@@ -44,9 +44,16 @@ public final class NdkExport {
 
     private static final Logger LOG = Logger.getLogger(NdkExport.class.getName());
     private final RemoteStorage rstorage;
+    private final NdkExportOptions options;
+    private volatile boolean canceled;
 
     public NdkExport(RemoteStorage rstorage) {
+        this(rstorage, new NdkExportOptions());
+    }
+
+    public NdkExport(RemoteStorage rstorage, NdkExportOptions options) {
         this.rstorage = rstorage;
+        this.options = options;
     }
 
 //    /**
@@ -68,6 +75,14 @@ public final class NdkExport {
 //        }
 //    }
 
+    /**
+     * Stops the running export before the next package. It can be called
+     * from any thread.
+     */
+    public void cancel() {
+        canceled = true;
+    }
+
     /**
      * Prepares export package of a single PID without children for later download.
      * @param exportsFolder folder with user exports
@@ -104,6 +119,9 @@ public final class NdkExport {
         File target = ExportUtils.createFolder(exportsFolder, FoxmlUtils.pidAsUuid(pids.get(0)));
         ArrayList<Result> results = new ArrayList<Result>(pids.size());
         for (String pid : pids) {
+            if (canceled) {
+                throw new ExportException("Export canceled: " + pid);
+            }
             ExportResultLog.ExportResult logItem = new ExportResultLog.ExportResult();
             logItem.setInputPid(pid);
             reslog.getExports().add(logItem);
@@ -138,6 +156,9 @@ public final class NdkExport {
             try {
                 List<String> PSPs = MetsUtils.findPSPPIDs(fo.getPid(), dc, hierarchy);
                 for (String pspPid : PSPs) {
+                    if (canceled) {
+                        throw new ExportException("Export canceled: " + pspPid);
+                    }
                     dc.resetContext();
                     DigitalObject dobj = MetsUtils.readFoXML(pspPid, fo.getClient());
                     MetsElement mElm = MetsElement.getElement(dobj, null, dc, hierarchy);
@@ -177,6 +198,7 @@ public final class NdkExport {
         mc.setOutputPath(targetFolder.getAbsolutePath());
         mc.setAllowNonCompleteStreams(false);
         mc.setAllowMissingURNNBN(false);
+        mc.setThreadCount(options.getThreadCount());
         return mc;
     }
 
@@ -198,7 +220,7 @@ public final class NdkExport {
         }
     }
 
-    private void logResult(Result r, ExportResultLog.ExportResult logItem) {
+    static void logResult(Result r, ExportResultLog.ExportResult logItem) {
         if (r.getValidationError() != null) {
             logItem.setStatus(ResultStatus.FAILED);
             List<MetsExportExceptionElement> exceptions = r.getValidationError().getExceptions();
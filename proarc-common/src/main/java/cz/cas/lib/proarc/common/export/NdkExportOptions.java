@@ -0,0 +1,53 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+
+/**
+ * Settings of the {@link NdkExport}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class NdkExportOptions {
+
+    static final String PROP_THREAD_COUNT = "export.ndk.threadCount";
+
+    /** The number of pages of a package generated at once. */
+    private int threadCount = 1;
+
+    public static NdkExportOptions from(Configuration config) {
+        NdkExportOptions options = new NdkExportOptions();
+        int threadCount = config.getInt(PROP_THREAD_COUNT, options.getThreadCount());
+        if (threadCount < 1) {
+            throw new ConversionException(PROP_THREAD_COUNT + " expects positive integer!");
+        }
+        options.setThreadCount(threadCount);
+        return options;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public NdkExportOptions setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+}
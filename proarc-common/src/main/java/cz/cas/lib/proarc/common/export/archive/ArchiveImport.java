@@ -68,7 +68,8 @@ public class ArchiveImport implements ImportHandler {
     public void ingest(ImportOptions importConfig) throws Exception {
         ImportBatchManager ibm = ImportBatchManager.getInstance();
         Batch batch = importConfig.getBatch();
-        FedoraImport ingest = new FedoraImport(RemoteStorage.getInstance(), ibm);
+        FedoraImport ingest = new FedoraImport(RemoteStorage.getInstance(), ibm,
+                importConfig.getConfig().getIngestThreadCount());
         ingest.importBatch(batch, importConfig.getUsername(), null);
     }
 
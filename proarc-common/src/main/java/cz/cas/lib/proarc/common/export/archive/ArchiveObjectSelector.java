@@ -62,6 +62,7 @@ public class ArchiveObjectSelector {
     }
 
     public void select(String pid) throws DigitalObjectException {
+        crawler.prefetch(pid);
         DigitalObjectElement entry = crawler.getEntry(pid);
         List<DigitalObjectElement> entryPath = crawler.getPath(pid);
         entryPath.add(0, entry);
@@ -22,6 +22,7 @@ import java.util.Map;
 
 import com.yourmediashelf.fedora.client.FedoraClient;
 
+import cz.cas.lib.proarc.common.export.DesaExportOptions;
 import cz.cas.lib.proarc.common.export.desa.structure.DesaElement;
 import cz.cas.lib.proarc.common.export.mets.MetsExportException;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
@@ -56,6 +57,7 @@ public class DesaContext {
     private String packageID;
     private final MetsExportException metsExportException = new MetsExportException();
     private SIP2DESATransporter transporter;
+    private DesaExportOptions exportOptions = new DesaExportOptions();
 
     /**
      * Returns the path with desa export result
@@ -262,4 +264,18 @@ public class DesaContext {
     public Integer getElementId(String elementId) {
         return elementIds.get(elementId);
     }
+
+    /**
+     * Returns options of the zipped SIP
+     *
+     * @return
+     */
+    public DesaExportOptions getExportOptions() {
+        return exportOptions;
+    }
+
+    public void setExportOptions(DesaExportOptions exportOptions) {
+        this.exportOptions = exportOptions;
+    }
+
 }
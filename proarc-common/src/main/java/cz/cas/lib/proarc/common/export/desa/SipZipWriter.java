@@ -0,0 +1,131 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.desa;
+
+import cz.cas.lib.proarc.common.export.mets.FileMD5Info;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.commons.io.output.CountingOutputStream;
+
+/**
+ * Writes a zipped SIP in a single pass. Contents are streamed straight
+ * to the archive and their MD5 checksums and sizes are computed on the fly.
+ * The checksum and the size of the archive itself are known on close
+ * so that the transport does not need to read it again.
+ *
+ * <p>Entries are always streamed. Uncompressed entries are deflated
+ * without compression as the ZIP format requires the CRC and the size
+ * of stored entries in advance.
+ *
+ * @author Jan Pokorsky
+ */
+public final class SipZipWriter implements Closeable {
+
+    private final File zipFile;
+    private final MessageDigest zipDigest;
+    private final CountingOutputStream zipCounter;
+    private final ZipOutputStream zip;
+    private final byte[] buffer = new byte[8 * 1024];
+    private final int level;
+    private FileMD5Info zipInfo;
+
+    /**
+     * Creates a new archive. An existing file is overwritten.
+     * @param zipFile the archive
+     * @param level the deflate level of compressed entries
+     */
+    public SipZipWriter(File zipFile, int level) throws IOException {
+        this.zipFile = zipFile;
+        this.zipDigest = createDigest();
+        this.zipCounter = new CountingOutputStream(new DigestOutputStream(
+                new BufferedOutputStream(new FileOutputStream(zipFile)), zipDigest));
+        this.zip = new ZipOutputStream(zipCounter);
+        this.level = level;
+    }
+
+    public File getFile() {
+        return zipFile;
+    }
+
+    /**
+     * Writes a new entry. The content stream is closed.
+     * @param name entry name
+     * @param content entry content
+     * @param compress {@code false} to store the content as is
+     * @return the checksum and the size of the content
+     */
+    public FileMD5Info putEntry(String name, InputStream content, boolean compress) throws IOException {
+        try {
+            return putDeflated(name, content, compress ? level : Deflater.NO_COMPRESSION);
+        } finally {
+            content.close();
+        }
+    }
+
+    private FileMD5Info putDeflated(String name, InputStream content, int entryLevel) throws IOException {
+        ZipEntry entry = new ZipEntry(name);
+        entry.setMethod(ZipEntry.DEFLATED);
+        zip.setLevel(entryLevel);
+        zip.putNextEntry(entry);
+        MessageDigest digest = createDigest();
+        long size = 0;
+        for (int length; (length = content.read(buffer)) >= 0;) {
+            digest.update(buffer, 0, length);
+            zip.write(buffer, 0, length);
+            size += length;
+        }
+        zip.closeEntry();
+        return new FileMD5Info(new String(Hex.encodeHex(digest.digest())), size);
+    }
+
+    /**
+     * Gets the checksum and the size of the closed archive.
+     * @return the info or {@code null} if the writer is not closed yet
+     */
+    public FileMD5Info getZipInfo() {
+        return zipInfo;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (zipInfo == null) {
+            zip.close();
+            zipInfo = new FileMD5Info(zipFile.getName(),
+                    new String(Hex.encodeHex(zipDigest.digest())), zipCounter.getByteCount());
+        }
+    }
+
+    private static MessageDigest createDigest() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+}
@@ -20,27 +20,17 @@ package cz.cas.lib.proarc.common.export.desa.structure;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.math.BigInteger;
-import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Marshaller;
 
-import net.lingala.zip4j.core.ZipFile;
-import net.lingala.zip4j.exception.ZipException;
-import net.lingala.zip4j.model.ZipParameters;
-import net.lingala.zip4j.util.Zip4jConstants;
-
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 
@@ -49,8 +39,11 @@ import com.yourmediashelf.fedora.client.FedoraClientException;
 import com.yourmediashelf.fedora.client.request.GetDatastreamDissemination;
 import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
 
+import cz.cas.lib.proarc.common.export.DesaExportOptions;
 import cz.cas.lib.proarc.common.export.desa.Const;
+import cz.cas.lib.proarc.common.export.desa.SipZipWriter;
 import cz.cas.lib.proarc.common.export.mets.FileMD5Info;
+import cz.cas.lib.proarc.common.export.mets.JaxbContextRegistry;
 import cz.cas.lib.proarc.common.export.mets.MetsExportException;
 import cz.cas.lib.proarc.common.export.mets.MetsUtils;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
@@ -81,34 +74,72 @@ import cz.cas.lib.proarc.oaidublincore.OaiDcType;
  */
 public class DesaElementVisitor implements IDesaElementVisitor {
     private final Logger LOG = Logger.getLogger(DesaElementVisitor.class.getName());
-    private int tmpFolderCount = 0;
 
     /**
-     * Archives the list of files to a zip archive
+     * Creates a zip archive named after the element
      *
-     * @param zipFileName
-     * @param fileList
      * @param desaElement
+     * @return
      * @throws MetsExportException
      */
-    private void zip(String zipFileName, ArrayList<File> fileList, IDesaElement desaElement) throws MetsExportException {
+    private SipZipWriter createZip(IDesaElement desaElement) throws MetsExportException {
+        File zipFile = new File(desaElement.getDesaContext().getOutputPath(), desaElement.getZipName() + ".zip");
         try {
-            File file = new File(zipFileName);
-            if (file.exists()) {
-                file.delete();
-                file = null;
-                LOG.log(Level.FINE, "File:" + zipFileName + " exists, so it was deleted");
-            }
-            ZipFile zipFile = new ZipFile(zipFileName);
-            ZipParameters zip4jZipParameters = new ZipParameters();
-            zip4jZipParameters.setCompressionMethod(Zip4jConstants.COMP_DEFLATE);
-            zip4jZipParameters.setCompressionLevel(Zip4jConstants.DEFLATE_LEVEL_NORMAL);
-            zipFile.addFiles(fileList, zip4jZipParameters);
-            LOG.log(Level.FINE, "Zip archive created:" + zipFileName + " for " + desaElement.getElementType());
-        } catch (ZipException e) {
-            throw new MetsExportException(desaElement.getOriginalPid(), "Unable to create a zip file:" + zipFileName, false, e);
+            return new SipZipWriter(zipFile, desaElement.getDesaContext().getExportOptions().getCompressionLevel());
+        } catch (IOException e) {
+            throw new MetsExportException(desaElement.getOriginalPid(), "Unable to create a zip file:" + zipFile, false, e);
         }
+    }
 
+    /**
+     * Closes the zip archive and passes its checksum to the transporter
+     *
+     * @param zip
+     * @param desaElement
+     * @throws MetsExportException
+     */
+    private void closeZip(SipZipWriter zip, IDesaElement desaElement) throws MetsExportException {
+        try {
+            zip.close();
+        } catch (IOException e) {
+            throw new MetsExportException(desaElement.getOriginalPid(), "Unable to create a zip file:" + zip.getFile(), false, e);
+        }
+        SIP2DESATransporter sipTransporter = desaElement.getDesaContext().getTransporter();
+        if (sipTransporter != null) {
+            sipTransporter.setChecksum(zip.getFile().getName(), zip.getZipInfo().getMd5());
+        }
+        LOG.log(Level.FINE, "Zip archive created:" + zip.getFile() + " for " + desaElement.getElementType());
+    }
+
+    /**
+     * Removes the zip archive of a failed export
+     *
+     * @param zip
+     */
+    private void discardZip(SipZipWriter zip) {
+        try {
+            zip.close();
+        } catch (IOException e) {
+            LOG.log(Level.FINE, "Unable to close:" + zip.getFile(), e);
+        }
+        zip.getFile().delete();
+    }
+
+    /**
+     * Writes the mets document as the last entry of the zip archive
+     *
+     * @param zip
+     * @param mets
+     * @param desaElement
+     * @throws MetsExportException
+     */
+    private void zipMets(SipZipWriter zip, Mets mets, IDesaElement desaElement) throws MetsExportException {
+        byte[] metsContent = saveMets(mets, desaElement);
+        try {
+            zip.putEntry("mets.xml", new ByteArrayInputStream(metsContent), true);
+        } catch (IOException e) {
+            throw new MetsExportException(desaElement.getOriginalPid(), "Unable to save mets file:" + zip.getFile(), false, e);
+        }
     }
 
     /**
@@ -125,7 +156,7 @@ public class DesaElementVisitor implements IDesaElementVisitor {
             Document dcDoc = MetsUtils.getDocumentFromList(desaElement.getDescriptor());
             List<String> validationErrors;
             try {
-                validationErrors = MetsUtils.validateAgainstXSD(dcDoc, OaiDcType.class.getResourceAsStream("dc_oai.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(dcDoc, OaiDcType.class.getResource("dc_oai.xsd"));
             } catch (Exception ex) {
                 throw new MetsExportException(desaElement.getOriginalPid(), "Error while validating DC document in BIBLIO_MODS for:" + desaElement.getOriginalPid() + "(" + desaElement.getElementType() + ")", false, ex);
             }
@@ -144,7 +175,7 @@ public class DesaElementVisitor implements IDesaElementVisitor {
             Document nsessDoc = MetsUtils.getDocumentFromList(desaElement.getDescriptor());
             List<String> validationErrors;
             try {
-                validationErrors = MetsUtils.validateAgainstXSD(nsessDoc, Spis.class.getResourceAsStream("nsesss2.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(nsessDoc, Spis.class.getResource("nsesss2.xsd"));
             } catch (Exception ex) {
                 throw new MetsExportException(desaElement.getOriginalPid(), "Error while validating NSESSS document in BIBLIO_MODS for:" + desaElement.getOriginalPid() + "(" + desaElement.getElementType() + ")", false, ex);
             }
@@ -194,28 +225,6 @@ public class DesaElementVisitor implements IDesaElementVisitor {
         throw new MetsExportException(desaElement.getOriginalPid(), "Unable to get Label - DER/DES descriptor missing - " + desaElement.getModel(), false, null);
     }
 
-    /**
-     * Creates a temporary folder
-     *
-     * @param desaElement
-     * @return
-     * @throws MetsExportException
-     */
-    private File createTempFolder(IDesaElement desaElement) throws MetsExportException {
-        File tmpFileFolder = null;
-        try {
-            tmpFileFolder = File.createTempFile("tmp" + MetsUtils.removeNonAlpabetChars(desaElement.getElementID() + "_" + tmpFolderCount), ".tmp");
-            tmpFolderCount++;
-            tmpFileFolder.delete();
-            tmpFileFolder = new File(tmpFileFolder.getAbsolutePath());
-        } catch (IOException e) {
-            throw new MetsExportException(desaElement.getOriginalPid(), "Unable to create a temp folder", false, e);
-        }
-        tmpFileFolder.mkdir();
-        LOG.log(Level.FINE, "TMP folder:" + tmpFileFolder.getAbsolutePath() + " created for:" + desaElement.getOriginalPid() + "(" + desaElement.getElementType() + ")");
-        return tmpFileFolder;
-    }
-
     /**
      * Prepares the generic mets information
      *
@@ -254,35 +263,39 @@ public class DesaElementVisitor implements IDesaElementVisitor {
     }
 
     /**
-     * Saves the mets document into a file
+     * Marshals and validates the mets document
      *
      * @param mets
-     * @param outputFile
+     * @param desaElement
+     * @return
      * @throws MetsExportException
      */
-    private void saveMets(Mets mets, File outputFile, IDesaElement desaElement) throws MetsExportException {
+    private byte[] saveMets(Mets mets, IDesaElement desaElement) throws MetsExportException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(Mets.class, OaiDcType.class, ModsDefinition.class);
-            Marshaller marshaller = jaxbContext.createMarshaller();
+            Marshaller marshaller = JaxbContextRegistry.getMarshaller(
+                    "http://www.w3.org/2001/XMLSchema-instance http://www.w3.org/2001/XMLSchema.xsd http://www.loc.gov/METS/ http://www.loc.gov/standards/mets/mets.xsd http://www.loc.gov/mods/v3 http://www.loc.gov/standards/mods/mods.xsd http://www.openarchives.org/OAI/2.0/oai_dc/ http://www.openarchives.org/OAI/2.0/oai_dc.xsd",
+                    Mets.class, OaiDcType.class, ModsDefinition.class);
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
             marshaller.setProperty(Marshaller.JAXB_ENCODING, "utf-8");
-            marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, "http://www.w3.org/2001/XMLSchema-instance http://www.w3.org/2001/XMLSchema.xsd http://www.loc.gov/METS/ http://www.loc.gov/standards/mets/mets.xsd http://www.loc.gov/mods/v3 http://www.loc.gov/standards/mods/mods.xsd http://www.openarchives.org/OAI/2.0/oai_dc/ http://www.openarchives.org/OAI/2.0/oai_dc.xsd");
-            marshaller.marshal(mets, outputFile);
+            marshaller.marshal(mets, bos);
         } catch (Exception ex) {
-            throw new MetsExportException(desaElement.getOriginalPid(), "Unable to save mets file:" + outputFile.getAbsolutePath(), false, ex);
+            throw new MetsExportException(desaElement.getOriginalPid(), "Unable to save mets file", false, ex);
         }
+        byte[] metsContent = bos.toByteArray();
         List<String> validationErrors;
         try {
-            validationErrors = MetsUtils.validateAgainstXSD(outputFile, Mets.class.getResourceAsStream("mets.xsd"));
+            validationErrors = MetsUtils.validateAgainstXSD(new ByteArrayInputStream(metsContent), Mets.class.getResource("mets.xsd"));
         } catch (Exception ex) {
-            throw new MetsExportException("Error while validating Mets file: " + outputFile, false, ex);
+            throw new MetsExportException("Error while validating Mets file of: " + desaElement.getOriginalPid(), false, ex);
         }
         if (validationErrors.size() > 0) {
-            MetsExportException metsException = new MetsExportException("Error while validating Mets file:" + outputFile, false, null);
+            MetsExportException metsException = new MetsExportException("Error while validating Mets file of:" + desaElement.getOriginalPid(), false, null);
             metsException.getExceptions().get(0).setValidationErrors(validationErrors);
             throw metsException;
         }
         LOG.log(Level.FINE, "Element validated:" + desaElement.getOriginalPid() + "(" + desaElement.getElementType() + ")");
+        return metsContent;
     }
 
     /**
@@ -357,15 +370,16 @@ public class DesaElementVisitor implements IDesaElementVisitor {
         if (suffix == null) {
             suffix = "0001";
         }
-        File tmpFolder = createTempFolder(desaElement);
+        DesaExportOptions options = desaElement.getDesaContext().getExportOptions();
+        desaElement.setZipName(MetsUtils.removeNonAlpabetChars(getIdentifier(desaElement) + "_" + suffix));
+        SipZipWriter zip = createZip(desaElement);
+        boolean done = false;
         try {
-            File outputMets = new File(tmpFolder.getAbsolutePath() + File.separator + "mets.xml");
             Mets mets = prepareMets(desaElement);
             DivType divType = new DivType();
             divType.setLabel(getLabel(desaElement));
             divType.setTYPE("record");
             divType.getDMDID().add(mets.getDmdSec().get(0));
-            ArrayList<File> fileList = new ArrayList<File>();
             StructMapType structMapType = mets.getStructMap().get(0);
             structMapType.setDiv(divType);
 
@@ -377,41 +391,11 @@ public class DesaElementVisitor implements IDesaElementVisitor {
                 for (DesaElement fileElement : desaElement.getChildren()) {
                     fileOrder++;
                     DatastreamType rawDS = FoxmlUtils.findDatastream(fileElement.getSourceObject(), "RAW");
-                    byte[] fileContent = new byte[0];
-                    String mimeType = "empty";
-                    if (rawDS != null) {
-                        if (rawDS.getDatastreamVersion().get(0).getContentLocation() != null) {
-                            if ("INTERNAL_ID".equals(rawDS.getDatastreamVersion().get(0).getContentLocation().getTYPE())) {
-                                if (desaElement.getDesaContext().getFedoraClient() == null) {
-                                    throw new MetsExportException(fileElement.getOriginalPid(), "Datastream dissemination allowed only for Fedora storage", false, null);
-                                }
-                                desaElement.getDesaContext().getFedoraClient();
-                                GetDatastreamDissemination dsRaw = FedoraClient.getDatastreamDissemination(fileElement.getOriginalPid(), "RAW");
-                                try {
-                                    InputStream is = dsRaw.execute(desaElement.getDesaContext().getFedoraClient()).getEntityInputStream();
-                                    ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                                    try {
-                                        MetsUtils.copyStream(is, bos);
-                                        bos.close();
-                                        fileContent = bos.toByteArray();
-                                    } catch (IOException e) {
-                                        throw new MetsExportException(desaElement.getOriginalPid(), "Unable to copy raw datastream content", false, e);
-                                    }
-                                } catch (FedoraClientException e) {
-                                    throw new MetsExportException(desaElement.getOriginalPid(), "Unable to read raw datastream content", false, e);
-                                }
-                            } else {
-                                throw new MetsExportException(fileElement.getOriginalPid(), "Expecting INTERNAL_ID type in ContentLocation - found:" + rawDS.getDatastreamVersion().get(0).getContentLocation().getTYPE(), false, null);
-                            }
-                        } else {
-                            fileContent = rawDS.getDatastreamVersion().get(0).getBinaryContent();
-                        }
-                        mimeType = rawDS.getDatastreamVersion().get(0).getMIMETYPE();
-                    } else {
+                    if (rawDS == null) {
                         desaElement.getDesaContext().getMetsExportException().addException(fileElement.getOriginalPid(), "RAW datastream is missing", false, null);
                         continue;
                     }
-                    FileOutputStream fos;
+                    String mimeType = rawDS.getDatastreamVersion().get(0).getMIMETYPE();
                     String outputFileName = MetsUtils.removeNonAlpabetChars(getFileName(fileElement));
                     /*
                      * Generates a filename if it's not provided from the
@@ -421,19 +405,10 @@ public class DesaElementVisitor implements IDesaElementVisitor {
                         outputFileName = "file_" + String.format("%04d", fileOrder) + "." + MetsUtils.getMimeToExtension().getProperty(mimeType);
                         LOG.log(Level.INFO, "importFile name was not specified for:" + fileElement.getOriginalPid() + " new name was generated:" + outputFileName);
                     }
-                    String fullOutputFileName = tmpFolder.getAbsolutePath() + File.separator + outputFileName;
-                    try {
-                        File outputFile = new File(fullOutputFileName);
-                        fos = new FileOutputStream(outputFile);
-                        fileList.add(outputFile);
-                    } catch (FileNotFoundException e) {
-                        throw new MetsExportException(fileElement.getOriginalPid(), "Unable to create a temp file:" + fullOutputFileName, false, e);
-                    }
+                    InputStream fileContent = openRawContent(desaElement, fileElement, rawDS);
                     FileMD5Info fileMd5Info;
                     try {
-                        fileMd5Info = MetsUtils.getDigestAndCopy(new ByteArrayInputStream(fileContent), fos);
-                    } catch (NoSuchAlgorithmException e) {
-                        throw new MetsExportException(fileElement.getOriginalPid(), "Unable to generate MD5 digest", false, e);
+                        fileMd5Info = zip.putEntry(outputFileName, fileContent, options.isCompressed(mimeType));
                     } catch (IOException e) {
                         throw new MetsExportException(fileElement.getOriginalPid(), "Unable to save file", false, e);
                     }
@@ -453,17 +428,46 @@ public class DesaElementVisitor implements IDesaElementVisitor {
                 }
                 addFileGrpToMets(fileGrpMap, fileSec);
             }
-            saveMets(mets, outputMets, desaElement);
-            fileList.add(outputMets);
-            desaElement.setZipName(MetsUtils.removeNonAlpabetChars(getIdentifier(desaElement) + "_" + suffix));
-            String zipFileName = desaElement.getDesaContext().getOutputPath() + File.separator + desaElement.getZipName() + ".zip";
-            zip(zipFileName, fileList, desaElement);
+            zipMets(zip, mets, desaElement);
+            closeZip(zip, desaElement);
+            done = true;
         } finally {
-            MetsUtils.deleteFolder(tmpFolder);
+            if (!done) {
+                discardZip(zip);
+            }
         }
         LOG.fine("Document successfuly exported");
     }
 
+    /**
+     * Opens the content of the RAW datastream
+     *
+     * @param desaElement
+     * @param fileElement
+     * @param rawDS
+     * @return
+     * @throws MetsExportException
+     */
+    private InputStream openRawContent(IDesaElement desaElement, DesaElement fileElement, DatastreamType rawDS) throws MetsExportException {
+        if (rawDS.getDatastreamVersion().get(0).getContentLocation() != null) {
+            if ("INTERNAL_ID".equals(rawDS.getDatastreamVersion().get(0).getContentLocation().getTYPE())) {
+                if (desaElement.getDesaContext().getFedoraClient() == null) {
+                    throw new MetsExportException(fileElement.getOriginalPid(), "Datastream dissemination allowed only for Fedora storage", false, null);
+                }
+                GetDatastreamDissemination dsRaw = FedoraClient.getDatastreamDissemination(fileElement.getOriginalPid(), "RAW");
+                try {
+                    return dsRaw.execute(desaElement.getDesaContext().getFedoraClient()).getEntityInputStream();
+                } catch (FedoraClientException e) {
+                    throw new MetsExportException(desaElement.getOriginalPid(), "Unable to read raw datastream content", false, e);
+                }
+            } else {
+                throw new MetsExportException(fileElement.getOriginalPid(), "Expecting INTERNAL_ID type in ContentLocation - found:" + rawDS.getDatastreamVersion().get(0).getContentLocation().getTYPE(), false, null);
+            }
+        } else {
+            return new ByteArrayInputStream(rawDS.getDatastreamVersion().get(0).getBinaryContent());
+        }
+    }
+
     /**
      * Insert a folder element into a mets
      *
@@ -498,17 +502,17 @@ public class DesaElementVisitor implements IDesaElementVisitor {
             documentDiv.getMptr().add(mptr);
             divType.getDiv().add(documentDiv);
         }
-        File tmpFolder = createTempFolder(desaElement);
+        desaElement.setZipName(MetsUtils.removeNonAlpabetChars(getIdentifier(desaElement)) + "_FILE");
+        SipZipWriter zip = createZip(desaElement);
+        boolean done = false;
         try {
-            File outputMets = new File(tmpFolder.getAbsolutePath() + File.separator + "mets.xml");
-            saveMets(mets, outputMets, desaElement);
-            desaElement.setZipName(MetsUtils.removeNonAlpabetChars(getIdentifier(desaElement)) + "_FILE");
-            String zipFileName = desaElement.getDesaContext().getOutputPath() + File.separator + desaElement.getZipName() + ".zip";
-            ArrayList<File> fileList = new ArrayList<File>();
-            fileList.add(outputMets);
-            zip(zipFileName, fileList, desaElement);
+            zipMets(zip, mets, desaElement);
+            closeZip(zip, desaElement);
+            done = true;
         } finally {
-            MetsUtils.deleteFolder(tmpFolder);
+            if (!done) {
+                discardZip(zip);
+            }
         }
 
         LOG.fine("Folder successfuly exported");
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+
+/**
+ * The registry of JAXB contexts used by exports. A context is created just once
+ * for a given list of classes and shared by all threads. Marshallers and
+ * unmarshallers are not thread safe and so they are kept per thread
+ * like in {@link cz.cas.lib.proarc.common.fedora.FoxmlUtils}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class JaxbContextRegistry {
+
+    private static final ConcurrentMap<List<Class<?>>, JAXBContext> CONTEXTS
+            = new ConcurrentHashMap<List<Class<?>>, JAXBContext>();
+    /** (context, schema location) to marshaller */
+    private static final ThreadLocal<Map<List<Object>, Marshaller>> MARSHALLERS
+            = new ThreadLocal<Map<List<Object>, Marshaller>>() {
+
+        @Override
+        protected Map<List<Object>, Marshaller> initialValue() {
+            return new HashMap<List<Object>, Marshaller>();
+        }
+    };
+    private static final ThreadLocal<Map<JAXBContext, Unmarshaller>> UNMARSHALLERS
+            = new ThreadLocal<Map<JAXBContext, Unmarshaller>>() {
+
+        @Override
+        protected Map<JAXBContext, Unmarshaller> initialValue() {
+            return new HashMap<JAXBContext, Unmarshaller>();
+        }
+    };
+
+    /**
+     * Gets the shared context of the classes. The order of classes matters.
+     */
+    public static JAXBContext getContext(Class<?>... classes) throws JAXBException {
+        List<Class<?>> key = Arrays.asList(classes);
+        JAXBContext jc = CONTEXTS.get(key);
+        if (jc == null) {
+            jc = JAXBContext.newInstance(classes);
+            JAXBContext old = CONTEXTS.putIfAbsent(key, jc);
+            jc = old != null ? old : jc;
+        }
+        return jc;
+    }
+
+    /**
+     * Gets the marshaller of the current thread. Properties set by a previous
+     * caller are reset to defaults. Use {@link #getMarshaller(String, Class[])}
+     * to write the schema location.
+     */
+    public static Marshaller getMarshaller(Class<?>... classes) throws JAXBException {
+        return getMarshaller(null, classes);
+    }
+
+    /**
+     * Gets the marshaller of the current thread writing the schema location.
+     * Properties set by a previous caller are reset to defaults.
+     *
+     * @param schemaLocation the value of {@link Marshaller#JAXB_SCHEMA_LOCATION} or {@code null}
+     */
+    public static Marshaller getMarshaller(String schemaLocation, Class<?>... classes) throws JAXBException {
+        JAXBContext jc = getContext(classes);
+        List<Object> key = Arrays.<Object>asList(jc, schemaLocation);
+        Map<List<Object>, Marshaller> marshallers = MARSHALLERS.get();
+        Marshaller m = marshallers.get(key);
+        // the schema location cannot be unset; replace the marshaller if a caller changed it
+        if (m == null || !equals(schemaLocation, m.getProperty(Marshaller.JAXB_SCHEMA_LOCATION))) {
+            m = jc.createMarshaller();
+            if (schemaLocation != null) {
+                m.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, schemaLocation);
+            }
+            marshallers.put(key, m);
+        }
+        m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, false);
+        m.setProperty(Marshaller.JAXB_ENCODING, "UTF-8");
+        m.setProperty(Marshaller.JAXB_FRAGMENT, false);
+        m.setSchema(null);
+        return m;
+    }
+
+    /**
+     * Gets the unmarshaller of the current thread.
+     */
+    public static Unmarshaller getUnmarshaller(Class<?>... classes) throws JAXBException {
+        JAXBContext jc = getContext(classes);
+        Map<JAXBContext, Unmarshaller> unmarshallers = UNMARSHALLERS.get();
+        Unmarshaller u = unmarshallers.get(jc);
+        if (u == null) {
+            u = jc.createUnmarshaller();
+            unmarshallers.put(jc, u);
+        }
+        u.setSchema(null);
+        u.setEventHandler(null);
+        return u;
+    }
+
+    private static boolean equals(Object o1, Object o2) {
+        return o1 == null ? o2 == null : o1.equals(o2);
+    }
+
+    private JaxbContextRegistry() {
+    }
+
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import cz.cas.lib.proarc.mix.MixType;
+import java.io.File;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.xml.datatype.XMLGregorianCalendar;
+
+/**
+ * The pool of long-lived JHOVE contexts shared by the import and the export.
+ * A context is not thread safe. A thread borrows it with {@link #acquire()}
+ * and returns it with {@link #release}. Contexts are created on demand
+ * and reused then, so JHOVE modules are initialized just once.
+ *
+ * @author Jan Pokorsky
+ */
+public final class JhovePool {
+
+    private static final Logger LOG = Logger.getLogger(JhovePool.class.getName());
+    private static JhovePool INSTANCE;
+
+    private final int size;
+    private final Semaphore permits;
+    private final ConcurrentLinkedQueue<JhoveContext> idle = new ConcurrentLinkedQueue<JhoveContext>();
+    private volatile boolean closed;
+
+    /**
+     * Gets the shared pool. It holds a context per processor
+     * unless {@link #setDefault} is called.
+     */
+    public static synchronized JhovePool getDefault() {
+        if (INSTANCE == null) {
+            INSTANCE = new JhovePool(Runtime.getRuntime().availableProcessors());
+        }
+        return INSTANCE;
+    }
+
+    public static synchronized void setDefault(JhovePool pool) {
+        INSTANCE = pool;
+    }
+
+    /**
+     * @param size the max number of contexts
+     */
+    public JhovePool(int size) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size: " + size);
+        }
+        this.size = size;
+        this.permits = new Semaphore(size, true);
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Gets the number of created contexts not borrowed at the moment.
+     */
+    public int getIdleCount() {
+        return idle.size();
+    }
+
+    /**
+     * Borrows a context. It waits for a context released by other thread
+     * in case the pool is exhausted.
+     *
+     * @return the context to {@link #release}
+     */
+    public JhoveContext acquire() throws InterruptedException, MetsExportException {
+        if (closed) {
+            throw new IllegalStateException("Closed pool!");
+        }
+        permits.acquire();
+        JhoveContext ctx = idle.poll();
+        if (ctx == null) {
+            try {
+                ctx = JhoveUtility.createContext();
+            } catch (MetsExportException | RuntimeException ex) {
+                permits.release();
+                throw ex;
+            }
+        }
+        return ctx;
+    }
+
+    /**
+     * Returns the borrowed context to the pool.
+     */
+    public void release(JhoveContext ctx) {
+        if (ctx == null) {
+            return ;
+        }
+        if (closed) {
+            ctx.destroy();
+        } else {
+            idle.add(ctx);
+        }
+        permits.release();
+    }
+
+    /**
+     * Gets MIX of a source image file with a borrowed context.
+     *
+     * @see JhoveUtility#getMix(File, JhoveContext, MixType, XMLGregorianCalendar, String)
+     */
+    public JHoveOutput getMix(File sourceFile, MixType deviceMix,
+            XMLGregorianCalendar dateCreated, String originalFileName
+            ) throws MetsExportException {
+
+        JhoveContext ctx;
+        try {
+            ctx = acquire();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MetsExportException("Interrupted while waiting for JHOVE: " + sourceFile, false, ex);
+        }
+        try {
+            return JhoveUtility.getMix(sourceFile, ctx, deviceMix, dateCreated, originalFileName);
+        } finally {
+            release(ctx);
+        }
+    }
+
+    /**
+     * Destroys idle contexts. Borrowed contexts are destroyed on release.
+     */
+    public void close() {
+        closed = true;
+        for (JhoveContext ctx; (ctx = idle.poll()) != null;) {
+            ctx.destroy();
+        }
+        LOG.log(Level.FINE, "JHOVE pool closed.");
+    }
+
+}
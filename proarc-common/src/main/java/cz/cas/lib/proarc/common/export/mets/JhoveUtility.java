@@ -17,8 +17,11 @@
 
 package cz.cas.lib.proarc.common.export.mets;
 
+import java.io.BufferedInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.math.BigInteger;
 import java.net.URL;
 import java.util.Calendar;
@@ -26,17 +29,17 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
 import javax.xml.datatype.XMLGregorianCalendar;
 import javax.xml.namespace.QName;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.dom.DOMResult;
 import javax.xml.transform.dom.DOMSource;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathFactory;
 
 import org.apache.commons.io.FileUtils;
-import org.w3c.dom.Document;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
@@ -76,6 +79,7 @@ public class JhoveUtility {
 
     private static final Logger LOG = Logger.getLogger(JhoveUtility.class.getName());
     static final String JHOVE_CONFIG_NAME = "jhove.conf";
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
     static {
         LOG.setLevel(Level.SEVERE);
     }
@@ -171,7 +175,8 @@ public class JhoveUtility {
 
     /**
      *
-     * Returns the MIX data for fiven element
+     * Returns the MIX data for fiven element. It uses the JHOVE context
+     * of the METS context or a context borrowed from the {@link JhovePool#getDefault() pool}.
      *
      * @param targetFile
      * @param metsContext
@@ -182,8 +187,10 @@ public class JhoveUtility {
      * @throws MetsExportException
      */
     public static JHoveOutput getMix(File targetFile, MetsContext metsContext, MixType deviceMix, XMLGregorianCalendar dateCreated, String originalFileName) throws MetsExportException {
-        initJhove(metsContext);
         JhoveContext jhoveContext = metsContext.getJhoveContext();
+        if (jhoveContext == null) {
+            return JhovePool.getDefault().getMix(targetFile, deviceMix, dateCreated, originalFileName);
+        }
         return getMix(targetFile, jhoveContext, deviceMix, dateCreated, originalFileName);
     }
 
@@ -347,24 +354,22 @@ public class JhoveUtility {
             OutputHandler xmlHandler = jhoveBase.getHandler("XML");
             LOG.log(Level.FINE, "Calling JHOVE dispatch(...) on file " + sourceFile);
             jhoveBase.dispatch(jhoveContext.getJhoveApp(), module, aboutHandler, xmlHandler, outputFile.getAbsolutePath(), new String[] { sourceFile.getAbsolutePath() });
-            DocumentBuilderFactory builderFactory = DocumentBuilderFactory.newInstance();
-            builderFactory.setNamespaceAware(true);
-            DocumentBuilder builder = builderFactory.newDocumentBuilder();
-            Document jHoveDoc = builder.parse(outputFile);
-
-            outputFile.delete();
-            Node node = getNodeRecursive(jHoveDoc, "mix");
-            if (node == null) {
+            JhoveReport report;
+            try {
+                report = readJhoveOutput(outputFile);
+            } finally {
+                outputFile.delete();
+            }
+            Mix mix = report.mix;
+            if (mix == null) {
                 return jhoveOutput;
             }
-            Mix mix = MixUtils.unmarshal(new DOMSource(node), Mix.class);
 
-            XPath xpath = XPathFactory.newInstance().newXPath();
-            String formatVersion = xpath.compile("*[local-name()='jhove']/*[local-name()='repInfo']/*[local-name()='version']").evaluate(jHoveDoc);
+            String formatVersion = report.formatVersion;
             if ((formatVersion == null) || ("0".equals(formatVersion)) || (formatVersion.trim().length() == 0)) {
                 formatVersion = "1.0";
             }
-            String formatName = xpath.compile("*[local-name()='jhove']/*[local-name()='repInfo']/*[local-name()='mimeType']").evaluate(jHoveDoc);
+            String formatName = report.formatName;
             if ((formatName == null) || (formatName.trim().length() == 0)) {
                 formatName = "unknown";
             }
@@ -416,6 +421,56 @@ public class JhoveUtility {
         return jhoveOutput;
     }
 
+    /**
+     * Reads the MIX element and the format of the JHOVE XML output in a single pass
+     * without building DOM.
+     */
+    static JhoveReport readJhoveOutput(File jhoveOutput) throws IOException, XMLStreamException, JAXBException {
+        JhoveReport report = new JhoveReport();
+        InputStream input = new BufferedInputStream(new FileInputStream(jhoveOutput));
+        XMLStreamReader reader = null;
+        try {
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(input);
+            // depth of the current element; 1 stands for jhove, 2 for jhove/repInfo
+            int depth = 0;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.END_ELEMENT) {
+                    depth--;
+                } else if (event == XMLStreamConstants.START_ELEMENT) {
+                    depth++;
+                    String localName = reader.getLocalName();
+                    if (depth == 3 && "version".equals(localName) && report.formatVersion == null) {
+                        report.formatVersion = reader.getElementText();
+                        depth--;
+                    } else if (depth == 3 && "mimeType".equals(localName) && report.formatName == null) {
+                        report.formatName = reader.getElementText();
+                        depth--;
+                    } else if (localName.startsWith("mix") && report.mix == null) {
+                        // the unmarshaller stops at the end of the element
+                        report.mix = MixUtils.defaultUnmarshaller().unmarshal(reader, Mix.class).getValue();
+                        depth--;
+                    }
+                }
+            }
+            return report;
+        } finally {
+            if (reader != null) {
+                reader.close();
+            }
+            input.close();
+        }
+    }
+
+    /**
+     * The parsed JHOVE output.
+     */
+    static final class JhoveReport {
+        Mix mix;
+        String formatVersion;
+        String formatName;
+    }
+
     /**
      * Copy the Jhove configuration file to a temporary file.
      *
@@ -59,6 +59,7 @@ public class MetsContext {
     private String creatorOrganization = "ProArc";
     private String proarcVersion;
     private JhoveContext jhoveContext;
+    private int threadCount = 1;
 
     /**
      * Returns the version of ProArc
@@ -371,4 +372,19 @@ public class MetsContext {
         this.jhoveContext = jhoveContext;
     }
 
+    /**
+     * Gets the number of pages generated at once.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    /**
+     * Sets the number of pages generated at once. The shared
+     * {@link #getJhoveContext() JHOVE instance} forces the serial generation.
+     */
+    public void setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+    }
+
 }
@@ -23,8 +23,10 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.StringReader;
 import java.io.StringWriter;
 import java.math.BigInteger;
+import java.net.URL;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
@@ -34,12 +36,13 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
 
 import javax.xml.XMLConstants;
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBException;
 import javax.xml.bind.Marshaller;
 import javax.xml.bind.Unmarshaller;
@@ -58,6 +61,7 @@ import javax.xml.transform.stream.StreamResult;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
+import javax.xml.validation.Validator;
 import javax.xml.xpath.XPath;
 import javax.xml.xpath.XPathConstants;
 import javax.xml.xpath.XPathExpressionException;
@@ -68,6 +72,7 @@ import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
+import org.xml.sax.SAXException;
 
 import com.yourmediashelf.fedora.client.FedoraClient;
 import com.yourmediashelf.fedora.client.response.FedoraResponse;
@@ -102,6 +107,8 @@ public class MetsUtils {
 
     private static Logger LOG = Logger.getLogger(MetsUtils.class.getName());
     private static Properties mimeToExtension = new Properties();
+    /** compiled schemas; {@code Map<URL, Schema>} */
+    private static final ConcurrentMap<String, Schema> SCHEMAS = new ConcurrentHashMap<String, Schema>();
 
     /**
      * Retuns an XMLGregorianCalendar representation of current date
@@ -557,29 +564,28 @@ public class MetsUtils {
 
     /**
      *
-     * Returns the byteArray of the specified datastream from fedora
+     * Parses the specified XML datastream read from fedora without buffering its content
      *
      * @param fedoraClient
-     * @param pid
+     * @param metsElement
      * @param streamName
-     * @return
+     * @return the document or {@code null} if the object does not contain the stream
      * @throws MetsExportException
      */
-    public static byte[] getBinaryDataStreams(FedoraClient fedoraClient, IMetsElement metsElement, String streamName) throws MetsExportException {
+    public static Document getDataStreamDocument(FedoraClient fedoraClient, IMetsElement metsElement, String streamName) throws MetsExportException {
+        DatastreamType rawDS = FoxmlUtils.findDatastream(metsElement.getSourceObject(), streamName);
+        if (rawDS == null) {
+            return null;
+        }
+        InputStream is = null;
         try {
-            DatastreamType rawDS = FoxmlUtils.findDatastream(metsElement.getSourceObject(), streamName);
-            if (rawDS != null) {
-                FedoraResponse response = FedoraClient.getDatastreamDissemination(metsElement.getOriginalPid(), streamName).execute(fedoraClient);
-                InputStream is = response.getEntityInputStream();
-                ByteArrayOutputStream bos = new ByteArrayOutputStream();
-                copyStream(is, bos);
-                bos.close();
-                return bos.toByteArray();
-            } else {
-                return null;
-            }
+            FedoraResponse response = FedoraClient.getDatastreamDissemination(metsElement.getOriginalPid(), streamName).execute(fedoraClient);
+            is = response.getEntityInputStream();
+            return getDocumentFromStream(is);
         } catch (Exception ex) {
             throw new MetsExportException(metsElement.getOriginalPid(), "Error while getting stream " + streamName + " from " + metsElement.getElementType(), false, ex);
+        } finally {
+            FoxmlUtils.closeQuietly(is, streamName);
         }
     }
 
@@ -656,8 +662,7 @@ public class MetsUtils {
         DigitalObject foXMLObject;
         File file = new File(path);
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(DigitalObject.class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            Unmarshaller unmarshaller = JaxbContextRegistry.getUnmarshaller(DigitalObject.class);
             foXMLObject = (DigitalObject) unmarshaller.unmarshal(file);
 
             return foXMLObject;
@@ -681,8 +686,7 @@ public class MetsUtils {
         LOG.log(Level.FINE, "Reading document from Fedora:" + uuid);
         try {
             FedoraResponse response = FedoraClient.getObjectXML(uuid).execute(client);
-            JAXBContext jaxbContext = JAXBContext.newInstance(DigitalObject.class);
-            Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
+            Unmarshaller unmarshaller = JaxbContextRegistry.getUnmarshaller(DigitalObject.class);
             foXMLObject = (DigitalObject) unmarshaller.unmarshal(response.getEntityInputStream());
         } catch (Exception e) {
             throw new MetsExportException("Unable to get " + uuid + " from Fedora", false, e);
@@ -722,26 +726,17 @@ public class MetsUtils {
      * @param xsd
      * @return
      */
-    public static List<String> validateAgainstXSD(Document document, InputStream xsd) throws Exception {
-        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        factory.setResourceResolver(MetsLSResolver.getInstance());
-        Schema schema = factory.newSchema(new StreamSource(xsd));
-        TransformerFactory tFactory = TransformerFactory.newInstance();
-        Transformer transformer = tFactory.newTransformer();
-        DOMSource domSource = new DOMSource(document);
-        StreamResult sResult = new StreamResult();
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        sResult.setOutputStream(bos);
-        transformer.transform(domSource, sResult);
-        InputStream is = new ByteArrayInputStream(bos.toByteArray());
-        DocumentBuilderFactory dbfactory = DocumentBuilderFactory.newInstance();
-        dbfactory.setValidating(false);
-        dbfactory.setNamespaceAware(true);
-        dbfactory.setSchema(schema);
-        DocumentBuilder documentBuilder = dbfactory.newDocumentBuilder();
+    public static List<String> validateAgainstXSD(Document document, URL xsd) throws Exception {
+        Validator validator = getSchema(xsd).newValidator();
         ValidationErrorHandler errorHandler = new ValidationErrorHandler();
-        documentBuilder.setErrorHandler(errorHandler);
-        documentBuilder.parse(is);
+        validator.setErrorHandler(errorHandler);
+        Element root = document.getDocumentElement();
+        if (root != null && root.getLocalName() == null) {
+            // the validator needs namespaces; parse the DOM of a namespace unaware parser again
+            validator.validate(new StreamSource(new StringReader(documentToString(document))));
+        } else {
+            validator.validate(new DOMSource(document));
+        }
         return errorHandler.getValidationErrors();
     }
 
@@ -753,21 +748,54 @@ public class MetsUtils {
      * @param xsd
      * @return
      */
-    public static List<String> validateAgainstXSD(File file, InputStream xsd) throws Exception {
-        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        factory.setResourceResolver(MetsLSResolver.getInstance());
-        Schema schema = factory.newSchema(new StreamSource(xsd));
-        DocumentBuilderFactory dbfactory = DocumentBuilderFactory.newInstance();
-        dbfactory.setValidating(false);
-        dbfactory.setNamespaceAware(true);
-        dbfactory.setSchema(schema);
-        DocumentBuilder documentBuilder = dbfactory.newDocumentBuilder();
+    public static List<String> validateAgainstXSD(File file, URL xsd) throws Exception {
+        Validator validator = getSchema(xsd).newValidator();
+        ValidationErrorHandler errorHandler = new ValidationErrorHandler();
+        validator.setErrorHandler(errorHandler);
+        validator.validate(new StreamSource(file));
+        return errorHandler.getValidationErrors();
+    }
+
+    /**
+     *
+     * Validates given XML stream against an XSD schema
+     *
+     * @param xml
+     * @param xsd
+     * @return
+     */
+    public static List<String> validateAgainstXSD(InputStream xml, URL xsd) throws Exception {
+        Validator validator = getSchema(xsd).newValidator();
         ValidationErrorHandler errorHandler = new ValidationErrorHandler();
-        documentBuilder.setErrorHandler(errorHandler);
-        documentBuilder.parse(file);
+        validator.setErrorHandler(errorHandler);
+        validator.validate(new StreamSource(xml));
         return errorHandler.getValidationErrors();
     }
 
+    /**
+     * Gets the compiled schema. Schemas are thread safe and shared by all exports.
+     *
+     * @param xsd the schema resource
+     * @return the schema
+     */
+    static Schema getSchema(URL xsd) throws SAXException, IOException {
+        String key = xsd.toExternalForm();
+        Schema schema = SCHEMAS.get(key);
+        if (schema == null) {
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            factory.setResourceResolver(MetsLSResolver.getInstance());
+            InputStream is = xsd.openStream();
+            try {
+                schema = factory.newSchema(new StreamSource(is));
+            } finally {
+                is.close();
+            }
+            Schema old = SCHEMAS.putIfAbsent(key, schema);
+            schema = old != null ? old : schema;
+        }
+        return schema;
+    }
+
     /**
      *
      * Indicates if the "has..." is used for defining children
@@ -903,13 +931,12 @@ public class MetsUtils {
             int infoTotalSize = (int) (size/1024);
         infoJaxb.setSize(infoTotalSize);
             try {
-                JAXBContext jaxbContext = JAXBContext.newInstance(Info.class);
-                Marshaller marshaller = jaxbContext.createMarshaller();
+                Marshaller marshaller = JaxbContextRegistry.getMarshaller(Info.class);
             // SchemaFactory factory =
             // SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
             // factory.setResourceResolver(MetsLSResolver.getInstance());
             // Schema schema = factory.newSchema(new
-            // StreamSource(Info.class.getResourceAsStream("info.xsd")));
+            // StreamSource(Info.class.getResource("info.xsd")));
             // marshaller.setSchema(schema);
                 marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
                 marshaller.setProperty(Marshaller.JAXB_ENCODING, "utf-8");
@@ -920,7 +947,7 @@ public class MetsUtils {
 
         List<String> validationErrors;
         try {
-            validationErrors = MetsUtils.validateAgainstXSD(infoFile, Info.class.getResourceAsStream("info.xsd"));
+            validationErrors = MetsUtils.validateAgainstXSD(infoFile, Info.class.getResource("info.xsd"));
         } catch (Exception e) {
             throw new MetsExportException("Error while validating info.xml", false, e);
         }
@@ -1096,6 +1123,17 @@ public class MetsUtils {
             return null;
         }
 
+        return getDocumentFromStream(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     *
+     * Generates a document from a stream
+     *
+     * @param is
+     * @return
+     */
+    public static Document getDocumentFromStream(InputStream is) throws MetsExportException {
         DocumentBuilder builder;
         try {
             builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
@@ -1104,7 +1142,7 @@ public class MetsUtils {
         }
         Document document;
         try {
-            document = builder.parse(new ByteArrayInputStream(bytes));
+            document = builder.parse(is);
         } catch (Exception e) {
             throw new MetsExportException("Error while parsing document", false, e);
         }
@@ -217,7 +217,7 @@ public class MetsElement implements IMetsElement {
         if (this.descriptor != null) {
             Document dcDoc = MetsUtils.getDocumentFromList(this.descriptor);
             try {
-                validationErrors = MetsUtils.validateAgainstXSD(dcDoc, OaiDcType.class.getResourceAsStream("dc_oai.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(dcDoc, OaiDcType.class.getResource("dc_oai.xsd"));
             } catch (Exception ex) {
                 throw new MetsExportException(this.getOriginalPid(), "Error while validating DC for:" + this.getOriginalPid() + "(" + this.getElementType() + ")", false, ex);
             }
@@ -231,9 +231,9 @@ public class MetsElement implements IMetsElement {
         Document modsDoc = MetsUtils.getDocumentFromList(this.modsStream);
         try {
             if ("3.5".equals(this.modsStream.get(0).getAttribute("version"))) {
-                validationErrors = MetsUtils.validateAgainstXSD(modsDoc, ModsDefinition.class.getResourceAsStream("mods-3-5.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(modsDoc, ModsDefinition.class.getResource("mods-3-5.xsd"));
             } else {
-                validationErrors = MetsUtils.validateAgainstXSD(modsDoc, ModsDefinition.class.getResourceAsStream("mods.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(modsDoc, ModsDefinition.class.getResource("mods.xsd"));
             }
         } catch (Exception ex) {
             throw new MetsExportException(this.getOriginalPid(), "Error while validating MODS for:" + this.getOriginalPid() + "(" + this.getElementType() + ")", false, ex);
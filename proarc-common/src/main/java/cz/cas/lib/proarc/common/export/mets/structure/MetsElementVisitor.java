@@ -31,17 +31,24 @@ import java.math.BigInteger;
 import java.net.URI;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.Deque;
 import java.util.GregorianCalendar;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
-import javax.xml.bind.JAXBContext;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.Marshaller;
 import javax.xml.datatype.DatatypeConfigurationException;
@@ -76,6 +83,7 @@ import cz.cas.lib.proarc.common.device.DeviceException;
 import cz.cas.lib.proarc.common.device.DeviceRepository;
 import cz.cas.lib.proarc.common.export.mets.Const;
 import cz.cas.lib.proarc.common.export.mets.JHoveOutput;
+import cz.cas.lib.proarc.common.export.mets.JaxbContextRegistry;
 import cz.cas.lib.proarc.common.export.mets.JhoveUtility;
 import cz.cas.lib.proarc.common.export.mets.MetsContext;
 import cz.cas.lib.proarc.common.export.mets.FileMD5Info;
@@ -145,6 +153,10 @@ public class MetsElementVisitor implements IMetsElementVisitor {
     private HashMap<String, FileGrp> fileGrpMap;
     private final Map<StructLinkMapping, String> pageOrderToDivMap = new HashMap<StructLinkMapping, String>();
     private final Map<String, List<StructLinkMapping>> structToPageMap = new HashMap<String, List<StructLinkMapping>>();
+    /** generates pages in parallel; {@code null} in case of the serial generation */
+    private ExecutorService pageWorkers;
+    /** pages submitted to workers in the page order */
+    private final Deque<Future<PageFiles>> pendingPages = new ArrayDeque<Future<PageFiles>>();
     int pageCounter = 0;
     int articleCounter = 0;
     int chapterCounter = 0;
@@ -232,8 +244,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             addFileGrpToMets(fileGrpMap);
             addStructLink();
             try {
-                JAXBContext jaxbContext = JAXBContext.newInstance(Mets.class, OaiDcType.class, ModsDefinition.class);
-                Marshaller marshaller = jaxbContext.createMarshaller();
+                Marshaller marshaller = JaxbContextRegistry.getMarshaller(Mets.class, OaiDcType.class, ModsDefinition.class);
                 marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
                 marshaller.setProperty(Marshaller.JAXB_ENCODING, "utf-8");
                 // marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION,
@@ -287,7 +298,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             }
             List<String> validationErrors;
             try {
-                validationErrors = MetsUtils.validateAgainstXSD(outputFile, Mets.class.getResourceAsStream("mets.xsd"));
+                validationErrors = MetsUtils.validateAgainstXSD(outputFile, Mets.class.getResource("mets.xsd"));
             } catch (Exception ex) {
                 throw new MetsExportException("Error while validation document:" + outputFile, false, ex);
             }
@@ -425,7 +436,8 @@ public class MetsElementVisitor implements IMetsElementVisitor {
      * @param metsStreamName
      * @return
      */
-    private FileType prepareFileType(int seq, String metsStreamName, HashMap<String, Object> fileNames, HashMap<String, String> mimeTypes, MetsContext metsContext, HashMap<String, String> outputFileNames, HashMap<String, FileMD5Info> md5InfosMap) throws MetsExportException {
+    private FileType prepareFileType(int seq, String metsStreamName, HashMap<String, Object> fileNames, HashMap<String, String> mimeTypes, PageFiles page, HashMap<String, String> outputFileNames, HashMap<String, FileMD5Info> md5InfosMap) throws MetsExportException {
+        MetsContext metsContext = page.metsElement.getMetsContext();
         // String streamName = Const.streamMapping.get(metsStreamName);
         FileType fileType = new FileType();
         fileType.setCHECKSUMTYPE("MD5");
@@ -444,7 +456,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         fileType.setSEQ(seq);
         fileType.setMIMETYPE(mimeTypes.get(metsStreamName));
         InputStream is = null;
-        fileType.setID(Const.streamMappingPrefix.get(metsStreamName) + "_" + MetsUtils.removeNonAlpabetChars(metsContext.getPackageID()) + "_" + String.format("%04d", seq));
+        fileType.setID(Const.streamMappingPrefix.get(metsStreamName) + "_" + MetsUtils.removeNonAlpabetChars(page.packageId) + "_" + String.format("%04d", seq));
         if (fileNames.get(metsStreamName) instanceof String) {
             String fileNameOriginal = (String) fileNames.get(metsStreamName);
             int lastIndex = fileNameOriginal.lastIndexOf('/');
@@ -471,7 +483,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         }
 
         String outputFileName = fileType.getID() + "." + MimeType.getExtension(mimeTypes.get(metsStreamName));
-        String fullOutputFileName = metsContext.getPackageDir().getAbsolutePath() + File.separator + Const.streamMappingFile.get(metsStreamName) + File.separator + outputFileName;
+        String fullOutputFileName = page.packageDir.getAbsolutePath() + File.separator + Const.streamMappingFile.get(metsStreamName) + File.separator + outputFileName;
         outputFileNames.put(metsStreamName, fullOutputFileName);
         try {
             FileMD5Info fileMD5Info;
@@ -488,7 +500,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             fileMD5Info.setFileName("." + File.separator + Const.streamMappingFile.get(metsStreamName) + File.separator + outputFileName);
             fileMD5Info.setMimeType(fileType.getMIMETYPE());
             fileType.setCHECKSUM(fileMD5Info.getMd5());
-            metsContext.getFileList().add(fileMD5Info);
+            page.fileList.add(fileMD5Info);
         } catch (Exception e) {
             throw new MetsExportException("Unable to process file " + fullOutputFileName, false, e);
         }
@@ -644,15 +656,13 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         agent.setAgentType("software");
         agent.getAgentName().add("ProArc");
 
-        JAXBContext jc;
         try {
-            jc = JAXBContext.newInstance(AgentComplexType.class);
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
             DocumentBuilder db = dbf.newDocumentBuilder();
             Document document = db.newDocument();
 
             // Marshal the Object to a Document
-            Marshaller marshaller = jc.createMarshaller();
+            Marshaller marshaller = JaxbContextRegistry.getMarshaller(AgentComplexType.class);
             marshaller.marshal(jaxbPremix, document);
             XPath xpath = XPathFactory.newInstance().newXPath();
             Node agentNode = (Node) xpath.compile("*[local-name()='agent']").evaluate(document, XPathConstants.NODE);
@@ -688,15 +698,13 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         linkingObject.setLinkingObjectIdentifierValue(Const.FEDORAPREFIX + metsElement.getOriginalPid() + "/" + Const.dataStreamToModel.get(datastream));
         event.getLinkingObjectIdentifier().add(linkingObject);
         event.getLinkingAgentIdentifier().add(linkingAgentIdentifier);
-        JAXBContext jc;
         try {
-            jc = JAXBContext.newInstance(PremisComplexType.class);
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
             DocumentBuilder db = dbf.newDocumentBuilder();
             Document document = db.newDocument();
 
             // Marshal the Object to a Document
-            Marshaller marshaller = jc.createMarshaller();
+            Marshaller marshaller = JaxbContextRegistry.getMarshaller(PremisComplexType.class);
             marshaller.marshal(jaxbPremix, document);
             XPath xpath = XPathFactory.newInstance().newXPath();
             Node premisNode = (Node) xpath.compile("*[local-name()='premis']/*[local-name()='event']").evaluate(document, XPathConstants.NODE);
@@ -792,15 +800,13 @@ public class MetsElementVisitor implements IMetsElementVisitor {
         originalName.setValue(originalFile);
         file.setOriginalName(originalName);
 
-        JAXBContext jc;
         try {
-            jc = JAXBContext.newInstance(PremisComplexType.class);
             DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
             DocumentBuilder db = dbf.newDocumentBuilder();
             Document document = db.newDocument();
 
             // Marshal the Object to a Document
-            Marshaller marshaller = jc.createMarshaller();
+            Marshaller marshaller = JaxbContextRegistry.getMarshaller(PremisComplexType.class);
             marshaller.marshal(jaxbPremix, document);
             XPath xpath = XPathFactory.newInstance().newXPath();
             Node premisNode = (Node) xpath.compile("*[local-name()='premis']/*[local-name()='object']").evaluate(document, XPathConstants.NODE);
@@ -900,15 +906,16 @@ public class MetsElementVisitor implements IMetsElementVisitor {
     /**
      * Generates technical metadata using JHOVE
      *
-     * @param metsElement
+     * @param page
      * @param fileNames
-     * @param seq
      * @param fileTypes
      * @param mimeTypes
-     * @param pageDiv
      * @throws MetsExportException
      */
-    private void generateTechMetadata(IMetsElement metsElement, HashMap<String, Object> fileNames, int seq, HashMap<String, FileGrp> fileGrpPage, HashMap<String, String> mimeTypes, DivType pageDiv, HashMap<String, String> outputFileNames, HashMap<String, FileMD5Info> md5InfosMap) throws MetsExportException {
+    private void generateTechMetadata(PageFiles page, HashMap<String, Object> fileNames, HashMap<String, FileGrp> fileGrpPage, HashMap<String, String> mimeTypes, HashMap<String, String> outputFileNames, HashMap<String, FileMD5Info> md5InfosMap) throws MetsExportException {
+        IMetsElement metsElement = page.metsElement;
+        int seq = page.seq;
+        DivType pageDiv = page.pageDiv;
         if (fileNames.get("TECHMDGRP") == null) {
             LOG.log(Level.FINE, "Generating tech");
             Mets amdSecMets = new Mets();
@@ -981,7 +988,8 @@ public class MetsElementVisitor implements IMetsElementVisitor {
                             rawCreated = rawDS.getDatastreamVersion().get(0).getCREATED();
                             InputStream is = dsRaw.execute(metsElement.getMetsContext().getFedoraClient()).getEntityInputStream();
                             String rawExtendsion = MimeType.getExtension(rawDS.getDatastreamVersion().get(0).getMIMETYPE());
-                            rawFile = new File(metsElement.getMetsContext().getOutputPath() + File.separator + metsElement.getMetsContext().getPackageID() + File.separator + "raw" + "." + rawExtendsion);
+                            // the name is unique as pages may be generated in parallel
+                            rawFile = new File(metsElement.getMetsContext().getOutputPath() + File.separator + page.packageId + File.separator + "raw_" + String.format("%04d", seq) + "." + rawExtendsion);
                             FileMD5Info rawinfo;
                             try {
                                 rawinfo = MetsUtils.getDigestAndCopy(is, new FileOutputStream(rawFile));
@@ -1110,8 +1118,8 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             addPremisToAmdSec(amdSec, md5InfosMap, metsElement, amdSecFileGrpMap);
             mapType.setDiv(divType);
             saveAmdSec(metsElement, amdSecMets, fileNames, mimeTypes);
-            FileType fileType = prepareFileType(seq, "TECHMDGRP", fileNames, mimeTypes, metsElement.getMetsContext(), outputFileNames, md5InfosMap);
-            this.fileGrpMap.get("TECHMDGRP").getFile().add(fileType);
+            FileType fileType = prepareFileType(seq, "TECHMDGRP", fileNames, mimeTypes, page, outputFileNames, md5InfosMap);
+            page.fileTypes.put("TECHMDGRP", fileType);
             Fptr fptr = new Fptr();
             fptr.setFILEID(fileType);
             pageDiv.getFptr().add(fptr);
@@ -1178,8 +1186,7 @@ public class MetsElementVisitor implements IMetsElementVisitor {
      */
     private void saveAmdSec(IMetsElement metsElement, Mets amdSecMets, HashMap<String, Object> fileNames, HashMap<String, String> mimeTypes) throws MetsExportException {
         try {
-            JAXBContext jaxbContext = JAXBContext.newInstance(Mets.class);
-            Marshaller marshaller = jaxbContext.createMarshaller();
+            Marshaller marshaller = JaxbContextRegistry.getMarshaller(Mets.class);
             marshaller.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
             marshaller.setProperty(Marshaller.JAXB_ENCODING, "utf-8");
             // marshaller.setProperty(Marshaller.JAXB_SCHEMA_LOCATION,
@@ -1189,8 +1196,12 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             byte[] byteArray = bos.toByteArray();
             fileNames.put("TECHMDGRP", byteArray);
             mimeTypes.put("TECHMDGRP", "text/xml");
-            Document document = MetsUtils.getDocumentFromBytes(byteArray);
-            MetsUtils.validateAgainstXSD(document, Mets.class.getResourceAsStream("mets.xsd"));
+            List<String> validationErrors = MetsUtils.validateAgainstXSD(
+                    new ByteArrayInputStream(byteArray), Mets.class.getResource("mets.xsd"));
+            if (!validationErrors.isEmpty()) {
+                LOG.log(Level.WARNING, "Invalid AMDSec of {0}: {1}",
+                        new Object[]{metsElement.getOriginalPid(), validationErrors});
+            }
         } catch (Exception ex) {
             throw new MetsExportException(metsElement.getOriginalPid(), "Error while saving AMDSec file", false, ex);
         }
@@ -1302,30 +1313,55 @@ public class MetsElementVisitor implements IMetsElementVisitor {
             File packageDir = createPackageDir(metsElement);
             metsElement.getMetsContext().setPackageDir(packageDir);
         }
-        HashMap<String, String> outputFileNames = new HashMap<String, String>();
-
         if (!Const.PAGE.equals(metsElement.getElementType()) && !Const.MONOGRAPH_UNIT.equals(metsElement.getElementType())) {
             throw new MetsExportException(metsElement.getOriginalPid(), "Expected page, got " + metsElement.getElementType(), false, null);
         }
-        HashMap<String, FileGrp> fileGrpPage = MetsUtils.initFileGroups();
         DivType pageDiv = new DivType();
         physicalDiv.getDiv().add(pageDiv);
         fillPageIndexOrder(metsElement, pageDiv);
         String ID = "DIV_P_PAGE_" + metsElement.getElementID().replace("PAGE_", "");
         pageDiv.setID(ID);
+        PageFiles page = new PageFiles(metsElement, pageCounter, pageDiv);
+        if (pageWorkers == null) {
+            generatePage(page);
+            addPageFiles(page);
+        } else {
+            pendingPages.add(pageWorkers.submit(page));
+        }
+
+        StructLinkMapping structLinkMapping = new StructLinkMapping();
+        structLinkMapping.pageDiv = metsElement.getParent().getModsElementID();
+        structLinkMapping.pageOrder = pageDiv.getORDER();
+        pageOrderToDivMap.put(structLinkMapping, ID);
+        for (IMetsElement sourceElement : sourceElements) {
+            addMappingPageStruct(structLinkMapping, sourceElement.getModsElementID());
+        }
+    }
+
+    /**
+     * Generates files and technical metadata of the page. It does not touch
+     * the shared state of the visitor so that it can run in a worker.
+     *
+     * @param page
+     * @throws MetsExportException
+     */
+    private void generatePage(PageFiles page) throws MetsExportException {
+        IMetsElement metsElement = page.metsElement;
+        HashMap<String, String> outputFileNames = new HashMap<String, String>();
+        HashMap<String, FileGrp> fileGrpPage = MetsUtils.initFileGroups();
         HashMap<String, Object> fileNames = new HashMap<String, Object>();
         HashMap<String, String> mimeTypes = new HashMap<String, String>();
         HashMap<String, XMLGregorianCalendar> createDates = new HashMap<String, XMLGregorianCalendar>();
         HashMap<String, FileMD5Info> md5InfosMap = new HashMap<String, FileMD5Info>();
-        processPageFiles(metsElement, pageCounter, fileNames, mimeTypes, createDates, md5InfosMap);
+        processPageFiles(metsElement, page.seq, fileNames, mimeTypes, createDates, md5InfosMap);
         for (String streamName : Const.streamMapping.keySet()) {
             if (fileNames.containsKey(streamName)) {
-                FileType fileType = prepareFileType(pageCounter, streamName, fileNames, mimeTypes, metsElement.getMetsContext(), outputFileNames, md5InfosMap);
+                FileType fileType = prepareFileType(page.seq, streamName, fileNames, mimeTypes, page, outputFileNames, md5InfosMap);
                 fileGrpPage.get(streamName).getFile().add(fileType);
-                fileGrpMap.get(streamName).getFile().add(fileType);
+                page.fileTypes.put(streamName, fileType);
                 Fptr fptr = new Fptr();
                 fptr.setFILEID(fileType);
-                pageDiv.getFptr().add(fptr);
+                page.pageDiv.getFptr().add(fptr);
                 if ("ALTOGRP".equals(streamName)) {
                     metsElement.setAltoFile(fileType);
                 }
@@ -1335,17 +1371,92 @@ public class MetsElementVisitor implements IMetsElementVisitor {
                 }
             }
         }
-        generateTechMetadata(metsElement, fileNames, pageCounter, fileGrpPage, mimeTypes, pageDiv, outputFileNames, md5InfosMap);
+        generateTechMetadata(page, fileNames, fileGrpPage, mimeTypes, outputFileNames, md5InfosMap);
+    }
 
-        StructLinkMapping structLinkMapping = new StructLinkMapping();
-        structLinkMapping.pageDiv = metsElement.getParent().getModsElementID();
-        structLinkMapping.pageOrder = pageDiv.getORDER();
-        pageOrderToDivMap.put(structLinkMapping, ID);
-        for (IMetsElement sourceElement : sourceElements) {
-            addMappingPageStruct(structLinkMapping, sourceElement.getModsElementID());
+    /**
+     * Adds files of a generated page to the package.
+     */
+    private void addPageFiles(PageFiles page) {
+        for (Map.Entry<String, FileType> entry : page.fileTypes.entrySet()) {
+            fileGrpMap.get(entry.getKey()).getFile().add(entry.getValue());
+        }
+        page.metsElement.getMetsContext().getFileList().addAll(page.fileList);
+    }
+
+    /**
+     * Waits for pages generated by workers and adds their files
+     * to the package in the page order. The output is thus the same
+     * as in case of the serial generation.
+     *
+     * @throws MetsExportException the failure of the first failed page
+     */
+    private void flushPages() throws MetsExportException {
+        try {
+            for (Future<PageFiles> pending = pendingPages.poll(); pending != null; pending = pendingPages.poll()) {
+                addPageFiles(getPage(pending));
+            }
+        } finally {
+            // remaining pages are useless after a failure
+            for (Future<PageFiles> pending : pendingPages) {
+                pending.cancel(true);
+            }
+            pendingPages.clear();
+        }
+    }
+
+    private static PageFiles getPage(Future<PageFiles> page) throws MetsExportException {
+        try {
+            return page.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new MetsExportException("Interrupted while generating pages", false, ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof MetsExportException) {
+                throw (MetsExportException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new MetsExportException("Unable to generate page", false, (Exception) cause);
         }
     }
 
+    /**
+     * The page generated by {@link #generatePage}. It holds outputs
+     * to add to the shared state in the page order.
+     */
+    private final class PageFiles implements Callable<PageFiles> {
+
+        final IMetsElement metsElement;
+        final int seq;
+        final DivType pageDiv;
+        /** the package of the page as the context switches packages during the walk */
+        final String packageId;
+        final File packageDir;
+        /** {@code Map<streamName, FileType>} to add to {@link #fileGrpMap} */
+        final Map<String, FileType> fileTypes = new LinkedHashMap<String, FileType>();
+        /** files to add to {@link MetsContext#getFileList()} */
+        final List<FileMD5Info> fileList = new ArrayList<FileMD5Info>();
+
+        PageFiles(IMetsElement metsElement, int seq, DivType pageDiv) {
+            this.metsElement = metsElement;
+            this.seq = seq;
+            this.pageDiv = pageDiv;
+            this.packageId = metsElement.getMetsContext().getPackageID();
+            this.packageDir = metsElement.getMetsContext().getPackageDir();
+        }
+
+        @Override
+        public PageFiles call() throws MetsExportException {
+            generatePage(this);
+            return this;
+        }
+
+    }
+
     class StructLinkMapping {
         String pageDiv;
         BigInteger pageOrder;
@@ -1618,16 +1729,18 @@ public class MetsElementVisitor implements IMetsElementVisitor {
      * @param parentType
      */
     private void addInternalElements(DivType parentType, IMetsElement metsElement) throws MetsExportException {
-        byte[] structStream;
+        // ALTO files of referenced pages
+        flushPages();
+        Document structDoc;
         if (metsElement.getMetsContext().getFedoraClient() != null) {
-            structStream = MetsUtils.getBinaryDataStreams(metsElement.getMetsContext().getFedoraClient(), metsElement, "STRUCT_MAP");
+            structDoc = MetsUtils.getDataStreamDocument(metsElement.getMetsContext().getFedoraClient(), metsElement, "STRUCT_MAP");
         } else {
-            structStream = MetsUtils.getBinaryDataStreams(metsElement.getSourceObject().getDatastream(), "STRUCT_MAP");
+            structDoc = MetsUtils.getDocumentFromBytes(MetsUtils.getBinaryDataStreams(metsElement.getSourceObject().getDatastream(), "STRUCT_MAP"));
         }
-        if (structStream == null) {
+        if (structDoc == null) {
             return;
         }
-        List<IntPartInfo> partInfoList = parseAltoInfo(MetsUtils.getDocumentFromBytes(structStream));
+        List<IntPartInfo> partInfoList = parseAltoInfo(structDoc);
         for (IntPartInfo partInfo : partInfoList) {
             DivType divType = new DivType();
             divType.setTYPE(partInfo.getType());
@@ -1840,6 +1953,11 @@ public class MetsElementVisitor implements IMetsElementVisitor {
      */
     @Override
     public void insertIntoMets(IMetsElement metsElement) throws MetsExportException {
+        MetsContext metsContext = metsElement.getMetsContext();
+        if (metsContext.getThreadCount() > 1 && metsContext.getJhoveContext() == null) {
+            // JHOVE instances are borrowed from the pool
+            pageWorkers = Executors.newFixedThreadPool(metsContext.getThreadCount());
+        }
         try {
             // clear the output fileList before the generation starts
             metsElement.getMetsContext().getFileList().clear();
@@ -1870,8 +1988,17 @@ public class MetsElementVisitor implements IMetsElementVisitor {
                 metsElement.getMetsContext().setPackageDir(packageDirFile);
             }
 
+            flushPages();
             saveMets(mets, new File(metsElement.getMetsContext().getPackageDir().getAbsolutePath() + File.separator + "METS_" + MetsUtils.removeNonAlpabetChars(metsElement.getMetsContext().getPackageID()) + ".xml"), metsElement);
+        } catch (MetsExportException | RuntimeException ex) {
+            // a page submitted before the failure takes precedence as in the serial mode
+            flushPages();
+            throw ex;
         } finally {
+            if (pageWorkers != null) {
+                pageWorkers.shutdownNow();
+                pageWorkers = null;
+            }
             JhoveUtility.destroyConfigFiles(metsElement.getMetsContext().getJhoveContext());
         }
     }
@@ -135,6 +135,7 @@ public final class BinaryEditor {
 
     public void write(File data, long timestamp, String message) throws DigitalObjectException {
         editor.write(data.toURI(), timestamp, message);
+        invalidateCache();
     }
 
     /**
@@ -149,6 +150,14 @@ public final class BinaryEditor {
      */
     public void write(URI source, long timestamp, String message) throws DigitalObjectException {
         editor.write(source, timestamp, message);
+        invalidateCache();
+    }
+
+    private void invalidateCache() {
+        RenditionCache cache = RenditionCache.getDefault();
+        if (cache != null) {
+            cache.invalidate(object.getPid(), dsId);
+        }
     }
 
 }
@@ -26,7 +26,10 @@ import com.yourmediashelf.fedora.generated.foxml.PropertyType;
 import com.yourmediashelf.fedora.generated.foxml.StateType;
 import com.yourmediashelf.fedora.generated.management.DatastreamProfile;
 import cz.cas.lib.proarc.oaidublincore.DcConstants;
+import java.io.BufferedInputStream;
 import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
@@ -35,6 +38,7 @@ import java.io.StringWriter;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.util.Collection;
 import java.util.Date;
 import java.util.GregorianCalendar;
 import java.util.List;
@@ -55,6 +59,10 @@ import javax.xml.bind.annotation.XmlSchema;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.datatype.XMLGregorianCalendar;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
 import javax.xml.transform.Result;
 import javax.xml.transform.Source;
 import javax.xml.transform.stream.StreamResult;
@@ -88,6 +96,7 @@ public final class FoxmlUtils {
     private static final Logger LOG = Logger.getLogger(FoxmlUtils.class.getName());
     private static JAXBContext defaultJaxbContext;
     private static ThreadLocal<Marshaller> defaultMarshaller = new ThreadLocal<Marshaller>();
+    private static final XMLInputFactory XML_INPUT_FACTORY = XMLInputFactory.newInstance();
     private static ThreadLocal<Unmarshaller> defaultUnmarshaller = new ThreadLocal<Unmarshaller>();
     private static final Pattern PID_PATTERN = Pattern.compile(
             "^([A-Za-z0-9]|-|\\.)+:(([A-Za-z0-9])|-|\\.|~|_|(%[0-9A-F]{2}))+$");
@@ -319,6 +328,82 @@ public final class FoxmlUtils {
         }
     }
 
+    /**
+     * Reads object properties and the selected datastreams of a FOXML file.
+     * Other datastreams are skipped with a stream reader without unmarshalling
+     * their contents.
+     *
+     * @param foxml the FOXML file
+     * @param dsIds IDs of datastreams to read
+     * @return the partial digital object
+     */
+    public static DigitalObject unmarshalPartially(File foxml, Collection<String> dsIds) {
+        InputStream is = null;
+        XMLStreamReader reader = null;
+        try {
+            is = new BufferedInputStream(new FileInputStream(foxml));
+            reader = XML_INPUT_FACTORY.createXMLStreamReader(is);
+            Unmarshaller unmarshaller = defaultUnmarshaller();
+            DigitalObject dobj = new DigitalObject();
+            int event = reader.next();
+            while (event != XMLStreamConstants.END_DOCUMENT) {
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if ("digitalObject".equals(name)) {
+                        dobj.setPID(reader.getAttributeValue(null, "PID"));
+                        dobj.setVERSION(reader.getAttributeValue(null, "VERSION"));
+                    } else if ("objectProperties".equals(name)) {
+                        dobj.setObjectProperties(unmarshaller.unmarshal(
+                                reader, ObjectPropertiesType.class).getValue());
+                        // the unmarshaller moves the reader behind the element
+                        event = reader.getEventType();
+                        continue;
+                    } else if ("datastream".equals(name)) {
+                        if (dsIds.contains(reader.getAttributeValue(null, "ID"))) {
+                            dobj.getDatastream().add(unmarshaller.unmarshal(
+                                    reader, DatastreamType.class).getValue());
+                            event = reader.getEventType();
+                            continue;
+                        } else {
+                            skipElement(reader);
+                        }
+                    }
+                }
+                event = reader.next();
+            }
+            return dobj;
+        } catch (IOException ex) {
+            throw new DataBindingException(ex);
+        } catch (XMLStreamException ex) {
+            throw new DataBindingException(ex);
+        } catch (JAXBException ex) {
+            throw new DataBindingException(ex);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ex) {
+                    LOG.log(Level.WARNING, foxml.toString(), ex);
+                }
+            }
+            closeQuietly(is, foxml.toString());
+        }
+    }
+
+    /**
+     * Moves the reader from the start to the end of the current element.
+     */
+    private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+        for (int depth = 1; depth > 0; ) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                depth--;
+            }
+        }
+    }
+
     public static XMLGregorianCalendar createXmlDate() {
         return createXmlDate(new Date());
     }
@@ -38,6 +38,7 @@ import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.logging.Logger;
@@ -67,6 +68,22 @@ public final class LocalStorage {
         return result;
     }
 
+    /**
+     * Loads the object with the selected datastreams only. It is suitable
+     * for listings reading few datastreams of large FOXML files.
+     * The result is not bound to the file; its changes are never written.
+     *
+     * @param pid PID of the object
+     * @param foxml the FOXML file
+     * @param dsIds IDs of datastreams to load
+     * @return the read only object
+     */
+    public LocalObject loadPartially(String pid, File foxml, Collection<String> dsIds) {
+        DigitalObject dobj = FoxmlUtils.unmarshalPartially(foxml, dsIds);
+        LocalObject result = new LocalObject(pid, null, dobj);
+        return result;
+    }
+
     public LocalObject create() {
         return create((String) null, null);
     }
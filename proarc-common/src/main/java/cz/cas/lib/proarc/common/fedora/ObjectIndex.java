@@ -0,0 +1,419 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import com.yourmediashelf.fedora.client.FedoraClient;
+import com.yourmediashelf.fedora.client.FedoraClientException;
+import com.yourmediashelf.fedora.client.response.GetObjectProfileResponse;
+import cz.cas.lib.proarc.common.dao.DaoFactory;
+import cz.cas.lib.proarc.common.dao.IndexedObject;
+import cz.cas.lib.proarc.common.dao.ObjectIndexDao;
+import cz.cas.lib.proarc.common.dao.Transaction;
+import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.core.Response.Status;
+import javax.xml.bind.DatatypeConverter;
+
+/**
+ * The index of digital objects stored in the relational database. It answers
+ * hierarchy and listing queries of the {@link SearchView} without
+ * the resource index.
+ *
+ * <p>The {@link RemoteStorage} queues an update of the index after each
+ * successful write to Fedora. Updates run in the background and repeated
+ * updates of the same object are coalesced. Searches use the resource index
+ * until queued updates are {@link #isCurrent() written}. As Fedora does not support
+ * transactions, a failed update switches searches back to the resource index
+ * and schedules the {@link #reconcile() reconciliation} with Fedora.
+ *
+ * @author Jan Pokorsky
+ */
+public final class ObjectIndex {
+
+    private static final Logger LOG = Logger.getLogger(ObjectIndex.class.getName());
+    private static final int RECONCILE_PAGE_SIZE = 10000;
+    private static final long RECONCILE_RETRY_DELAY = TimeUnit.MINUTES.toMillis(1);
+
+    private final DaoFactory daos;
+    private final RemoteStorage storage;
+    /** Runs updates and reconciliations one by one. */
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(new ObjectIndexThreadFactory());
+    /** PIDs with a queued update. */
+    private final Set<String> pending = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+    /** The number of queued or running updates. */
+    private final AtomicInteger unfinished = new AtomicInteger();
+    private final AtomicBoolean reconcilePending = new AtomicBoolean();
+    private volatile boolean ready;
+
+    public ObjectIndex(DaoFactory daos, RemoteStorage storage) {
+        this.daos = daos;
+        this.storage = storage;
+    }
+
+    /**
+     * Is the index synchronized with Fedora?
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    public void setReady(boolean ready) {
+        this.ready = ready;
+    }
+
+    /**
+     * Is the index synchronized with Fedora and are all writes made so far
+     * indexed? Searches should not use the index otherwise as they would
+     * miss recent writes.
+     */
+    public boolean isCurrent() {
+        return ready && unfinished.get() == 0;
+    }
+
+    /**
+     * Queues indexing of the current state of the digital object stored in Fedora.
+     * A failure does not break the caller as the object is already written.
+     */
+    public void update(String pid) {
+        queue(pid);
+    }
+
+    /**
+     * Queues removal of the purged digital object from the index.
+     */
+    public void remove(String pid) {
+        // the update removes objects missing in Fedora
+        queue(pid);
+    }
+
+    private void queue(final String pid) {
+        if (!pending.add(pid)) {
+            // coalesced with the queued update
+            return ;
+        }
+        unfinished.incrementAndGet();
+        try {
+            executor.execute(new Runnable() {
+
+                @Override
+                public void run() {
+                    try {
+                        pending.remove(pid);
+                        refresh(pid);
+                    } finally {
+                        unfinished.decrementAndGet();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException ex) {
+            pending.remove(pid);
+            // the index stays behind Fedora
+            ready = false;
+            unfinished.decrementAndGet();
+            LOG.log(Level.WARNING, "The object index is closed: " + pid, ex);
+        }
+    }
+
+    void refresh(String pid) {
+        try {
+            try {
+                updateImpl(pid);
+            } catch (DigitalObjectNotFoundException ex) {
+                removeImpl(pid);
+            }
+        } catch (Exception ex) {
+            invalidate(pid, ex);
+        }
+    }
+
+    /**
+     * Runs the task after updates queued so far. For tests.
+     */
+    void execute(Runnable task) {
+        executor.execute(task);
+    }
+
+    /**
+     * Waits for updates queued so far. For tests.
+     */
+    void awaitUpdates() throws Exception {
+        executor.submit(new Runnable() {
+
+            @Override
+            public void run() {
+            }
+        }).get();
+    }
+
+    /**
+     * Synchronizes the index with Fedora. It indexes objects that are missing
+     * or modified since their last indexing and removes objects purged
+     * from Fedora. It serves also to build the index from scratch.
+     */
+    public void reconcile() throws IOException, FedoraClientException {
+        long start = System.currentTimeMillis();
+        Map<String, Timestamp> indexed;
+        Transaction tx = daos.createTransaction();
+        try {
+            indexed = createDao(tx).findModified();
+        } finally {
+            tx.close();
+        }
+        SearchView search = storage.getSearch();
+        int updates = 0;
+        int failures = 0;
+        for (int offset = 0; ; offset += RECONCILE_PAGE_SIZE) {
+            List<Item> items = search.findModified(offset, RECONCILE_PAGE_SIZE);
+            for (Item item : items) {
+                Timestamp modified = indexed.remove(item.getPid());
+                if (modified == null || modified.getTime() != parseDate(item.getModified())) {
+                    try {
+                        updateImpl(item.getPid());
+                        updates++;
+                    } catch (DigitalObjectNotFoundException ex) {
+                        // purged meanwhile
+                        removeImpl(item.getPid());
+                    } catch (Exception ex) {
+                        failures++;
+                        LOG.log(Level.WARNING, item.getPid(), ex);
+                    }
+                }
+            }
+            if (items.size() < RECONCILE_PAGE_SIZE) {
+                break;
+            }
+        }
+        int removals = 0;
+        for (Entry<String, Timestamp> entry : indexed.entrySet()) {
+            // skip objects ingested during the reconciliation
+            if (entry.getValue().getTime() < start) {
+                removeImpl(entry.getKey());
+                removals++;
+            }
+        }
+        LOG.log(failures == 0 ? Level.INFO : Level.WARNING,
+                "Object index reconciled in {0} ms, updates: {1}, removals: {2}, failures: {3}",
+                new Object[]{System.currentTimeMillis() - start, updates, removals, failures});
+        if (failures == 0) {
+            ready = true;
+        } else {
+            scheduleReconcile(RECONCILE_RETRY_DELAY);
+        }
+    }
+
+    /**
+     * Runs the {@link #reconcile() reconciliation} in the background
+     * unless it is already scheduled.
+     */
+    public void scheduleReconcile() {
+        scheduleReconcile(0);
+    }
+
+    private void scheduleReconcile(long delay) {
+        if (!reconcilePending.compareAndSet(false, true)) {
+            return ;
+        }
+        try {
+            executor.schedule(new Runnable() {
+
+                @Override
+                public void run() {
+                    reconcilePending.set(false);
+                    try {
+                        reconcile();
+                    } catch (Throwable ex) {
+                        LOG.log(Level.SEVERE, "The object index reconciliation failed!", ex);
+                        scheduleReconcile(RECONCILE_RETRY_DELAY);
+                    }
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException ex) {
+            reconcilePending.set(false);
+        }
+    }
+
+    public void close() {
+        executor.shutdownNow();
+    }
+
+    public List<IndexedObject> findMembers(String parentPid) {
+        Transaction tx = daos.createTransaction();
+        try {
+            return createDao(tx).findMembers(parentPid);
+        } finally {
+            tx.close();
+        }
+    }
+
+    public List<IndexedObject> findReferrers(String pid) {
+        Transaction tx = daos.createTransaction();
+        try {
+            return createDao(tx).findReferrers(pid);
+        } finally {
+            tx.close();
+        }
+    }
+
+    public List<IndexedObject> findByModel(String model, int maxCount) {
+        Transaction tx = daos.createTransaction();
+        try {
+            return createDao(tx).findByModel(model, maxCount);
+        } finally {
+            tx.close();
+        }
+    }
+
+    public List<IndexedObject> findLast(Collection<String> models, boolean modified, int offset, int maxCount) {
+        Transaction tx = daos.createTransaction();
+        try {
+            return createDao(tx).findLast(models, modified, offset, maxCount);
+        } finally {
+            tx.close();
+        }
+    }
+
+    public boolean isDeviceInUse(String device) {
+        Transaction tx = daos.createTransaction();
+        try {
+            return createDao(tx).isDeviceInUse(device);
+        } finally {
+            tx.close();
+        }
+    }
+
+    void updateImpl(String pid) throws DigitalObjectException {
+        IndexedObject object = new IndexedObject();
+        object.setPid(pid);
+        try {
+            GetObjectProfileResponse profile = FedoraClient.getObjectProfile(pid).execute(storage.getClient());
+            object.setLabel(profile.getLabel());
+            object.setOwner(profile.getOwnerId());
+            object.setState(profile.getState());
+            object.setCreated(new Timestamp(profile.getCreateDate().getTime()));
+            object.setModified(new Timestamp(profile.getLastModifiedDate().getTime()));
+        } catch (FedoraClientException ex) {
+            if (ex.getStatus() == Status.NOT_FOUND.getStatusCode()) {
+                throw new DigitalObjectNotFoundException(pid, ex);
+            }
+            throw new DigitalObjectException(pid, ex);
+        }
+        RemoteObject robject = storage.find(pid);
+        RelationEditor relations = new RelationEditor(robject);
+        String model = relations.getModel();
+        if (model == null) {
+            // not a ProArc object
+            return ;
+        }
+        object.setModel(model);
+        object.setDevice(relations.getDevice());
+        object.setHasExport(relations.getExportResult() != null);
+        List<String> members = relations.getMembers();
+        store(object, members);
+    }
+
+    /**
+     * Writes the object unless the index already holds a newer state.
+     * @return {@code false} if the index is newer
+     */
+    boolean store(IndexedObject object, List<String> members) {
+        String pid = object.getPid();
+        ObjectIndexDao dao = daos.createObjectIndexDao();
+        Transaction tx = daos.createTransaction();
+        dao.setTransaction(tx);
+        try {
+            IndexedObject indexed = dao.find(pid);
+            if (indexed != null && indexed.getModified() != null
+                    && indexed.getModified().after(object.getModified())) {
+                LOG.log(Level.FINE, "Skipped the outdated state of {0}", pid);
+                return false;
+            }
+            dao.update(object, members);
+            tx.commit();
+            return true;
+        } catch (Throwable ex) {
+            tx.rollback();
+            throw new IllegalStateException(pid, ex);
+        } finally {
+            tx.close();
+        }
+    }
+
+    void removeImpl(String pid) {
+        ObjectIndexDao dao = daos.createObjectIndexDao();
+        Transaction tx = daos.createTransaction();
+        dao.setTransaction(tx);
+        try {
+            dao.remove(pid);
+            tx.commit();
+        } catch (Throwable ex) {
+            tx.rollback();
+            throw new IllegalStateException(pid, ex);
+        } finally {
+            tx.close();
+        }
+    }
+
+    private void invalidate(String pid, Exception ex) {
+        ready = false;
+        LOG.log(Level.WARNING, "The object index is out of date: " + pid, ex);
+        scheduleReconcile();
+    }
+
+    private ObjectIndexDao createDao(Transaction tx) {
+        ObjectIndexDao dao = daos.createObjectIndexDao();
+        dao.setTransaction(tx);
+        return dao;
+    }
+
+    private static long parseDate(String date) {
+        return date == null ? -1 : DatatypeConverter.parseDateTime(date).getTimeInMillis();
+    }
+
+    private static final class ObjectIndexThreadFactory implements ThreadFactory {
+
+        private final ThreadFactory factory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = factory.newThread(r);
+            thread.setName(ObjectIndex.class.getSimpleName() + '-' + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
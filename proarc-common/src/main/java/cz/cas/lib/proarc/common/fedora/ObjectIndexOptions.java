@@ -0,0 +1,66 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import org.apache.commons.configuration.Configuration;
+
+/**
+ * Settings of the {@link ObjectIndex}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class ObjectIndexOptions {
+
+    static final String PROP_ENABLED = "fedora.objectIndex.enabled";
+    static final String PROP_RECONCILE_ON_STARTUP = "fedora.objectIndex.reconcileOnStartup";
+
+    private boolean enabled = false;
+    private boolean reconcileOnStartup = true;
+
+    public static ObjectIndexOptions from(Configuration config) {
+        ObjectIndexOptions options = new ObjectIndexOptions();
+        options.setEnabled(config.getBoolean(PROP_ENABLED, options.isEnabled()));
+        options.setReconcileOnStartup(config.getBoolean(PROP_RECONCILE_ON_STARTUP, options.isReconcileOnStartup()));
+        return options;
+    }
+
+    /**
+     * Whether to maintain the index and to answer searches with it.
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public ObjectIndexOptions setEnabled(boolean enabled) {
+        this.enabled = enabled;
+        return this;
+    }
+
+    /**
+     * Whether to synchronize the index with Fedora on startup. Searches use
+     * the resource index until the synchronization completes.
+     */
+    public boolean isReconcileOnStartup() {
+        return reconcileOnStartup;
+    }
+
+    public ObjectIndexOptions setReconcileOnStartup(boolean reconcileOnStartup) {
+        this.reconcileOnStartup = reconcileOnStartup;
+        return this;
+    }
+
+}
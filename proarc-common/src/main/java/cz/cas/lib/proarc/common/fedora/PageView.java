@@ -25,7 +25,9 @@ import cz.cas.lib.proarc.common.object.DigitalObjectHandler;
 import cz.cas.lib.proarc.common.object.DigitalObjectManager;
 import cz.cas.lib.proarc.common.object.MetadataHandler;
 import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
 import java.util.Locale;
@@ -41,28 +43,53 @@ import java.util.ResourceBundle;
  */
 public final class PageView {
 
+    /** Datastreams read to list items. */
+    private static final List<String> ITEM_DATASTREAMS = Arrays.asList(
+            RelationEditor.DATASTREAM_ID, MetadataHandler.DESCRIPTION_DATASTREAM_ID);
+
     private LocalStorage storage = new LocalStorage();
 
     public List<Item> list(int batchId, Collection<BatchItemObject> imports, Locale locale) throws DigitalObjectException {
-        ArrayList<Item> result = new ArrayList<Item>(imports.size());
+        final ArrayList<Item> result = new ArrayList<Item>(imports.size());
+        try {
+            list(batchId, imports, locale, new ItemHandler() {
+
+                @Override
+                public void handle(Item item) {
+                    result.add(item);
+                }
+            });
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return result;
+    }
+
+    /**
+     * Passes items to the handler one by one as they are read.
+     * It allows to stream long listings.
+     */
+    public void list(int batchId, Collection<BatchItemObject> imports, Locale locale, ItemHandler handler)
+            throws DigitalObjectException, IOException {
+
         for (BatchItemObject imp : imports) {
             ObjectState objectState = imp.getState();
             if (objectState == ObjectState.LOADING || objectState == ObjectState.LOADING_FAILED) {
                 // issue 245: it is unsafe to touch FOXML file if the object
                 // has not been loaded yet or it is broken
-                result.add(new Item(batchId, imp.getItem().getFile(), imp.getPid(),
+                handler.handle(new Item(batchId, imp.getItem().getFile(), imp.getPid(),
                         null, null, null, null, -1, null, null));
                 continue;
             }
-            result.add(createItem(imp, locale));
+            handler.handle(createItem(imp, locale));
         }
-        return result;
     }
 
     private Item createItem(BatchItemObject imp, Locale locale) throws DigitalObjectException {
         Integer batchId = imp.getBatchId();
         File foxml = imp.getFile();
-        LocalObject local = storage.load(imp.getPid(), foxml);
+        // the listing does not need other datastreams that may hold large contents
+        LocalObject local = storage.loadPartially(imp.getPid(), foxml, ITEM_DATASTREAMS);
         DigitalObjectHandler doHandler = DigitalObjectManager.getDefault().createHandler(local);
         MetadataHandler<?> metadataHandler = doHandler.metadata();
 
@@ -117,6 +144,15 @@ public final class PageView {
         return label;
     }
 
+    /**
+     * Receives listed items.
+     */
+    public interface ItemHandler {
+
+        void handle(Item item) throws IOException;
+
+    }
+
     public interface PageViewHandler {
 
         PageViewItem createPageViewItem(Locale locale) throws DigitalObjectException;
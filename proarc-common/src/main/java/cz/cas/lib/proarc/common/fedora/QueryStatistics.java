@@ -0,0 +1,117 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Collects latency histograms of named queries.
+ *
+ * @author Jan Pokorsky
+ */
+public final class QueryStatistics {
+
+    /** Upper bounds of histogram buckets in milliseconds; the last bucket is unbounded. */
+    static final long[] BUCKETS = {10, 25, 50, 100, 250, 500, 1000, 2500, 5000, 10000};
+
+    private final Map<String, Histogram> histograms = new TreeMap<String, Histogram>();
+
+    /**
+     * Records the duration of a query.
+     * @param name query name
+     * @param millis duration in milliseconds
+     */
+    public synchronized void record(String name, long millis) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            histograms.put(name, histogram);
+        }
+        histogram.add(millis);
+    }
+
+    /**
+     * Gets the number of recorded queries of the name.
+     */
+    public synchronized long getCount(String name) {
+        Histogram histogram = histograms.get(name);
+        return histogram == null ? 0 : histogram.count;
+    }
+
+    /**
+     * Gets counts of the histogram buckets of the name.
+     * @return counts per {@link #BUCKETS} plus the unbounded bucket
+     */
+    public synchronized long[] getCounts(String name) {
+        Histogram histogram = histograms.get(name);
+        return histogram == null ? new long[BUCKETS.length + 1] : histogram.counts.clone();
+    }
+
+    public synchronized void clear() {
+        histograms.clear();
+    }
+
+    /**
+     * Formats histograms as lines {@code name: count=N, avg=Nms, max=Nms, <=10ms:N, ..., >10000ms:N}.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            Histogram histogram = entry.getValue();
+            sb.append(entry.getKey()).append(": count=").append(histogram.count)
+                    .append(", avg=").append(histogram.total / Math.max(1, histogram.count))
+                    .append("ms, max=").append(histogram.max).append("ms");
+            for (int i = 0; i < histogram.counts.length; i++) {
+                if (histogram.counts[i] == 0) {
+                    continue;
+                }
+                sb.append(", ");
+                if (i < BUCKETS.length) {
+                    sb.append("<=").append(BUCKETS[i]);
+                } else {
+                    sb.append('>').append(BUCKETS[BUCKETS.length - 1]);
+                }
+                sb.append("ms:").append(histogram.counts[i]);
+            }
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    private static final class Histogram {
+
+        private final long[] counts = new long[BUCKETS.length + 1];
+        private long count;
+        private long total;
+        private long max;
+
+        void add(long millis) {
+            int i = 0;
+            while (i < BUCKETS.length && millis > BUCKETS[i]) {
+                i++;
+            }
+            counts[i]++;
+            count++;
+            total += millis;
+            max = Math.max(max, millis);
+        }
+
+    }
+
+}
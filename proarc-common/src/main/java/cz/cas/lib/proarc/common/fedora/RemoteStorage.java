@@ -74,6 +74,7 @@ public final class RemoteStorage {
 
     private final FedoraClient client;
     private DescribeRepositoryResponse fedoraDescription;
+    private ObjectIndex objectIndex;
 
     public RemoteStorage(FedoraClient client) {
         this.client = client;
@@ -98,8 +99,20 @@ public final class RemoteStorage {
         return INSTANCE;
     }
 
+    /**
+     * Gets the index of digital objects maintained on writes.
+     * @return the index or {@code null}
+     */
+    public ObjectIndex getObjectIndex() {
+        return objectIndex;
+    }
+
+    public void setObjectIndex(ObjectIndex objectIndex) {
+        this.objectIndex = objectIndex;
+    }
+
     public RemoteObject find(String pid) {
-        return new RemoteObject(pid, client);
+        return new RemoteObject(pid, client, objectIndex);
     }
 
     public boolean exist(String pid) throws DigitalObjectException {
@@ -153,6 +166,9 @@ public final class RemoteStorage {
             checkObjectExistException(ex, pid);
             throw new DigitalObjectException(pid, null, null, null, ex);
         }
+        if (objectIndex != null) {
+            objectIndex.update(pid);
+        }
     }
 
     /**
@@ -204,6 +220,9 @@ public final class RemoteStorage {
             checkObjectExistException(ex, object.getPid());
             throw new DigitalObjectException(object.getPid(), null, null, ex.getMessage(), ex);
         }
+        if (objectIndex != null) {
+            objectIndex.update(object.getPid());
+        }
     }
 
     /**
@@ -254,11 +273,17 @@ public final class RemoteStorage {
     public static final class RemoteObject extends AbstractFedoraObject {
 
         private final FedoraClient client;
+        private final ObjectIndex index;
         private String label;
 
         public RemoteObject(String pid, FedoraClient client) {
+            this(pid, client, null);
+        }
+
+        RemoteObject(String pid, FedoraClient client, ObjectIndex index) {
             super(pid);
             this.client = client;
+            this.index = index;
         }
 
         public FedoraClient getClient() {
@@ -291,6 +316,17 @@ public final class RemoteStorage {
             } catch (FedoraClientException ex) {
                 throw new IllegalStateException(getPid(), ex);
             }
+            if (index != null) {
+                index.update(getPid());
+            }
+            invalidateSearchCache();
+        }
+
+        private void invalidateSearchCache() {
+            SearchCache cache = SearchCache.getDefault();
+            if (cache != null) {
+                cache.invalidate(getPid());
+            }
         }
 
         public void delete(String logMessage) throws DigitalObjectException {
@@ -305,6 +341,10 @@ public final class RemoteStorage {
                     throw new DigitalObjectException(getPid(), ex);
                 }
             }
+            if (index != null) {
+                index.update(getPid());
+            }
+            invalidateSearchCache();
         }
 
         public void purge(String logMessage) throws DigitalObjectException {
@@ -317,6 +357,10 @@ public final class RemoteStorage {
                     throw new DigitalObjectException(getPid(), ex);
                 }
             }
+            if (index != null) {
+                index.remove(getPid());
+            }
+            invalidateSearchCache();
         }
 
         @Override
@@ -453,9 +497,18 @@ public final class RemoteStorage {
             }
         }
 
+        /**
+         * Reads the content. Unless it is already loaded or modified the stream
+         * is read straight from Fedora and the content is not kept by the editor.
+         * The caller must close the stream.
+         */
         @Override
         public InputStream readStream() throws DigitalObjectException {
             try {
+                if (data == null && !modified) {
+                    fetchProfile();
+                    return missingDataStream ? null : openData();
+                }
                 fetchData();
                 return data == null ? null : data.asInputStream();
             } catch (DigitalObjectException ex) {
@@ -593,24 +646,29 @@ public final class RemoteStorage {
             if (missingDataStream) {
                 return ;
             }
+            InputStream is = openData();
+            try {
+               ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+               FoxmlUtils.copy(is, buffer);
+               this.data = new DatastreamContent(buffer.toByteArray());
+            } catch (IOException ex) {
+                throw new DigitalObjectException(object.getPid(), ex);
+            } finally {
+                FoxmlUtils.closeQuietly(is, toLogString());
+            }
+        }
+
+        /**
+         * Opens the content of the fetched profile.
+         */
+        private InputStream openData() throws DigitalObjectException {
             try {
                 FedoraResponse response = FedoraClient.getDatastreamDissemination(object.getPid(), dsId)
                         // ensure that it is content for given profile
                         .asOfDateTime(DateUtility.getXSDDateTime(new Date(lastModified)))
                         .execute(object.getClient());
-                InputStream is = response.getEntity(InputStream.class);
-                try {
-                   ByteArrayOutputStream buffer = new ByteArrayOutputStream();
-                   FoxmlUtils.copy(is, buffer);
-                   this.data = new DatastreamContent(buffer.toByteArray());
-                } catch (IOException ex) {
-                    throw new DigitalObjectException(object.getPid(), ex);
-                } finally {
-                    FoxmlUtils.closeQuietly(is, toLogString());
-                }
+                return response.getEntity(InputStream.class);
             } catch (FedoraClientException ex) {
-                if (ex.getStatus() == Status.NOT_FOUND.getStatusCode()) {
-                }
                 throw new DigitalObjectException(object.getPid(), ex);
             }
         }
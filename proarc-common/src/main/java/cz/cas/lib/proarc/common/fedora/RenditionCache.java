@@ -0,0 +1,380 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javax.ws.rs.core.EntityTag;
+
+/**
+ * The bounded cache of image renditions ({@link BinaryEditor#THUMB_ID},
+ * {@link BinaryEditor#PREVIEW_ID}, {@link BinaryEditor#FULL_ID}) fetched
+ * from the remote storage. An entry is stored in a file and small entries
+ * are held in memory too. The least recently used entries are evicted first.
+ *
+ * <p>An entry is bound to the version (the last modification) of its data stream.
+ * A new version replaces the old one. {@link BinaryEditor} invalidates entries
+ * of written data streams.
+ *
+ * @author Jan Pokorsky
+ */
+public final class RenditionCache {
+
+    private static final Logger LOG = Logger.getLogger(RenditionCache.class.getName());
+    private static final String FILE_SUFFIX = ".rendition";
+    private static final List<String> CACHEABLE_DS_IDS = Arrays.asList(
+            BinaryEditor.THUMB_ID, BinaryEditor.PREVIEW_ID, BinaryEditor.FULL_ID);
+    private static RenditionCache INSTANCE;
+
+    private final RenditionCacheOptions options;
+    /** The max size of an entry stored in the folder. */
+    private final long maxEntrySize;
+    /** pid/dsId -> entry in the LRU order */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    /** pid/dsId -> entry holding data in memory in the LRU order */
+    private final LinkedHashMap<String, Entry> memoryEntries = new LinkedHashMap<String, Entry>(16, 0.75f, true);
+    private long diskSize;
+    private long memorySize;
+    private final AtomicLong hitCount = new AtomicLong();
+    private final AtomicLong missCount = new AtomicLong();
+
+    /**
+     * Gets the shared cache.
+     * @return the cache or {@code null} if no cache is configured
+     */
+    public static synchronized RenditionCache getDefault() {
+        return INSTANCE;
+    }
+
+    public static synchronized void setDefault(RenditionCache cache) {
+        INSTANCE = cache;
+    }
+
+    /**
+     * Is the data stream content worth to cache?
+     */
+    public static boolean isCacheable(String dsId) {
+        return CACHEABLE_DS_IDS.contains(dsId);
+    }
+
+    /**
+     * Creates the entity tag of a data stream version.
+     */
+    public static EntityTag createEntityTag(String pid, String dsId, long version) {
+        return new EntityTag(Integer.toHexString(pid.hashCode()) + '-' + dsId + '-' + Long.toHexString(version));
+    }
+
+    /**
+     * Creates the cache. It removes contents left in the folder by a previous cache.
+     */
+    public RenditionCache(RenditionCacheOptions options) throws IOException {
+        this.options = options;
+        this.maxEntrySize = options.getDiskSize() / 8;
+        File folder = options.getFolder();
+        if (!folder.exists() && !folder.mkdirs()) {
+            throw new IOException("Cannot create " + folder);
+        }
+        File[] leftovers = folder.listFiles();
+        if (leftovers != null) {
+            for (File leftover : leftovers) {
+                if (leftover.getName().endsWith(FILE_SUFFIX)) {
+                    leftover.delete();
+                }
+            }
+        }
+    }
+
+    public RenditionCacheOptions getOptions() {
+        return options;
+    }
+
+    /**
+     * Finds the cached content of the data stream version.
+     * @return the entry or {@code null}
+     */
+    public Entry get(String pid, String dsId, long version) {
+        String key = key(pid, dsId);
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.version == version) {
+                if (entry.data != null) {
+                    memoryEntries.get(key);
+                }
+                hitCount.incrementAndGet();
+                return entry;
+            }
+        }
+        missCount.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Stores the content of the data stream version. Too large contents
+     * are not cached. The returned entry has to be read with {@link #open}
+     * in any case.
+     *
+     * @param content the content to read; it is not closed
+     * @return the entry
+     */
+    public Entry put(String pid, String dsId, long version,
+            String mime, String contentDisposition, InputStream content) throws IOException {
+
+        File file = File.createTempFile("cache", FILE_SUFFIX, options.getFolder());
+        long length;
+        byte[] data = null;
+        try {
+            length = copy(content, file);
+            if (length <= options.getMemoryEntrySize() && length <= options.getMemorySize()) {
+                data = readFile(file, (int) length);
+            }
+        } catch (IOException ex) {
+            file.delete();
+            throw ex;
+        }
+        Entry entry = new Entry(key(pid, dsId), version, mime, contentDisposition, file, length, data);
+        if (length > maxEntrySize) {
+            entry.data = null;
+            entry.transientFile = true;
+            return entry;
+        }
+        synchronized (this) {
+            remove(entry.key);
+            entries.put(entry.key, entry);
+            diskSize += length;
+            if (entry.data != null) {
+                memoryEntries.put(entry.key, entry);
+                memorySize += length;
+            }
+            evict();
+        }
+        return entry;
+    }
+
+    /**
+     * Opens the content of the entry.
+     * @return the stream or {@code null} if the entry has been evicted meanwhile
+     */
+    public InputStream open(Entry entry) throws IOException {
+        if (entry.transientFile) {
+            return new TransientFileInputStream(entry.file);
+        }
+        synchronized (this) {
+            byte[] data = entry.data;
+            if (data != null) {
+                return new ByteArrayInputStream(data);
+            }
+            if (entries.get(entry.key) != entry) {
+                return null;
+            }
+            // the opened file may be removed by the eviction
+            try {
+                return new FileInputStream(entry.file);
+            } catch (FileNotFoundException ex) {
+                LOG.log(Level.WARNING, entry.file.toString(), ex);
+                remove(entry.key);
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Removes all contents of the data stream.
+     */
+    public synchronized void invalidate(String pid, String dsId) {
+        remove(key(pid, dsId));
+    }
+
+    /**
+     * Removes all contents.
+     */
+    public synchronized void clear() {
+        for (Iterator<Entry> it = entries.values().iterator(); it.hasNext();) {
+            Entry entry = it.next();
+            it.remove();
+            deleteFile(entry);
+        }
+        memoryEntries.clear();
+        diskSize = 0;
+        memorySize = 0;
+    }
+
+    public synchronized long getDiskSize() {
+        return diskSize;
+    }
+
+    public synchronized long getMemorySize() {
+        return memorySize;
+    }
+
+    public synchronized int getSize() {
+        return entries.size();
+    }
+
+    public long getHitCount() {
+        return hitCount.get();
+    }
+
+    public long getMissCount() {
+        return missCount.get();
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            diskSize -= entry.length;
+            deleteFile(entry);
+        }
+        Entry memoryEntry = memoryEntries.remove(key);
+        if (memoryEntry != null) {
+            memorySize -= memoryEntry.length;
+            memoryEntry.data = null;
+        }
+    }
+
+    private void evict() {
+        while (memorySize > options.getMemorySize() && !memoryEntries.isEmpty()) {
+            Entry eldest = memoryEntries.values().iterator().next();
+            memoryEntries.remove(eldest.key);
+            memorySize -= eldest.length;
+            eldest.data = null;
+        }
+        while (diskSize > options.getDiskSize() && !entries.isEmpty()) {
+            remove(entries.keySet().iterator().next());
+        }
+    }
+
+    private void deleteFile(Entry entry) {
+        if (!entry.file.delete() && entry.file.exists()) {
+            LOG.log(Level.FINE, "Cannot delete {0}", entry.file);
+        }
+    }
+
+    private static String key(String pid, String dsId) {
+        return pid + '/' + dsId;
+    }
+
+    private static long copy(InputStream content, File file) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            byte[] buffer = new byte[16 * 1024];
+            long length = 0;
+            for (int read; (read = content.read(buffer)) >= 0;) {
+                out.write(buffer, 0, read);
+                length += read;
+            }
+            return length;
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readFile(File file, int length) throws IOException {
+        byte[] data = new byte[length];
+        InputStream in = new FileInputStream(file);
+        try {
+            for (int offset = 0, read; offset < length; offset += read) {
+                read = in.read(data, offset, length - offset);
+                if (read < 0) {
+                    throw new IOException("Unexpected end of " + file);
+                }
+            }
+            return data;
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * The cached content of a data stream version.
+     */
+    public static final class Entry {
+
+        private final String key;
+        private final long version;
+        private final String mime;
+        private final String contentDisposition;
+        private final File file;
+        private final long length;
+        private volatile byte[] data;
+        private boolean transientFile;
+
+        Entry(String key, long version, String mime, String contentDisposition,
+                File file, long length, byte[] data) {
+            this.key = key;
+            this.version = version;
+            this.mime = mime;
+            this.contentDisposition = contentDisposition;
+            this.file = file;
+            this.length = length;
+            this.data = data;
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public String getMime() {
+            return mime;
+        }
+
+        public String getContentDisposition() {
+            return contentDisposition;
+        }
+
+        public long getLength() {
+            return length;
+        }
+
+    }
+
+    /**
+     * Deletes the content not worth to cache once it is read.
+     */
+    private static final class TransientFileInputStream extends FileInputStream {
+
+        private final File file;
+
+        TransientFileInputStream(File file) throws FileNotFoundException {
+            super(file);
+            this.file = file;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                file.delete();
+            }
+        }
+
+    }
+
+}
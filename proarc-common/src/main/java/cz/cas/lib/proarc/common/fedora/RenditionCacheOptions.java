@@ -0,0 +1,130 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import java.io.File;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+
+/**
+ * Settings of the {@link RenditionCache}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class RenditionCacheOptions {
+
+    static final String PROP_FOLDER = "rendition.cache.folder";
+    static final String PROP_DISK_SIZE = "rendition.cache.diskSize";
+    static final String PROP_MEMORY_SIZE = "rendition.cache.memorySize";
+    static final String PROP_MEMORY_ENTRY_SIZE = "rendition.cache.memoryEntrySize";
+    static final String PROP_MAX_AGE = "rendition.cache.maxAge";
+
+    /** The folder holding cached contents. */
+    private File folder;
+    /** The max size of cached contents in bytes; 0 disables the cache. */
+    private long diskSize = 512L * 1024 * 1024;
+    /** The max size of contents held in memory in bytes. */
+    private long memorySize = 32L * 1024 * 1024;
+    /** The max size of a single content held in memory in bytes. */
+    private int memoryEntrySize = 64 * 1024;
+    /** The number of seconds a client may use its copy without revalidation. */
+    private int maxAge = 0;
+
+    /**
+     * @param config configuration
+     * @param defaultFolder the folder to use if not configured
+     */
+    public static RenditionCacheOptions from(Configuration config, File defaultFolder) {
+        RenditionCacheOptions options = new RenditionCacheOptions();
+        String folder = config.getString(PROP_FOLDER);
+        options.setFolder(folder == null || folder.isEmpty() ? defaultFolder : new File(folder));
+
+        // in MB
+        long diskSize = config.getLong(PROP_DISK_SIZE, options.getDiskSize() / 1024 / 1024);
+        if (diskSize < 0) {
+            throw new ConversionException(PROP_DISK_SIZE + " expects non-negative integer!");
+        }
+        options.setDiskSize(diskSize * 1024 * 1024);
+
+        // in MB
+        long memorySize = config.getLong(PROP_MEMORY_SIZE, options.getMemorySize() / 1024 / 1024);
+        if (memorySize < 0) {
+            throw new ConversionException(PROP_MEMORY_SIZE + " expects non-negative integer!");
+        }
+        options.setMemorySize(memorySize * 1024 * 1024);
+
+        // in kB
+        int memoryEntrySize = config.getInt(PROP_MEMORY_ENTRY_SIZE, options.getMemoryEntrySize() / 1024);
+        if (memoryEntrySize < 0) {
+            throw new ConversionException(PROP_MEMORY_ENTRY_SIZE + " expects non-negative integer!");
+        }
+        options.setMemoryEntrySize(memoryEntrySize * 1024);
+
+        int maxAge = config.getInt(PROP_MAX_AGE, options.getMaxAge());
+        if (maxAge < 0) {
+            throw new ConversionException(PROP_MAX_AGE + " expects non-negative integer!");
+        }
+        options.setMaxAge(maxAge);
+        return options;
+    }
+
+    public File getFolder() {
+        return folder;
+    }
+
+    public RenditionCacheOptions setFolder(File folder) {
+        this.folder = folder;
+        return this;
+    }
+
+    public long getDiskSize() {
+        return diskSize;
+    }
+
+    public RenditionCacheOptions setDiskSize(long diskSize) {
+        this.diskSize = diskSize;
+        return this;
+    }
+
+    public long getMemorySize() {
+        return memorySize;
+    }
+
+    public RenditionCacheOptions setMemorySize(long memorySize) {
+        this.memorySize = memorySize;
+        return this;
+    }
+
+    public int getMemoryEntrySize() {
+        return memoryEntrySize;
+    }
+
+    public RenditionCacheOptions setMemoryEntrySize(int memoryEntrySize) {
+        this.memoryEntrySize = memoryEntrySize;
+        return this;
+    }
+
+    public int getMaxAge() {
+        return maxAge;
+    }
+
+    public RenditionCacheOptions setMaxAge(int maxAge) {
+        this.maxAge = maxAge;
+        return this;
+    }
+
+}
@@ -0,0 +1,209 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The cache of search results shared by crawlers of digital object hierarchies.
+ * It holds descriptors of active objects, parents and members. Entries expire
+ * after the configured time and the least recently used entries are evicted
+ * once the size limit is reached. Writes of the storage invalidate entries
+ * of modified objects.
+ *
+ * @author Jan Pokorsky
+ */
+public final class SearchCache {
+
+    private static SearchCache INSTANCE;
+
+    /** The parent value of root objects. */
+    private static final String ROOT = "";
+
+    private final long ttl;
+    /** pid -> descriptor */
+    private final LruMap<Item> items;
+    /** pid -> parent pid */
+    private final LruMap<String> parents;
+    /** pid -> member pids */
+    private final LruMap<List<String>> members;
+
+    /**
+     * Gets the shared cache.
+     * @return the cache or {@code null} if no cache is configured
+     */
+    public static synchronized SearchCache getDefault() {
+        return INSTANCE;
+    }
+
+    public static synchronized void setDefault(SearchCache cache) {
+        INSTANCE = cache;
+    }
+
+    public SearchCache(SearchCacheOptions options) {
+        int maxSize = options.getSize();
+        this.ttl = options.getTtl() * 1000L;
+        this.items = new LruMap<Item>(maxSize);
+        this.parents = new LruMap<String>(maxSize);
+        this.members = new LruMap<List<String>>(maxSize);
+    }
+
+    /**
+     * Gets a copy of the cached descriptor.
+     * @return the descriptor or {@code null}
+     */
+    public synchronized Item getItem(String pid) {
+        Item item = get(items, pid);
+        return item == null ? null : copy(item);
+    }
+
+    public synchronized void putItem(Item item) {
+        put(items, item.getPid(), copy(item));
+    }
+
+    /**
+     * Gets the cached parent.
+     * @return the parent PID, an empty string in case of the root
+     *          or {@code null} if not cached
+     */
+    public synchronized String getParent(String pid) {
+        return get(parents, pid);
+    }
+
+    /**
+     * @param parentPid the parent PID or {@code null} in case of the root
+     */
+    public synchronized void putParent(String pid, String parentPid) {
+        put(parents, pid, parentPid == null ? ROOT : parentPid);
+    }
+
+    /**
+     * Gets cached PIDs of members.
+     * @return the unmodifiable list or {@code null}
+     */
+    public synchronized List<String> getMembers(String pid) {
+        return get(members, pid);
+    }
+
+    public synchronized void putMembers(String pid, List<String> memberPids) {
+        put(members, pid, Collections.unmodifiableList(new ArrayList<String>(memberPids)));
+    }
+
+    /**
+     * Removes entries of the modified object.
+     */
+    public void invalidate(String pid) {
+        invalidate(pid, Collections.<String>emptyList());
+    }
+
+    /**
+     * Removes entries of the modified object including parents of its new members.
+     */
+    public synchronized void invalidate(String pid, Collection<String> memberPids) {
+        items.remove(pid);
+        members.remove(pid);
+        parents.remove(pid);
+        // members removed from the object
+        for (Iterator<Entry<String>> it = parents.values().iterator(); it.hasNext();) {
+            if (pid.equals(it.next().value)) {
+                it.remove();
+            }
+        }
+        for (String memberPid : memberPids) {
+            parents.remove(memberPid);
+        }
+    }
+
+    public synchronized void clear() {
+        items.clear();
+        parents.clear();
+        members.clear();
+    }
+
+    public synchronized int getSize() {
+        return items.size();
+    }
+
+    private <V> V get(LruMap<V> map, String pid) {
+        Entry<V> entry = map.get(pid);
+        if (entry == null) {
+            return null;
+        } else if (entry.expires < System.currentTimeMillis()) {
+            map.remove(pid);
+            return null;
+        }
+        return entry.value;
+    }
+
+    private <V> void put(LruMap<V> map, String pid, V value) {
+        map.put(pid, new Entry<V>(value, System.currentTimeMillis() + ttl));
+    }
+
+    private static Item copy(Item item) {
+        Item copy = new Item(item.getPid());
+        copy.setModel(item.getModel());
+        copy.setLabel(item.getLabel());
+        copy.setOwner(item.getOwner());
+        copy.setState(item.getState());
+        copy.setCreated(item.getCreated());
+        copy.setModified(item.getModified());
+        copy.setParentPid(item.getParentPid());
+        copy.setBatchId(item.getBatchId());
+        copy.setK0(item.getK0());
+        return copy;
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expires;
+
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+
+    }
+
+    /**
+     * Entries in the LRU order.
+     */
+    private static final class LruMap<V> extends LinkedHashMap<String, Entry<V>> {
+
+        private static final long serialVersionUID = 1L;
+        private final int maxSize;
+
+        LruMap(int maxSize) {
+            super(16, 0.75f, true);
+            this.maxSize = maxSize;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry<V>> eldest) {
+            return size() > maxSize;
+        }
+
+    }
+
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+
+/**
+ * Settings of the {@link SearchCache}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class SearchCacheOptions {
+
+    static final String PROP_SIZE = "fedora.searchCache.size";
+    static final String PROP_TTL = "fedora.searchCache.ttl";
+
+    /** The max number of cached descriptors; 0 disables the cache. */
+    private int size = 10000;
+    /** The number of seconds a cached entry is valid. */
+    private int ttl = 60;
+
+    public static SearchCacheOptions from(Configuration config) {
+        SearchCacheOptions options = new SearchCacheOptions();
+        int size = config.getInt(PROP_SIZE, options.getSize());
+        if (size < 0) {
+            throw new ConversionException(PROP_SIZE + " expects non-negative integer!");
+        }
+        options.setSize(size);
+
+        int ttl = config.getInt(PROP_TTL, options.getTtl());
+        if (ttl < 1) {
+            throw new ConversionException(PROP_TTL + " expects positive integer!");
+        }
+        options.setTtl(ttl);
+        return options;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    public SearchCacheOptions setSize(int size) {
+        this.size = size;
+        return this;
+    }
+
+    public int getTtl() {
+        return ttl;
+    }
+
+    public SearchCacheOptions setTtl(int ttl) {
+        this.ttl = ttl;
+        return this;
+    }
+
+}
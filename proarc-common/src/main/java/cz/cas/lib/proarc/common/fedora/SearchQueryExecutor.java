@@ -0,0 +1,143 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs page queries of the {@link SearchView} concurrently and adapts
+ * the number of PIDs per page to the measured query latency.
+ * The thread count bounds the number of connections used
+ * for the resource index at once.
+ *
+ * @author Jan Pokorsky
+ */
+public final class SearchQueryExecutor {
+
+    private static final Logger LOG = Logger.getLogger(SearchQueryExecutor.class.getName());
+    private static SearchQueryExecutor INSTANCE;
+
+    /** The lower bound of the adaptive page size. */
+    static final int MIN_PAGE_SIZE = 10;
+
+    private final SearchViewOptions options;
+    private final ExecutorService executor;
+    private int pageSize;
+
+    /**
+     * Gets the shared executor.
+     * @return the executor or {@code null} if queries should run serially with default pages
+     */
+    public static synchronized SearchQueryExecutor getDefault() {
+        return INSTANCE;
+    }
+
+    public static synchronized void setDefault(SearchQueryExecutor executor) {
+        INSTANCE = executor;
+    }
+
+    public SearchQueryExecutor(SearchViewOptions options) {
+        this.options = options;
+        this.pageSize = options.getPageSize();
+        this.executor = options.getThreadCount() > 1
+                ? Executors.newFixedThreadPool(options.getThreadCount(), new SearchThreadFactory())
+                : null;
+    }
+
+    /**
+     * Gets the current number of PIDs per query.
+     */
+    public synchronized int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * Adapts the page size to the duration of a full page query. The size
+     * grows if the page takes less than half of the target latency and
+     * shrinks by half if it exceeds the target latency. The last pages
+     * of a query are shorter and do not say much about the page size.
+     * Pages planned with a size that has been adapted meanwhile, e.g. by
+     * other pages of the same query, are ignored.
+     *
+     * @param plannedSize the page size the query was split with
+     * @param pidCount the number of PIDs of the query
+     * @param millis the query duration
+     */
+    public synchronized void update(int plannedSize, int pidCount, long millis) {
+        if (plannedSize != pageSize || pidCount < plannedSize) {
+            return ;
+        }
+        int oldSize = pageSize;
+        long targetLatency = options.getTargetLatency();
+        if (millis > targetLatency) {
+            pageSize = Math.max(Math.min(MIN_PAGE_SIZE, options.getPageSize()), pageSize / 2);
+        } else if (millis < targetLatency / 2) {
+            pageSize = Math.min(options.getMaxPageSize(), pageSize + Math.max(1, pageSize / 2));
+        }
+        if (oldSize != pageSize && LOG.isLoggable(Level.FINE)) {
+            LOG.fine("page size: " + oldSize + " -> " + pageSize + ", pids: " + pidCount + ", " + millis + "ms");
+        }
+    }
+
+    /**
+     * Runs tasks concurrently.
+     * @return futures in the order of tasks
+     */
+    public <T> List<Future<T>> submit(List<? extends Callable<T>> tasks) {
+        List<Future<T>> futures = new ArrayList<Future<T>>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(executor.submit(task));
+        }
+        return futures;
+    }
+
+    /**
+     * Can it run tasks concurrently?
+     */
+    public boolean isConcurrent() {
+        return executor != null;
+    }
+
+    public void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    private static final class SearchThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger counter = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "proarc-search-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+
+    }
+
+}
@@ -19,9 +19,10 @@ package cz.cas.lib.proarc.common.fedora;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.yourmediashelf.fedora.client.FedoraClient;
 import com.yourmediashelf.fedora.client.FedoraClientException;
+import com.yourmediashelf.fedora.client.request.FindObjects;
 import com.yourmediashelf.fedora.client.request.RiSearch;
 import com.yourmediashelf.fedora.client.response.FindObjectsResponse;
-import com.yourmediashelf.fedora.client.response.RiSearchResponse;
+import cz.cas.lib.proarc.common.dao.IndexedObject;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import cz.cas.lib.proarc.common.fedora.relation.RelationResource;
@@ -31,6 +32,8 @@ import cz.cas.lib.proarc.common.object.model.MetaModel;
 import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
 import java.io.IOException;
 import java.io.InputStream;
+import java.sql.Timestamp;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -39,18 +42,22 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Scanner;
+import java.util.TimeZone;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
  * Implements search queries with ITQL.
  *
- * <p>It will require an interface to implement an alternative search that
- * does not support ITQL.
+ * <p>Hierarchy and listing queries use the {@link ObjectIndex} instead
+ * as long as it is synchronized with Fedora.
  *
  * @author Jan Pokorsky
  */
-public final class SearchView {
+public class SearchView {
 
     private static final Logger LOG = Logger.getLogger(SearchView.class.getName());
 
@@ -61,6 +68,11 @@ public final class SearchView {
     private static final String QUERY_FIND_PIDS = readQuery("findPids.itql");
     private static final String QUERY_FIND_REFERRERS = readQuery("findReferrers.itql");
     private static final String QUERY_FIND_DEVICE_REFERRERS = readQuery("findDeviceReferrers.itql");
+    private static final String QUERY_FIND_MODIFIED = readQuery("findModified.itql");
+
+    /** The number of PIDs per query unless the {@link SearchQueryExecutor} is configured. */
+    private static final int DEFAULT_PAGE_SIZE = 100;
+    private static final QueryStatistics STATISTICS = new QueryStatistics();
 
     private final FedoraClient fedora;
     private final int maxLimit;
@@ -78,6 +90,13 @@ public final class SearchView {
         this.maxLimit = maxLimit;
     }
 
+    /**
+     * Gets latency histograms of queries run by all search views.
+     */
+    public static QueryStatistics getStatistics() {
+        return STATISTICS;
+    }
+
     public void setLocale(Locale locale) {
         if (locale == null) {
             throw new NullPointerException("locale");
@@ -123,10 +142,10 @@ public final class SearchView {
         buildQuery(query, "creator", q.getCreator());
         final String queryString = query.toString().trim();
         LOG.fine(queryString);
-        FindObjectsResponse response = FedoraClient.findObjects().query(queryString).resultFormat("xml")
+        FindObjectsResponse response = execute("findObjects.query", FedoraClient.findObjects()
+                .query(queryString).resultFormat("xml")
                 .pid()
-                .maxResults(objectsLimit)
-                .execute(fedora);
+                .maxResults(objectsLimit));
         List<String> pids = response.getPids();
         if (LOG.isLoggable(Level.FINE)) {
             LOG.fine("pids count: " + pids.size() + ", token: " + response.getToken() + ", pids: " + pids.toString());
@@ -140,9 +159,9 @@ public final class SearchView {
             if (token == null || result.size() + objectsLimit > maxLimit) {
                 break;
             }
-            response = FedoraClient.findObjects().query(queryString).resultFormat("xml").pid()
-                    .maxResults(objectsLimit).sessionToken(token)
-                    .execute(fedora);
+            response = execute("findObjects.query", FedoraClient.findObjects()
+                    .query(queryString).resultFormat("xml").pid()
+                    .maxResults(objectsLimit).sessionToken(token));
             pids = response.getPids();
             if (LOG.isLoggable(Level.FINE)) {
                 LOG.fine("resumed: pids count: " + pids.size() + ", token: " + response.getToken() + ", pids: " + pids.toString());
@@ -163,10 +182,10 @@ public final class SearchView {
     public List<Item> findPhrase(String phrase) throws FedoraClientException, IOException {
         final int objectsLimit = 80;
         phrase = normalizePhrase(phrase);
-        FindObjectsResponse response = FedoraClient.findObjects().terms(phrase).resultFormat("xml")
+        FindObjectsResponse response = execute("findObjects.phrase", FedoraClient.findObjects()
+                .terms(phrase).resultFormat("xml")
                 .pid()
-                .maxResults(objectsLimit)
-                .execute(fedora);
+                .maxResults(objectsLimit));
         List<String> pids = response.getPids();
         if (LOG.isLoggable(Level.FINE)) {
             LOG.fine("pids count: " + pids.size() + ", token: " + response.getToken() + ", pids: " + pids.toString());
@@ -179,9 +198,9 @@ public final class SearchView {
             if (token == null || result.size() + objectsLimit > maxLimit) {
                 break;
             }
-            response = FedoraClient.findObjects().terms(phrase).resultFormat("xml").pid()
-                    .maxResults(objectsLimit).sessionToken(token)
-                    .execute(fedora);
+            response = execute("findObjects.phrase", FedoraClient.findObjects()
+                    .terms(phrase).resultFormat("xml").pid()
+                    .maxResults(objectsLimit).sessionToken(token));
             pids = response.getPids();
             if (LOG.isLoggable(Level.FINE)) {
                 LOG.fine("resumed: pids count: " + pids.size() + ", token: " + response.getToken() + ", pids: " + pids.toString());
@@ -249,25 +268,79 @@ public final class SearchView {
      * @throws FedoraClientException
      * @throws IOException
      */
-    public List<Item> find(List<String> pids, boolean onlyActive) throws FedoraClientException, IOException {
+    public List<Item> find(List<String> pids, final boolean onlyActive) throws FedoraClientException, IOException {
         // issue 85: reasonable count of PIDs per query to prevent StackOverflowError.
         // Greater query page sizes (>1000, <2000) are acceptable but Mulgara responses are really slow.
         // It does not make sence to add paging to API as load on demand of SmartGWT Tree
         // does not support paging and it is not expected to have monograph or
         // issue page counts grater than 10000.
-        final int queryPageSize = 100;
+        final SearchQueryExecutor executor = SearchQueryExecutor.getDefault();
+        final int queryPageSize = executor == null ? DEFAULT_PAGE_SIZE : executor.getPageSize();
         final int size = pids.size();
-        ArrayList<Item> result = new ArrayList<Item>(size);
+        List<List<String>> pages = new ArrayList<List<String>>();
         for (int startOffset = 0; startOffset < size; ) {
             int endOffset = Math.min(size, startOffset + queryPageSize);
-            List<String> subList = pids.subList(startOffset, endOffset);
-            List<Item> members = findImpl(subList, onlyActive);
+            pages.add(pids.subList(startOffset, endOffset));
             startOffset = endOffset;
-            result.addAll(members);
+        }
+        ArrayList<Item> result = new ArrayList<Item>(size);
+        if (executor == null || !executor.isConcurrent() || pages.size() < 2) {
+            for (List<String> page : pages) {
+                result.addAll(findPage(executor, queryPageSize, page, onlyActive));
+            }
+            return result;
+        }
+        List<Callable<List<Item>>> tasks = new ArrayList<Callable<List<Item>>>(pages.size());
+        for (final List<String> page : pages) {
+            tasks.add(new Callable<List<Item>>() {
+
+                @Override
+                public List<Item> call() throws Exception {
+                    return findPage(executor, queryPageSize, page, onlyActive);
+                }
+            });
+        }
+        List<Future<List<Item>>> futures = executor.submit(tasks);
+        try {
+            // merge in the order of pages
+            for (Future<List<Item>> future : futures) {
+                result.addAll(future.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof FedoraClientException) {
+                throw (FedoraClientException) cause;
+            } else if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            for (Future<List<Item>> future : futures) {
+                future.cancel(true);
+            }
         }
         return result;
     }
 
+    private List<Item> findPage(SearchQueryExecutor executor, int pageSize,
+            List<String> pids, boolean onlyActive)
+            throws FedoraClientException, IOException {
+
+        long start = System.currentTimeMillis();
+        List<Item> items = findImpl(pids, onlyActive);
+        if (executor != null) {
+            executor.update(pageSize, pids.size(), System.currentTimeMillis() - start);
+        }
+        return items;
+    }
+
     List<Item> findImpl(List<String> pids, boolean onlyActive) throws FedoraClientException, IOException {
         if (pids.isEmpty()) {
             return Collections.emptyList();
@@ -291,7 +364,7 @@ public final class SearchView {
 
         LOG.fine(query);
         RiSearch search = buildSearch(query);
-        return consumeSearch(search.execute(fedora));
+        return consumeSearch(execute("findPids", search));
     }
 
     /**
@@ -306,6 +379,10 @@ public final class SearchView {
     public List<Item> findSortedChildren(String parentPid)
             throws FedoraClientException, IOException, DigitalObjectException {
         
+        ObjectIndex index = getObjectIndex();
+        if (index != null) {
+            return consumeIndex(index.findMembers(parentPid));
+        }
         RemoteObject parent = storage.find(parentPid);
         List<String> memberPids = new RelationEditor(parent).getMembers();
         List<Item> items = find(memberPids, true);
@@ -324,9 +401,13 @@ public final class SearchView {
     }
 
     public List<Item> findChildren(String pid) throws FedoraClientException, IOException {
+        ObjectIndex index = getObjectIndex();
+        if (index != null) {
+            return consumeIndex(index.findMembers(pid));
+        }
         String query = QUERY_FIND_MEMBERS.replace("${parent}", RelationResource.fromPid(pid).getResource());
         RiSearch search = buildSearch(query);
-        return consumeSearch(search.execute(fedora));
+        return consumeSearch(execute("findMembers", search));
     }
 
     /**
@@ -338,7 +419,7 @@ public final class SearchView {
     public List<Item> findChildrenHierarchy(String pid) throws FedoraClientException, IOException {
         String query = QUERY_FIND_MEMBER_HIERARCHY.replace("${ROOT}", RelationResource.fromPid(pid).getResource());
         RiSearch search = buildSearch(query);
-        return consumeSearch(search.execute(fedora));
+        return consumeSearch(execute("findMemberHierarchy", search));
     }
 
     public List<Item> findLastCreated(int offset, String model, String user) throws FedoraClientException, IOException {
@@ -354,6 +435,21 @@ public final class SearchView {
     }
 
     private List<Item> findLast(int offset, String model, String user, int limit, String orderBy) throws FedoraClientException, IOException {
+        ObjectIndex index = getObjectIndex();
+        if (index != null && user == null) {
+            // the index does not hold group owners
+            Collection<String> models;
+            if (model != null && !model.isEmpty()) {
+                models = Collections.singletonList(model);
+            } else {
+                models = new ArrayList<String>();
+                for (MetaModel metaModel : MetaModelRepository.getInstance().find()) {
+                    models.add(metaModel.getPid());
+                }
+            }
+            return consumeIndex(index.findLast(models, "$modified desc".equals(orderBy),
+                    offset, limit > 0 ? Math.min(limit, maxLimit) : Integer.MAX_VALUE));
+        }
         String modelFilter = "";
         String ownerFilter = "";
         if (model != null && !model.isEmpty()) {
@@ -374,13 +470,17 @@ public final class SearchView {
             limit = Math.min(limit, maxLimit);
             search.limit(limit);
         }
-        return consumeSearch(search.execute(fedora));
+        return consumeSearch(execute("lastCreated", search));
     }
 
     public List<Item> findReferrers(String pid) throws IOException, FedoraClientException {
+        ObjectIndex index = getObjectIndex();
+        if (index != null) {
+            return consumeIndex(index.findReferrers(pid));
+        }
         String query = QUERY_FIND_REFERRERS.replace("${PID}", pid);
         RiSearch search = buildSearch(query);
-        return consumeSearch(search.execute(fedora));
+        return consumeSearch(execute("findReferrers", search));
     }
 
     /**
@@ -391,10 +491,14 @@ public final class SearchView {
      * @throws FedoraClientException
      */
     public List<Item> findByModel(String modelId) throws IOException, FedoraClientException {
+        ObjectIndex index = getObjectIndex();
+        if (index != null) {
+            return consumeIndex(index.findByModel(modelId, 1000));
+        }
         String query = QUERY_FIND_BY_MODEL.replace("${metaModelPid}", modelId);
         RiSearch search = buildSearch(query);
         search.limit(1000);
-        return consumeSearch(search.execute(fedora));
+        return consumeSearch(execute("findByModel", search));
     }
 
     /**
@@ -405,26 +509,124 @@ public final class SearchView {
      * @throws FedoraClientException
      */
     public boolean isDeviceInUse(String deviceId) throws IOException, FedoraClientException {
+        ObjectIndex index = getObjectIndex();
+        if (index != null) {
+            return index.isDeviceInUse(deviceId);
+        }
         String query = QUERY_FIND_DEVICE_REFERRERS.replace("${devicePid}", deviceId);
         RiSearch search = buildSearch(query);
         search.limit(1);
         search.stream(true);
-        List<Item> result = consumeSearch(search.execute(fedora));
+        List<Item> result = consumeSearch(execute("findDeviceReferrers", search));
         return !result.isEmpty();
     }
 
-    private List<Item> consumeSearch(RiSearchResponse response) throws IOException {
-        String json = response.getEntity(String.class);
+    /**
+     * Lists PIDs and modification dates of ProArc objects and devices
+     * in any state. It reads the resource index.
+     */
+    List<Item> findModified(int offset, int limit) throws FedoraClientException, IOException {
+        String query = QUERY_FIND_MODIFIED.replace("${OFFSET}", String.valueOf(offset));
+        RiSearch search = buildSearch(query);
+        search.limit(limit);
+        String json = execute("findModified", search);
+        List<Item> items = readResponse(json).results;
+        for (Item item : items) {
+            replaceUriWithPid(item);
+        }
+        return items;
+    }
+
+    /**
+     * Gets the object index if it is synchronized with Fedora including
+     * all writes made so far. Otherwise the resource index answers.
+     */
+    private ObjectIndex getObjectIndex() {
+        ObjectIndex index = storage.getObjectIndex();
+        return index != null && index.isCurrent() ? index : null;
+    }
+
+    private List<Item> consumeIndex(List<IndexedObject> objects) {
+        ArrayList<Item> items = new ArrayList<Item>(objects.size());
+        for (IndexedObject object : objects) {
+            Item item = new Item(object.getPid());
+            item.setModel(object.getModel());
+            item.setLabel(object.getLabel());
+            item.setOwner(object.getOwner());
+            item.setState(toRiState(object.getState()));
+            item.setCreated(formatDate(object.getCreated()));
+            item.setModified(formatDate(object.getModified()));
+            item.setK0(Boolean.TRUE.equals(object.getHasExport()) ? "1" : "0");
+            resolveObjectLabel(item);
+            items.add(item);
+        }
+        return items;
+    }
+
+    /**
+     * Converts the state code of the object profile to the form of the resource index.
+     */
+    private static String toRiState(String state) {
+        if ("A".equals(state)) {
+            return "fedora-system:def/model#Active";
+        } else if ("I".equals(state)) {
+            return "fedora-system:def/model#Inactive";
+        } else if ("D".equals(state)) {
+            return "fedora-system:def/model#Deleted";
+        }
+        return state;
+    }
+
+    private static String formatDate(Timestamp date) {
+        if (date == null) {
+            return null;
+        }
+        // the resource index format
+        SimpleDateFormat format = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return format.format(date);
+    }
+
+    private List<Item> consumeSearch(String json) throws IOException {
         Result result = readResponse(json);
         return consumeSearch(result.results);
     }
 
     Result readResponse(String json) throws IOException {
+        return getMapper().readValue(json, Result.class);
+    }
+
+    private synchronized ObjectMapper getMapper() {
         if (mapper == null) {
             // requires mapper without mix in annotation of Item
             mapper = JsonUtils.createObjectMapper();
         }
-        return  mapper.readValue(json, Result.class);
+        return mapper;
+    }
+
+    /**
+     * Runs the resource index query and records its latency.
+     * @return the JSON response
+     */
+    private String execute(String name, RiSearch search) throws FedoraClientException {
+        long start = System.currentTimeMillis();
+        try {
+            return search.execute(fedora).getEntity(String.class);
+        } finally {
+            STATISTICS.record(name, System.currentTimeMillis() - start);
+        }
+    }
+
+    /**
+     * Runs the basic search query and records its latency.
+     */
+    private FindObjectsResponse execute(String name, FindObjects search) throws FedoraClientException {
+        long start = System.currentTimeMillis();
+        try {
+            return search.execute(fedora);
+        } finally {
+            STATISTICS.record(name, System.currentTimeMillis() - start);
+        }
     }
 
     private List<Item> consumeSearch(List<Item> items) {
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+
+/**
+ * Settings of resource index queries of the {@link SearchView}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class SearchViewOptions {
+
+    static final String PROP_THREAD_COUNT = "fedora.search.threadCount";
+    static final String PROP_PAGE_SIZE = "fedora.search.pageSize";
+    static final String PROP_MAX_PAGE_SIZE = "fedora.search.maxPageSize";
+    static final String PROP_TARGET_LATENCY = "fedora.search.targetLatency";
+
+    /** issue 85: greater pages make Mulgara slow or fail with StackOverflowError. */
+    static final int PAGE_SIZE_LIMIT = 1000;
+
+    /** The max number of concurrent page queries; 1 runs pages one after another. */
+    private int threadCount = 4;
+    /** The initial number of PIDs per query. */
+    private int pageSize = 100;
+    /** The upper bound of the adaptive page size. */
+    private int maxPageSize = 400;
+    /** The query duration in milliseconds the page size is adapted to. */
+    private int targetLatency = 1000;
+
+    public static SearchViewOptions from(Configuration config) {
+        SearchViewOptions options = new SearchViewOptions();
+        int threadCount = config.getInt(PROP_THREAD_COUNT, options.getThreadCount());
+        if (threadCount < 1) {
+            throw new ConversionException(PROP_THREAD_COUNT + " expects positive integer!");
+        }
+        options.setThreadCount(threadCount);
+
+        int maxPageSize = config.getInt(PROP_MAX_PAGE_SIZE, options.getMaxPageSize());
+        if (maxPageSize < 1 || maxPageSize > PAGE_SIZE_LIMIT) {
+            throw new ConversionException(PROP_MAX_PAGE_SIZE + " expects integer in range 1-" + PAGE_SIZE_LIMIT + "!");
+        }
+        options.setMaxPageSize(maxPageSize);
+
+        int pageSize = config.getInt(PROP_PAGE_SIZE, Math.min(options.getPageSize(), maxPageSize));
+        if (pageSize < 1 || pageSize > maxPageSize) {
+            throw new ConversionException(PROP_PAGE_SIZE + " expects integer in range 1-" + maxPageSize + "!");
+        }
+        options.setPageSize(pageSize);
+
+        int targetLatency = config.getInt(PROP_TARGET_LATENCY, options.getTargetLatency());
+        if (targetLatency < 1) {
+            throw new ConversionException(PROP_TARGET_LATENCY + " expects positive integer!");
+        }
+        options.setTargetLatency(targetLatency);
+        return options;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public SearchViewOptions setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public SearchViewOptions setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+        return this;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public SearchViewOptions setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+        return this;
+    }
+
+    public int getTargetLatency() {
+        return targetLatency;
+    }
+
+    public SearchViewOptions setTargetLatency(int targetLatency) {
+        this.targetLatency = targetLatency;
+        return this;
+    }
+
+}
@@ -21,6 +21,7 @@ import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.FedoraObject;
 import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
+import cz.cas.lib.proarc.common.fedora.SearchCache;
 import cz.cas.lib.proarc.common.fedora.XmlStreamEditor;
 import cz.cas.lib.proarc.common.fedora.XmlStreamEditor.EditorResult;
 import java.util.ArrayList;
@@ -233,6 +234,10 @@ public final class RelationEditor {
         EditorResult result = editor.createResult();
         Relations.marshal(result, relsExt, false);
         editor.write(result, timestamp, message);
+        SearchCache cache = SearchCache.getDefault();
+        if (cache != null && fobject instanceof RemoteObject) {
+            cache.invalidate(fobject.getPid(), getMembers());
+        }
     }
 
     private Rdf getRdf() throws DigitalObjectException {
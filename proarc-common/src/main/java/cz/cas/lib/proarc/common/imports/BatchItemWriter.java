@@ -0,0 +1,128 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.dao.BatchItemDao;
+import cz.cas.lib.proarc.common.dao.DaoFactory;
+import cz.cas.lib.proarc.common.dao.Transaction;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects writes of batch items and stores them in a single transaction
+ * once the number of pending items or the age of the oldest pending write
+ * exceeds the limit.
+ * <p>Items of a batch being loaded are not crucial for the resume
+ * as it removes them anyway. The batch state has to be written
+ * after the {@link #flush}.
+ *
+ * @author Jan Pokorsky
+ */
+final class BatchItemWriter {
+
+    private final DaoFactory daos;
+    private final int flushSize;
+    private final long flushDelay;
+    private final List<BatchItem> pendings = new ArrayList<BatchItem>();
+    private final Map<BatchItem, Boolean> pendingSet = new IdentityHashMap<BatchItem, Boolean>();
+    private long firstPendingTime;
+    private long lastTimestamp;
+    /** The number of transactions that would be committed without the writer. */
+    private long requestCount;
+    private long commitCount;
+
+    /**
+     * @param daos DAOs
+     * @param flushSize the max number of pending items
+     * @param flushDelay the max age of a pending write in milliseconds
+     */
+    BatchItemWriter(DaoFactory daos, int flushSize, long flushDelay) {
+        this.daos = daos;
+        this.flushSize = flushSize;
+        this.flushDelay = flushDelay;
+    }
+
+    /**
+     * Schedules items to write in a single transaction.
+     */
+    public synchronized void write(Collection<BatchItem> items) {
+        long now = System.currentTimeMillis();
+        if (pendings.isEmpty()) {
+            firstPendingTime = now;
+        }
+        for (BatchItem item : items) {
+            if (item.getId() == null && item.getTimestamp() == null) {
+                // keep the order of new items as the DAO sorts them by timestamps
+                lastTimestamp = Math.max(now, lastTimestamp + 1);
+                item.setTimestamp(new Timestamp(lastTimestamp));
+            }
+            if (pendingSet.put(item, Boolean.TRUE) == null) {
+                pendings.add(item);
+            }
+        }
+        requestCount++;
+        if (pendings.size() >= flushSize || now - firstPendingTime >= flushDelay) {
+            flush();
+        }
+    }
+
+    /**
+     * Stores pending items.
+     */
+    public synchronized void flush() {
+        if (pendings.isEmpty()) {
+            return ;
+        }
+        BatchItemDao bitemDao = daos.createBatchItem();
+        Transaction tx = daos.createTransaction();
+        bitemDao.setTransaction(tx);
+        try {
+            bitemDao.update(pendings);
+            tx.commit();
+            commitCount++;
+        } catch (Throwable ex) {
+            tx.rollback();
+            throw new IllegalStateException(String.valueOf(pendings), ex);
+        } finally {
+            tx.close();
+            // a failure stops the import; its resume removes items anyway
+            pendings.clear();
+            pendingSet.clear();
+        }
+    }
+
+    public synchronized long getRequestCount() {
+        return requestCount;
+    }
+
+    public synchronized long getCommitCount() {
+        return commitCount;
+    }
+
+    /**
+     * Gets the number of transactions saved so far.
+     */
+    public synchronized long getSavedCommitCount() {
+        return requestCount - commitCount - (pendings.isEmpty() ? 0 : 1);
+    }
+
+}
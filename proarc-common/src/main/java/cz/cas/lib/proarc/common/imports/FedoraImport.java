@@ -31,8 +31,16 @@ import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -44,16 +52,30 @@ import java.util.logging.Logger;
 public final class FedoraImport {
 
     private static final Logger LOG = Logger.getLogger(FedoraImport.class.getName());
+    /** The max number of item states written in a single transaction. */
+    static final int UPDATE_BATCH_SIZE = 20;
     private final RemoteStorage fedora;
     private final LocalStorage localStorage;
     private final ImportBatchManager ibm;
     private final SearchView search;
+    private final int threadCount;
 
     public FedoraImport(RemoteStorage fedora, ImportBatchManager ibm) {
+        this(fedora, ibm, 1);
+    }
+
+    /**
+     * @param threadCount the number of items ingested at once
+     */
+    public FedoraImport(RemoteStorage fedora, ImportBatchManager ibm, int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("threadCount: " + threadCount);
+        }
         this.fedora = fedora;
         this.search = fedora.getSearch();
         this.ibm = ibm;
         this.localStorage = new LocalStorage();
+        this.threadCount = threadCount;
     }
 
     public Batch importBatch(Batch batch, String importer, String message) throws DigitalObjectException {
@@ -87,24 +109,102 @@ public final class FedoraImport {
     }
 
     private boolean importItems(Batch batch, String importer, List<String> ingests, boolean repair)
-            throws DigitalObjectException {
+            throws DigitalObjectException, InterruptedException {
         List<BatchItemObject> batchItems = ibm.findBatchObjects(batch.getId(), null);
         if (batch.getParentPid() != null) {
             // in case of including items in a parent object it is neccessary to sort the ingests
             batchItems = sortItems(batch, batchItems);
         }
-        for (BatchItemObject item : batchItems) {
-            item = importItem(item, importer, repair);
-            if (item != null) {
-                if (ObjectState.INGESTING_FAILED == item.getState()) {
-                    batch.setLog(item.getLog());
-                    return true;
-                } else {
-                    ingests.add(item.getPid());
+        if (threadCount > 1) {
+            return importItems(batch, batchItems, importer, ingests, repair);
+        }
+        List<BatchItemObject> updates = new ArrayList<BatchItemObject>(UPDATE_BATCH_SIZE);
+        try {
+            for (BatchItemObject item : batchItems) {
+                item = ingestItem(item, importer, repair);
+                if (item != null) {
+                    addUpdate(updates, item);
+                    if (ObjectState.INGESTING_FAILED == item.getState()) {
+                        batch.setLog(item.getLog());
+                        return true;
+                    } else {
+                        ingests.add(item.getPid());
+                    }
                 }
             }
+            return false;
+        } finally {
+            ibm.update(updates);
+        }
+    }
+
+    /**
+     * Ingests items with a pool of connections. Results are processed
+     * in the order of items so that the members of the parent object
+     * are the same as in case of the serial ingest.
+     * <p>In case of a failure, no other item is submitted. Items in progress
+     * are completed and their states are stored. They are not added
+     * to the parent object, the repair ingest will link them.
+     */
+    private boolean importItems(Batch batch, List<BatchItemObject> batchItems,
+            String importer, List<String> ingests, boolean repair) throws InterruptedException {
+
+        ExecutorService workers = Executors.newFixedThreadPool(threadCount);
+        Deque<Future<BatchItemObject>> pendings = new ArrayDeque<Future<BatchItemObject>>();
+        int pendingLimit = 2 * threadCount;
+        List<BatchItemObject> updates = new ArrayList<BatchItemObject>(UPDATE_BATCH_SIZE);
+        boolean itemFailed = false;
+        try {
+            for (Iterator<BatchItemObject> it = batchItems.iterator(); it.hasNext() || !pendings.isEmpty();) {
+                while (!itemFailed && pendings.size() < pendingLimit && it.hasNext()) {
+                    pendings.add(workers.submit(new IngestTask(it.next(), importer, repair)));
+                }
+                if (pendings.isEmpty()) {
+                    break;
+                }
+                BatchItemObject item = getItem(pendings.poll());
+                if (item != null) {
+                    addUpdate(updates, item);
+                    if (itemFailed) {
+                        // completed after the failure; left for the repair
+                    } else if (ObjectState.INGESTING_FAILED == item.getState()) {
+                        batch.setLog(item.getLog());
+                        itemFailed = true;
+                    } else {
+                        ingests.add(item.getPid());
+                    }
+                }
+            }
+            return itemFailed;
+        } finally {
+            for (Future<BatchItemObject> pending : pendings) {
+                pending.cancel(true);
+            }
+            workers.shutdownNow();
+            ibm.update(updates);
+        }
+    }
+
+    private void addUpdate(List<BatchItemObject> updates, BatchItemObject item) {
+        updates.add(item);
+        if (updates.size() >= UPDATE_BATCH_SIZE) {
+            ibm.update(updates);
+            updates.clear();
+        }
+    }
+
+    private static BatchItemObject getItem(Future<BatchItemObject> item) throws InterruptedException {
+        try {
+            return item.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
         }
-        return false;
     }
 
     /**
@@ -141,6 +241,18 @@ public final class FedoraImport {
      *      was skipped
      */
     public BatchItemObject importItem(BatchItemObject item, String importer, boolean repair) {
+        item = ingestItem(item, importer, repair);
+        if (item != null) {
+            ibm.update(item);
+        }
+        return item;
+    }
+
+    /**
+     * Fedora ingest of an import item without storing its state.
+     * @see #importItem
+     */
+    BatchItemObject ingestItem(BatchItemObject item, String importer, boolean repair) {
         try {
             if (item.getState() == ObjectState.EXCLUDED) {
                 return null;
@@ -155,9 +267,6 @@ public final class FedoraImport {
             item.setState(ObjectState.INGESTING_FAILED);
             item.setLog(ImportBatchManager.toString(t));
         }
-        if (item != null) {
-            ibm.update(item);
-        }
         return item;
     }
 
@@ -171,6 +280,11 @@ public final class FedoraImport {
      */
     private BatchItemObject repairItemImpl(BatchItemObject item, String importer) throws DigitalObjectException, IOException, FedoraClientException {
         ObjectState state = item.getState();
+        if (state == ObjectState.LOADED && isIngested(item)) {
+            // ingested but the state was not stored
+            item.setState(ObjectState.INGESTED);
+            state = ObjectState.INGESTED;
+        }
         if (state == ObjectState.LOADED) {
             // ingest
             return importItemImpl(item, importer);
@@ -203,6 +317,19 @@ public final class FedoraImport {
         }
     }
 
+    /**
+     * Checks whether the item was ingested as a new object.
+     * Items updating existing remote objects are not considered.
+     */
+    private boolean isIngested(BatchItemObject item) throws DigitalObjectException, IOException, FedoraClientException {
+        File foxml = item.getFile();
+        if (foxml == null || !foxml.exists() || !foxml.canRead()) {
+            return false;
+        }
+        LocalObject lobj = localStorage.load(item.getPid(), foxml);
+        return !lobj.isRemoteCopy() && fedora.exist(item.getPid());
+    }
+
     /**
      * Fedora ingest of an import item.
      * @param item item to import
@@ -270,4 +397,26 @@ public final class FedoraImport {
         editor.getModel();
     }
 
+    /**
+     * Ingests an item in a worker thread.
+     */
+    private final class IngestTask implements Callable<BatchItemObject> {
+
+        private final BatchItemObject item;
+        private final String importer;
+        private final boolean repair;
+
+        public IngestTask(BatchItemObject item, String importer, boolean repair) {
+            this.item = item;
+            this.importer = importer;
+            this.repair = repair;
+        }
+
+        @Override
+        public BatchItemObject call() throws Exception {
+            return ingestItem(item, importer, repair);
+        }
+
+    }
+
 }
@@ -19,14 +19,26 @@ package cz.cas.lib.proarc.common.imports;
 import cz.cas.lib.proarc.common.dao.Batch;
 import cz.cas.lib.proarc.common.dao.BatchItem.FileState;
 import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
-import cz.cas.lib.proarc.common.export.mets.JhoveUtility;
+import cz.cas.lib.proarc.common.export.mets.JhoveContext;
+import cz.cas.lib.proarc.common.export.mets.JhovePool;
+import cz.cas.lib.proarc.common.export.mets.MetsExportException;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
 import cz.cas.lib.proarc.common.imports.ImportProcess.ImportOptions;
+import cz.cas.lib.proarc.common.imports.TiffImporter.ImportedPage;
 import static cz.cas.lib.proarc.common.imports.ImportProcess.getConsumers;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -78,34 +90,144 @@ public class FileSetImport implements ImportHandler {
         ImportFileScanner scanner = new ImportFileScanner();
         List<File> files = scanner.findDigitalContent(importFolder);
         List<FileSet> fileSets = ImportFileScanner.getFileSets(files);
-        importConfig.setJhoveContext(JhoveUtility.createContext());
-        try {
-            consumeFileSets(batch, fileSets, importConfig);
-        } finally {
-            importConfig.getJhoveContext().destroy();
-        }
+        consumeFileSets(batch, fileSets, importConfig);
     }
 
-    private void consumeFileSets(Batch batch, List<FileSet> fileSets, ImportOptions ctx) throws InterruptedException {
+    private void consumeFileSets(Batch batch, List<FileSet> fileSets, ImportOptions ctx)
+            throws InterruptedException, MetsExportException {
+
+        int threadCount = ctx.getConfig().getPageThreadCount();
+        if (threadCount > 1) {
+            consumeFileSets(batch, fileSets, ctx, threadCount);
+            return ;
+        }
         ImportBatchManager batchManager = ImportBatchManager.getInstance();
         long start = System.currentTimeMillis();
+        JhovePool jhovePool = JhovePool.getDefault();
         for (FileSet fileSet : fileSets) {
             if (Thread.interrupted()) {
                 throw new InterruptedException();
             }
-            BatchItemObject item = consumeFileSet(fileSet, ctx);
-            String pid = item == null ? null : item.getPid();
-            FileState state = item == null ? FileState.SKIPPED : FileState.OK;
-            batchManager.addFileItem(batch.getId(), pid, state, fileSet.getFiles());
-            if (item != null) {
-                if (ObjectState.LOADING_FAILED == item.getState()) {
-                    batch.setState(Batch.State.LOADING_FAILED);
-                    batch.setLog(item.getFile() + "\n" + item.getLog());
+            BatchItemObject item;
+            // borrow JHOVE per file set not to hold the shared context for the whole batch
+            ctx.setJhoveContext(jhovePool.acquire());
+            try {
+                item = consumeFileSet(fileSet, ctx);
+            } finally {
+                jhovePool.release(ctx.getJhoveContext());
+                ctx.setJhoveContext(null);
+            }
+            if (!addFileItem(batchManager, batch, fileSet, item)) {
+                return ;
+            }
+        }
+        LOG.log(Level.FINE, "Total time: {0} ms", System.currentTimeMillis() - start);
+    }
+
+    /**
+     * Processes file sets with a pool of workers. The calling thread commits
+     * processed pages in the order of file sets. Page indices and batch members
+     * are the same as in case of the serial import.
+     * <p>The number of file sets processed at once is bounded to hold
+     * a limited number of decoded scans in memory.
+     */
+    private void consumeFileSets(Batch batch, List<FileSet> fileSets, ImportOptions ctx, int threadCount)
+            throws InterruptedException {
+
+        ImportBatchManager batchManager = ImportBatchManager.getInstance();
+        long start = System.currentTimeMillis();
+        ExecutorService workers = Executors.newFixedThreadPool(threadCount);
+        // each worker borrows a JHOVE context for a file set
+        JhovePool jhovePool = JhovePool.getDefault();
+        Deque<PendingFileSet> pendings = new ArrayDeque<PendingFileSet>();
+        int pendingLimit = 2 * threadCount;
+        int pageIndex = ctx.getConsumedFileCounter();
+        try {
+            for (Iterator<FileSet> it = fileSets.iterator(); it.hasNext() || !pendings.isEmpty();) {
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+                while (pendings.size() < pendingLimit && it.hasNext()) {
+                    FileSet fileSet = it.next();
+                    TiffImporter consumer = findConsumer(fileSet);
+                    Future<ImportedPage> page = consumer == null
+                            ? null
+                            : workers.submit(new FileSetTask(consumer, fileSet, ctx, ++pageIndex, jhovePool));
+                    pendings.add(new PendingFileSet(fileSet, consumer, page));
+                }
+                PendingFileSet pending = pendings.poll();
+                BatchItemObject item = null;
+                if (pending.page != null) {
+                    item = pending.consumer.commit(getPage(pending.page), ctx);
+                    LOG.log(Level.FINE, "committed: {0}", pending.fileSet);
+                    ctx.setConsumedFileCounter(ctx.getConsumedFileCounter() + 1);
+                }
+                if (!addFileItem(batchManager, batch, pending.fileSet, item)) {
                     return ;
                 }
             }
+            LOG.log(Level.FINE, "Total time: {0} ms, threads: {1}",
+                    new Object[] {System.currentTimeMillis() - start, threadCount});
+        } finally {
+            for (PendingFileSet pending : pendings) {
+                if (pending.page != null) {
+                    pending.page.cancel(true);
+                }
+            }
+            workers.shutdownNow();
+            boolean terminated = false;
+            try {
+                terminated = workers.awaitTermination(5, TimeUnit.MINUTES);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (!terminated) {
+                LOG.log(Level.SEVERE, "Workers did not terminate: {0}", batch);
+            }
+        }
+    }
+
+    /**
+     * Adds file items of the consumed file set.
+     * @return {@code false} if the import of the file set failed and the batch should stop
+     */
+    private static boolean addFileItem(ImportBatchManager batchManager, Batch batch,
+            FileSet fileSet, BatchItemObject item) {
+
+        String pid = item == null ? null : item.getPid();
+        FileState state = item == null ? FileState.SKIPPED : FileState.OK;
+        batchManager.addFileItem(batch.getId(), pid, state, fileSet.getFiles());
+        if (item != null) {
+            if (ObjectState.LOADING_FAILED == item.getState()) {
+                batch.setState(Batch.State.LOADING_FAILED);
+                batch.setLog(item.getFile() + "\n" + item.getLog());
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static ImportedPage getPage(Future<ImportedPage> page) throws InterruptedException {
+        try {
+            return page.get();
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
         }
-        LOG.log(Level.FINE, "Total time: {0} ms", System.currentTimeMillis() - start);
+    }
+
+    private static TiffImporter findConsumer(FileSet fileSet) {
+        for (TiffImporter consumer : getConsumers()) {
+            if (consumer.accept(fileSet)) {
+                return consumer;
+            }
+        }
+        return null;
     }
 
     private BatchItemObject consumeFileSet(FileSet fileSet, ImportOptions ctx) {
@@ -141,4 +263,54 @@ public class FileSetImport implements ImportHandler {
         return false;
     }
 
+    private static final class PendingFileSet {
+
+        private final FileSet fileSet;
+        private final TiffImporter consumer;
+        /** {@code null} in case of skipped file set */
+        private final Future<ImportedPage> page;
+
+        public PendingFileSet(FileSet fileSet, TiffImporter consumer, Future<ImportedPage> page) {
+            this.fileSet = fileSet;
+            this.consumer = consumer;
+            this.page = page;
+        }
+
+    }
+
+    /**
+     * Processes a file set with a JHOVE context borrowed for the time of the task.
+     */
+    private static final class FileSetTask implements Callable<ImportedPage> {
+
+        private final TiffImporter consumer;
+        private final FileSet fileSet;
+        private final ImportOptions ctx;
+        private final int pageIndex;
+        private final JhovePool jhovePool;
+
+        public FileSetTask(TiffImporter consumer, FileSet fileSet, ImportOptions ctx,
+                int pageIndex, JhovePool jhovePool) {
+
+            this.consumer = consumer;
+            this.fileSet = fileSet;
+            this.ctx = ctx;
+            this.pageIndex = pageIndex;
+            this.jhovePool = jhovePool;
+        }
+
+        @Override
+        public ImportedPage call() throws Exception {
+            long start = System.currentTimeMillis();
+            JhoveContext jhoveContext = jhovePool.acquire();
+            try {
+                return consumer.process(fileSet, ctx, pageIndex, jhoveContext);
+            } finally {
+                jhovePool.release(jhoveContext);
+                LOG.log(Level.FINE, "time: {0} ms, {1}", new Object[] {System.currentTimeMillis() - start, fileSet});
+            }
+        }
+
+    }
+
 }
@@ -47,6 +47,10 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.xml.bind.JAXB;
 
@@ -63,6 +67,9 @@ public class ImportBatchManager {
 
     private AppConfiguration appConfig;
     private final DaoFactory daos;
+    /** batch ID to writer of its items */
+    private final ConcurrentMap<Integer, BatchItemWriter> itemWriters = new ConcurrentHashMap<Integer, BatchItemWriter>();
+    private final AtomicLong savedCommitCount = new AtomicLong();
 
     /** XXX replace with guice */
     public static void setInstance(AppConfiguration config, DaoFactory daos) {
@@ -118,6 +125,7 @@ public class ImportBatchManager {
      * @return list of objects in unspecified order.
      */
     public List<BatchItemObject> findBatchObjects(int batchId, String pid, BatchItem.ObjectState state) {
+        flushItems(batchId);
         BatchItemDao itemDao = daos.createBatchItem();
         Transaction tx = daos.createTransaction();
         itemDao.setTransaction(tx);
@@ -245,6 +253,7 @@ public class ImportBatchManager {
         batch.setTitle(title);
         batch.setUserId(user.getId());
         batch.setProfileId(options.getConfig().getProfileId());
+        batch.setPriority(options.getPriority());
         Batch updated = update(batch);
         updateFolderStatus(updated);
         return updated;
@@ -337,15 +346,20 @@ public class ImportBatchManager {
     public BatchItemObject addLocalObject(Batch batchDb, LocalObject local) {
         File foxml = local.getFoxml();
         BatchItemDao bitemDao = daos.createBatchItem();
+        BatchItem batchItem = bitemDao.create();
+        batchItem.setBatchId(batchDb.getId());
+        batchItem.setFile(relativizeBatchFile(foxml));
+        batchItem.setPid(local.getPid());
+        batchItem.setState(ObjectState.LOADING.name());
+        batchItem.setType(BatchItem.Type.OBJECT);
+        BatchItemWriter writer = itemWriters.get(batchDb.getId());
+        if (writer != null) {
+            writer.write(Collections.singletonList(batchItem));
+            return new BatchItemObject(batchItem, getBatchRoot());
+        }
         Transaction tx = daos.createTransaction();
         bitemDao.setTransaction(tx);
-        BatchItem batchItem = bitemDao.create();
         try {
-            batchItem.setBatchId(batchDb.getId());
-            batchItem.setFile(relativizeBatchFile(foxml));
-            batchItem.setPid(local.getPid());
-            batchItem.setState(ObjectState.LOADING.name());
-            batchItem.setType(BatchItem.Type.OBJECT);
             bitemDao.update(batchItem);
             tx.commit();
             return new BatchItemObject(batchItem, getBatchRoot());
@@ -378,6 +392,15 @@ public class ImportBatchManager {
 
     public void addFileItem(int batchId, String pid, FileState state, List<FileEntry> files) {
         BatchItemDao bitemDao = daos.createBatchItem();
+        BatchItemWriter writer = itemWriters.get(batchId);
+        if (writer != null) {
+            List<BatchItem> items = new ArrayList<BatchItem>(files.size());
+            for (FileEntry file : files) {
+                items.add(createFileItem(batchId, pid, state.name(), file.getFile().getName(), bitemDao));
+            }
+            writer.write(items);
+            return ;
+        }
         Transaction tx = daos.createTransaction();
         bitemDao.setTransaction(tx);
         String filename = null;
@@ -398,21 +421,74 @@ public class ImportBatchManager {
     }
 
     private BatchItem addFileItem(int batchId, String pid, String state, String file, BatchItemDao bitemDao) {
+        BatchItem bitem = createFileItem(batchId, pid, state, file, bitemDao);
+        bitemDao.update(bitem);
+        return bitem;
+    }
+
+    private static BatchItem createFileItem(int batchId, String pid, String state, String file, BatchItemDao bitemDao) {
         BatchItem bitem = bitemDao.create();
         bitem.setBatchId(batchId);
         bitem.setFile(file);
         bitem.setPid(pid);
         bitem.setState(state);
         bitem.setType(BatchItem.Type.FILE);
-        bitemDao.update(bitem);
         return bitem;
     }
 
+    /**
+     * Starts to collect item writes of the batch. They are stored in groups
+     * of {@link ImportProfile#getItemFlushSize() flushSize} items or when
+     * the {@link ImportProfile#getItemFlushDelay() flushDelay} expires.
+     * Reads of batch items store collected items first.
+     * <p>{@link #closeItemWriter} must follow.
+     */
+    public void openItemWriter(Batch batch, ImportProfile profile) {
+        int flushSize = profile.getItemFlushSize();
+        if (flushSize > 1) {
+            itemWriters.put(batch.getId(), new BatchItemWriter(daos, flushSize, profile.getItemFlushDelay()));
+        }
+    }
+
+    /**
+     * Stores collected item writes of the batch and stops collecting.
+     * It should be called before the batch state is updated.
+     */
+    public void closeItemWriter(Batch batch) {
+        BatchItemWriter writer = itemWriters.remove(batch.getId());
+        if (writer != null) {
+            writer.flush();
+            savedCommitCount.addAndGet(writer.getSavedCommitCount());
+            LOG.log(Level.FINE, "batch: {0}, item writes: {1}, commits: {2}",
+                    new Object[]{batch.getId(), writer.getRequestCount(), writer.getCommitCount()});
+        }
+    }
+
+    /**
+     * Gets the number of transactions saved by collecting item writes
+     * of closed writers.
+     */
+    public long getSavedCommitCount() {
+        return savedCommitCount.get();
+    }
+
+    private void flushItems(int batchId) {
+        BatchItemWriter writer = itemWriters.get(batchId);
+        if (writer != null) {
+            writer.flush();
+        }
+    }
+
     public void update(AbstractBatchItem item) {
         update(item.getItem());
     }
     
     public void update(BatchItem item) {
+        BatchItemWriter writer = itemWriters.get(item.getBatchId());
+        if (writer != null) {
+            writer.write(Collections.singletonList(item));
+            return ;
+        }
         BatchItemDao bitemDao = daos.createBatchItem();
         Transaction tx = daos.createTransaction();
         bitemDao.setTransaction(tx);
@@ -427,6 +503,29 @@ public class ImportBatchManager {
         }
     }
 
+    /**
+     * Updates items in a single transaction.
+     */
+    public void update(Collection<? extends AbstractBatchItem> items) {
+        if (items.isEmpty()) {
+            return ;
+        }
+        BatchItemDao bitemDao = daos.createBatchItem();
+        Transaction tx = daos.createTransaction();
+        bitemDao.setTransaction(tx);
+        try {
+            for (AbstractBatchItem item : items) {
+                bitemDao.update(item.getItem());
+            }
+            tx.commit();
+        } catch (Throwable ex) {
+            tx.rollback();
+            throw new IllegalStateException(String.valueOf(items), ex);
+        } finally {
+            tx.close();
+        }
+    }
+
     public boolean excludeBatchObject(Batch batch, String pid) {
         return excludeBatchObject(batch, pid == null ? null : Collections.singleton(pid));
     }
@@ -17,9 +17,14 @@
 package cz.cas.lib.proarc.common.imports;
 
 import java.lang.Thread.UncaughtExceptionHandler;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -28,27 +33,53 @@ import java.util.logging.Logger;
 /**
  * Dispatcher controls scheduling of {@link ImportProcess import processes}.
  *
- * For now it runs processes in single thread to preserve memory resources.
+ * <p>It runs up to {@link ImportDispatcherOptions#getThreadCount() threadCount}
+ * processes at once. Waiting processes are picked by priority, then the process
+ * of the user with the fewest running imports wins and finally the oldest one.
+ * A process is admitted only if its estimated memory fits
+ * the {@link ImportDispatcherOptions#getMemoryLimit() limit}. The default
+ * settings run processes in single thread to preserve memory resources.
  *
  * @author Jan Pokorsky
  */
 public final class ImportDispatcher {
 
+    public static final int PRIORITY_LOW = -1;
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_HIGH = 1;
+
     private static final Logger LOG = Logger.getLogger(ImportDispatcher.class.getName());
     private static ImportDispatcher INSTANCE = new ImportDispatcher();
 
     private ExecutorService pool;
     private final int threadCount;
+    private final int userThreadCount;
+    private final long memoryLimit;
+    /** Tasks waiting for admission. Guarded by {@code this}. */
+    private final List<ScheduledTask> queue = new ArrayList<ScheduledTask>();
+    /** The number of running tasks per owner. Guarded by {@code this}. */
+    private final Map<Object, Integer> runningPerOwner = new HashMap<Object, Integer>();
+    private int running;
+    private long memoryInUse;
+    private long sequence;
+    private boolean stopping;
 
     public ImportDispatcher() {
         this(1);
     }
 
     ImportDispatcher(int threadCount) {
+        this(new ImportDispatcherOptions().setThreadCount(threadCount));
+    }
+
+    public ImportDispatcher(ImportDispatcherOptions options) {
+        int threadCount = options.getThreadCount();
         if (threadCount < 1) {
             throw new IllegalArgumentException("threadCount: " + threadCount);
         }
         this.threadCount = threadCount;
+        this.userThreadCount = options.getUserThreadCount();
+        this.memoryLimit = options.getMemoryLimit();
     }
 
     public static ImportDispatcher getDefault() {
@@ -71,10 +102,15 @@ public final class ImportDispatcher {
         if (pool == null) {
             return ;
         }
-        pool.shutdown(); // Disable new tasks from being submitted
+        synchronized (this) {
+            // Disable new tasks from being submitted
+            stopping = true;
+            shutdownIfIdle();
+        }
         try {
             // Wait a while for existing tasks to terminate
             if (!pool.awaitTermination(timeout, unit)) {
+                cancelQueue();
                 pool.shutdownNow(); // Cancel currently executing tasks
                 // Wait a while for tasks to respond to being cancelled
                 if (!pool.awaitTermination(timeout, unit)) {
@@ -83,30 +119,225 @@ public final class ImportDispatcher {
             }
         } catch (InterruptedException ie) {
             // (Re-)Cancel if current thread also interrupted
+            cancelQueue();
             pool.shutdownNow();
             // Preserve interrupt status
             Thread.currentThread().interrupt();
         }
     }
 
+    /**
+     * Drops waiting tasks. They are resumed on the next start.
+     */
+    private synchronized void cancelQueue() {
+        for (ScheduledTask task : queue) {
+            task.future.cancel(false);
+        }
+        queue.clear();
+    }
+
+    /**
+     * Shuts down the pool when the dispatcher is stopping and
+     * there is no waiting task. The caller must hold the lock of {@code this}.
+     */
+    private void shutdownIfIdle() {
+        if (stopping && queue.isEmpty()) {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Schedules the import process with the priority of its batch.
+     * @param task the process
+     * @return the future of the process
+     */
     public Future<ImportProcess> addImport(ImportProcess task) {
-        return addTask(task);
+        return addImport(task, task.getImportConfig().getPriority());
+    }
+
+    /**
+     * Schedules the import process.
+     * @param task the process
+     * @param priority the priority, processes with higher values run first
+     * @return the future of the process
+     */
+    public Future<ImportProcess> addImport(ImportProcess task, int priority) {
+        return addTask(task, task.getImportConfig().getUsername(),
+                clampPriority(priority), task.estimateMemoryUsage());
+    }
+
+    /**
+     * Limits the priority to the supported range.
+     * @param priority any value
+     * @return the priority between {@link #PRIORITY_LOW} and {@link #PRIORITY_HIGH}
+     */
+    public static int clampPriority(int priority) {
+        return Math.max(PRIORITY_LOW, Math.min(PRIORITY_HIGH, priority));
     }
 
     <T extends Runnable> Future<T> addTask(T task) {
-        checkRunning();
-        return pool.submit(new ExceptionHandlingTask(task), task);
+        return addTask(task, null, PRIORITY_NORMAL, 0);
+    }
+
+    /**
+     * Enqueues the task and runs it as soon as it is admitted.
+     * @param task the task to run
+     * @param owner the owner to balance threads among users; {@code null} stands for no owner
+     * @param priority the task priority
+     * @param memory the estimated memory usage of the task in bytes
+     * @return the future of the task
+     */
+    <T extends Runnable> Future<T> addTask(T task, Object owner, int priority, long memory) {
+        FutureTask<T> future = new FutureTask<T>(new ExceptionHandlingTask(task), task);
+        synchronized (this) {
+            checkRunning();
+            queue.add(new ScheduledTask(future, owner, priority, memory, sequence++));
+            dispatch();
+        }
+        return future;
+    }
+
+    /**
+     * Gets the number of tasks waiting for admission.
+     */
+    public synchronized int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Gets the number of running tasks.
+     */
+    public synchronized int getRunningCount() {
+        return running;
     }
 
     private void checkRunning() {
         if (pool == null) {
             throw new IllegalStateException("needs init");
         }
-        if (pool.isShutdown()) {
+        if (stopping || pool.isShutdown()) {
             throw new IllegalStateException("needs restart");
         }
     }
 
+    /**
+     * Submits admitted tasks to free threads.
+     * The caller must hold the lock of {@code this}.
+     */
+    private void dispatch() {
+        while (running < threadCount && !pool.isShutdown()) {
+            ScheduledTask next = selectNext();
+            if (next == null) {
+                break;
+            }
+            queue.remove(next);
+            running++;
+            memoryInUse += next.memory;
+            if (next.owner != null) {
+                runningPerOwner.put(next.owner, getRunning(next.owner) + 1);
+            }
+            pool.execute(new DispatchedTask(next));
+        }
+    }
+
+    /**
+     * Finds the best admissible task.
+     * The caller must hold the lock of {@code this}.
+     */
+    private ScheduledTask selectNext() {
+        ScheduledTask best = null;
+        for (ScheduledTask task : queue) {
+            if (!isAdmissible(task)) {
+                continue;
+            }
+            if (best == null || compare(task, best) < 0) {
+                best = task;
+            }
+        }
+        return best;
+    }
+
+    private boolean isAdmissible(ScheduledTask task) {
+        if (userThreadCount > 0 && task.owner != null && getRunning(task.owner) >= userThreadCount) {
+            return false;
+        }
+        // a task exceeding the limit on its own runs when the dispatcher is idle
+        return running == 0 || task.memory <= memoryLimit - memoryInUse;
+    }
+
+    /**
+     * Orders tasks by priority, then by the number of running tasks
+     * of their owners and then by the order of arrival.
+     */
+    private int compare(ScheduledTask t1, ScheduledTask t2) {
+        if (t1.priority != t2.priority) {
+            return t1.priority > t2.priority ? -1 : 1;
+        }
+        int running1 = t1.owner == null ? 0 : getRunning(t1.owner);
+        int running2 = t2.owner == null ? 0 : getRunning(t2.owner);
+        if (running1 != running2) {
+            return running1 < running2 ? -1 : 1;
+        }
+        return t1.sequence < t2.sequence ? -1 : 1;
+    }
+
+    private int getRunning(Object owner) {
+        Integer count = runningPerOwner.get(owner);
+        return count == null ? 0 : count;
+    }
+
+    private synchronized void release(ScheduledTask task) {
+        running--;
+        memoryInUse -= task.memory;
+        if (task.owner != null) {
+            int count = getRunning(task.owner) - 1;
+            if (count > 0) {
+                runningPerOwner.put(task.owner, count);
+            } else {
+                runningPerOwner.remove(task.owner);
+            }
+        }
+        dispatch();
+        shutdownIfIdle();
+    }
+
+    private static final class ScheduledTask {
+
+        private final FutureTask<?> future;
+        private final Object owner;
+        private final int priority;
+        private final long memory;
+        private final long sequence;
+
+        public ScheduledTask(FutureTask<?> future, Object owner, int priority, long memory, long sequence) {
+            this.future = future;
+            this.owner = owner;
+            this.priority = priority;
+            this.memory = Math.max(0, memory);
+            this.sequence = sequence;
+        }
+
+    }
+
+    private final class DispatchedTask implements Runnable {
+
+        private final ScheduledTask task;
+
+        public DispatchedTask(ScheduledTask task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            try {
+                task.future.run();
+            } finally {
+                release(task);
+            }
+        }
+
+    }
+
     private static final class ExceptionHandlingTask implements Runnable {
 
         private final Runnable delegate;
@@ -0,0 +1,99 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+
+/**
+ * Settings of the {@link ImportDispatcher}.
+ *
+ * @author Jan Pokorsky
+ */
+public final class ImportDispatcherOptions {
+
+    static final String PROP_THREAD_COUNT = "import.dispatcher.threadCount";
+    static final String PROP_USER_THREAD_COUNT = "import.dispatcher.userThreadCount";
+    static final String PROP_MEMORY_LIMIT = "import.dispatcher.memoryLimit";
+
+    /** The number of import processes running at once. */
+    private int threadCount = 1;
+    /** The max number of running processes of a single user; 0 stands for no limit. */
+    private int userThreadCount = 0;
+    /** The memory in bytes that running processes may consume. */
+    private long memoryLimit = defaultMemoryLimit();
+
+    public static ImportDispatcherOptions from(Configuration config) {
+        ImportDispatcherOptions options = new ImportDispatcherOptions();
+        int threadCount = config.getInt(PROP_THREAD_COUNT, options.getThreadCount());
+        if (threadCount < 1) {
+            throw new ConversionException(PROP_THREAD_COUNT + " expects positive integer!");
+        }
+        options.setThreadCount(threadCount);
+
+        int userThreadCount = config.getInt(PROP_USER_THREAD_COUNT, options.getUserThreadCount());
+        if (userThreadCount < 0) {
+            throw new ConversionException(PROP_USER_THREAD_COUNT + " expects non-negative integer!");
+        }
+        options.setUserThreadCount(userThreadCount);
+
+        // in MB
+        long memoryLimit = config.getLong(PROP_MEMORY_LIMIT, 0);
+        if (memoryLimit < 0) {
+            throw new ConversionException(PROP_MEMORY_LIMIT + " expects non-negative integer!");
+        } else if (memoryLimit > 0) {
+            options.setMemoryLimit(memoryLimit * 1024 * 1024);
+        }
+        return options;
+    }
+
+    /**
+     * Gets half of the max heap size as the default limit.
+     */
+    static long defaultMemoryLimit() {
+        long maxMemory = Runtime.getRuntime().maxMemory();
+        return maxMemory == Long.MAX_VALUE ? Long.MAX_VALUE : maxMemory / 2;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public ImportDispatcherOptions setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    public int getUserThreadCount() {
+        return userThreadCount;
+    }
+
+    public ImportDispatcherOptions setUserThreadCount(int userThreadCount) {
+        this.userThreadCount = userThreadCount;
+        return this;
+    }
+
+    public long getMemoryLimit() {
+        return memoryLimit;
+    }
+
+    public ImportDispatcherOptions setMemoryLimit(long memoryLimit) {
+        this.memoryLimit = memoryLimit;
+        return this;
+    }
+
+}
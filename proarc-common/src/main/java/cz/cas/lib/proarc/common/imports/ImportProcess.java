@@ -47,6 +47,7 @@ public final class ImportProcess implements Runnable {
 
     private static final Logger LOG = Logger.getLogger(ImportProcess.class.getName());
     static final String TMP_DIR_NAME = "proarc_import";
+    private static final String TIFF_MIMETYPE = "image/tiff";
     private final ImportBatchManager batchManager;
     private static List<TiffImporter> consumerRegistery;
     private final ImportOptions importConfig;
@@ -67,8 +68,25 @@ public final class ImportProcess implements Runnable {
             ImportProfile profile
             ) throws IOException {
 
+        return prepare(importFolder, description, user, batchManager, device,
+                generateIndices, profile, ImportDispatcher.PRIORITY_NORMAL);
+    }
+
+    /**
+     * Prepares a new import process scheduled with the given priority.
+     * @param priority the priority stored with the batch; it is clamped
+     *          to the range of {@link ImportDispatcher} priorities
+     */
+    public static ImportProcess prepare(
+            File importFolder, String description,
+            UserProfile user, ImportBatchManager batchManager,
+            String device, boolean generateIndices,
+            ImportProfile profile, int priority
+            ) throws IOException {
+
         ImportOptions options = new ImportOptions(importFolder, device,
                 generateIndices, user, profile);
+        options.setPriority(priority);
         ImportProcess process = new ImportProcess(options, batchManager);
         process.prepare(description, user);
         return process;
@@ -93,8 +111,8 @@ public final class ImportProcess implements Runnable {
     }
 
     /**
-     * Read and submits scheduled processes from last session.
-     * This should be run when application starts.
+     * Read and submits scheduled processes from last session in the order
+     * they were scheduled. This should be run when application starts.
      */
     public static void resumeAll(ImportBatchManager ibm, ImportDispatcher dispatcher,
             AppConfiguration config) {
@@ -207,7 +225,13 @@ public final class ImportProcess implements Runnable {
             }
             File targetFolder = createTargetFolder(importFolder);
             importConfig.setTargetFolder(targetFolder);
-            importConfig.getImporter().start(importConfig);
+            batchManager.openItemWriter(batch, importConfig.getConfig());
+            try {
+                importConfig.getImporter().start(importConfig);
+            } finally {
+                // items must be stored before the batch state
+                batchManager.closeItemWriter(batch);
+            }
             if (batch.getState() == Batch.State.LOADING) {
                 batch.setState(Batch.State.LOADED);
             }
@@ -229,6 +253,29 @@ public final class ImportProcess implements Runnable {
         batchManager.resetBatch(batch);
     }
 
+    /**
+     * Estimates the heap consumed by the process. The import handles one scan
+     * at a time per {@link ImportProfile#getPageThreadCount() page thread}.
+     * A decoded scan takes width &times; height &times; sample size
+     * and scaled copies with JPEG encoders take about the same again.
+     *
+     * @return bytes or {@code 0} if there is no TIFF to import
+     */
+    long estimateMemoryUsage() {
+        long maxTiffSize = 0;
+        try {
+            List<File> files = new ImportFileScanner().findDigitalContent(importConfig.getImportFolder());
+            for (File file : files) {
+                if (TIFF_MIMETYPE.equals(findMimeType(file))) {
+                    maxTiffSize = Math.max(maxTiffSize, TiffRenditions.estimateDecodedSize(file));
+                }
+            }
+        } catch (Exception ex) {
+            LOG.log(Level.WARNING, String.valueOf(importConfig.getImportFolder()), ex);
+        }
+        return 2 * maxTiffSize * importConfig.getConfig().getPageThreadCount();
+    }
+
     public ImportOptions getImportConfig() {
         return importConfig;
     }
@@ -278,6 +325,14 @@ public final class ImportProcess implements Runnable {
         return consumerRegistery;
     }
 
+    /**
+     * Replaces registered consumers. It is intended for tests.
+     * @param consumers consumers or {@code null} to use defaults
+     */
+    static void setConsumers(List<TiffImporter> consumers) {
+        consumerRegistery = consumers;
+    }
+
     /**
      * Simplified version uses filename extension. For niftier alternatives see
      * http://www.rgagnon.com/javadetails/java-0487.html
@@ -303,6 +358,7 @@ public final class ImportProcess implements Runnable {
         private final ImportProfile profile;
         private JhoveContext jhoveContext;
         private ImportHandler importer;
+        private int priority = ImportDispatcher.PRIORITY_NORMAL;
 
         ImportOptions(File importFolder, String device,
                 boolean generateIndices, UserProfile username,
@@ -382,6 +438,14 @@ public final class ImportProcess implements Runnable {
             this.jhoveContext = jhoveContext;
         }
 
+        public int getPriority() {
+            return priority;
+        }
+
+        public void setPriority(int priority) {
+            this.priority = ImportDispatcher.clampPriority(priority);
+        }
+
         public static ImportOptions fromBatch(Batch batch, File importFolder,
                 UserProfile username, ImportProfile profile) {
 
@@ -389,6 +453,9 @@ public final class ImportProcess implements Runnable {
                     importFolder, batch.getDevice(),
                     batch.isGenerateIndices(), username, profile);
             options.setBatch(batch);
+            if (batch.getPriority() != null) {
+                options.setPriority(batch.getPriority());
+            }
             return options;
         }
 
@@ -38,11 +38,18 @@ public final class ImportProfile {
     public static final String PROFILES = "import.profiles";
 
     public static final String ALTO_SUFFIX = "import.alto.file.suffix";
+    public static final String FULL_MAX_HEIGHT = "import.image.full.maxHeight";
+    public static final String FULL_MAX_WIDTH = "import.image.full.maxWidth";
+    public static final String INGEST_THREAD_COUNT = "import.ingest.threadCount";
+    public static final String ITEM_FLUSH_DELAY = "import.batchItems.flushDelay";
+    public static final String ITEM_FLUSH_SIZE = "import.batchItems.flushSize";
+    public static final String JPEG_QUALITY = "import.image.jpeg.quality";
     public static final String MODEL_ID = "import.page.modelId";
     public static final String NDK_ARCHIVAL_PROCESSOR = "import.ndk_archival.processor";
     public static final String NDK_ARCHIVAL_SUFFIX = "import.ndk_archival.file.suffix";
     public static final String NDK_USER_PROCESSOR = "import.ndk_user.processor";
     public static final String NDK_USER_SUFFIX = "import.ndk_user.file.suffix";
+    public static final String PAGE_THREAD_COUNT = "import.page.threadCount";
     public static final String PLAIN_OCR_CHARSET = "import.text_ocr.file.charset";
     public static final String PLAIN_OCR_SUFFIX = "import.text_ocr.file.suffix";
     public static final String PREVIEW_JAVA_SCALING = "import.image.preview.java.scalingMethod";
@@ -84,6 +91,22 @@ public final class ImportProfile {
         return val;
     }
 
+    /**
+     * Gets the number of threads processing pages of a single batch.
+     */
+    public int getPageThreadCount() {
+        Integer val = getPositiveInteger(PAGE_THREAD_COUNT);
+        return val == null ? 1 : val;
+    }
+
+    /**
+     * Gets the number of parallel connections ingesting a single batch to Fedora.
+     */
+    public int getIngestThreadCount() {
+        Integer val = getPositiveInteger(INGEST_THREAD_COUNT);
+        return val == null ? 1 : val;
+    }
+
     public String getPlainOcrCharset() {
         String val = config.getString(PLAIN_OCR_CHARSET);
         return val == null || val.isEmpty() ? "UTF-8" : val;
@@ -119,6 +142,42 @@ public final class ImportProfile {
         return suffix.toLowerCase();
     }
 
+    public Integer getFullMaxHeight() {
+        return getPositiveInteger(FULL_MAX_HEIGHT);
+    }
+
+    public Integer getFullMaxWidth() {
+        return getPositiveInteger(FULL_MAX_WIDTH);
+    }
+
+    /**
+     * Gets the max number of batch items written in a single transaction
+     * during the import. {@code 1} stands for a transaction per write.
+     */
+    public int getItemFlushSize() {
+        Integer val = getPositiveInteger(ITEM_FLUSH_SIZE);
+        return val == null ? 50 : val;
+    }
+
+    /**
+     * Gets the max time in milliseconds to postpone writes of batch items.
+     */
+    public long getItemFlushDelay() {
+        Integer val = getPositiveInteger(ITEM_FLUSH_DELAY);
+        return val == null ? 5000 : val;
+    }
+
+    /**
+     * Gets the compression quality of JPEG renditions in range (0, 1].
+     */
+    public float getJpegQuality() {
+        float val = config.getFloat(JPEG_QUALITY, 1.0f);
+        if (val <= 0 || val > 1) {
+            throw new ConversionException(JPEG_QUALITY + " expects number in range (0, 1]!");
+        }
+        return val;
+    }
+
     public Integer getPreviewMaxHeight() {
         return getPositiveInteger(PREVIEW_MAX_HEIGHT);
     }
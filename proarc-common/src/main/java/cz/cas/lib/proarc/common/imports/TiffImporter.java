@@ -40,9 +40,6 @@ import cz.cas.lib.proarc.common.ocr.AltoDatastream;
 import cz.cas.lib.proarc.common.process.ExternalProcess;
 import cz.cas.lib.proarc.common.process.KakaduCompress;
 import cz.incad.imgsupport.ImageMimeType;
-import cz.incad.imgsupport.ImageSupport;
-import cz.incad.imgsupport.ImageSupport.ScalingMethod;
-import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -50,7 +47,6 @@ import java.net.URI;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.imageio.stream.FileImageOutputStream;
 import javax.ws.rs.core.MediaType;
 import org.apache.commons.configuration.Configuration;
 
@@ -81,6 +77,23 @@ public final class TiffImporter {
     }
 
     public BatchItemObject consume(FileSet fileSet, ImportOptions ctx) {
+        ImportedPage page = process(fileSet, ctx,
+                ctx.getConsumedFileCounter() + 1, ctx.getJhoveContext());
+        return page == null ? null : commit(page, ctx);
+    }
+
+    /**
+     * Creates the digital object of the file set in the target folder of the batch.
+     * It does not touch batch records or the batch root object. It is safe
+     * to process file sets of the same batch in parallel.
+     *
+     * @param fileSet file set to import
+     * @param ctx import options
+     * @param pageIndex the index of the page in the batch
+     * @param jhoveCtx the JHOVE context used exclusively by the calling thread
+     * @return the processed page or {@code null} if the file set is not acceptable
+     */
+    ImportedPage process(FileSet fileSet, ImportOptions ctx, int pageIndex, JhoveContext jhoveCtx) {
         FileEntry tiffEntry = findTiff(fileSet);
         // check tiff file
         if (tiffEntry == null) {
@@ -93,27 +106,52 @@ public final class TiffImporter {
 
         // creates FOXML and metadata
         LocalObject localObj = createObject(originalFilename, ctx);
-        BatchItemObject batchLocalObject = ibm.addLocalObject(ctx.getBatch(), localObj);
+        ImportedPage page = new ImportedPage(f, localObj);
         try {
             if (!InputUtils.isTiff(f)) {
                 throw new IllegalStateException("Not a TIFF content: " + f);
             }
             DigitalObjectHandler dobjHandler = DigitalObjectManager.getDefault().createHandler(localObj);
             createRelsExt(dobjHandler, f, ctx);
-            createMetadata(dobjHandler, ctx);
+            createMetadata(dobjHandler, ctx, pageIndex);
             createImages(ctx.getTargetFolder(), f, originalFilename, localObj, config);
             importArchivalCopy(fileSet, f, localObj, ctx);
             importUserCopy(fileSet, f, localObj, ctx);
             importOcr(fileSet, localObj, ctx);
-            createTechnicalMetadata(localObj, ctx);
+            createTechnicalMetadata(localObj, jhoveCtx);
             // writes FOXML
             dobjHandler.commit();
-            ibm.addChildRelation(ctx.getBatch(), null, localObj.getPid());
-            batchLocalObject.setState(ObjectState.LOADED);
         } catch (Throwable ex) {
             LOG.log(Level.SEVERE, f.toString(), ex);
+            page.setFailure(ex);
+        }
+        return page;
+    }
+
+    /**
+     * Registers the processed page in the batch. Pages have to be committed
+     * in the order of the batch.
+     *
+     * @param page processed page
+     * @param ctx import options
+     * @return the batch item
+     */
+    BatchItemObject commit(ImportedPage page, ImportOptions ctx) {
+        LocalObject localObj = page.getObject();
+        BatchItemObject batchLocalObject = ibm.addLocalObject(ctx.getBatch(), localObj);
+        Throwable failure = page.getFailure();
+        if (failure == null) {
+            try {
+                ibm.addChildRelation(ctx.getBatch(), null, localObj.getPid());
+                batchLocalObject.setState(ObjectState.LOADED);
+            } catch (Throwable ex) {
+                LOG.log(Level.SEVERE, page.getFile().toString(), ex);
+                failure = ex;
+            }
+        }
+        if (failure != null) {
             batchLocalObject.setState(ObjectState.LOADING_FAILED);
-            batchLocalObject.setLog(ImportBatchManager.toString(ex));
+            batchLocalObject.setLog(ImportBatchManager.toString(failure));
         }
         ibm.update(batchLocalObject);
 
@@ -129,13 +167,13 @@ public final class TiffImporter {
         return localObj;
     }
 
-    private void createMetadata(DigitalObjectHandler objHandler, ImportOptions ctx) throws DigitalObjectException {
+    private void createMetadata(DigitalObjectHandler objHandler, ImportOptions ctx, int index) throws DigitalObjectException {
         MetadataHandler<Object> mHandler = objHandler.metadata();
         if (mHandler instanceof PageViewHandler) {
             // requires RELS-EXT model in place
             // creates MODS + DC + LABEL
             PageViewHandler pvHandler = (PageViewHandler) mHandler;
-            String pageIndex = ctx.isGenerateIndices() ? String.valueOf(ctx.getConsumedFileCounter() + 1) : null;
+            String pageIndex = ctx.isGenerateIndices() ? String.valueOf(index) : null;
             PageViewItem page = new PageViewItem();
             page.setPageIndex(pageIndex);
             pvHandler.setPage(page, null);
@@ -277,119 +315,21 @@ public final class TiffImporter {
         BinaryEditor.dissemination(foxml, BinaryEditor.RAW_ID, BinaryEditor.IMAGE_TIFF)
                 .write(original, 0, null);
 
-        long start = System.nanoTime();
-        BufferedImage tiff = ImageSupport.readImage(original.toURI().toURL(), ImageMimeType.TIFF);
-        long endRead = System.nanoTime() - start;
-        ImageMimeType imageType = ImageMimeType.JPEG;
-        MediaType mediaType = MediaType.valueOf(imageType.getMimeType());
-
-        start = System.nanoTime();
-        String targetName = String.format("%s.full.%s", originalFilename, imageType.getDefaultFileExtension());
-        File f = writeImage(tiff, tempBatchFolder, targetName, imageType);
-        if (!InputUtils.isJpeg(f)) {
-            throw new IllegalStateException("Not a JPEG content: " + f);
-        }
-        long endFull = System.nanoTime() - start;
-        BinaryEditor.dissemination(foxml, BinaryEditor.FULL_ID, mediaType).write(f, 0, null);
-
-        start = System.nanoTime();
-        Integer previewMaxHeight = config.getPreviewMaxHeight();
-        Integer previewMaxWidth = config.getPreviewMaxWidth();
-        config.checkPreviewScaleParams();
-        targetName = String.format("%s.preview.%s", originalFilename, imageType.getDefaultFileExtension());
-        f = writeImage(
-                scale(tiff, config.getPreviewScaling(), previewMaxWidth, previewMaxHeight),
-                tempBatchFolder, targetName, imageType);
-        if (!InputUtils.isJpeg(f)) {
-            throw new IllegalStateException("Not a JPEG content: " + f);
-        }
-        long endPreview = System.nanoTime() - start;
-        BinaryEditor.dissemination(foxml, BinaryEditor.PREVIEW_ID, mediaType).write(f, 0, null);
-
-        start = System.nanoTime();
-        f = createThumbnail(tempBatchFolder, originalFilename, original, tiff, config);
-        long endThumb = System.nanoTime() - start;
-        BinaryEditor.dissemination(foxml, BinaryEditor.THUMB_ID, mediaType).write(f, 0, null);
-
-        LOG.fine(String.format("file: %s, read: %s, full: %s, preview: %s, thumb: %s",
-                originalFilename, endRead / 1000000, endFull / 1000000, endPreview / 1000000, endThumb / 1000000));
-    }
-
-    private File createThumbnail(File tempBatchFolder, String originalFilename, File original, BufferedImage tiff, ImportProfile config)
-            throws AppConfigurationException, IOException {
-        ImageMimeType imageType = ImageMimeType.JPEG;
-        String targetName = String.format("%s.thumb.%s", originalFilename, imageType.getDefaultFileExtension());
-        // XXX requieres import profiles
-//        Configuration processCfg = config.getThumbnailProcessor();
-//        if (processCfg.isEmpty()) {
-            return createJavaThumbnail(tempBatchFolder, targetName, imageType, tiff, config);
-//        } else {
-//            GenericExternalProcess process = new GenericExternalProcess(processCfg);
-//            process.addInputFile(original);
-//            process.addOutputFile(new File(tempBatchFolder, targetName));
-//            process.run();
-//            if (!process.isOk()) {
-//                throw new IOException(process.getOutputFile().toString() + "\n" + process.getFullOutput());
-//            }
-//            return process.getOutputFile();
-//        }
-    }
-
-    private File createJavaThumbnail(File tempBatchFolder, String targetName, ImageMimeType imageType, BufferedImage tiff, ImportProfile config)
-            throws AppConfigurationException, IOException {
-        Integer thumbMaxHeight = config.getThumbnailMaxHeight();
-        Integer thumbMaxWidth = config.getThumbnailMaxWidth();
-        config.checkThumbnailScaleParams();
-        File f = writeImage(
-                scale(tiff, config.getThumbnailScaling(), thumbMaxWidth, thumbMaxHeight),
-                tempBatchFolder, targetName, imageType);
-        if (!InputUtils.isJpeg(f)) {
-            throw new IllegalStateException("Not a JPEG content: " + f);
-        }
-        return f;
-    }
-
-    private static File writeImage(BufferedImage image, File folder, String filename, ImageMimeType imageType) throws IOException {
-        File imgFile = new File(folder, filename);
-        FileImageOutputStream fos = new FileImageOutputStream(imgFile);
-        try {
-            ImageSupport.writeImageToStream(image, imageType.getDefaultFileExtension(), fos, 1.0f);
-            return imgFile;
-        } finally {
-            fos.close();
-        }
-    }
-
-    private static BufferedImage scale(BufferedImage tiff, ScalingMethod method,
-            Integer maxWidth, Integer maxHeight) {
-
-        long start = System.nanoTime();
-        int height = tiff.getHeight();
-        int width = tiff.getWidth();
-        int targetWidth = width;
-        int targetHeight = height;
-        double scale = Double.MAX_VALUE;
-        if (maxHeight != null && height > maxHeight) {
-            scale = (double) maxHeight / height;
-        }
-        if (maxWidth != null && width > maxWidth) {
-            double scalew = (double) maxWidth / width;
-            scale = Math.min(scale, scalew);
-        }
-        if (scale != Double.MAX_VALUE) {
-            targetHeight = (int) (height * scale);
-            targetWidth = (int) (width * scale);
-        }
-        BufferedImage scaled = ImageSupport.scale(tiff, targetWidth, targetHeight, method, true);
-        LOG.fine(String.format("scaled [%s, %s] to [%s, %s], boundary [%s, %s] [w, h], time: %s ms",
-                width, height, targetWidth, targetHeight, maxWidth, maxHeight, (System.nanoTime() - start) / 1000000));
-        return scaled;
+        // XXX requieres import profiles; see config.getThumbnailProcessor()
+        TiffRenditions renditions = new TiffRenditions(config);
+        renditions.create(original, tempBatchFolder, originalFilename);
+        MediaType mediaType = MediaType.valueOf(ImageMimeType.JPEG.getMimeType());
+        BinaryEditor.dissemination(foxml, BinaryEditor.FULL_ID, mediaType)
+                .write(renditions.getFull(), 0, null);
+        BinaryEditor.dissemination(foxml, BinaryEditor.PREVIEW_ID, mediaType)
+                .write(renditions.getPreview(), 0, null);
+        BinaryEditor.dissemination(foxml, BinaryEditor.THUMB_ID, mediaType)
+                .write(renditions.getThumbnail(), 0, null);
     }
 
-    private void createTechnicalMetadata(LocalObject localObj, ImportOptions ctx)
+    private void createTechnicalMetadata(LocalObject localObj, JhoveContext jhoveCtx)
             throws DigitalObjectException {
 
-        JhoveContext jhoveCtx = ctx.getJhoveContext();
         File file = BinaryEditor.dissemination(localObj, BinaryEditor.RAW_ID, BinaryEditor.IMAGE_TIFF).read();
         MixEditor mixEditor = MixEditor.raw(localObj);
         mixEditor.write(file, jhoveCtx, mixEditor.getLastModified(), null);
@@ -401,4 +341,37 @@ public final class TiffImporter {
             mixEditor.write(file, jhoveCtx, mixEditor.getLastModified(), null);
         }
     }
+
+    /**
+     * The digital object of a file set waiting for {@link #commit}.
+     */
+    static final class ImportedPage {
+
+        private final File file;
+        private final LocalObject object;
+        private Throwable failure;
+
+        ImportedPage(File file, LocalObject object) {
+            this.file = file;
+            this.object = object;
+        }
+
+        public File getFile() {
+            return file;
+        }
+
+        public LocalObject getObject() {
+            return object;
+        }
+
+        public Throwable getFailure() {
+            return failure;
+        }
+
+        void setFailure(Throwable failure) {
+            this.failure = failure;
+        }
+
+    }
+
 }
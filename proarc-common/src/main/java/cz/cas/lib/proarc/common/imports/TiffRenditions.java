@@ -0,0 +1,289 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.config.AppConfigurationException;
+import cz.incad.imgsupport.ImageMimeType;
+import cz.incad.imgsupport.ImageSupport;
+import cz.incad.imgsupport.ImageSupport.ScalingMethod;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.logging.Logger;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.stream.FileImageOutputStream;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Creates JPEG renditions (full, preview, thumbnail) of a TIFF scan.
+ *
+ * <p>The scan is decoded just once. The preview is scaled from the full image
+ * and the thumbnail is scaled from the preview. Decoded images are released
+ * as soon as they are not needed.
+ *
+ * <p>In case of {@link ImportProfile#getFullMaxWidth() full image limits}
+ * the TIFF reader decodes a subsampled raster. Then the heap consumed per page
+ * does not grow with the size of the scan.
+ *
+ * @author Jan Pokorsky
+ */
+final class TiffRenditions {
+
+    private static final Logger LOG = Logger.getLogger(TiffRenditions.class.getName());
+    private static final ImageMimeType IMAGE_TYPE = ImageMimeType.JPEG;
+
+    private final ImportProfile config;
+    private File full;
+    private File preview;
+    private File thumbnail;
+    private int subsampling = 1;
+    private long readTime;
+    private long fullTime;
+    private long previewTime;
+    private long thumbnailTime;
+
+    TiffRenditions(ImportProfile config) {
+        this.config = config;
+    }
+
+    /**
+     * Writes renditions of the scan as {@code name.full.jpg, name.preview.jpg, name.thumb.jpg}.
+     *
+     * @param tiff the scan
+     * @param targetFolder folder to write renditions
+     * @param name the base file name of renditions
+     */
+    public void create(File tiff, File targetFolder, String name)
+            throws IOException, AppConfigurationException {
+
+        config.checkPreviewScaleParams();
+        config.checkThumbnailScaleParams();
+        Integer fullMaxWidth = config.getFullMaxWidth();
+        Integer fullMaxHeight = config.getFullMaxHeight();
+        float quality = config.getJpegQuality();
+
+        long start = System.nanoTime();
+        BufferedImage image = read(tiff, fullMaxWidth, fullMaxHeight);
+        readTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        image = scale(image, config.getPreviewScaling(), fullMaxWidth, fullMaxHeight);
+        full = writeImage(image, targetFolder, targetName(name, "full"), quality);
+        fullTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        BufferedImage previewImage = scale(image, config.getPreviewScaling(),
+                config.getPreviewMaxWidth(), config.getPreviewMaxHeight());
+        preview = writeImage(previewImage, targetFolder, targetName(name, "preview"), quality);
+        previewTime = System.nanoTime() - start;
+
+        start = System.nanoTime();
+        Integer thumbMaxWidth = config.getThumbnailMaxWidth();
+        Integer thumbMaxHeight = config.getThumbnailMaxHeight();
+        // scale the thumbnail from the preview unless it is smaller than the thumbnail
+        double thumbScale = scaleFactor(image.getWidth(), image.getHeight(), thumbMaxWidth, thumbMaxHeight);
+        BufferedImage thumbnailSource = previewImage.getWidth() >= (int) (image.getWidth() * thumbScale)
+                && previewImage.getHeight() >= (int) (image.getHeight() * thumbScale)
+                ? previewImage : image;
+        image = null;
+        previewImage = null;
+        BufferedImage thumbnailImage = scale(thumbnailSource, config.getThumbnailScaling(),
+                thumbMaxWidth, thumbMaxHeight);
+        thumbnailSource = null;
+        thumbnail = writeImage(thumbnailImage, targetFolder, targetName(name, "thumb"), quality);
+        thumbnailTime = System.nanoTime() - start;
+        LOG.fine(toString());
+    }
+
+    public File getFull() {
+        return full;
+    }
+
+    public File getPreview() {
+        return preview;
+    }
+
+    public File getThumbnail() {
+        return thumbnail;
+    }
+
+    /**
+     * Gets the subsampling factor used to decode the scan.
+     */
+    public int getSubsampling() {
+        return subsampling;
+    }
+
+    public long getReadTime() {
+        return readTime / 1000000;
+    }
+
+    public long getFullTime() {
+        return fullTime / 1000000;
+    }
+
+    public long getPreviewTime() {
+        return previewTime / 1000000;
+    }
+
+    public long getThumbnailTime() {
+        return thumbnailTime / 1000000;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("file: %s, subsampling: %s, read: %s, full: %s, preview: %s, thumb: %s [ms]",
+                full, subsampling, getReadTime(), getFullTime(), getPreviewTime(), getThumbnailTime());
+    }
+
+    private BufferedImage read(File tiff, Integer maxWidth, Integer maxHeight) throws IOException {
+        ImageInputStream iis = ImageIO.createImageInputStream(tiff);
+        if (iis == null) {
+            throw new IOException("Cannot read: " + tiff);
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                // no ImageIO TIFF plugin; decode the whole image
+                return ImageSupport.readImage(tiff.toURI().toURL(), ImageMimeType.TIFF);
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                ImageReadParam param = reader.getDefaultReadParam();
+                subsampling = subsampling(reader.getWidth(0), reader.getHeight(0), maxWidth, maxHeight);
+                if (subsampling > 1) {
+                    param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, param);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            iis.close();
+        }
+    }
+
+    /**
+     * Estimates the heap taken by the decoded scan. It reads just the TIFF
+     * header as compressed (e.g. LZW) files are much smaller than their rasters.
+     *
+     * @param tiff the scan
+     * @return bytes; at least the file length
+     */
+    static long estimateDecodedSize(File tiff) throws IOException {
+        ImageInputStream iis = ImageIO.createImageInputStream(tiff);
+        if (iis == null) {
+            throw new IOException("Cannot read: " + tiff);
+        }
+        try {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(iis);
+            if (!readers.hasNext()) {
+                return tiff.length();
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(iis, true, true);
+                ImageTypeSpecifier type = reader.getRawImageType(0);
+                if (type == null) {
+                    Iterator<ImageTypeSpecifier> types = reader.getImageTypes(0);
+                    type = types.hasNext() ? types.next() : null;
+                }
+                int bitsPerPixel = 0;
+                if (type != null) {
+                    for (int sampleSize : type.getSampleModel().getSampleSize()) {
+                        bitsPerPixel += sampleSize;
+                    }
+                }
+                if (bitsPerPixel == 0) {
+                    // unknown samples; expect RGB
+                    bitsPerPixel = 24;
+                }
+                long pixels = (long) reader.getWidth(0) * reader.getHeight(0);
+                return Math.max(tiff.length(), (pixels * bitsPerPixel + 7) / 8);
+            } finally {
+                reader.dispose();
+            }
+        } finally {
+            iis.close();
+        }
+    }
+
+    /**
+     * Computes the greatest subsampling factor that decodes the image
+     * still not smaller than the given bounds.
+     */
+    static int subsampling(int width, int height, Integer maxWidth, Integer maxHeight) {
+        double scale = scaleFactor(width, height, maxWidth, maxHeight);
+        return scale >= 1 ? 1 : Math.max(1, (int) (1 / scale));
+    }
+
+    /**
+     * Gets the scale to fit the image to bounds. It never upscales.
+     */
+    private static double scaleFactor(int width, int height, Integer maxWidth, Integer maxHeight) {
+        double scale = 1;
+        if (maxHeight != null && height > maxHeight) {
+            scale = (double) maxHeight / height;
+        }
+        if (maxWidth != null && width > maxWidth) {
+            scale = Math.min(scale, (double) maxWidth / width);
+        }
+        return scale;
+    }
+
+    private static String targetName(String name, String rendition) {
+        return String.format("%s.%s.%s", name, rendition, IMAGE_TYPE.getDefaultFileExtension());
+    }
+
+    private static File writeImage(BufferedImage image, File folder, String filename, float quality) throws IOException {
+        File imgFile = new File(folder, filename);
+        FileImageOutputStream fos = new FileImageOutputStream(imgFile);
+        try {
+            ImageSupport.writeImageToStream(image, IMAGE_TYPE.getDefaultFileExtension(), fos, quality);
+        } finally {
+            fos.close();
+        }
+        if (!InputUtils.isJpeg(imgFile)) {
+            throw new IllegalStateException("Not a JPEG content: " + imgFile);
+        }
+        return imgFile;
+    }
+
+    static BufferedImage scale(BufferedImage image, ScalingMethod method,
+            Integer maxWidth, Integer maxHeight) {
+
+        int height = image.getHeight();
+        int width = image.getWidth();
+        double scale = scaleFactor(width, height, maxWidth, maxHeight);
+        if (scale >= 1) {
+            return image;
+        }
+        long start = System.nanoTime();
+        int targetHeight = (int) (height * scale);
+        int targetWidth = (int) (width * scale);
+        BufferedImage scaled = ImageSupport.scale(image, targetWidth, targetHeight, method, true);
+        LOG.fine(String.format("scaled [%s, %s] to [%s, %s], boundary [%s, %s] [w, h], time: %s ms",
+                width, height, targetWidth, targetHeight, maxWidth, maxHeight, (System.nanoTime() - start) / 1000000));
+        return scaled;
+    }
+
+}
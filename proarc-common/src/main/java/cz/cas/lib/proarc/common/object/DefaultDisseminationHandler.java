@@ -18,6 +18,7 @@ package cz.cas.lib.proarc.common.object;
 
 import com.sun.jersey.api.client.ClientResponse;
 import com.yourmediashelf.fedora.generated.management.DatastreamProfile;
+import com.yourmediashelf.fedora.util.DateUtility;
 import cz.cas.lib.proarc.common.fedora.BinaryEditor;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectNotFoundException;
@@ -26,8 +27,10 @@ import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
 import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
+import cz.cas.lib.proarc.common.fedora.RenditionCache;
 import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -35,6 +38,9 @@ import java.util.Date;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Request;
@@ -73,6 +79,18 @@ public class DefaultDisseminationHandler implements DisseminationHandler {
 
     @Override
     public Response getDissemination(Request httpRequest) throws DigitalObjectException, DigitalObjectNotFoundException {
+        return getDissemination(httpRequest, null);
+    }
+
+    /**
+     * {@inheritDoc }
+     * <p>Contents of local objects are written with the zero copy transfer
+     * in case of HTTP requests. Local objects answer ranges of bytes.
+     */
+    @Override
+    public Response getDissemination(Request httpRequest, HttpHeaders httpHeaders)
+            throws DigitalObjectException, DigitalObjectNotFoundException {
+
         String pid = fobject.getPid();
         if (dsId == null) {
             return Response.ok(fobject.asText(), MediaType.TEXT_XML_TYPE)
@@ -90,26 +108,83 @@ public class DefaultDisseminationHandler implements DisseminationHandler {
                 throw new DigitalObjectNotFoundException(pid, null, dsId, "no content", null);
             }
 
-            Date lastModification = new Date(loader.getLastModified());
+            long version = loader.getLastModified();
+            Date lastModification = new Date(version);
+            EntityTag tag = RenditionCache.createEntityTag(pid, dsId, version);
             ResponseBuilder evaluatePreconditions = httpRequest == null
-                    ? null : httpRequest.evaluatePreconditions(lastModification);
+                    ? null : httpRequest.evaluatePreconditions(lastModification, tag);
             if (evaluatePreconditions != null) {
                 return evaluatePreconditions.build();
             }
+            if (httpHeaders != null) {
+                return getFileResponse(entity, loader.getProfile().getDsMIME(),
+                        lastModification, tag, httpHeaders);
+            }
 
             return Response.ok(entity, loader.getProfile().getDsMIME())
                     .header("Content-Disposition", "inline; filename=\"" + entity.getName() + '"')
                     .lastModified(lastModification)
+                    .tag(tag)
 //                    .cacheControl(null)
 //                    .expires(new Date(2100, 1, 1))
                     .build();
         } else if (fobject instanceof RemoteObject) {
             RemoteObject remote = (RemoteObject) fobject;
+            RenditionCache cache = RenditionCache.getDefault();
+            if (cache != null && RenditionCache.isCacheable(dsId)) {
+                return getCachedResponse(remote, dsId, cache, httpRequest);
+            }
             return getResponse(remote, dsId);
         }
         throw new IllegalStateException("unsupported: " + fobject.getClass());
     }
 
+    /**
+     * Writes the whole file or the requested range of bytes. The range is ignored
+     * in case of {@code If-Range} not matching the current version.
+     */
+    static Response getFileResponse(File file, String mime, Date lastModification,
+            EntityTag tag, HttpHeaders httpHeaders) {
+
+        FileRangeOutput range = FileRangeOutput.parse(file, getHeader(httpHeaders, "Range"));
+        String ifRange = getHeader(httpHeaders, "If-Range");
+        if (range != null && ifRange != null && !ifRange.equals('"' + tag.getValue() + '"')) {
+            range = null;
+        }
+        String disposition = "inline; filename=\"" + file.getName() + '"';
+        if (range == null) {
+            return Response.ok(new FileRangeOutput(file), mime)
+                    .header("Content-Disposition", disposition)
+                    .header("Content-Length", file.length())
+                    .header("Accept-Ranges", "bytes")
+                    .lastModified(lastModification)
+                    .tag(tag)
+                    .build();
+        } else if (range.getLength() == 0) {
+            // 416 Requested Range Not Satisfiable
+            return Response.status(416)
+                    .header("Content-Range", "bytes */" + file.length())
+                    .tag(tag)
+                    .build();
+        }
+        // 206 Partial Content
+        return Response.status(206)
+                .entity(range)
+                .type(mime)
+                .header("Content-Disposition", disposition)
+                .header("Content-Length", range.getLength())
+                .header("Content-Range", range.getContentRange())
+                .header("Accept-Ranges", "bytes")
+                .lastModified(lastModification)
+                .tag(tag)
+                .build();
+    }
+
+    private static String getHeader(HttpHeaders httpHeaders, String name) {
+        List<String> values = httpHeaders.getRequestHeader(name);
+        return values == null || values.isEmpty() ? null : values.get(0);
+    }
+
     public static Response getResponse(RemoteObject remote, String dsId) throws DigitalObjectException {
         // This should limit fedora calls to 1.
         // XXX It works around FedoraClient.FedoraClient.getDatastreamDissemination that hides HTTP headers of the response.
@@ -129,6 +204,76 @@ public class DefaultDisseminationHandler implements DisseminationHandler {
                 .build();
     }
 
+    /**
+     * Gets the content of the data stream version from the cache. It asks
+     * the remote storage for the version first to answer the conditional
+     * request or to find the cached content.
+     */
+    static Response getCachedResponse(RemoteObject remote, String dsId,
+            RenditionCache cache, Request httpRequest) throws DigitalObjectException {
+
+        String pid = remote.getPid();
+        BinaryEditor editor = BinaryEditor.dissemination(remote, dsId);
+        long version = editor.getLastModified();
+        if (version < 0) {
+            throw new DigitalObjectNotFoundException(pid, null, dsId, "no content", null);
+        }
+        Date lastModification = new Date(version);
+        EntityTag tag = RenditionCache.createEntityTag(pid, dsId, version);
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setPrivate(true);
+        int maxAge = cache.getOptions().getMaxAge();
+        if (maxAge > 0) {
+            cacheControl.setMaxAge(maxAge);
+        } else {
+            // revalidate each time
+            cacheControl.setNoCache(true);
+        }
+        ResponseBuilder evaluatePreconditions = httpRequest == null
+                ? null : httpRequest.evaluatePreconditions(lastModification, tag);
+        if (evaluatePreconditions != null) {
+            return evaluatePreconditions.cacheControl(cacheControl).build();
+        }
+
+        try {
+            RenditionCache.Entry entry = cache.get(pid, dsId, version);
+            InputStream content = entry == null ? null : cache.open(entry);
+            if (content == null) {
+                String path = String.format("objects/%s/datastreams/%s/content", pid, dsId);
+                ClientResponse response = remote.getClient().resource().path(path)
+                        // ensure that it is the content of the version
+                        .queryParam("asOfDateTime", DateUtility.getXSDDateTime(lastModification))
+                        .get(ClientResponse.class);
+                if (Status.fromStatusCode(response.getStatus()) != Status.OK) {
+                    throw new DigitalObjectNotFoundException(pid, null, dsId, response.getEntity(String.class), null);
+                }
+                MultivaluedMap<String, String> headers = response.getHeaders();
+                String filename = headers.getFirst("Content-Disposition");
+                filename = filename != null ? filename : "inline; filename=" + pid + '-' + dsId;
+                InputStream remoteContent = response.getEntityInputStream();
+                try {
+                    entry = cache.put(pid, dsId, version, headers.getFirst("Content-Type"), filename, remoteContent);
+                } finally {
+                    remoteContent.close();
+                }
+                content = cache.open(entry);
+                if (content == null) {
+                    // evicted meanwhile
+                    return getResponse(remote, dsId);
+                }
+            }
+            return Response.ok(content, entry.getMime())
+                    .header("Content-Disposition", entry.getContentDisposition())
+                    .header("Content-Length", entry.getLength())
+                    .lastModified(lastModification)
+                    .tag(tag)
+                    .cacheControl(cacheControl)
+                    .build();
+        } catch (IOException ex) {
+            throw new DigitalObjectException(pid, null, dsId, null, ex);
+        }
+    }
+
     // XXX add impl of other data streams (PREVIEW, THUMB)
     @Override
     public void setDissemination(DisseminationInput input, String message) throws DigitalObjectException {
@@ -46,6 +46,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.List;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 import javax.xml.transform.Source;
@@ -155,6 +156,11 @@ public class DerDesaPlugin implements DigitalObjectPlugin,
             return defaultHandler.getDissemination(httpRequest);
         }
 
+        @Override
+        public Response getDissemination(Request httpRequest, HttpHeaders httpHeaders) throws DigitalObjectException {
+            return defaultHandler.getDissemination(httpRequest, httpHeaders);
+        }
+
         @Override
         public void setDissemination(DisseminationInput input, String message) throws DigitalObjectException {
             defaultHandler.setDissemination(input, message);
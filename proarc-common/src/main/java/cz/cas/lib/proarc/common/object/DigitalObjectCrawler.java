@@ -20,8 +20,10 @@ import com.yourmediashelf.fedora.client.FedoraClientException;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.DigitalObjectNotFoundException;
 import cz.cas.lib.proarc.common.fedora.FedoraObject;
+import cz.cas.lib.proarc.common.fedora.SearchCache;
 import cz.cas.lib.proarc.common.fedora.SearchView;
 import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
 import cz.cas.lib.proarc.common.object.DigitalObjectElement.Factory;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -32,7 +34,8 @@ import java.util.Map;
 
 /**
  * It helps to crawl hierarchies of digital objects and provides access to the index and the storage.
- * It caches visited objects.
+ * It caches visited objects. Descriptors, parents and members are shared
+ * across crawlers with the {@link SearchCache} if configured.
  *
  * @author Jan Pokorsky
  */
@@ -44,18 +47,51 @@ public class DigitalObjectCrawler {
     private final Map<String, DigitalObjectElement> parents;
     /** Maps PIDs to elements. */
     private final Map<String, DigitalObjectElement> cache;
+    /** Maps PIDs to descriptors of active objects. */
+    private final Map<String, Item> items;
     private final DigitalObjectElement.Factory elmFactory;
+    private final SearchCache sharedCache;
 
     public DigitalObjectCrawler(DigitalObjectManager dom, SearchView search) {
         this(dom, search, null);
     }
 
     public DigitalObjectCrawler(DigitalObjectManager dom, SearchView search, DigitalObjectElement.Factory elmFactory) {
+        this(dom, search, elmFactory, SearchCache.getDefault());
+    }
+
+    DigitalObjectCrawler(DigitalObjectManager dom, SearchView search,
+            DigitalObjectElement.Factory elmFactory, SearchCache sharedCache) {
         this.dom = dom;
         this.search = search;
         this.parents = new HashMap<String, DigitalObjectElement>();
         this.cache = new HashMap<String, DigitalObjectElement>();
+        this.items = new HashMap<String, Item>();
         this.elmFactory = elmFactory != null ? elmFactory : new Factory();
+        this.sharedCache = sharedCache;
+    }
+
+    /**
+     * Fetches descriptors of the object and all its descendants with a few
+     * queries. Call it before crawling down a large hierarchy.
+     *
+     * @param pid the root of the hierarchy
+     */
+    public void prefetch(String pid) throws DigitalObjectException {
+        List<Item> hierarchy;
+        try {
+            hierarchy = search.findChildrenHierarchy(pid);
+        } catch (FedoraClientException ex) {
+            throw new DigitalObjectException(pid, ex);
+        } catch (IOException ex) {
+            throw new DigitalObjectException(pid, ex);
+        }
+        List<String> pids = new ArrayList<String>(hierarchy.size() + 1);
+        pids.add(pid);
+        for (Item item : hierarchy) {
+            pids.add(item.getPid());
+        }
+        fetchItems(pids);
     }
 
     public DigitalObjectElement getEntry(Item item) throws DigitalObjectException {
@@ -151,40 +187,109 @@ public class DigitalObjectCrawler {
     }
 
     Item searchParentItem(String pid) {
-        List<Item> issueParents;
         try {
-            issueParents = search.findReferrers(pid);
+            String parentPid = sharedCache == null ? null : sharedCache.getParent(pid);
+            if (parentPid != null) {
+                if (parentPid.isEmpty()) {
+                    return null;
+                }
+                Item parent = searchItem(parentPid);
+                if (parent != null) {
+                    return parent;
+                }
+            }
+            List<Item> issueParents = search.findReferrers(pid);
+            Item parent = issueParents.isEmpty() ? null : issueParents.get(0);
+            if (parent != null) {
+                putItem(parent);
+            }
+            if (sharedCache != null) {
+                sharedCache.putParent(pid, parent == null ? null : parent.getPid());
+            }
+            return parent;
         } catch (Exception ex) {
             throw new IllegalStateException(pid, ex);
         }
-        if (issueParents.isEmpty()) {
-            return null;
-        }
-        return issueParents.get(0);
     }
 
     Item searchItem(String pid) throws DigitalObjectException {
-        try {
-            List<Item> items = search.find(pid);
-            if (items.isEmpty()) {
-                return null;
-            }
-            return items.get(0);
-        } catch (FedoraClientException ex) {
-            throw new DigitalObjectException(pid, ex);
-        } catch (IOException ex) {
-            throw new DigitalObjectException(pid, ex);
+        Item item = lookupItem(pid);
+        if (item == null) {
+            fetchItems(Collections.singletonList(pid));
+            item = items.get(pid);
         }
+        return item;
     }
 
+    /**
+     * Finds active members in the RELS-EXT order. Descriptors of members
+     * come from caches or a bulk query.
+     */
     List<Item> searchChildren(String pid) throws DigitalObjectException {
+        List<String> memberPids = sharedCache == null ? null : sharedCache.getMembers(pid);
+        if (memberPids == null) {
+            DigitalObjectElement parent = cache.get(pid);
+            RelationEditor relations = parent != null
+                    ? parent.getHandler().relations()
+                    : new RelationEditor(dom.find(pid, null));
+            memberPids = relations.getMembers();
+            if (sharedCache != null) {
+                sharedCache.putMembers(pid, memberPids);
+            }
+        }
+        fetchItems(memberPids);
+        ArrayList<Item> children = new ArrayList<Item>(memberPids.size());
+        for (String memberPid : memberPids) {
+            Item child = items.get(memberPid);
+            if (child != null) {
+                children.add(child);
+                if (sharedCache != null) {
+                    sharedCache.putParent(memberPid, pid);
+                }
+            }
+        }
+        return children;
+    }
+
+    private Item lookupItem(String pid) {
+        Item item = items.get(pid);
+        if (item == null && sharedCache != null) {
+            item = sharedCache.getItem(pid);
+            if (item != null) {
+                items.put(pid, item);
+            }
+        }
+        return item;
+    }
+
+    private void putItem(Item item) {
+        items.put(item.getPid(), item);
+        if (sharedCache != null) {
+            sharedCache.putItem(item);
+        }
+    }
+
+    /**
+     * Fetches descriptors missing in caches with bulk queries.
+     */
+    private void fetchItems(List<String> pids) throws DigitalObjectException {
+        List<String> missing = new ArrayList<String>();
+        for (String pid : pids) {
+            if (lookupItem(pid) == null) {
+                missing.add(pid);
+            }
+        }
+        if (missing.isEmpty()) {
+            return ;
+        }
         try {
-            List<Item> children = search.findSortedChildren(pid);
-            return children;
+            for (Item item : search.find(missing, true)) {
+                putItem(item);
+            }
         } catch (FedoraClientException ex) {
-            throw new DigitalObjectException(pid, ex);
+            throw new DigitalObjectException(missing.get(0), ex);
         } catch (IOException ex) {
-            throw new DigitalObjectException(pid, ex);
+            throw new DigitalObjectException(missing.get(0), ex);
         }
     }
 
@@ -17,6 +17,7 @@
 package cz.cas.lib.proarc.common.object;
 
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
@@ -33,6 +34,16 @@ public interface DisseminationHandler {
      */
     Response getDissemination(Request httpRequest) throws DigitalObjectException;
 
+    /**
+     * Gets contents as it is persisted for the HTTP client.
+     * It may answer the byte range request.
+     * @param httpRequest {@code null} or request to manage cached contents.
+     * @param httpHeaders {@code null} or headers of the request
+     * @return contents
+     * @throws DigitalObjectException failure
+     */
+    Response getDissemination(Request httpRequest, HttpHeaders httpHeaders) throws DigitalObjectException;
+
     /**
      * Updates contents.
      * @param input contents
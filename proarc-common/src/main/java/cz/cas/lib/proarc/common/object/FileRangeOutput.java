@@ -0,0 +1,134 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import javax.ws.rs.core.StreamingOutput;
+
+/**
+ * Writes a file or its byte range with {@link FileChannel#transferTo}
+ * instead of copying it through stream buffers.
+ *
+ * @author Jan Pokorsky
+ */
+final class FileRangeOutput implements StreamingOutput {
+
+    private final File file;
+    private final long start;
+    private final long length;
+
+    FileRangeOutput(File file) {
+        this(file, 0, file.length());
+    }
+
+    FileRangeOutput(File file, long start, long length) {
+        this.file = file;
+        this.start = start;
+        this.length = length;
+    }
+
+    /**
+     * Parses the value of the HTTP {@code Range} header. Only a single range
+     * of bytes is supported.
+     *
+     * @param file the file to send
+     * @param range the header value or {@code null}
+     * @return the range to send, the range of length 0 if it cannot be satisfied
+     *          or {@code null} to send the whole file
+     */
+    static FileRangeOutput parse(File file, String range) {
+        final String unit = "bytes=";
+        if (range == null || !range.startsWith(unit) || range.indexOf(',') >= 0) {
+            return null;
+        }
+        String spec = range.substring(unit.length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return null;
+        }
+        long fileLength = file.length();
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // the suffix range
+                long suffix = Long.parseLong(last);
+                start = Math.max(0, fileLength - suffix);
+                end = fileLength - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? fileLength - 1 : Math.min(Long.parseLong(last), fileLength - 1);
+                if (end < start && start < fileLength) {
+                    // invalid syntax
+                    return null;
+                }
+            }
+            if (start >= fileLength || end < start) {
+                return new FileRangeOutput(file, 0, 0);
+            }
+            return new FileRangeOutput(file, start, end - start + 1);
+        } catch (NumberFormatException ex) {
+            return null;
+        }
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getLength() {
+        return length;
+    }
+
+    /**
+     * Gets the value of the {@code Content-Range} header.
+     */
+    public String getContentRange() {
+        return "bytes " + start + '-' + (start + length - 1) + '/' + file.length();
+    }
+
+    @Override
+    public void write(OutputStream output) throws IOException {
+        FileInputStream input = new FileInputStream(file);
+        try {
+            FileChannel channel = input.getChannel();
+            WritableByteChannel target = Channels.newChannel(output);
+            long position = start;
+            long end = start + length;
+            while (position < end) {
+                long count = channel.transferTo(position, end - position, target);
+                if (count <= 0) {
+                    // the file was truncated meanwhile
+                    throw new EOFException(file.toString());
+                }
+                position += count;
+            }
+        } finally {
+            input.close();
+        }
+    }
+
+}
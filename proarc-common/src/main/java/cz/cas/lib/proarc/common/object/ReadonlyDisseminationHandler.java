@@ -18,6 +18,7 @@ package cz.cas.lib.proarc.common.object;
 
 import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage.RemoteObject;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
 
@@ -41,6 +42,11 @@ public class ReadonlyDisseminationHandler implements DisseminationHandler {
         return DefaultDisseminationHandler.getResponse(remote, dsId);
     }
 
+    @Override
+    public Response getDissemination(Request httpRequest, HttpHeaders httpHeaders) throws DigitalObjectException {
+        return getDissemination(httpRequest);
+    }
+
     @Override
     public void setDissemination(DisseminationInput input, String message) throws DigitalObjectException {
         throw new UnsupportedOperationException("Not supported.");
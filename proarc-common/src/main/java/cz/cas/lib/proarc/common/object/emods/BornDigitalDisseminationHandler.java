@@ -29,6 +29,7 @@ import cz.cas.lib.proarc.common.object.DisseminationInput;
 import cz.cas.lib.proarc.common.process.GenericExternalProcess;
 import java.io.File;
 import java.io.IOException;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Request;
 import javax.ws.rs.core.Response;
@@ -56,6 +57,11 @@ public class BornDigitalDisseminationHandler implements DisseminationHandler {
         return ddh.getDissemination(httpRequest);
     }
 
+    @Override
+    public Response getDissemination(Request httpRequest, HttpHeaders httpHeaders) throws DigitalObjectException {
+        return ddh.getDissemination(httpRequest, httpHeaders);
+    }
+
     @Override
     public void setDissemination(DisseminationInput input, String message) throws DigitalObjectException {
 //        MediaType mime = input.getMime();
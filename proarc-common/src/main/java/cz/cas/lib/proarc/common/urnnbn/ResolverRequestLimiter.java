@@ -0,0 +1,82 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.urnnbn;
+
+import cz.cas.lib.proarc.urnnbn.ResolverClient;
+import cz.cas.lib.proarc.urnnbn.model.registration.Import;
+import cz.cas.lib.proarc.urnnbn.model.response.Response;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounds the number of concurrent resolver requests and the rate
+ * at which they start.
+ *
+ * @author Jan Pokorsky
+ */
+final class ResolverRequestLimiter {
+
+    private final Semaphore permits;
+    /** The min delay between starts of requests in nanoseconds. */
+    private final long interval;
+    private long nextStart;
+
+    /**
+     * @param maxRequests the max number of concurrent requests
+     * @param requestsPerSecond the max number of requests per second; 0 means no limit
+     */
+    ResolverRequestLimiter(int maxRequests, int requestsPerSecond) {
+        this.permits = new Semaphore(maxRequests, true);
+        this.interval = requestsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / requestsPerSecond : 0;
+        this.nextStart = System.nanoTime();
+    }
+
+    public Response registerObject(final ResolverClient client, final Import entity) throws Exception {
+        return call(new Callable<Response>() {
+
+            @Override
+            public Response call() throws Exception {
+                return client.registerObject(entity);
+            }
+        });
+    }
+
+    <T> T call(Callable<T> request) throws Exception {
+        permits.acquire();
+        try {
+            awaitStart();
+            return request.call();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void awaitStart() throws InterruptedException {
+        long delay;
+        synchronized (this) {
+            long now = System.nanoTime();
+            long start = Math.max(now, nextStart);
+            nextStart = start + interval;
+            delay = start - now;
+        }
+        if (delay > 0) {
+            TimeUnit.NANOSECONDS.sleep(delay);
+        }
+    }
+
+}
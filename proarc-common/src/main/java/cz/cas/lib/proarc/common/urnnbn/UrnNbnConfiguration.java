@@ -40,6 +40,10 @@ public class UrnNbnConfiguration {
         this.config = config;
     }
 
+    public UrnNbnRegistrationOptions getRegistrationOptions() {
+        return UrnNbnRegistrationOptions.from(config);
+    }
+
     public ResolverClient getClient(ResolverConfiguration conf) {
         if (conf != null) {
             return new ResolverClient(conf.getUrl(), conf.getRegistrar(),
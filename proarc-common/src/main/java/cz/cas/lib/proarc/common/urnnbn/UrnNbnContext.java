@@ -28,6 +28,7 @@ public class UrnNbnContext {
     private UrnNbnStatusHandler status;
     private ResolverClient client;
     private JhoveContext jhoveContext;
+    private ResolverRequestLimiter limiter;
 
     public ResolverClient getClient() {
         return client;
@@ -53,4 +54,15 @@ public class UrnNbnContext {
         this.jhoveContext = jhoveContext;
     }
 
+    /**
+     * @return the limiter of resolver requests or {@code null}
+     */
+    ResolverRequestLimiter getLimiter() {
+        return limiter;
+    }
+
+    void setLimiter(ResolverRequestLimiter limiter) {
+        this.limiter = limiter;
+    }
+
 }
@@ -0,0 +1,89 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.urnnbn;
+
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+
+/**
+ * Settings of the concurrent URN:NBN registration.
+ *
+ * @author Jan Pokorsky
+ */
+public final class UrnNbnRegistrationOptions {
+
+    static final String PROP_THREAD_COUNT = "urnnbn.registration.threadCount";
+    static final String PROP_MAX_REQUESTS = "urnnbn.registration.maxRequests";
+    static final String PROP_REQUESTS_PER_SECOND = "urnnbn.registration.requestsPerSecond";
+
+    /** The number of workers preparing registrations; 1 registers serially. */
+    private int threadCount = 1;
+    /** The max number of concurrent resolver requests. */
+    private int maxRequests = 2;
+    /** The max number of resolver requests per second; 0 means no limit. */
+    private int requestsPerSecond = 0;
+
+    public static UrnNbnRegistrationOptions from(Configuration config) {
+        UrnNbnRegistrationOptions options = new UrnNbnRegistrationOptions();
+        int threadCount = config.getInt(PROP_THREAD_COUNT, options.getThreadCount());
+        if (threadCount < 1) {
+            throw new ConversionException(PROP_THREAD_COUNT + " expects positive integer!");
+        }
+        options.setThreadCount(threadCount);
+
+        int maxRequests = config.getInt(PROP_MAX_REQUESTS, options.getMaxRequests());
+        if (maxRequests < 1) {
+            throw new ConversionException(PROP_MAX_REQUESTS + " expects positive integer!");
+        }
+        options.setMaxRequests(maxRequests);
+
+        int requestsPerSecond = config.getInt(PROP_REQUESTS_PER_SECOND, options.getRequestsPerSecond());
+        if (requestsPerSecond < 0) {
+            throw new ConversionException(PROP_REQUESTS_PER_SECOND + " expects non-negative integer!");
+        }
+        options.setRequestsPerSecond(requestsPerSecond);
+        return options;
+    }
+
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    public UrnNbnRegistrationOptions setThreadCount(int threadCount) {
+        this.threadCount = threadCount;
+        return this;
+    }
+
+    public int getMaxRequests() {
+        return maxRequests;
+    }
+
+    public UrnNbnRegistrationOptions setMaxRequests(int maxRequests) {
+        this.maxRequests = maxRequests;
+        return this;
+    }
+
+    public int getRequestsPerSecond() {
+        return requestsPerSecond;
+    }
+
+    public UrnNbnRegistrationOptions setRequestsPerSecond(int requestsPerSecond) {
+        this.requestsPerSecond = requestsPerSecond;
+        return this;
+    }
+
+}
@@ -16,8 +16,7 @@
  */
 package cz.cas.lib.proarc.common.urnnbn;
 
-import cz.cas.lib.proarc.common.export.mets.JhoveContext;
-import cz.cas.lib.proarc.common.export.mets.JhoveUtility;
+import cz.cas.lib.proarc.common.export.mets.JhovePool;
 import cz.cas.lib.proarc.common.export.mets.MetsExportException;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
 import cz.cas.lib.proarc.common.fedora.SearchView;
@@ -26,9 +25,19 @@ import cz.cas.lib.proarc.common.object.DigitalObjectElement;
 import cz.cas.lib.proarc.common.object.DigitalObjectManager;
 import cz.cas.lib.proarc.common.urnnbn.UrnNbnStatusHandler.Status;
 import cz.cas.lib.proarc.urnnbn.ResolverClient;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -37,16 +46,29 @@ import java.util.logging.Logger;
  *
  * @author Jan Pokorsky
  */
-public final class UrnNbnService {
+public class UrnNbnService {
+
+    private static final Logger LOG = Logger.getLogger(UrnNbnService.class.getName());
 
     private final DigitalObjectManager dom;
     private final SearchView search;
     private final ResolverClient client;
+    private final UrnNbnRegistrationOptions options;
 
     public UrnNbnService(ResolverClient client) {
-        dom = DigitalObjectManager.getDefault();
-        search = RemoteStorage.getInstance().getSearch();
+        this(client, new UrnNbnRegistrationOptions());
+    }
+
+    public UrnNbnService(ResolverClient client, UrnNbnRegistrationOptions options) {
+        this(DigitalObjectManager.getDefault(), RemoteStorage.getInstance().getSearch(), client, options);
+    }
+
+    UrnNbnService(DigitalObjectManager dom, SearchView search,
+            ResolverClient client, UrnNbnRegistrationOptions options) {
+        this.dom = dom;
+        this.search = search;
         this.client = client;
+        this.options = options;
     }
 
     public UrnNbnStatusHandler register(String pid, boolean hierarchy) {
@@ -54,6 +76,9 @@ public final class UrnNbnService {
     }
 
     public UrnNbnStatusHandler register(Collection<String> pids, boolean hierarchy) {
+        if (options.getThreadCount() > 1) {
+            return registerConcurrently(pids);
+        }
         LinkedHashSet<String> queue = new LinkedHashSet<String>(pids);
         UrnNbnStatusHandler statusHandler = new UrnNbnStatusHandler();
         DigitalObjectCrawler crawler = new DigitalObjectCrawler(dom, search, null);
@@ -61,23 +86,31 @@ public final class UrnNbnService {
         UrnNbnContext ctx = new UrnNbnContext();
         ctx.setStatus(statusHandler);
         ctx.setClient(client);
-        if (initJhove(ctx) == null) {
+        JhovePool pool = JhovePool.getDefault();
+        try {
+            ctx.setJhoveContext(pool.acquire());
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (MetsExportException ex) {
+            statusHandler.error((DigitalObjectElement) null, ex);
             return statusHandler;
         }
         try {
             for (String pid : pids) {
                 queue.remove(pid);
                 try {
+                    crawler.prefetch(pid);
                     DigitalObjectElement elm = crawler.getEntry(pid);
                     elm.accept(reg, ctx);
                 } catch (Exception ex) {
-                    Logger.getLogger(UrnNbnService.class.getName()).log(Level.SEVERE, null, ex);
+                    LOG.log(Level.SEVERE, null, ex);
                     statusHandler.error(pid, ex);
                     break;
                 }
             }
         } finally {
-            ctx.getJhoveContext().destroy();
+            pool.release(ctx.getJhoveContext());
         }
         for (String pid : queue) {
             statusHandler.warning(pid, Status.NOT_PROCESSED, "Not processed! \n" + pid);
@@ -85,13 +118,126 @@ public final class UrnNbnService {
         return statusHandler;
     }
 
-    private JhoveContext initJhove(UrnNbnContext ctx) {
+    /**
+     * Walks the hierarchies to find objects to register. Then the workers
+     * prepare registrations in parallel and send them through the limiter
+     * of resolver requests. Results are reported in the order of found objects.
+     */
+    private UrnNbnStatusHandler registerConcurrently(Collection<String> pids) {
+        LinkedHashSet<String> queue = new LinkedHashSet<String>(pids);
+        UrnNbnStatusHandler statusHandler = new UrnNbnStatusHandler();
+        DigitalObjectCrawler crawler = new DigitalObjectCrawler(dom, search, null);
+        UrnNbnVisitor walker = new UrnNbnVisitor(crawler);
+        List<DigitalObjectElement> found = new ArrayList<DigitalObjectElement>();
+        walker.setRegistrationQueue(found);
+        UrnNbnContext ctx = new UrnNbnContext();
+        ctx.setStatus(statusHandler);
+        for (String pid : pids) {
+            queue.remove(pid);
+            try {
+                crawler.prefetch(pid);
+                DigitalObjectElement elm = crawler.getEntry(pid);
+                elm.accept(walker, ctx);
+            } catch (Exception ex) {
+                LOG.log(Level.SEVERE, null, ex);
+                statusHandler.error(pid, ex);
+                break;
+            }
+        }
+        // register objects found before a failure as the serial registration does
+        registerFound(found, statusHandler);
+        for (String pid : queue) {
+            statusHandler.warning(pid, Status.NOT_PROCESSED, "Not processed! \n" + pid);
+        }
+        return statusHandler;
+    }
+
+    /**
+     * Registers found objects in parallel. Results are added to the status
+     * in the order of objects.
+     */
+    void registerFound(List<DigitalObjectElement> found, UrnNbnStatusHandler statusHandler) {
+        Map<String, DigitalObjectElement> elms = new LinkedHashMap<String, DigitalObjectElement>();
+        for (DigitalObjectElement elm : found) {
+            elms.put(elm.getPid(), elm);
+        }
+        ResolverRequestLimiter limiter = new ResolverRequestLimiter(
+                options.getMaxRequests(), options.getRequestsPerSecond());
+        AtomicBoolean failed = new AtomicBoolean();
+        ExecutorService workers = Executors.newFixedThreadPool(options.getThreadCount());
         try {
-            ctx.setJhoveContext(JhoveUtility.createContext());
-        } catch (MetsExportException ex) {
-            ctx.getStatus().error((DigitalObjectElement) null, ex);
+            List<Future<UrnNbnStatusHandler>> results = new ArrayList<Future<UrnNbnStatusHandler>>(elms.size());
+            for (DigitalObjectElement elm : elms.values()) {
+                results.add(workers.submit(new RegistrationTask(elm, limiter, failed)));
+            }
+            for (Future<UrnNbnStatusHandler> result : results) {
+                statusHandler.addAll(result.get());
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(ex);
+        } catch (ExecutionException ex) {
+            throw new IllegalStateException(ex.getCause());
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    /**
+     * Registers the object and its unregistered descendants.
+     * It runs in a worker thread.
+     */
+    void registerObject(DigitalObjectElement elm, UrnNbnContext ctx) throws Exception {
+        DigitalObjectCrawler crawler = new DigitalObjectCrawler(dom, search, null);
+        DigitalObjectElement entry = crawler.getEntry(elm.getPid());
+        entry.accept(new UrnNbnVisitor(crawler), ctx);
+    }
+
+    /**
+     * Registers a single object with own crawler, visitor and status.
+     * The first failure skips registrations not started yet.
+     */
+    private final class RegistrationTask implements Callable<UrnNbnStatusHandler> {
+
+        private final DigitalObjectElement elm;
+        private final ResolverRequestLimiter limiter;
+        private final AtomicBoolean failed;
+
+        RegistrationTask(DigitalObjectElement elm, ResolverRequestLimiter limiter, AtomicBoolean failed) {
+            this.elm = elm;
+            this.limiter = limiter;
+            this.failed = failed;
+        }
+
+        @Override
+        public UrnNbnStatusHandler call() throws Exception {
+            UrnNbnStatusHandler status = new UrnNbnStatusHandler();
+            if (failed.get()) {
+                status.warning(elm, Status.NOT_PROCESSED, "Not processed! \n" + elm.getPid());
+                return status;
+            }
+            UrnNbnContext ctx = new UrnNbnContext();
+            ctx.setStatus(status);
+            ctx.setClient(client);
+            ctx.setLimiter(limiter);
+            JhovePool pool = JhovePool.getDefault();
+            try {
+                ctx.setJhoveContext(pool.acquire());
+            } catch (MetsExportException ex) {
+                status.error(elm, ex);
+                return status;
+            }
+            try {
+                registerObject(elm, ctx);
+            } catch (Exception ex) {
+                LOG.log(Level.SEVERE, elm.getPid(), ex);
+                failed.set(true);
+                status.error(elm, ex);
+            } finally {
+                pool.release(ctx.getJhoveContext());
+            }
+            return status;
         }
-        return ctx.getJhoveContext();
     }
 
 }
@@ -114,6 +114,15 @@ public class UrnNbnStatusHandler {
         return pids;
     }
 
+    /**
+     * Appends results of another handler.
+     */
+    void addAll(UrnNbnStatusHandler other) {
+        for (Map.Entry<String, PidResult> entry : other.getPids().entrySet()) {
+            getEntry(entry.getKey()).addAll(entry.getValue());
+        }
+    }
+
     private PidResult getEntry(String pid) {
         PidResult pe = pids.get(pid);
         if (pe == null) {
@@ -147,6 +156,18 @@ public class UrnNbnStatusHandler {
             return entries;
         }
 
+        void addAll(PidResult other) {
+            if (pid == null) {
+                pid = other.pid;
+            }
+            if (other.urnNbn != null) {
+                urnNbn = other.urnNbn;
+            }
+            for (Map.Entry<LogType, List<StatusEntry>> entry : other.logs.entrySet()) {
+                getLogs(entry.getKey()).addAll(entry.getValue());
+            }
+        }
+
         public PidResult ok(String urnNbn) {
             this.urnNbn = urnNbn;
             return this;
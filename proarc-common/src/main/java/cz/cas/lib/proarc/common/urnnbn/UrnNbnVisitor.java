@@ -97,10 +97,26 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
      */
     private Deque<String> traversePath = new ArrayDeque<String>();
 
+    /**
+     * Objects found to register later. {@code null} means to register them at once.
+     */
+    private List<DigitalObjectElement> registrationQueue;
+
     public UrnNbnVisitor(DigitalObjectCrawler crawler) {
         super(crawler);
     }
 
+    /**
+     * Makes the visitor to collect objects to register instead of registering them.
+     * Each collected object can be registered later by a new visitor
+     * starting at that object.
+     *
+     * @param queue the list to add the found objects
+     */
+    void setRegistrationQueue(List<DigitalObjectElement> queue) {
+        this.registrationQueue = queue;
+    }
+
     @Override
     public Void visit(DigitalObjectElement elm, UrnNbnContext p) throws VisitorException {
         try {
@@ -119,6 +135,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
                     "The issue under " + registeringObject.toLog());
             return null;
         }
+        if (defer(elm)) {
+            return null;
+        }
         try {
             registeringObject = elm;
             return processNdkPeriodicalIssue(elm, p);
@@ -144,6 +163,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
             DigitalObjectElement parent = getCrawler().getParent(elm.getPid());
             String parentModelId = parent.getModelId();
             if (parent == DigitalObjectElement.NULL || NdkPlugin.MODEL_PERIODICALVOLUME.equals(parentModelId)) {
+                if (defer(elm)) {
+                    return null;
+                }
                 try {
                     registeringObject = elm;
                     return processNdkPeriodicalIssue(elm, p);
@@ -167,6 +189,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
                     "The volume under " + registeringObject.toLog());
             return null;
         }
+        if (defer(elm)) {
+            return null;
+        }
         try {
             registeringObject = elm;
             return processNdkMonographVolumeOrSupplement(elm, p);
@@ -191,6 +216,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
         try {
             DigitalObjectElement parent = getCrawler().getParent(elm.getPid());
             if (parent == DigitalObjectElement.NULL || NdkPlugin.MODEL_MONOGRAPHTITLE.equals(parent.getModelId())) {
+                if (defer(elm)) {
+                    return null;
+                }
                 try {
                     registeringObject = elm;
                     return processNdkMonographVolumeOrSupplement(elm, p);
@@ -214,6 +242,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
                     "The cartographic under " + registeringObject.toLog());
             return null;
         }
+        if (defer(elm)) {
+            return null;
+        }
         try {
             registeringObject = elm;
             return processOtherEntity(elm, "cartographic", p);
@@ -232,6 +263,9 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
                     "The sheet music under " + registeringObject.toLog());
             return null;
         }
+        if (defer(elm)) {
+            return null;
+        }
         try {
             registeringObject = elm;
             return processOtherEntity(elm, "sheetmusic", p);
@@ -282,6 +316,14 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
         return null;
     }
 
+    private boolean defer(DigitalObjectElement elm) {
+        if (registrationQueue == null) {
+            return false;
+        }
+        registrationQueue.add(elm);
+        return true;
+    }
+
     private boolean isEntryPoint() {
         return traversePath.size() == 1;
     }
@@ -476,9 +518,12 @@ public class UrnNbnVisitor extends DefaultNdkVisitor<Void, UrnNbnContext> {
         return true;
     }
 
-    private UrnNbn registerEntity(Import entity, DigitalObjectElement elm, UrnNbnContext p) {
+    UrnNbn registerEntity(Import entity, DigitalObjectElement elm, UrnNbnContext p) {
         try {
-            cz.cas.lib.proarc.urnnbn.model.response.Response response = p.getClient().registerObject(entity);
+            ResolverRequestLimiter limiter = p.getLimiter();
+            cz.cas.lib.proarc.urnnbn.model.response.Response response = limiter == null
+                    ? p.getClient().registerObject(entity)
+                    : limiter.registerObject(p.getClient(), entity);
             ErrorType error = response.getError();
             if (error != null) {
                 // remote registration failed
@@ -30,6 +30,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.sql.DataSource;
 import org.apache.commons.io.FileUtils;
@@ -48,14 +49,25 @@ final class UserManagerSql implements UserManager {
     private final PermissionSqlStorage permissionStorage;
     private final RemoteStorage remoteStorage;
     private final DaoFactory daos;
+    /** The cache of permissions and groups or {@code null}. */
+    private final UserPermissionCache cache;
 
     public UserManagerSql(DataSource source, File defaultHome, RemoteStorage remoteStorage, DaoFactory daos) {
+        this(source, defaultHome, remoteStorage, daos, 0);
+    }
+
+    /**
+     * @param cacheTtl the number of seconds cached permissions are valid; 0 disables the cache
+     */
+    public UserManagerSql(DataSource source, File defaultHome, RemoteStorage remoteStorage,
+            DaoFactory daos, int cacheTtl) {
         this.source = source;
         this.defaultHome = defaultHome;
         groupStorage = new GroupSqlStorage(source);
         permissionStorage = new PermissionSqlStorage(source);
         this.remoteStorage = remoteStorage;
         this.daos = daos;
+        this.cache = cacheTtl > 0 ? new UserPermissionCache(cacheTtl * 1000L) : null;
     }
 
     @Override
@@ -199,6 +211,7 @@ final class UserManagerSql implements UserManager {
             users.update(profile);
             filter(profile);
             tx.commit();
+            invalidate(profile.getId());
         } catch (Throwable ex) {
             tx.rollback();
             throw new IllegalStateException(String.valueOf(filter(profile)), ex);
@@ -293,6 +306,7 @@ final class UserManagerSql implements UserManager {
                 c.commit();
                 ftx.commit();
                 rollback = false;
+                invalidate(user.getId());
             } finally {
                 ftx.close();
                 DbUtils.close(c, rollback);
@@ -304,11 +318,23 @@ final class UserManagerSql implements UserManager {
 
     @Override
     public List<Group> findUserGroups(int userId) {
+        long version = 0;
+        if (cache != null) {
+            List<Group> groups = cache.getGroups(userId);
+            if (groups != null) {
+                return groups;
+            }
+            version = cache.getVersion();
+        }
         try {
             Connection c = getConnection();
             try {
                 c.setAutoCommit(true);
-                return groupStorage.findUserGroups(c, userId);
+                List<Group> groups = groupStorage.findUserGroups(c, userId);
+                if (cache != null) {
+                    cache.putGroups(userId, groups, version);
+                }
+                return groups;
             } finally {
                 DbUtils.close(c);
             }
@@ -319,11 +345,27 @@ final class UserManagerSql implements UserManager {
 
     @Override
     public Set<Permission> findUserPermissions(int userId) {
+        long version = 0;
+        if (cache != null) {
+            Set<Permission> permissions = cache.getPermissions(userId);
+            if (permissions != null) {
+                return permissions;
+            }
+            version = cache.getVersion();
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("permission cache miss: " + userId + ", hits: " + cache.getHitCount()
+                        + ", misses: " + cache.getMissCount());
+            }
+        }
         try {
             Connection c = getConnection();
             try {
                 c.setAutoCommit(true);
-                return permissionStorage.find(c, userId);
+                Set<Permission> permissions = permissionStorage.find(c, userId);
+                if (cache != null) {
+                    permissions = cache.putPermissions(userId, permissions, version);
+                }
+                return permissions;
             } finally {
                 DbUtils.close(c);
             }
@@ -345,6 +387,7 @@ final class UserManagerSql implements UserManager {
                 permissionStorage.set(c, groupId, permissions);
                 c.commit();
                 rollback = false;
+                invalidateAll();
             } finally {
                 DbUtils.close(c, rollback);
             }
@@ -363,6 +406,7 @@ final class UserManagerSql implements UserManager {
                 permissionStorage.remove(c, groupId);
                 c.commit();
                 rollback = false;
+                invalidateAll();
             } finally {
                 DbUtils.close(c, rollback);
             }
@@ -371,6 +415,26 @@ final class UserManagerSql implements UserManager {
         }
     }
 
+    /**
+     * Gets the cache of permissions and groups.
+     * @return the cache or {@code null}
+     */
+    UserPermissionCache getCache() {
+        return cache;
+    }
+
+    private void invalidate(Integer userId) {
+        if (cache != null && userId != null) {
+            cache.invalidate(userId);
+        }
+    }
+
+    private void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
     private static Group createUserGroup(UserProfile user) {
         return Group.create(user.getUserName(), null);
     }
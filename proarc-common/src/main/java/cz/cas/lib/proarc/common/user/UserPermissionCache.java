@@ -0,0 +1,146 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.user;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caches permissions and groups of users for the time to live.
+ * Reads do not block. A value loaded before the invalidation of the cache
+ * is not stored to prevent stale permissions.
+ *
+ * @author Jan Pokorsky
+ */
+final class UserPermissionCache {
+
+    private final long ttl;
+    private final ConcurrentMap<Integer, Entry<Set<Permission>>> permissions
+            = new ConcurrentHashMap<Integer, Entry<Set<Permission>>>();
+    private final ConcurrentMap<Integer, Entry<List<Group>>> groups
+            = new ConcurrentHashMap<Integer, Entry<List<Group>>>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    /** Incremented by each invalidation. */
+    private long version;
+
+    /**
+     * @param ttl the number of milliseconds an entry is valid
+     */
+    UserPermissionCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * Gets the version to pass to {@code put} methods once the value is loaded.
+     */
+    public synchronized long getVersion() {
+        return version;
+    }
+
+    /**
+     * @return the unmodifiable set or {@code null}
+     */
+    public Set<Permission> getPermissions(int userId) {
+        return get(permissions, userId);
+    }
+
+    /**
+     * @return the cached set
+     */
+    public Set<Permission> putPermissions(int userId, Set<Permission> value, long version) {
+        Set<Permission> copy = Collections.unmodifiableSet(new LinkedHashSet<Permission>(value));
+        put(permissions, userId, copy, version);
+        return copy;
+    }
+
+    /**
+     * @return the copy of the cached list or {@code null}
+     */
+    public List<Group> getGroups(int userId) {
+        List<Group> value = get(groups, userId);
+        return value == null ? null : new ArrayList<Group>(value);
+    }
+
+    public void putGroups(int userId, List<Group> value, long version) {
+        put(groups, userId, new ArrayList<Group>(value), version);
+    }
+
+    /**
+     * Removes entries of the user.
+     */
+    public synchronized void invalidate(int userId) {
+        version++;
+        permissions.remove(userId);
+        groups.remove(userId);
+    }
+
+    /**
+     * Removes entries of all users, e.g. after a change of group permissions.
+     */
+    public synchronized void invalidateAll() {
+        version++;
+        permissions.clear();
+        groups.clear();
+    }
+
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    private <V> V get(ConcurrentMap<Integer, Entry<V>> map, int userId) {
+        Entry<V> entry = map.get(userId);
+        if (entry != null && entry.expires >= System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return entry.value;
+        }
+        if (entry != null) {
+            map.remove(userId, entry);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    private synchronized <V> void put(ConcurrentMap<Integer, Entry<V>> map, int userId, V value, long version) {
+        if (this.version == version) {
+            map.put(userId, new Entry<V>(value, System.currentTimeMillis() + ttl));
+        }
+    }
+
+    private static final class Entry<V> {
+
+        private final V value;
+        private final long expires;
+
+        Entry(V value, long expires) {
+            this.value = value;
+            this.expires = expires;
+        }
+
+    }
+
+}
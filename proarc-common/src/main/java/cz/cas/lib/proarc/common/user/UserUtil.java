@@ -55,7 +55,7 @@ public final class UserUtil {
         return new UserManagerSql(source,
                 config.getDefaultUsersHome(),
                 RemoteStorage.getInstance(config),
-                daos);
+                daos, config.getUsersCacheTtl());
     }
 
     public static UserManager getDefaultManger() {
@@ -18,6 +18,7 @@ package cz.cas.lib.proarc.common.workflow.model;
 
 import cz.cas.lib.proarc.common.workflow.model.Job.State;
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
@@ -58,6 +59,8 @@ public class JobFilter {
     @XmlElement(name = WorkflowModelConsts.JOB_FILTER_OFFSET)
     private int offset = 0;
     private int maxCount = 100;
+    private Timestamp afterTimestamp;
+    private BigDecimal afterId;
     private Locale locale;
 
     public List<String> getCreated() {
@@ -154,6 +157,27 @@ public class JobFilter {
         this.maxCount = maxCount;
     }
 
+    public Timestamp getAfterTimestamp() {
+        return afterTimestamp;
+    }
+
+    public BigDecimal getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * Selects jobs following the last job of the previous page.
+     * It is faster than the offset for deep pages. The offset is counted
+     * from the last job then. It applies just to the default sort.
+     *
+     * @param timestamp the modification date of the last job
+     * @param id the ID of the last job
+     */
+    public void setAfter(Timestamp timestamp, BigDecimal id) {
+        this.afterTimestamp = timestamp;
+        this.afterId = id;
+    }
+
     public Locale getLocale() {
         return locale;
     }
@@ -18,6 +18,7 @@ package cz.cas.lib.proarc.common.workflow.model;
 
 import cz.cas.lib.proarc.common.workflow.model.Task.State;
 import java.math.BigDecimal;
+import java.sql.Timestamp;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -61,6 +62,8 @@ public class TaskFilter {
     @XmlElement(name = WorkflowModelConsts.TASK_FILTER_OFFSET)
     private int offset = 0;
     private int maxCount = 100;
+    private Timestamp afterTimestamp;
+    private BigDecimal afterId;
     private Locale locale;
 
     public BigDecimal getId() {
@@ -177,6 +180,27 @@ public class TaskFilter {
         this.maxCount = maxCount;
     }
 
+    public Timestamp getAfterTimestamp() {
+        return afterTimestamp;
+    }
+
+    public BigDecimal getAfterId() {
+        return afterId;
+    }
+
+    /**
+     * Selects tasks following the last task of the previous page.
+     * It is faster than the offset for deep pages. The offset is counted
+     * from the last task then. It applies just to the default sort.
+     *
+     * @param timestamp the modification date of the last task
+     * @param id the ID of the last task
+     */
+    public void setAfter(Timestamp timestamp, BigDecimal id) {
+        this.afterTimestamp = timestamp;
+        this.afterId = id;
+    }
+
     public Locale getLocale() {
         return locale;
     }
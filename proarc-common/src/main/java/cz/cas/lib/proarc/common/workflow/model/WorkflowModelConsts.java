@@ -40,6 +40,8 @@ public final class WorkflowModelConsts {
      */
     public static final String JOB_TIMESTAMP = "timestamp";
 
+    public static final String JOB_FILTER_AFTER_ID = "afterId";
+    public static final String JOB_FILTER_AFTER_MODIFIED = "afterModified";
     public static final String JOB_FILTER_ID = "id";
     public static final String JOB_FILTER_CREATED = "created";
     public static final String JOB_FILTER_LABEL = "label";
@@ -70,6 +72,8 @@ public final class WorkflowModelConsts {
      */
     public static final String TASK_TIMESTAMP = "timestamp";
 
+    public static final String TASK_FILTER_AFTER_ID = "afterId";
+    public static final String TASK_FILTER_AFTER_MODIFIED = "afterModified";
     public static final String TASK_FILTER_ID = "id";
     public static final String TASK_FILTER_CREATED = "created";
     public static final String TASK_FILTER_JOBID = "jobId";
@@ -23,9 +23,17 @@ import cz.cas.lib.proarc.common.workflow.profile.ValueMapDefinition.ValueMapItem
 import java.io.File;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -50,16 +58,25 @@ import org.xml.sax.SAXException;
 /**
  * Reads actual configuration of workflow profiles.
  *
+ * <p>Profiles are published as an immutable snapshot indexed by names.
+ * Readers do not lock. The snapshot is replaced once the file changes.
+ * The change is detected by the file watcher if {@link #start started}
+ * or by the modification time on each read otherwise.
+ *
  * @author Jan Pokorsky
  */
 public class WorkflowProfiles {
 
     private static final Logger LOG = Logger.getLogger(WorkflowProfiles.class.getName());
     private static WorkflowProfiles INSTANCE;
+    private static JAXBContext JAXB_CONTEXT;
+    private static Schema SCHEMA;
 
     private final File file;
-    private long lastModified;
-    private WorkflowDefinition profiles;
+    private volatile Snapshot snapshot;
+    private volatile boolean watching;
+    private WatchService watchService;
+    private Thread watcher;
 
     public static WorkflowProfiles getInstance() {
         return INSTANCE;
@@ -89,19 +106,112 @@ public class WorkflowProfiles {
     }
 
     /**
-     * Gets actual profiles or {@code null} if in case of an error.
+     * Gets actual profiles. In case of an invalid file it gets the last valid
+     * profiles or {@code null} if there are none.
      */
-    public synchronized WorkflowDefinition getProfiles() {
+    public WorkflowDefinition getProfiles() {
+        Snapshot s = snapshot;
+        if (s != null && (watching || s.lastModified == file.lastModified())) {
+            return s.workflow;
+        }
         try {
-            read();
-            return profiles;
+            return reload(false).workflow;
         } catch (JAXBException ex) {
             LOG.log(Level.SEVERE, file.toString(), ex);
-            return null;
+            s = snapshot;
+            return s == null ? null : s.workflow;
+        }
+    }
+
+    /**
+     * Starts watching the file for changes. Reads of profiles then
+     * do not check the file.
+     */
+    public synchronized void start() throws IOException {
+        if (watcher != null) {
+            return ;
+        }
+        File folder = file.getAbsoluteFile().getParentFile();
+        watchService = FileSystems.getDefault().newWatchService();
+        folder.toPath().register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_MODIFY);
+        watcher = new Thread(new Runnable() {
+
+            @Override
+            public void run() {
+                watch();
+            }
+        }, "proarc-workflow-watcher");
+        watcher.setDaemon(true);
+        watcher.start();
+        // reread changes made before the registration
+        snapshot = null;
+        watching = true;
+    }
+
+    /**
+     * Stops watching the file.
+     */
+    public synchronized void close() {
+        watching = false;
+        if (watcher != null) {
+            watcher.interrupt();
+            watcher = null;
+        }
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ex) {
+                LOG.log(Level.WARNING, file.toString(), ex);
+            }
+            watchService = null;
+        }
+    }
+
+    private void watch() {
+        WatchService ws;
+        synchronized (this) {
+            ws = watchService;
+        }
+        String fileName = file.getName();
+        try {
+            while (true) {
+                WatchKey key = ws.take();
+                boolean changed = false;
+                for (WatchEvent<?> event : key.pollEvents()) {
+                    if (event.kind() == StandardWatchEventKinds.OVERFLOW
+                            || fileName.equals(String.valueOf(event.context()))) {
+                        changed = true;
+                    }
+                }
+                if (changed) {
+                    try {
+                        reload(true);
+                    } catch (JAXBException ex) {
+                        LOG.log(Level.SEVERE, file.toString(), ex);
+                    } catch (RuntimeException ex) {
+                        LOG.log(Level.SEVERE, file.toString(), ex);
+                    }
+                }
+                if (!key.reset()) {
+                    LOG.warning("Cannot watch " + file + " anymore!");
+                    break;
+                }
+            }
+        } catch (InterruptedException ex) {
+            // closed
+        } catch (ClosedWatchServiceException ex) {
+            // closed
+        } finally {
+            watching = false;
         }
     }
 
     public JobDefinition getProfile(WorkflowDefinition workflow, String name) {
+        Snapshot s = getSnapshot(workflow);
+        if (s != null) {
+            return s.jobs.get(name);
+        }
         for (JobDefinition job : workflow.getJobs()) {
             if (job.getName().equals(name)) {
                 return job;
@@ -111,6 +221,10 @@ public class WorkflowProfiles {
     }
 
     public TaskDefinition getTaskProfile(WorkflowDefinition workflow, String taskName) {
+        Snapshot s = getSnapshot(workflow);
+        if (s != null) {
+            return s.tasks.get(taskName);
+        }
         for (TaskDefinition task : workflow.getTasks()) {
             if (task.getName().equals(taskName)) {
                 return task;
@@ -133,6 +247,11 @@ public class WorkflowProfiles {
     }
 
     public ParamDefinition getParamProfile(TaskDefinition task, String paramName) {
+        Snapshot s = snapshot;
+        Map<String, ParamDefinition> params = s == null ? null : s.params.get(task);
+        if (params != null) {
+            return params.get(paramName);
+        }
         for (ParamDefinition paramDef : task.getParams()) {
             if (paramDef.getName().equals(paramName)) {
                 return paramDef;
@@ -142,6 +261,10 @@ public class WorkflowProfiles {
     }
 
     public MaterialDefinition getMaterialProfile(WorkflowDefinition workflow, String materialName) {
+        Snapshot s = getSnapshot(workflow);
+        if (s != null) {
+            return s.materials.get(materialName);
+        }
         for (MaterialDefinition md : workflow.getMaterials()) {
             if (md.getName().equals(materialName)) {
                 return md;
@@ -248,33 +371,43 @@ public class WorkflowProfiles {
         return sortedTasks;
     }
 
-    private synchronized void setProfiles(WorkflowDefinition profiles, long time) {
-        if (time != lastModified) {
-            this.profiles = profiles;
-            this.lastModified = time;
-        }
+    /**
+     * Gets the snapshot of the passed profiles.
+     * @return the snapshot or {@code null} if the profiles are not actual
+     */
+    private Snapshot getSnapshot(WorkflowDefinition workflow) {
+        Snapshot s = snapshot;
+        return s != null && s.workflow == workflow && workflow != null ? s : null;
     }
 
-    private void read() throws JAXBException {
+    /**
+     * Reads the file and publishes a new snapshot. An invalid file, e.g. a file
+     * being rewritten, keeps the last valid profiles.
+     * @param force {@code false} skips the read of the unmodified file
+     */
+    private synchronized Snapshot reload(boolean force) throws JAXBException {
         long currentTime = file.lastModified();
-        if (currentTime == lastModified) {
-            return ;
+        Snapshot s = snapshot;
+        if (!force && s != null && s.lastModified == currentTime) {
+            return s;
         }
         Unmarshaller unmarshaller = getUnmarshaller();
         ValidationEventCollector errors = (ValidationEventCollector) unmarshaller.getEventHandler();
-        WorkflowDefinition fetchedWf = null;
+        Snapshot fetched = null;
         try {
             WorkflowDefinition wf = (WorkflowDefinition) unmarshaller.unmarshal(file);
             if (!errors.hasEvents()) {
-                readCaches(wf);
-                fetchedWf = wf;
+                fetched = new Snapshot(wf, currentTime);
             }
         } catch (UnmarshalException ex) {
             if (!errors.hasEvents()) {
                 throw ex;
             }
         } finally {
-            setProfiles(fetchedWf, currentTime);
+            if (fetched == null) {
+                fetched = new Snapshot(s == null ? null : s.workflow, currentTime);
+            }
+            snapshot = fetched;
         }
         if (errors.hasEvents()) {
             StringBuilder err = new StringBuilder();
@@ -283,29 +416,24 @@ public class WorkflowProfiles {
             }
             throw new JAXBException(err.toString());
         }
+        return snapshot;
     }
 
-    private void readCaches(WorkflowDefinition wf) {
-        if (wf == null) {
-            return ;
-        }
-        for (JobDefinition job : wf.getJobs()) {
-            job.setTaskNamesSortedByBlockers(Collections.unmodifiableList(getSortedTaskNames(job)));
+    private static synchronized Unmarshaller getUnmarshaller() throws JAXBException {
+        if (JAXB_CONTEXT == null) {
+            JAXB_CONTEXT = JAXBContext.newInstance(WorkflowDefinition.class);
         }
-    }
-
-    private Unmarshaller getUnmarshaller() throws JAXBException {
-        JAXBContext jctx = JAXBContext.newInstance(WorkflowDefinition.class);
-        Unmarshaller unmarshaller = jctx.createUnmarshaller();
-        SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-        URL schemaUrl = WorkflowDefinition.class.getResource("workflow.xsd");
-        Schema schema = null;
-        try {
-            schema = sf.newSchema(new StreamSource(schemaUrl.toExternalForm()));
-        } catch (SAXException ex) {
-            throw new JAXBException("Missing schema workflow.xsd!", ex);
+        if (SCHEMA == null) {
+            SchemaFactory sf = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
+            URL schemaUrl = WorkflowDefinition.class.getResource("workflow.xsd");
+            try {
+                SCHEMA = sf.newSchema(new StreamSource(schemaUrl.toExternalForm()));
+            } catch (SAXException ex) {
+                throw new JAXBException("Missing schema workflow.xsd!", ex);
+            }
         }
-        unmarshaller.setSchema(schema);
+        Unmarshaller unmarshaller = JAXB_CONTEXT.createUnmarshaller();
+        unmarshaller.setSchema(SCHEMA);
         ValidationEventCollector errors = new ValidationEventCollector() {
 
             @Override
@@ -319,4 +447,52 @@ public class WorkflowProfiles {
         return unmarshaller;
     }
 
+    /**
+     * The immutable view of profiles indexed by names.
+     */
+    private final class Snapshot {
+
+        private final WorkflowDefinition workflow;
+        private final long lastModified;
+        private final Map<String, JobDefinition> jobs = new HashMap<String, JobDefinition>();
+        private final Map<String, TaskDefinition> tasks = new HashMap<String, TaskDefinition>();
+        private final Map<String, MaterialDefinition> materials = new HashMap<String, MaterialDefinition>();
+        private final Map<TaskDefinition, Map<String, ParamDefinition>> params
+                = new IdentityHashMap<TaskDefinition, Map<String, ParamDefinition>>();
+
+        /**
+         * @param workflow profiles or {@code null} in case of an invalid file
+         */
+        Snapshot(WorkflowDefinition workflow, long lastModified) {
+            this.workflow = workflow;
+            this.lastModified = lastModified;
+            if (workflow == null) {
+                return ;
+            }
+            // the first declaration wins as with the linear search
+            for (JobDefinition job : workflow.getJobs()) {
+                job.setTaskNamesSortedByBlockers(Collections.unmodifiableList(getSortedTaskNames(job)));
+                putIfAbsent(jobs, job.getName(), job);
+            }
+            for (TaskDefinition task : workflow.getTasks()) {
+                putIfAbsent(tasks, task.getName(), task);
+                Map<String, ParamDefinition> taskParams = new HashMap<String, ParamDefinition>();
+                for (ParamDefinition param : task.getParams()) {
+                    putIfAbsent(taskParams, param.getName(), param);
+                }
+                params.put(task, taskParams);
+            }
+            for (MaterialDefinition material : workflow.getMaterials()) {
+                putIfAbsent(materials, material.getName(), material);
+            }
+        }
+
+        private <V> void putIfAbsent(Map<String, V> map, String name, V value) {
+            if (!map.containsKey(name)) {
+                map.put(name, value);
+            }
+        }
+
+    }
+
 }
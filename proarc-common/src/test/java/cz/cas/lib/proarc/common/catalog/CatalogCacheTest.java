@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class CatalogCacheTest {
+
+    private StubCatalog stub;
+
+    @Before
+    public void setUp() {
+        stub = new StubCatalog();
+    }
+
+    @Test
+    public void testFind() throws Exception {
+        CatalogCache cache = new CatalogCache(new CatalogCacheOptions());
+        BibliographicCatalog catalog = cache.decorate("catalog1", stub);
+        List<MetadataItem> result = catalog.find("issn", "1234", Locale.ENGLISH);
+        assertEquals(1, result.size());
+        assertEquals("1234", result.get(0).getMods());
+        assertEquals(result.get(0), catalog.find("issn", "1234", Locale.ENGLISH).get(0));
+        assertEquals(1, stub.count.get());
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // other keys
+        catalog.find("issn", "1234", Locale.GERMAN);
+        catalog.find("isbn", "1234", Locale.ENGLISH);
+        cache.decorate("catalog2", stub).find("issn", "1234", Locale.ENGLISH);
+        assertEquals(4, stub.count.get());
+
+        cache.clear();
+        catalog.find("issn", "1234", Locale.ENGLISH);
+        assertEquals(5, stub.count.get());
+    }
+
+    @Test
+    public void testEmptyResult() throws Exception {
+        CatalogCache cache = new CatalogCache(new CatalogCacheOptions().setEmptyTtl(1));
+        BibliographicCatalog catalog = cache.decorate("catalog1", stub);
+        assertTrue(catalog.find("issn", "", null).isEmpty());
+        assertTrue(catalog.find("issn", "", null).isEmpty());
+        assertEquals(1, stub.count.get());
+        Thread.sleep(1100);
+        assertTrue(catalog.find("issn", "", null).isEmpty());
+        assertEquals(2, stub.count.get());
+
+        cache = new CatalogCache(new CatalogCacheOptions().setEmptyTtl(0));
+        catalog = cache.decorate("catalog1", stub);
+        catalog.find("issn", "", null);
+        catalog.find("issn", "", null);
+        assertEquals(4, stub.count.get());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testFailure() throws Exception {
+        CatalogCache cache = new CatalogCache(new CatalogCacheOptions());
+        BibliographicCatalog catalog = cache.decorate("catalog1", stub);
+        try {
+            catalog.find("issn", "fail", null);
+            fail();
+        } catch (IOException ex) {
+            assertEquals("fail", ex.getMessage());
+        }
+        try {
+            catalog.find("issn", "fail", null);
+            fail();
+        } catch (IOException ex) {
+            assertEquals("fail", ex.getMessage());
+        }
+        assertEquals(2, stub.count.get());
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testSizeLimit() throws Exception {
+        CatalogCache cache = new CatalogCache(new CatalogCacheOptions().setSize(2));
+        BibliographicCatalog catalog = cache.decorate("catalog1", stub);
+        catalog.find("issn", "1", null);
+        catalog.find("issn", "2", null);
+        catalog.find("issn", "3", null);
+        assertEquals(2, cache.getSize());
+        catalog.find("issn", "1", null);
+        assertEquals(4, stub.count.get());
+    }
+
+    @Test
+    public void testConcurrentLookups() throws Exception {
+        CatalogCache cache = new CatalogCache(new CatalogCacheOptions());
+        final BibliographicCatalog catalog = cache.decorate("catalog1", stub);
+        stub.latch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(3);
+        try {
+            Callable<List<MetadataItem>> lookup = new Callable<List<MetadataItem>>() {
+
+                @Override
+                public List<MetadataItem> call() throws Exception {
+                    return catalog.find("issn", "1234", null);
+                }
+            };
+            Future<List<MetadataItem>> f1 = executor.submit(lookup);
+            Future<List<MetadataItem>> f2 = executor.submit(lookup);
+            Future<List<MetadataItem>> f3 = executor.submit(lookup);
+            // let all lookups reach the cache
+            long timeout = System.currentTimeMillis() + 5000;
+            while (cache.getHitCount() + cache.getMissCount() < 3 && System.currentTimeMillis() < timeout) {
+                Thread.sleep(10);
+            }
+            stub.latch.countDown();
+            assertEquals("1234", f1.get(5, TimeUnit.SECONDS).get(0).getMods());
+            assertEquals("1234", f2.get(5, TimeUnit.SECONDS).get(0).getMods());
+            assertEquals("1234", f3.get(5, TimeUnit.SECONDS).get(0).getMods());
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, stub.count.get());
+    }
+
+    private static final class StubCatalog implements BibliographicCatalog {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private volatile CountDownLatch latch;
+
+        @Override
+        public List<MetadataItem> find(String fieldName, String value, Locale locale) throws IOException {
+            count.incrementAndGet();
+            if (latch != null) {
+                try {
+                    latch.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+            }
+            if ("fail".equals(value)) {
+                throw new IOException(value);
+            } else if (value.isEmpty()) {
+                return Collections.emptyList();
+            }
+            return Collections.singletonList(new MetadataItem(1, value, value, value));
+        }
+
+    }
+
+}
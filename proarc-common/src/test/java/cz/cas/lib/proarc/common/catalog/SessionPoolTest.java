@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.catalog;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class SessionPoolTest {
+
+    private List<String> disposed;
+    private SessionPool<String> pool;
+
+    @Before
+    public void setUp() {
+        disposed = new ArrayList<String>();
+        pool = new SessionPool<String>(new SessionPool.Disposer<String>() {
+
+            @Override
+            public void dispose(String session) {
+                disposed.add(session);
+            }
+        });
+    }
+
+    @Test
+    public void testBorrow() {
+        assertNull(pool.borrow("catalog1", 60000));
+        pool.release("catalog1", "session1", 2, 60000);
+        pool.release("catalog1", "session2", 2, 60000);
+        // over the limit
+        pool.release("catalog1", "session3", 2, 60000);
+        assertEquals(Arrays.asList("session3"), disposed);
+        assertEquals(2, pool.getIdleCount("catalog1"));
+        assertNull(pool.borrow("catalog2", 60000));
+        // the most recently used first
+        assertEquals("session2", pool.borrow("catalog1", 60000));
+        assertEquals("session1", pool.borrow("catalog1", 60000));
+        assertNull(pool.borrow("catalog1", 60000));
+        pool.release("catalog1", "session4", 0, 60000);
+        assertEquals(Arrays.asList("session3", "session4"), disposed);
+    }
+
+    @Test
+    public void testIdleTimeout() throws Exception {
+        pool.release("catalog1", "session1", 2, 60000);
+        pool.release("catalog1", "session2", 2, 60000);
+        Thread.sleep(5);
+        assertNull(pool.borrow("catalog1", 1));
+        assertEquals(Arrays.asList("session2", "session1"), disposed);
+        assertEquals(0, pool.getIdleCount("catalog1"));
+    }
+
+    @Test
+    public void testReap() throws Exception {
+        final List<String> reaped = Collections.synchronizedList(new ArrayList<String>());
+        SessionPool<String> reaping = new SessionPool<String>(new SessionPool.Disposer<String>() {
+
+            @Override
+            public void dispose(String session) {
+                reaped.add(session);
+            }
+        }, 10);
+        reaping.release("catalog1", "session1", 2, 1);
+        reaping.release("catalog2", "session2", 2, 60000);
+        // expired sessions are disposed without a borrow
+        long timeout = System.currentTimeMillis() + 5000;
+        while (reaped.isEmpty() && System.currentTimeMillis() < timeout) {
+            Thread.sleep(10);
+        }
+        assertEquals(Arrays.asList("session1"), reaped);
+        assertEquals(0, reaping.getIdleCount("catalog1"));
+        assertEquals(1, reaping.getIdleCount("catalog2"));
+        reaping.close();
+        assertEquals(Arrays.asList("session1", "session2"), reaped);
+    }
+
+    @Test
+    public void testClose() {
+        pool.release("catalog1", "session1", 2, 60000);
+        pool.release("catalog2", "session2", 2, 60000);
+        pool.close();
+        assertEquals(2, disposed.size());
+        assertNull(pool.borrow("catalog1", 60000));
+    }
+
+}
@@ -18,10 +18,18 @@ package cz.cas.lib.proarc.common.catalog;
 
 import cz.cas.lib.proarc.common.catalog.Z3950Catalog.Z3950Field;
 import cz.cas.lib.proarc.common.config.CatalogConfiguration;
+import cz.cas.lib.proarc.z3950.Z3950Client;
+import cz.cas.lib.proarc.z3950.Z3950ClientException;
+import java.io.IOException;
 import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
 import org.apache.commons.configuration.BaseConfiguration;
 import org.junit.After;
 import org.junit.AfterClass;
@@ -103,6 +111,53 @@ public class Z3950CatalogTest {
         assertFalse(result.isEmpty());
     }
 
+    @Test
+    public void testFindRetry() throws Exception {
+        final List<Z3950Client> searched = new ArrayList<Z3950Client>();
+        final Set<Z3950Client> broken = new HashSet<Z3950Client>();
+        final AtomicBoolean serverDown = new AtomicBoolean();
+        Z3950Catalog catalog = new Z3950Catalog("retry.test", 9991, "testbase", null,
+                Collections.<String, Z3950Field>emptyMap()) {
+
+            @Override
+            Iterable<byte[]> search(Z3950Client client, String query) throws Z3950ClientException {
+                searched.add(client);
+                if (serverDown.get() || broken.contains(client)) {
+                    throw new Z3950ClientException(client, "Connection reset.");
+                }
+                return Collections.emptyList();
+            }
+        };
+        catalog.find("isbn", "123", Locale.ENGLISH);
+        assertEquals(1, searched.size());
+        Z3950Client session1 = searched.get(0);
+
+        // the kept alive session is broken meanwhile
+        broken.add(session1);
+        catalog.find("isbn", "123", Locale.ENGLISH);
+        assertEquals(3, searched.size());
+        assertSame(session1, searched.get(1));
+        Z3950Client session2 = searched.get(2);
+        assertNotSame(session1, session2);
+
+        // a new session is not retried
+        serverDown.set(true);
+        try {
+            catalog.find("isbn", "123", Locale.ENGLISH);
+            fail();
+        } catch (IOException ex) {
+            assertTrue(ex.getCause() instanceof Z3950ClientException);
+        }
+        assertEquals(5, searched.size());
+        assertSame(session2, searched.get(3));
+
+        // broken sessions are not kept
+        serverDown.set(false);
+        catalog.find("isbn", "123", Locale.ENGLISH);
+        assertEquals(6, searched.size());
+        assertFalse(searched.subList(0, 5).contains(searched.get(5)));
+    }
+
     @Test
     public void testReadFields() {
         final String catalogId = "catalogId";
@@ -126,6 +126,7 @@ public class EmpireBatchDaoTest {
         batch.setTitle("title_folder/");
         batch.setUserId(1);
         batch.setProfileId(ConfigurationProfile.DEFAULT);
+        batch.setPriority(1);
         dao.update(batch);
         tx.commit();
 
@@ -206,6 +207,7 @@ public class EmpireBatchDaoTest {
         assertNotNull(result);
         assertEquals(1, (int) result.getId());
         assertEquals(ConfigurationProfile.DEFAULT, result.getProfileId());
+        assertEquals(Integer.valueOf(1), result.getPriority());
     }
 
     @Test
@@ -305,6 +307,31 @@ public class EmpireBatchDaoTest {
         assertEquals(0, view.size());
     }
 
+    @Test
+    public void testViewAfter() throws Exception {
+        IDataSet db = database(
+                support.loadFlatXmlDataStream(getClass(), "user.xml"),
+                support.loadFlatXmlDataStream(getClass(), "batch_with_items.xml")
+                );
+        support.cleanInsert(support.getConnection(tx), db);
+        tx.commit();
+
+        List<BatchView> view = dao.view(new BatchViewFilter().setUserId(1).setMaxCount(1));
+        assertEquals(1, view.size());
+        BatchView last = view.get(0);
+        assertEquals((Integer) 2, last.getId());
+
+        view = dao.view(new BatchViewFilter().setUserId(1).setMaxCount(1)
+                .setAfter(last.getCreate(), last.getId()));
+        assertEquals(1, view.size());
+        last = view.get(0);
+        assertEquals((Integer) 1, last.getId());
+
+        view = dao.view(new BatchViewFilter().setUserId(1).setMaxCount(1)
+                .setAfter(last.getCreate(), last.getId()));
+        assertEquals(0, view.size());
+    }
+
     @Test
     public void testViewDateFilter() throws Exception {
         IDataSet db = database(
@@ -19,7 +19,9 @@ package cz.cas.lib.proarc.common.dao.empiredb;
 import cz.cas.lib.proarc.common.dao.BatchItem;
 import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
 import cz.cas.lib.proarc.common.dao.BatchItem.Type;
+import cz.cas.lib.proarc.common.dao.ConcurrentModificationException;
 import java.sql.Timestamp;
+import java.util.Arrays;
 import java.util.List;
 import org.dbunit.Assertion;
 import org.dbunit.database.IDatabaseConnection;
@@ -136,6 +138,44 @@ public class EmpireBatchItemDaoTest {
         assertNull(item.getLog());
     }
 
+    @Test
+    public void testUpdateItems() throws Exception {
+        IDataSet db = database(
+                support.loadFlatXmlDataStream(getClass(), "user.xml"),
+                support.loadFlatXmlDataStream(getClass(), "batch.xml"),
+                support.loadFlatXmlDataStream(getClass(), "batch_item.xml")
+                );
+        support.cleanInsert(support.getConnection(tx), db);
+        support.initSequences(tx, 10,
+                schema.tableBatchItem.id.getSequenceName()
+                );
+        tx.commit();
+
+        BatchItem item1 = dao.find(1);
+        item1.setState(ObjectState.EXCLUDED.name());
+        BatchItem item2 = dao.create();
+        item2.setBatchId(1);
+        item2.setFile("file2.tiff");
+        item2.setPid("uuid:4a7c2e50-af36-11dd-9643-000d606f5dc6");
+        item2.setState(BatchItem.FileState.OK.name());
+        item2.setType(Type.FILE);
+        dao.update(Arrays.asList(item1, item2));
+        tx.commit();
+
+        assertNotNull(item2.getId());
+        assertEquals(ObjectState.EXCLUDED.name(), dao.find(1).getState());
+        assertEquals("file2.tiff", dao.find(item2.getId()).getFile());
+
+        // stale item
+        item1.setTimestamp(new Timestamp(1));
+        try {
+            dao.update(Arrays.asList(item1));
+            fail();
+        } catch (ConcurrentModificationException ex) {
+            tx.rollback();
+        }
+    }
+
     @Test
     public void testFind() throws Exception {
         IDataSet db = database(
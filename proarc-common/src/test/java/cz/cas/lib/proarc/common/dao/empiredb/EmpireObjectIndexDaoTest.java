@@ -0,0 +1,151 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.dao.empiredb;
+
+import cz.cas.lib.proarc.common.dao.IndexedObject;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import org.dbunit.dataset.IDataSet;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class EmpireObjectIndexDaoTest {
+
+    private DbUnitSupport support;
+    private EmpireDaoFactory daos;
+    private SqlTransaction tx;
+    private EmpireObjectIndexDao dao;
+
+    @Before
+    public void setUp() throws Exception {
+        support = new DbUnitSupport();
+        daos = new EmpireDaoFactory(support.getEmireCfg());
+        daos.init();
+        tx = daos.createTransaction();
+        dao = daos.createObjectIndexDao();
+        dao.setTransaction(tx);
+        IDataSet db = support.loadFlatXmlDataStream(getClass(), "object_index.xml");
+        support.cleanInsert(support.getConnection(tx), db);
+        tx.commit();
+    }
+
+    @After
+    public void tearDown() {
+        if (tx != null) {
+            tx.close();
+        }
+    }
+
+    @Test
+    public void testFindMembers() throws Exception {
+        List<IndexedObject> members = dao.findMembers("uuid:issue");
+        assertEquals(2, members.size());
+        assertEquals("uuid:page2", members.get(0).getPid());
+        assertEquals("uuid:page1", members.get(1).getPid());
+        assertEquals("device:scanner", members.get(1).getDevice());
+        assertEquals(Boolean.FALSE, members.get(1).getHasExport());
+        assertTrue(dao.findMembers("uuid:page1").isEmpty());
+    }
+
+    @Test
+    public void testFindReferrers() throws Exception {
+        List<IndexedObject> referrers = dao.findReferrers("uuid:page1");
+        assertEquals(1, referrers.size());
+        assertEquals("uuid:issue", referrers.get(0).getPid());
+        assertEquals(Boolean.TRUE, referrers.get(0).getHasExport());
+    }
+
+    @Test
+    public void testFindLast() throws Exception {
+        List<IndexedObject> result = dao.findLast(Arrays.asList("model:page"), false, 0, 10);
+        assertEquals(2, result.size());
+        assertEquals("uuid:page2", result.get(0).getPid());
+        assertEquals("uuid:page1", result.get(1).getPid());
+
+        result = dao.findLast(Arrays.asList("model:page", "model:ndkperiodicalissue"), true, 1, 1);
+        assertEquals(1, result.size());
+        assertEquals("uuid:page2", result.get(0).getPid());
+
+        assertTrue(dao.findLast(Collections.<String>emptyList(), true, 0, 10).isEmpty());
+    }
+
+    @Test
+    public void testFindByModel() throws Exception {
+        List<IndexedObject> result = dao.findByModel("model:page", 1000);
+        assertEquals(2, result.size());
+        assertEquals("uuid:page1", result.get(0).getPid());
+        assertEquals("uuid:page2", result.get(1).getPid());
+    }
+
+    @Test
+    public void testIsDeviceInUse() throws Exception {
+        assertTrue(dao.isDeviceInUse("device:scanner"));
+        // referred by a deleted object
+        assertFalse(dao.isDeviceInUse("device:deleted"));
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        IndexedObject page = dao.find("uuid:page2");
+        assertNotNull(page);
+        page.setLabel("2, TitlePage");
+        page.setModified(new Timestamp(System.currentTimeMillis()));
+        dao.update(page, Collections.<String>emptyList());
+
+        IndexedObject issue = dao.find("uuid:issue");
+        dao.update(issue, Arrays.asList("uuid:page1", "uuid:page2"));
+
+        IndexedObject page4 = dao.create();
+        page4.setPid("uuid:page4");
+        page4.setModel("model:page");
+        page4.setState("A");
+        page4.setCreated(new Timestamp(System.currentTimeMillis()));
+        page4.setModified(page4.getCreated());
+        page4.setHasExport(false);
+        dao.update(page4, Collections.<String>emptyList());
+        tx.commit();
+
+        assertEquals("2, TitlePage", dao.find("uuid:page2").getLabel());
+        List<IndexedObject> members = dao.findMembers("uuid:issue");
+        assertEquals(2, members.size());
+        assertEquals("uuid:page1", members.get(0).getPid());
+        assertEquals("uuid:page2", members.get(1).getPid());
+        assertNotNull(dao.find("uuid:page4"));
+    }
+
+    @Test
+    public void testRemove() throws Exception {
+        dao.remove("uuid:issue");
+        tx.commit();
+        assertNull(dao.find("uuid:issue"));
+        assertTrue(dao.findReferrers("uuid:page1").isEmpty());
+
+        Map<String, Timestamp> modified = dao.findModified();
+        assertEquals(3, modified.size());
+        assertEquals(Timestamp.valueOf("2016-01-02 10:00:00.0"), modified.get("uuid:page1"));
+    }
+
+}
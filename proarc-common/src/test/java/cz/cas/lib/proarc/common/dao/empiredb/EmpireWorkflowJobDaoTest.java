@@ -171,4 +171,35 @@ public class EmpireWorkflowJobDaoTest {
         assertEquals("job.stt", job0.getProfileName());
     }
 
+    @Test
+    public void testViewAfter() throws Exception {
+        IDataSet db = database(
+                support.loadFlatXmlDataStream(getClass(), "user.xml"),
+                support.loadFlatXmlDataStream(getClass(), "wf_job.xml")
+                );
+        support.cleanInsert(support.getConnection(tx), db);
+        tx.commit();
+
+        // both jobs have the same timestamp; the ID decides
+        JobFilter filter = new JobFilter();
+        filter.setMaxCount(1);
+        List<JobView> jobs = dao.view(filter);
+        assertEquals(1, jobs.size());
+        JobView last = jobs.get(0);
+        assertEquals(new BigDecimal(2), last.getId());
+
+        filter = new JobFilter();
+        filter.setMaxCount(1);
+        filter.setAfter(last.getTimestamp(), last.getId());
+        jobs = dao.view(filter);
+        assertEquals(1, jobs.size());
+        last = jobs.get(0);
+        assertEquals(BigDecimal.ONE, last.getId());
+
+        filter = new JobFilter();
+        filter.setMaxCount(1);
+        filter.setAfter(last.getTimestamp(), last.getId());
+        jobs = dao.view(filter);
+        assertEquals(0, jobs.size());
+    }
 }
@@ -146,4 +146,36 @@ public class EmpireWorkflowTaskDaoTest {
         assertEquals(2, tasks.size());
     }
 
+    @Test
+    public void testViewAfter() throws Exception {
+        IDataSet db = database(
+                support.loadFlatXmlDataStream(getClass(), "user.xml"),
+                support.loadFlatXmlDataStream(getClass(), "wf_job.xml"),
+                support.loadFlatXmlDataStream(getClass(), "wf_task.xml")
+                );
+        support.cleanInsert(support.getConnection(tx), db);
+        tx.commit();
+
+        // both tasks have the same timestamp; the ID decides
+        TaskFilter filter = new TaskFilter();
+        filter.setMaxCount(1);
+        List<TaskView> tasks = dao.view(filter);
+        assertEquals(1, tasks.size());
+        TaskView last = tasks.get(0);
+        assertEquals(BigDecimal.ONE, last.getId());
+
+        filter = new TaskFilter();
+        filter.setMaxCount(1);
+        filter.setAfter(last.getTimestamp(), last.getId());
+        tasks = dao.view(filter);
+        assertEquals(1, tasks.size());
+        last = tasks.get(0);
+        assertEquals(BigDecimal.TEN, last.getId());
+
+        filter = new TaskFilter();
+        filter.setMaxCount(1);
+        filter.setAfter(last.getTimestamp(), last.getId());
+        tasks = dao.view(filter);
+        assertEquals(0, tasks.size());
+    }
 }
@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import com.yourmediashelf.fedora.generated.foxml.DatastreamType;
+import com.yourmediashelf.fedora.generated.foxml.DatastreamVersionType;
+import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
+import com.yourmediashelf.fedora.generated.foxml.StateType;
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils;
+import cz.cas.lib.proarc.common.fedora.FoxmlUtils.ControlGroup;
+import java.io.File;
+import java.util.Random;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import org.apache.commons.io.FileUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class BinaryContentEmbedderTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testEmbed() throws Exception {
+        String pid = "uuid:0bcf9933-84e5-460f-9e94-d798b724d394";
+        DigitalObject dobj = FoxmlUtils.createFoxml(pid);
+        DatastreamVersionType version = FoxmlUtils.createDataStreamVersion(
+                dobj, "FULL", ControlGroup.MANAGED, false, StateType.A);
+        version.setMIMETYPE("image/jpeg");
+        DatastreamType datastream = FoxmlUtils.findDatastream(dobj, "FULL");
+
+        // the size not aligned to base64 blocks and chunks
+        byte[] bytes = new byte[3 * 16 * 1024 * 2 + 7];
+        new Random(1).nextBytes(bytes);
+        File content = temp.newFile("content.bin");
+        FileUtils.writeByteArrayToFile(content, bytes);
+
+        BinaryContentEmbedder embedder = new BinaryContentEmbedder(temp.getRoot());
+        embedder.add(datastream, version, content);
+        // rename after fetch like the export does
+        datastream.setID("IMG_FULL");
+        version.setID("IMG_FULL.0");
+        File foxml = new File(temp.getRoot(), "foxml.xml");
+        FoxmlUtils.marshal(new StreamResult(foxml), dobj, true);
+        embedder.embed(foxml);
+        embedder.clear();
+        assertFalse(content.exists());
+
+        DigitalObject result = FoxmlUtils.unmarshal(new StreamSource(foxml), DigitalObject.class);
+        DatastreamVersionType resultVersion = FoxmlUtils.findDataStreamVersion(result, "IMG_FULL");
+        assertNotNull(resultVersion);
+        assertEquals("IMG_FULL.0", resultVersion.getID());
+        assertArrayEquals(bytes, resultVersion.getBinaryContent());
+        assertEquals(1, temp.getRoot().list().length);
+    }
+
+}
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.config.AppConfiguration;
+import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
+import cz.cas.lib.proarc.common.dao.Batch;
+import cz.cas.lib.proarc.common.dao.BatchDao;
+import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.dao.BatchItemDao;
+import cz.cas.lib.proarc.common.dao.DaoFactory;
+import cz.cas.lib.proarc.common.dao.Transaction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ExportProcessTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+    /** stored states of the job */
+    private List<Batch.State> batchWrites;
+    /** stored states of items */
+    private List<String> itemWrites;
+    private ExportDispatcher dispatcher;
+    private Batch batch;
+    private List<BatchItem> items;
+
+    @Before
+    public void setUp() throws Exception {
+        batchWrites = new ArrayList<Batch.State>();
+        itemWrites = new ArrayList<String>();
+        AppConfiguration config = AppConfigurationFactory.getInstance().create(new HashMap<String, String>() {{
+            put(AppConfiguration.PROPERTY_APP_HOME, temp.getRoot().getPath());
+        }});
+        DaoFactory daos = EasyMock.createMock(DaoFactory.class);
+        EasyMock.expect(daos.createTransaction()).andAnswer(new IAnswer<Transaction>() {
+
+            @Override
+            public Transaction answer() throws Throwable {
+                Transaction tx = EasyMock.createNiceMock(Transaction.class);
+                EasyMock.replay(tx);
+                return tx;
+            }
+        }).anyTimes();
+        EasyMock.expect(daos.createBatch()).andAnswer(new IAnswer<BatchDao>() {
+
+            @Override
+            public BatchDao answer() throws Throwable {
+                BatchDao dao = EasyMock.createNiceMock(BatchDao.class);
+                dao.update(EasyMock.<Batch>anyObject());
+                EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+
+                    @Override
+                    public Object answer() throws Throwable {
+                        batchWrites.add(((Batch) EasyMock.getCurrentArguments()[0]).getState());
+                        return null;
+                    }
+                }).anyTimes();
+                EasyMock.replay(dao);
+                return dao;
+            }
+        }).anyTimes();
+        EasyMock.expect(daos.createBatchItem()).andAnswer(new IAnswer<BatchItemDao>() {
+
+            @Override
+            public BatchItemDao answer() throws Throwable {
+                BatchItemDao dao = EasyMock.createNiceMock(BatchItemDao.class);
+                dao.update(EasyMock.<Collection<BatchItem>>anyObject());
+                EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+
+                    @Override
+                    @SuppressWarnings("unchecked")
+                    public Object answer() throws Throwable {
+                        for (BatchItem item : (Collection<BatchItem>) EasyMock.getCurrentArguments()[0]) {
+                            itemWrites.add(item.getState());
+                        }
+                        return null;
+                    }
+                }).anyTimes();
+                EasyMock.replay(dao);
+                return dao;
+            }
+        }).anyTimes();
+        EasyMock.replay(daos);
+        dispatcher = new ExportDispatcher(new ExportDispatcherOptions(), config, daos);
+
+        batch = new Batch();
+        batch.setId(1);
+        batch.setFolder(dispatcher.relativizeFolder(temp.getRoot()));
+        batch.setState(Batch.State.EXPORT_PLANNED);
+        BatchItem item = new BatchItem();
+        item.setBatchId(1);
+        item.setPid("uuid:00000000-0000-0000-0000-000000000001");
+        item.setState(BatchItem.ObjectState.EXPORT_PLANNED.name());
+        items = Arrays.asList(item);
+    }
+
+    @Test
+    public void testCancelPlanned() {
+        ExportProcess process = new ExportProcess(dispatcher, null, batch, items,
+                ExportProcess.Kind.NDK, null, null);
+        assertTrue(process.cancel());
+        process.run();
+        assertEquals(Arrays.asList(Batch.State.EXPORT_CANCELED), batchWrites);
+        assertTrue(itemWrites.isEmpty());
+    }
+
+    @Test
+    public void testRunFailure() {
+        ExportProcess process = new ExportProcess(dispatcher, null, batch, items,
+                ExportProcess.Kind.NDK, null, null);
+        // the export fails as there is no storage
+        process.run();
+        assertEquals(Arrays.asList(Batch.State.EXPORTING, Batch.State.EXPORT_FAILED), batchWrites);
+        assertEquals(Arrays.asList(BatchItem.ObjectState.EXPORT_FAILED.name()), itemWrites);
+        assertNotNull(batch.getLog());
+        assertEquals(temp.getRoot(), dispatcher.resolveFolder(batch));
+        // too late to cancel
+        assertFalse(process.cancel());
+    }
+
+}
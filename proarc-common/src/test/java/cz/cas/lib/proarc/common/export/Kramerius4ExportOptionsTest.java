@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.HashSet;
 import org.apache.commons.configuration.BaseConfiguration;
 import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
 import static org.junit.Assert.*;
 import org.junit.Test;
 
@@ -44,12 +45,14 @@ public class Kramerius4ExportOptionsTest {
 
         String policy = "policy:public";
         config.addProperty(Kramerius4ExportOptions.PROP_POLICY, policy);
+        config.addProperty(Kramerius4ExportOptions.PROP_THREAD_COUNT, "4");
 
         Kramerius4ExportOptions result = Kramerius4ExportOptions.from(config);
         assertEquals(new HashSet<String>(Arrays.asList(excludes)), result.getExcludeDatastreams());
         assertEquals("NEWID1", result.getDsIdMap().get("ID1"));
         assertEquals("NEWID2", result.getDsIdMap().get("ID2"));
         assertEquals(policy, result.getPolicy());
+        assertEquals(4, result.getThreadCount());
     }
 
     @Test
@@ -60,5 +63,13 @@ public class Kramerius4ExportOptionsTest {
         assertEquals(1, result.getDsIdMap().size());
         assertEquals("IMG_FULL", result.getDsIdMap().get(BinaryEditor.RAW_ID));
         assertNull(result.getPolicy());
+        assertEquals(1, result.getThreadCount());
+    }
+
+    @Test(expected = ConversionException.class)
+    public void testFromInvalidThreadCount() {
+        Configuration config = new BaseConfiguration();
+        config.addProperty(Kramerius4ExportOptions.PROP_THREAD_COUNT, "0");
+        Kramerius4ExportOptions.from(config);
     }
 }
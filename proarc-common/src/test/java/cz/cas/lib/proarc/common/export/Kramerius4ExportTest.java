@@ -16,6 +16,8 @@
  */
 package cz.cas.lib.proarc.common.export;
 
+import com.yourmediashelf.fedora.client.FedoraClient;
+import com.yourmediashelf.fedora.client.FedoraCredentials;
 import cz.cas.lib.proarc.common.CustomTemporaryFolder;
 import cz.cas.lib.proarc.common.config.AppConfiguration;
 import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
@@ -33,7 +35,15 @@ import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
 import cz.cas.lib.proarc.common.user.UserManager;
 import cz.cas.lib.proarc.oaidublincore.DcConstants;
 import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.custommonkey.xmlunit.SimpleNamespaceContext;
 import org.custommonkey.xmlunit.XMLAssert;
 import org.custommonkey.xmlunit.XMLUnit;
@@ -76,6 +86,58 @@ public class Kramerius4ExportTest {
     public void tearDown() {
     }
 
+    @Test
+    public void testExportCanceled() throws Exception {
+        // nothing is fetched from the storage once the export is canceled
+        RemoteStorage storage = new RemoteStorage(new FedoraClient(
+                new FedoraCredentials("http://localhost:1/fedora", "junit", "junit")));
+        Kramerius4Export export = new Kramerius4Export(storage, config.getKramerius4Export());
+        export.cancel();
+        try {
+            export.export(temp.getRoot(), true, "junit", "uuid:00000000-0000-0000-0000-000000000001");
+            fail();
+        } catch (IllegalStateException ex) {
+            assertTrue(ex.getMessage(), ex.getMessage().startsWith("Export canceled"));
+        }
+    }
+
+    @Test
+    public void testExportPidsParallel() throws Exception {
+        // root -> a, b; a -> c, d; b -> d, e; d -> f
+        final Map<String, List<String>> tree = new HashMap<String, List<String>>();
+        tree.put("root", Arrays.asList("a", "b"));
+        tree.put("a", Arrays.asList("c", "d"));
+        tree.put("b", Arrays.asList("d", "e"));
+        tree.put("d", Arrays.asList("f"));
+        final ConcurrentMap<String, AtomicInteger> exports = new ConcurrentHashMap<String, AtomicInteger>();
+        RemoteStorage storage = new RemoteStorage(new FedoraClient(
+                new FedoraCredentials("http://localhost:1/fedora", "junit", "junit")));
+        Kramerius4Export export = new Kramerius4Export(storage, config.getKramerius4Export()) {
+
+            @Override
+            List<String> exportObject(File output, boolean hierarchy, String pid) {
+                AtomicInteger count = exports.putIfAbsent(pid, new AtomicInteger(1));
+                if (count != null) {
+                    count.incrementAndGet();
+                }
+                try {
+                    // let other workers run meanwhile
+                    Thread.sleep(10);
+                } catch (InterruptedException ex) {
+                    throw new IllegalStateException(ex);
+                }
+                List<String> children = tree.get(pid);
+                return hierarchy && children != null ? children : Collections.<String>emptyList();
+            }
+        };
+        export.exportPids(temp.getRoot(), true, Arrays.asList("root", "d"), 3);
+
+        assertEquals(new HashSet<String>(Arrays.asList("root", "a", "b", "c", "d", "e", "f")), exports.keySet());
+        for (Map.Entry<String, AtomicInteger> entry : exports.entrySet()) {
+            assertEquals(entry.getKey(), 1, entry.getValue().get());
+        }
+    }
+
     /**
      * integration test
      */
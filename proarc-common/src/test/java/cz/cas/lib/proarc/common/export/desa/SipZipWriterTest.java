@@ -0,0 +1,113 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.desa;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.export.mets.FileMD5Info;
+import cz.cas.lib.proarc.common.export.mets.MetsUtils;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class SipZipWriterTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+
+    @Test
+    public void testPutEntry() throws Exception {
+        byte[] image = new byte[10000];
+        Arrays.fill(image, (byte) 'i');
+        byte[] xml = "<mets>text</mets>".getBytes("UTF-8");
+        File file = new File(temp.getRoot(), "sip.zip");
+        SipZipWriter writer = new SipZipWriter(file, Deflater.DEFAULT_COMPRESSION);
+        FileMD5Info imageInfo = writer.putEntry("image.jp2", new ByteArrayInputStream(image), false);
+        FileMD5Info xmlInfo = writer.putEntry("mets.xml", new ByteArrayInputStream(xml), true);
+        assertNull(writer.getZipInfo());
+        writer.close();
+
+        assertEquals(MetsUtils.getDigest(new ByteArrayInputStream(image)).getMd5(), imageInfo.getMd5());
+        assertEquals(image.length, imageInfo.getSize());
+        assertEquals(MetsUtils.getDigest(new ByteArrayInputStream(xml)).getMd5(), xmlInfo.getMd5());
+        assertEquals(xml.length, xmlInfo.getSize());
+
+        FileMD5Info zipInfo = writer.getZipInfo();
+        assertEquals(MetsUtils.getDigest(new FileInputStream(file)).getMd5(), zipInfo.getMd5());
+        assertEquals(file.length(), zipInfo.getSize());
+        assertEquals("sip.zip", zipInfo.getFileName());
+
+        ZipFile zip = new ZipFile(file);
+        try {
+            ZipEntry imageEntry = zip.getEntry("image.jp2");
+            // deflated without compression
+            assertEquals(ZipEntry.DEFLATED, imageEntry.getMethod());
+            assertTrue(imageEntry.getCompressedSize() >= image.length);
+            assertArrayEquals(image, IOUtils.toByteArray(zip.getInputStream(imageEntry)));
+            ZipEntry xmlEntry = zip.getEntry("mets.xml");
+            assertEquals(ZipEntry.DEFLATED, xmlEntry.getMethod());
+            assertArrayEquals(xml, IOUtils.toByteArray(zip.getInputStream(xmlEntry)));
+        } finally {
+            zip.close();
+        }
+    }
+
+    @Test
+    public void testPutLargeEntry() throws Exception {
+        // larger than the copy buffer
+        byte[] image = new byte[1024 * 1024 + 13];
+        new Random(1).nextBytes(image);
+        byte[] text = new byte[100 * 1024];
+        Arrays.fill(text, (byte) 't');
+        File file = new File(temp.getRoot(), "sip.zip");
+        SipZipWriter writer = new SipZipWriter(file, Deflater.BEST_COMPRESSION);
+        FileMD5Info imageInfo = writer.putEntry("image.jp2", new ByteArrayInputStream(image), false);
+        FileMD5Info textInfo = writer.putEntry("text.txt", new ByteArrayInputStream(text), true);
+        writer.close();
+
+        assertEquals(MetsUtils.getDigest(new ByteArrayInputStream(image)).getMd5(), imageInfo.getMd5());
+        assertEquals(image.length, imageInfo.getSize());
+        assertEquals(text.length, textInfo.getSize());
+        assertEquals(file.length(), writer.getZipInfo().getSize());
+
+        ZipFile zip = new ZipFile(file);
+        try {
+            ZipEntry imageEntry = zip.getEntry("image.jp2");
+            assertEquals(image.length, imageEntry.getSize());
+            assertArrayEquals(image, IOUtils.toByteArray(zip.getInputStream(imageEntry)));
+            ZipEntry textEntry = zip.getEntry("text.txt");
+            // the level of compressed entries is kept
+            assertTrue(textEntry.getCompressedSize() < text.length / 10);
+            assertArrayEquals(text, IOUtils.toByteArray(zip.getInputStream(textEntry)));
+        } finally {
+            zip.close();
+        }
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import cz.cas.lib.proarc.mets.Mets;
+import cz.cas.lib.proarc.mets.info.Info;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import javax.xml.bind.Marshaller;
+import javax.xml.bind.Unmarshaller;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class JaxbContextRegistryTest {
+
+    @Test
+    public void testGetContext() throws Exception {
+        assertSame(JaxbContextRegistry.getContext(Mets.class, Info.class),
+                JaxbContextRegistry.getContext(Mets.class, Info.class));
+        assertNotSame(JaxbContextRegistry.getContext(Mets.class),
+                JaxbContextRegistry.getContext(Mets.class, Info.class));
+    }
+
+    @Test
+    public void testGetMarshaller() throws Exception {
+        Marshaller m = JaxbContextRegistry.getMarshaller(Mets.class);
+        m.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        Marshaller m2 = JaxbContextRegistry.getMarshaller(Mets.class);
+        assertSame(m, m2);
+        // properties of the previous caller must not leak
+        assertEquals(Boolean.FALSE, m2.getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+        m2.setProperty(Marshaller.JAXB_SCHEMA_LOCATION, "http://www.loc.gov/METS/ mets.xsd");
+        Marshaller m3 = JaxbContextRegistry.getMarshaller(Mets.class);
+        assertNotSame(m2, m3);
+        assertNull(m3.getProperty(Marshaller.JAXB_SCHEMA_LOCATION));
+        assertSame(m3, JaxbContextRegistry.getMarshaller(Mets.class));
+
+        // marshallers writing the schema location are reused too
+        String schemaLocation = "http://www.loc.gov/METS/ mets.xsd";
+        Marshaller sm = JaxbContextRegistry.getMarshaller(schemaLocation, Mets.class);
+        assertEquals(schemaLocation, sm.getProperty(Marshaller.JAXB_SCHEMA_LOCATION));
+        sm.setProperty(Marshaller.JAXB_FORMATTED_OUTPUT, true);
+        Marshaller sm2 = JaxbContextRegistry.getMarshaller(schemaLocation, Mets.class);
+        assertSame(sm, sm2);
+        assertEquals(Boolean.FALSE, sm2.getProperty(Marshaller.JAXB_FORMATTED_OUTPUT));
+        assertSame(m3, JaxbContextRegistry.getMarshaller(Mets.class));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Marshaller other = executor.submit(new Callable<Marshaller>() {
+
+                @Override
+                public Marshaller call() throws Exception {
+                    return JaxbContextRegistry.getMarshaller(Mets.class);
+                }
+            }).get();
+            assertNotSame(m, other);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testMarshalUnmarshal() throws Exception {
+        Mets mets = new Mets();
+        mets.setLabel1("label");
+        StringWriter writer = new StringWriter();
+        JaxbContextRegistry.getMarshaller(Mets.class).marshal(mets, writer);
+        Unmarshaller u = JaxbContextRegistry.getUnmarshaller(Mets.class);
+        assertSame(u, JaxbContextRegistry.getUnmarshaller(Mets.class));
+        Mets result = (Mets) u.unmarshal(new StringReader(writer.toString()));
+        assertEquals("label", result.getLabel1());
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.export.mets;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.imports.TiffImporterTest;
+import cz.cas.lib.proarc.mix.Mix;
+import cz.cas.lib.proarc.mix.MixUtils;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Logger;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Ignore;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class JhovePoolTest {
+
+    private static final Logger LOG = Logger.getLogger(JhovePoolTest.class.getName());
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+    private JhovePool pool;
+
+    @Before
+    public void setUp() {
+        pool = new JhovePool(2);
+    }
+
+    @After
+    public void tearDown() {
+        pool.close();
+    }
+
+    @Test
+    public void testAcquireReusesContext() throws Exception {
+        JhoveContext ctx1 = pool.acquire();
+        JhoveContext ctx2 = pool.acquire();
+        assertNotSame(ctx1, ctx2);
+        assertEquals(0, pool.getIdleCount());
+        pool.release(ctx1);
+        assertEquals(1, pool.getIdleCount());
+        assertSame(ctx1, pool.acquire());
+        pool.release(ctx1);
+        pool.release(ctx2);
+        assertEquals(2, pool.getIdleCount());
+
+        pool.close();
+        assertEquals(0, pool.getIdleCount());
+        assertFalse(ctx1.getConfigFolder().exists());
+        assertFalse(ctx2.getConfigFolder().exists());
+    }
+
+    @Test
+    public void testGetMix() throws Exception {
+        final File imageFile = new File(temp.getRoot(), "test.tiff");
+        FileUtils.copyURLToFile(TiffImporterTest.class.getResource("testscan-lzw.tiff"), imageFile);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<JHoveOutput>> results = new ArrayList<Future<JHoveOutput>>();
+            for (int i = 0; i < 8; i++) {
+                results.add(executor.submit(new Callable<JHoveOutput>() {
+
+                    @Override
+                    public JHoveOutput call() throws Exception {
+                        return pool.getMix(imageFile, null, null, null);
+                    }
+                }));
+            }
+            for (Future<JHoveOutput> result : results) {
+                Mix mix = result.get().getMix();
+                assertNotNull(mix);
+                String toXml = MixUtils.toXml(mix, true);
+                assertEquals(toXml, "image/tiff", mix.getBasicDigitalObjectInformation()
+                        .getFormatDesignation().getFormatName().getValue());
+                assertNotNull(toXml, mix.getBasicImageInformation()
+                        .getBasicImageCharacteristics().getImageWidth());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(pool.getIdleCount() <= pool.getSize());
+    }
+
+    /**
+     * Measures the characterization of a TIFF with a new context per call,
+     * with a reused context and with contexts borrowed from the pool.
+     * Run it manually; times depend on the machine.
+     */
+    @Test
+    @Ignore("benchmark")
+    public void benchmarkGetMix() throws Exception {
+        File imageFile = new File(temp.getRoot(), "test.tiff");
+        FileUtils.copyURLToFile(TiffImporterTest.class.getResource("testscan-lzw.tiff"), imageFile);
+        int count = 50;
+        JhoveContext reused = JhoveUtility.createContext();
+        try {
+            // warm-up
+            for (int i = 0; i < count; i++) {
+                JhoveUtility.getMix(imageFile, reused, null, null, null);
+            }
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                JhoveContext ctx = JhoveUtility.createContext();
+                try {
+                    JhoveUtility.getMix(imageFile, ctx, null, null, null);
+                } finally {
+                    ctx.destroy();
+                }
+            }
+            LOG.info(String.format("new context per call: %.1f ms", (System.nanoTime() - start) / 1e6 / count));
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                JhoveUtility.getMix(imageFile, reused, null, null, null);
+            }
+            LOG.info(String.format("reused context: %.1f ms", (System.nanoTime() - start) / 1e6 / count));
+
+            start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                pool.getMix(imageFile, null, null, null);
+            }
+            LOG.info(String.format("borrowed from the pool: %.1f ms", (System.nanoTime() - start) / 1e6 / count));
+        } finally {
+            reused.destroy();
+        }
+    }
+
+}
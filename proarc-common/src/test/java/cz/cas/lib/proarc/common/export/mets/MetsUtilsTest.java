@@ -19,6 +19,8 @@ package cz.cas.lib.proarc.common.export.mets;
 
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.net.URL;
 import java.util.ArrayList;
@@ -30,17 +32,22 @@ import java.util.logging.Logger;
 import javax.xml.bind.JAXBContext;
 import javax.xml.bind.Unmarshaller;
 
+import org.apache.commons.io.FileUtils;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
+import org.w3c.dom.Document;
 
 import com.yourmediashelf.fedora.generated.foxml.DigitalObject;
 
 import cz.cas.lib.proarc.common.export.mets.structure.MetsElement;
 import cz.cas.lib.proarc.common.export.mets.structure.MetsElementVisitor;
+import cz.cas.lib.proarc.mets.AmdSecType;
+import cz.cas.lib.proarc.mets.DivType;
 import cz.cas.lib.proarc.mets.Mets;
 import cz.cas.lib.proarc.mets.MetsType.FileSec.FileGrp;
+import cz.cas.lib.proarc.mets.StructMapType;
 import cz.cas.lib.proarc.mets.info.Info;
 
 public class MetsUtilsTest {
@@ -80,6 +87,44 @@ public class MetsUtilsTest {
         assertEquals(modName, Const.VOLUME);
     }
 
+    @Test
+    public void testValidateAgainstXSD() throws Exception {
+        URL xsd = Info.class.getResource("info.xsd");
+        assertSame(MetsUtils.getSchema(xsd), MetsUtils.getSchema(xsd));
+
+        Document doc = MetsUtils.getDocumentFromBytes(
+                "<info><created>invalid</created></info>".getBytes("UTF-8"));
+        List<String> errors = MetsUtils.validateAgainstXSD(doc, xsd);
+        assertFalse(errors.isEmpty());
+    }
+
+    @Test
+    public void testValidateAmdSec() throws Exception {
+        // the structure written by MetsElementVisitor.saveAmdSec
+        Mets amdSecMets = new Mets();
+        amdSecMets.setLabel1("label");
+        amdSecMets.setTYPE("Monograph");
+        StructMapType mapType = new StructMapType();
+        mapType.setTYPE(Const.DIV_PHYSICAL_ID);
+        DivType divType = new DivType();
+        divType.setTYPE("MONOGRAPH_PAGE");
+        mapType.setDiv(divType);
+        amdSecMets.getStructMap().add(mapType);
+        AmdSecType amdSec = new AmdSecType();
+        amdSec.setID("PAGE_0001");
+        amdSecMets.getAmdSec().add(amdSec);
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        JaxbContextRegistry.getMarshaller(Mets.class).marshal(amdSecMets, bos);
+        byte[] amdSecBytes = bos.toByteArray();
+        URL xsd = Mets.class.getResource("mets.xsd");
+
+        List<String> errors = MetsUtils.validateAgainstXSD(new ByteArrayInputStream(amdSecBytes), xsd);
+        assertTrue(errors.toString(), errors.isEmpty());
+        // DOM of the namespace unaware parser
+        errors = MetsUtils.validateAgainstXSD(MetsUtils.getDocumentFromBytes(amdSecBytes), xsd);
+        assertTrue(errors.toString(), errors.isEmpty());
+    }
+
     /**
      * Returns the source path for input documents
      *
@@ -212,4 +257,35 @@ public class MetsUtilsTest {
             assertEquals(testElement.getType(), mets.getTYPE());
         }
     }
+
+    /**
+     * Pages generated in parallel must produce the same package
+     * as the serial generation except for timestamps.
+     */
+    @Test
+    public void saveMetsParallelTest() throws Exception {
+        MetsExportTestElement testElement = testElements.get(1);
+        String serial = FileUtils.readFileToString(saveMets(testElement, "serial", 1), "UTF-8");
+        String parallel = FileUtils.readFileToString(saveMets(testElement, "parallel", 4), "UTF-8");
+        String timestamps = "(CREATED|CREATEDATE|LASTMODDATE)=\"[^\"]*\"";
+        assertEquals(serial.replaceAll(timestamps, ""), parallel.replaceAll(timestamps, ""));
+    }
+
+    private File saveMets(MetsExportTestElement testElement, String folder, int threadCount) throws Exception {
+        String sourceDirPath = getTargetPath() + File.separator +
+                testElement.getDirectory() + File.separator;
+        File resultDir = tmp.newFolder(folder);
+        DigitalObject dbObj = MetsUtils.readFoXML(sourceDirPath + testElement.getInitialDocument());
+        MetsContext context = new MetsContext();
+        context.setPath(sourceDirPath);
+        context.setFsParentMap(TestConst.parents);
+        context.setOutputPath(resultDir.getAbsolutePath());
+        context.setAllowNonCompleteStreams(true);
+        context.setAllowMissingURNNBN(true);
+        context.setThreadCount(threadCount);
+        MetsElement metsElement = MetsElement.getElement(dbObj, null, context, true);
+        metsElement.accept(new MetsElementVisitor());
+        String packageId = context.getGeneratedPSP().get(0);
+        return new File(resultDir, packageId + File.separator + "METS_" + packageId + ".xml");
+    }
 }
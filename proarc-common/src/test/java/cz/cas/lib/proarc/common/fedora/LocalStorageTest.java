@@ -27,6 +27,7 @@ import cz.cas.lib.proarc.common.fedora.XmlStreamEditor.EditorResult;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
+import java.util.Arrays;
 import java.util.List;
 import javax.ws.rs.core.MediaType;
 import javax.xml.bind.JAXB;
@@ -85,6 +86,35 @@ public class LocalStorageTest {
         assertEquals(foxml, result.getFoxml());
     }
 
+    @Test
+    public void testLoadPartially() throws Exception {
+        File foxml = tmp.newFile();
+        LocalStorage storage = new LocalStorage();
+        LocalObject lobject = storage.create("PID", foxml);
+        lobject.setLabel("label");
+        lobject.setOwner("owner");
+        XmlStreamEditor xmlEditor = lobject.getEditor(FoxmlUtils.inlineProfile("xml", "formatUri", "label"));
+        EditorResult xmlResult = xmlEditor.createResult();
+        JAXB.marshal(new XmlData("data"), xmlResult);
+        xmlEditor.write(xmlResult, 0, null);
+        XmlStreamEditor binaryEditor = lobject.getEditor(
+                FoxmlUtils.managedProfile("binary", MediaType.TEXT_PLAIN_TYPE, "label"));
+        binaryEditor.write("data".getBytes("UTF-8"), 0, null);
+        lobject.flush();
+
+        LocalObject result = storage.loadPartially("PID", foxml, Arrays.asList("xml"));
+        assertEquals("PID", result.getDigitalObject().getPID());
+        assertEquals("label", result.getLabel());
+        assertEquals("owner", result.getOwner());
+        assertNull(result.getFoxml());
+        assertEquals(1, result.getDigitalObject().getDatastream().size());
+        XmlStreamEditor resultEditor = result.getEditor(FoxmlUtils.inlineProfile("xml", "formatUri", "label"));
+        XmlData xdata = JAXB.unmarshal(resultEditor.read(), XmlData.class);
+        assertEquals("data", xdata.data);
+        assertEquals(xmlEditor.getLastModified(), resultEditor.getLastModified());
+        assertNull(FoxmlUtils.findDatastream(result.getDigitalObject(), "binary"));
+    }
+
     @Test
     public void testCreate_0args() throws Exception {
         LocalStorage instance = new LocalStorage();
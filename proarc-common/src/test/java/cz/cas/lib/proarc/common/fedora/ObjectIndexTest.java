@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.dao.DaoFactory;
+import cz.cas.lib.proarc.common.dao.IndexedObject;
+import cz.cas.lib.proarc.common.dao.ObjectIndexDao;
+import cz.cas.lib.proarc.common.dao.Transaction;
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
+import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import org.easymock.EasyMock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ObjectIndexTest {
+
+    private DaoFactory daos;
+    private ObjectIndexDao dao;
+    private RemoteStorage storage;
+    private ObjectIndex index;
+
+    @Before
+    public void setUp() {
+        MetaModelRepository.setInstance(new String[]{NdkPlugin.ID});
+        Transaction tx = EasyMock.createNiceMock(Transaction.class);
+        dao = EasyMock.createMock(ObjectIndexDao.class);
+        dao.setTransaction(tx);
+        EasyMock.expectLastCall().anyTimes();
+        daos = EasyMock.createMock(DaoFactory.class);
+        EasyMock.expect(daos.createTransaction()).andReturn(tx).anyTimes();
+        EasyMock.expect(daos.createObjectIndexDao()).andReturn(dao).anyTimes();
+        EasyMock.replay(tx, daos);
+        storage = new RemoteStorage(null);
+        index = new ObjectIndex(daos, storage);
+        storage.setObjectIndex(index);
+    }
+
+    @After
+    public void tearDown() {
+        index.close();
+    }
+
+    @Test
+    public void testFindSortedChildren() throws Exception {
+        IndexedObject page2 = createObject("uuid:page2", "model:page", "2, NormalPage");
+        page2.setHasExport(true);
+        IndexedObject page1 = createObject("uuid:page1", "model:page", "1, TitlePage");
+        EasyMock.expect(dao.findMembers("uuid:parent")).andReturn(Arrays.asList(page2, page1));
+        EasyMock.replay(dao);
+        index.setReady(true);
+
+        List<Item> result = storage.getSearch().findSortedChildren("uuid:parent");
+        assertEquals(2, result.size());
+        Item item = result.get(0);
+        assertEquals("uuid:page2", item.getPid());
+        assertEquals("model:page", item.getModel());
+        assertEquals("2, Normal Page", item.getLabel());
+        assertEquals("fedora-system:def/model#Active", item.getState());
+        assertEquals("2016-01-02T03:04:05.006Z", item.getCreated());
+        assertEquals("2016-01-02T03:04:05.006Z", item.getModified());
+        assertEquals((Integer) 1, item.getHasExport());
+        assertEquals("uuid:page1", result.get(1).getPid());
+        assertEquals((Integer) 0, result.get(1).getHasExport());
+        EasyMock.verify(dao);
+    }
+
+    @Test
+    public void testFindLastCreated() throws Exception {
+        IndexedObject page = createObject("uuid:page1", "model:page", "1, TitlePage");
+        EasyMock.expect(dao.findLast(Arrays.asList("model:page"), false, 10, 100))
+                .andReturn(Arrays.asList(page));
+        EasyMock.replay(dao);
+        index.setReady(true);
+
+        List<Item> result = storage.getSearch().findLastCreated(10, "model:page", null, 1000);
+        assertEquals(1, result.size());
+        assertEquals("uuid:page1", result.get(0).getPid());
+        EasyMock.verify(dao);
+    }
+
+    @Test
+    public void testUpdateFailure() throws Exception {
+        EasyMock.replay(dao);
+        index.setReady(true);
+        // no Fedora client
+        index.update("uuid:page1");
+        index.awaitUpdates();
+        assertFalse(index.isReady());
+    }
+
+    @Test
+    public void testNotCurrentWhileUpdating() throws Exception {
+        EasyMock.replay(dao);
+        index.setReady(true);
+        assertTrue(index.isCurrent());
+        final CountDownLatch blocker = new CountDownLatch(1);
+        index.execute(new Runnable() {
+
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        index.update("uuid:page1");
+        index.update("uuid:page1");
+        // searches must not miss the queued write
+        assertTrue(index.isReady());
+        assertFalse(index.isCurrent());
+        blocker.countDown();
+        index.awaitUpdates();
+        // no Fedora client
+        assertFalse(index.isCurrent());
+    }
+
+    @Test
+    public void testStoreSkipsOutdatedState() throws Exception {
+        IndexedObject indexed = createObject("uuid:page1", "model:page", "1, TitlePage");
+        indexed.setModified(new Timestamp(indexed.getModified().getTime() + 1000));
+        EasyMock.expect(dao.find("uuid:page1")).andReturn(indexed);
+        EasyMock.replay(dao);
+
+        IndexedObject outdated = createObject("uuid:page1", "model:page", "2, TitlePage");
+        assertFalse(index.store(outdated, Arrays.<String>asList()));
+        EasyMock.verify(dao);
+    }
+
+    @Test
+    public void testStore() throws Exception {
+        IndexedObject indexed = createObject("uuid:page1", "model:page", "1, TitlePage");
+        IndexedObject object = createObject("uuid:page1", "model:page", "2, TitlePage");
+        object.setModified(new Timestamp(indexed.getModified().getTime() + 1000));
+        List<String> members = Arrays.asList("uuid:member");
+        EasyMock.expect(dao.find("uuid:page1")).andReturn(indexed);
+        dao.update(object, members);
+        EasyMock.replay(dao);
+
+        assertTrue(index.store(object, members));
+        EasyMock.verify(dao);
+    }
+
+    private static IndexedObject createObject(String pid, String model, String label) {
+        IndexedObject object = new IndexedObject();
+        object.setPid(pid);
+        object.setModel(model);
+        object.setLabel(label);
+        object.setOwner("owner");
+        object.setState("A");
+        // 2016-01-02T03:04:05.006Z
+        Timestamp date = new Timestamp(1451703845006L);
+        object.setCreated(date);
+        object.setModified(date);
+        object.setHasExport(false);
+        return object;
+    }
+
+}
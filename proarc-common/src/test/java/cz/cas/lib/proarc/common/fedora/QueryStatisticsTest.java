@@ -0,0 +1,50 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class QueryStatisticsTest {
+
+    @Test
+    public void testRecord() {
+        QueryStatistics stats = new QueryStatistics();
+        stats.record("findPids", 5);
+        stats.record("findPids", 10);
+        stats.record("findPids", 11);
+        stats.record("findPids", 20000);
+        stats.record("findMembers", 300);
+        assertEquals(4, stats.getCount("findPids"));
+        assertEquals(0, stats.getCount("unknown"));
+        long[] counts = stats.getCounts("findPids");
+        assertEquals(QueryStatistics.BUCKETS.length + 1, counts.length);
+        assertEquals(2, counts[0]);
+        assertEquals(1, counts[1]);
+        assertEquals(1, counts[counts.length - 1]);
+        String report = stats.toString();
+        assertTrue(report, report.contains("findMembers: count=1, avg=300ms, max=300ms, <=500ms:1\n"));
+        assertTrue(report, report.contains("findPids: count=4, avg=5006ms, max=20000ms, <=10ms:2, <=25ms:1, >10000ms:1\n"));
+        stats.clear();
+        assertEquals(0, stats.getCount("findPids"));
+    }
+
+}
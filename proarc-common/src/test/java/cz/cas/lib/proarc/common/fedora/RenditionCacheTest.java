@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.fedora.RenditionCache.Entry;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.util.Arrays;
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class RenditionCacheTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+    private RenditionCacheOptions options;
+
+    @Before
+    public void setUp() throws Exception {
+        options = new RenditionCacheOptions().setFolder(temp.getRoot())
+                .setDiskSize(1000).setMemorySize(20).setMemoryEntrySize(10);
+    }
+
+    @Test
+    public void testPutGet() throws Exception {
+        RenditionCache cache = new RenditionCache(options);
+        assertNull(cache.get("uuid:1", BinaryEditor.THUMB_ID, 1));
+        Entry entry = put(cache, "uuid:1", BinaryEditor.THUMB_ID, 1, 5);
+        assertEquals(5, entry.getLength());
+        assertEquals("image/jpeg", entry.getMime());
+
+        assertSame(entry, cache.get("uuid:1", BinaryEditor.THUMB_ID, 1));
+        assertArrayEquals(content(5), read(cache, entry));
+        assertNull(cache.get("uuid:1", BinaryEditor.PREVIEW_ID, 1));
+        // other version
+        assertNull(cache.get("uuid:1", BinaryEditor.THUMB_ID, 2));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+
+        // new version replaces the old one
+        Entry entry2 = put(cache, "uuid:1", BinaryEditor.THUMB_ID, 2, 15);
+        assertNull(cache.get("uuid:1", BinaryEditor.THUMB_ID, 1));
+        assertNull(cache.open(entry));
+        assertArrayEquals(content(15), read(cache, entry2));
+        assertEquals(1, cache.getSize());
+        assertEquals(15, cache.getDiskSize());
+        // too large for the memory
+        assertEquals(0, cache.getMemorySize());
+    }
+
+    @Test
+    public void testInvalidate() throws Exception {
+        RenditionCache cache = new RenditionCache(options);
+        Entry entry = put(cache, "uuid:1", BinaryEditor.THUMB_ID, 1, 50);
+        put(cache, "uuid:1", BinaryEditor.PREVIEW_ID, 1, 50);
+        cache.invalidate("uuid:1", BinaryEditor.THUMB_ID);
+        assertNull(cache.get("uuid:1", BinaryEditor.THUMB_ID, 1));
+        assertNull(cache.open(entry));
+        assertNotNull(cache.get("uuid:1", BinaryEditor.PREVIEW_ID, 1));
+        assertEquals(50, cache.getDiskSize());
+        assertEquals(1, temp.getRoot().list().length);
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        RenditionCache cache = new RenditionCache(options);
+        put(cache, "uuid:1", BinaryEditor.THUMB_ID, 1, 100);
+        put(cache, "uuid:2", BinaryEditor.THUMB_ID, 1, 100);
+        for (int i = 3; i <= 10; i++) {
+            // keep uuid:1 recently used
+            assertNotNull(cache.get("uuid:1", BinaryEditor.THUMB_ID, 1));
+            put(cache, "uuid:" + i, BinaryEditor.THUMB_ID, 1, 100);
+        }
+        assertEquals(1000, cache.getDiskSize());
+        put(cache, "uuid:11", BinaryEditor.THUMB_ID, 1, 100);
+        assertEquals(1000, cache.getDiskSize());
+        assertNotNull(cache.get("uuid:1", BinaryEditor.THUMB_ID, 1));
+        assertNull(cache.get("uuid:2", BinaryEditor.THUMB_ID, 1));
+        assertEquals(10, temp.getRoot().list().length);
+
+        // memory
+        Entry small1 = put(cache, "uuid:s1", BinaryEditor.THUMB_ID, 1, 10);
+        Entry small2 = put(cache, "uuid:s2", BinaryEditor.THUMB_ID, 1, 10);
+        assertEquals(20, cache.getMemorySize());
+        Entry small3 = put(cache, "uuid:s3", BinaryEditor.THUMB_ID, 1, 10);
+        assertEquals(20, cache.getMemorySize());
+        // read from the file
+        assertArrayEquals(content(10), read(cache, small1));
+        assertArrayEquals(content(10), read(cache, small2));
+        assertArrayEquals(content(10), read(cache, small3));
+    }
+
+    @Test
+    public void testLargeContent() throws Exception {
+        RenditionCache cache = new RenditionCache(options);
+        Entry entry = put(cache, "uuid:1", BinaryEditor.FULL_ID, 1, 200);
+        assertNull(cache.get("uuid:1", BinaryEditor.FULL_ID, 1));
+        assertEquals(0, cache.getDiskSize());
+        assertArrayEquals(content(200), read(cache, entry));
+        assertEquals(0, temp.getRoot().list().length);
+    }
+
+    @Test
+    public void testRemoveLeftovers() throws Exception {
+        RenditionCache cache = new RenditionCache(options);
+        put(cache, "uuid:1", BinaryEditor.THUMB_ID, 1, 50);
+        File other = temp.newFile("other.txt");
+        new RenditionCache(options);
+        assertEquals(Arrays.asList(other.getName()), Arrays.asList(temp.getRoot().list()));
+    }
+
+    private static Entry put(RenditionCache cache, String pid, String dsId, long version, int length) throws Exception {
+        return cache.put(pid, dsId, version, "image/jpeg", "inline; filename=" + pid,
+                new ByteArrayInputStream(content(length)));
+    }
+
+    private static byte[] read(RenditionCache cache, Entry entry) throws Exception {
+        InputStream stream = cache.open(entry);
+        assertNotNull(stream);
+        try {
+            return IOUtils.toByteArray(stream);
+        } finally {
+            stream.close();
+        }
+    }
+
+    private static byte[] content(int length) {
+        byte[] content = new byte[length];
+        for (int i = 0; i < length; i++) {
+            content[i] = (byte) i;
+        }
+        return content;
+    }
+
+}
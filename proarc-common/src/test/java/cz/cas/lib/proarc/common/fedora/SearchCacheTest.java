@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class SearchCacheTest {
+
+    @Test
+    public void testItem() {
+        SearchCache cache = new SearchCache(new SearchCacheOptions());
+        Item item = new Item("uuid:1");
+        item.setLabel("label");
+        cache.putItem(item);
+        item.setLabel("modified");
+        Item cached = cache.getItem("uuid:1");
+        assertNotNull(cached);
+        assertEquals("label", cached.getLabel());
+        assertNull(cache.getItem("uuid:2"));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        SearchCache cache = new SearchCache(new SearchCacheOptions().setTtl(1));
+        cache.putItem(new Item("uuid:1"));
+        assertNotNull(cache.getItem("uuid:1"));
+        Thread.sleep(1100);
+        assertNull(cache.getItem("uuid:1"));
+        assertEquals(0, cache.getSize());
+    }
+
+    @Test
+    public void testEviction() {
+        SearchCache cache = new SearchCache(new SearchCacheOptions().setSize(2));
+        cache.putItem(new Item("uuid:1"));
+        cache.putItem(new Item("uuid:2"));
+        // touch the first entry
+        assertNotNull(cache.getItem("uuid:1"));
+        cache.putItem(new Item("uuid:3"));
+        assertEquals(2, cache.getSize());
+        assertNotNull(cache.getItem("uuid:1"));
+        assertNull(cache.getItem("uuid:2"));
+        assertNotNull(cache.getItem("uuid:3"));
+    }
+
+    @Test
+    public void testInvalidate() {
+        SearchCache cache = new SearchCache(new SearchCacheOptions());
+        cache.putItem(new Item("uuid:parent"));
+        cache.putParent("uuid:parent", null);
+        cache.putMembers("uuid:parent", Arrays.asList("uuid:child1"));
+        cache.putParent("uuid:child1", "uuid:parent");
+        cache.putParent("uuid:child2", "uuid:other");
+        assertEquals("", cache.getParent("uuid:parent"));
+
+        cache.invalidate("uuid:parent", Collections.singletonList("uuid:child2"));
+        assertNull(cache.getItem("uuid:parent"));
+        assertNull(cache.getParent("uuid:parent"));
+        assertNull(cache.getMembers("uuid:parent"));
+        assertNull(cache.getParent("uuid:child1"));
+        assertNull(cache.getParent("uuid:child2"));
+    }
+
+}
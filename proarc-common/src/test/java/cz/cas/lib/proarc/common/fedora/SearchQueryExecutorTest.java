@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.fedora;
+
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class SearchQueryExecutorTest {
+
+    @Test
+    public void testAdaptivePageSize() {
+        SearchQueryExecutor executor = new SearchQueryExecutor(new SearchViewOptions()
+                .setThreadCount(1).setPageSize(100).setMaxPageSize(200).setTargetLatency(1000));
+        assertEquals(100, executor.getPageSize());
+        // a fast but incomplete page
+        executor.update(100, 50, 10);
+        assertEquals(100, executor.getPageSize());
+        executor.update(100, 100, 10);
+        assertEquals(150, executor.getPageSize());
+        executor.update(150, 150, 10);
+        assertEquals(200, executor.getPageSize());
+        executor.update(200, 200, 10);
+        assertEquals(200, executor.getPageSize());
+        // within the target
+        executor.update(200, 200, 700);
+        assertEquals(200, executor.getPageSize());
+        executor.update(200, 200, 2000);
+        assertEquals(100, executor.getPageSize());
+        // a slow but incomplete page
+        executor.update(100, 3, 2000);
+        assertEquals(100, executor.getPageSize());
+        for (int i = 0; i < 10; i++) {
+            executor.update(executor.getPageSize(), executor.getPageSize(), 2000);
+        }
+        assertEquals(SearchQueryExecutor.MIN_PAGE_SIZE, executor.getPageSize());
+        executor.close();
+    }
+
+    @Test
+    public void testAdaptivePageSizeOfConcurrentPages() {
+        SearchQueryExecutor executor = new SearchQueryExecutor(new SearchViewOptions()
+                .setThreadCount(4).setPageSize(100).setMaxPageSize(200).setTargetLatency(1000));
+        try {
+            // slow pages of a single query planned with the same size
+            for (int i = 0; i < 4; i++) {
+                executor.update(100, 100, 2000);
+            }
+            assertEquals(50, executor.getPageSize());
+            // fast pages
+            for (int i = 0; i < 4; i++) {
+                executor.update(50, 50, 10);
+            }
+            assertEquals(75, executor.getPageSize());
+        } finally {
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testSubmit() throws Exception {
+        SearchQueryExecutor executor = new SearchQueryExecutor(new SearchViewOptions().setThreadCount(3));
+        try {
+            assertTrue(executor.isConcurrent());
+            List<Future<String>> futures = executor.submit(Arrays.asList(
+                    new Task("1", 30), new Task("2", 0), new Task("3", 10)));
+            assertEquals("1", futures.get(0).get());
+            assertEquals("2", futures.get(1).get());
+            assertEquals("3", futures.get(2).get());
+        } finally {
+            executor.close();
+        }
+        assertFalse(new SearchQueryExecutor(new SearchViewOptions().setThreadCount(1)).isConcurrent());
+    }
+
+    @Test
+    public void testConcurrentFind() throws Exception {
+        SearchQueryExecutor executor = new SearchQueryExecutor(new SearchViewOptions()
+                .setThreadCount(3).setPageSize(2).setMaxPageSize(2).setTargetLatency(10000));
+        final List<List<String>> queries = Collections.synchronizedList(new ArrayList<List<String>>());
+        SearchView search = new SearchView(new RemoteStorage(null)) {
+
+            @Override
+            List<Item> findImpl(List<String> pids, boolean onlyActive) throws IOException {
+                queries.add(pids);
+                try {
+                    // earlier pages come later
+                    Thread.sleep(10 * (5 - Integer.parseInt(pids.get(0))));
+                } catch (InterruptedException ex) {
+                    throw new IOException(ex);
+                }
+                List<Item> items = new ArrayList<Item>();
+                for (String pid : pids) {
+                    if (!pid.equals("3")) {
+                        items.add(new Item(pid));
+                    }
+                }
+                return items;
+            }
+        };
+        SearchQueryExecutor.setDefault(executor);
+        try {
+            List<Item> result = search.find(Arrays.asList("0", "1", "2", "3", "4"), true);
+            assertEquals(3, queries.size());
+            List<String> pids = new ArrayList<String>();
+            for (Item item : result) {
+                pids.add(item.getPid());
+            }
+            assertEquals(Arrays.asList("0", "1", "2", "4"), pids);
+        } finally {
+            SearchQueryExecutor.setDefault(null);
+            executor.close();
+        }
+    }
+
+    @Test
+    public void testConcurrentFindFailure() throws Exception {
+        SearchQueryExecutor executor = new SearchQueryExecutor(new SearchViewOptions()
+                .setThreadCount(3).setPageSize(1).setMaxPageSize(1));
+        SearchView search = new SearchView(new RemoteStorage(null)) {
+
+            @Override
+            List<Item> findImpl(List<String> pids, boolean onlyActive) throws IOException {
+                if (pids.contains("2")) {
+                    throw new IOException(pids.toString());
+                }
+                return Arrays.asList(new Item(pids.get(0)));
+            }
+        };
+        SearchQueryExecutor.setDefault(executor);
+        try {
+            search.find(Arrays.asList("1", "2", "3"), true);
+            fail();
+        } catch (IOException ex) {
+            assertEquals("[2]", ex.getMessage());
+        } finally {
+            SearchQueryExecutor.setDefault(null);
+            executor.close();
+        }
+    }
+
+    private static final class Task implements Callable<String> {
+
+        private final String result;
+        private final long delay;
+
+        Task(String result, long delay) {
+            this.result = result;
+            this.delay = delay;
+        }
+
+        @Override
+        public String call() throws Exception {
+            Thread.sleep(delay);
+            return result;
+        }
+
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.dao.BatchItemDao;
+import cz.cas.lib.proarc.common.dao.DaoFactory;
+import cz.cas.lib.proarc.common.dao.Transaction;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class BatchItemWriterTest {
+
+    /** items of each DAO write */
+    private List<List<BatchItem>> writes;
+    private DaoFactory daos;
+
+    @Before
+    public void setUp() {
+        writes = new ArrayList<List<BatchItem>>();
+        daos = EasyMock.createMock(DaoFactory.class);
+        EasyMock.expect(daos.createTransaction()).andAnswer(new IAnswer<Transaction>() {
+
+            @Override
+            public Transaction answer() throws Throwable {
+                Transaction tx = EasyMock.createNiceMock(Transaction.class);
+                EasyMock.replay(tx);
+                return tx;
+            }
+        }).anyTimes();
+        EasyMock.expect(daos.createBatchItem()).andAnswer(new IAnswer<BatchItemDao>() {
+
+            @Override
+            public BatchItemDao answer() throws Throwable {
+                return createBatchItemDao();
+            }
+        }).anyTimes();
+        EasyMock.replay(daos);
+    }
+
+    private BatchItemDao createBatchItemDao() {
+        BatchItemDao dao = EasyMock.createMock(BatchItemDao.class);
+        dao.setTransaction(EasyMock.<Transaction>anyObject());
+        dao.update(EasyMock.<Collection<BatchItem>>anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public Object answer() throws Throwable {
+                writes.add(new ArrayList<BatchItem>((Collection<BatchItem>) EasyMock.getCurrentArguments()[0]));
+                return null;
+            }
+        }).anyTimes();
+        EasyMock.replay(dao);
+        return dao;
+    }
+
+    @Test
+    public void testFlushSize() {
+        BatchItemWriter writer = new BatchItemWriter(daos, 3, Long.MAX_VALUE);
+        BatchItem item1 = new BatchItem();
+        BatchItem item2 = new BatchItem();
+        BatchItem item3 = new BatchItem();
+        writer.write(Collections.singletonList(item1));
+        // the update of a pending item
+        writer.write(Collections.singletonList(item1));
+        writer.write(Collections.singletonList(item2));
+        assertTrue(writes.isEmpty());
+        writer.write(Collections.singletonList(item3));
+        assertEquals(1, writes.size());
+        assertEquals(Arrays.asList(item1, item2, item3), writes.get(0));
+        assertTrue(item1.getTimestamp().before(item2.getTimestamp()));
+        assertTrue(item2.getTimestamp().before(item3.getTimestamp()));
+
+        BatchItem item4 = new BatchItem();
+        writer.write(Collections.singletonList(item4));
+        writer.flush();
+        writer.flush();
+        assertEquals(2, writes.size());
+        assertEquals(Arrays.asList(item4), writes.get(1));
+        assertEquals(5, writer.getRequestCount());
+        assertEquals(2, writer.getCommitCount());
+        assertEquals(3, writer.getSavedCommitCount());
+    }
+
+    @Test
+    public void testFlushDelay() throws Exception {
+        BatchItemWriter writer = new BatchItemWriter(daos, 100, 1);
+        writer.write(Collections.singletonList(new BatchItem()));
+        Thread.sleep(5);
+        writer.write(Collections.singletonList(new BatchItem()));
+        assertEquals(1, writes.size());
+        assertEquals(2, writes.get(0).size());
+    }
+
+}
@@ -38,6 +38,7 @@ import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
 import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
 import java.io.File;
 import java.sql.Timestamp;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
@@ -343,6 +344,91 @@ public class FedoraImportTest {
         FedoraTestSupport.assertItem(fItems, lobj.getPid());
     }
 
+    @Test
+    public void testImportItemRepairLoadedButIngested() throws Exception {
+        File batchFolder = temp.newFolder("batch");
+        // prepare foxml 1
+        LocalObject lobj = localStorage.create(new File(batchFolder, "item1.foxml"));
+        lobj.setOwner(fedoraSupport.getTestUser());
+        lobj.setLabel("item1");
+        RelationEditor locRels = new RelationEditor(lobj);
+        locRels.setModel("model:page");
+        locRels.write(locRels.getLastModified(), "test");
+        lobj.flush();
+        // ingested but the item state was not stored; caused by a blackout
+        remoteStorage.ingest(lobj, fedoraSupport.getTestUser(), "junit");
+        // prepare remote parent
+        RemoteObject parent = createParent(testName.getMethodName() + "_parent");
+
+        ReplacementDataSet db = database(
+                dbsupport.loadFlatXmlDataStream(EmpireBatchDaoTest.class, "user.xml"),
+                dbsupport.loadFlatXmlDataStream(getClass(), "batch.xml")
+        );
+        db.addReplacementObject("{$parent_pid}", parent.getPid());
+        SqlTransaction tx = daos.createTransaction();
+        dbsupport.cleanInsert(dbsupport.getConnection(tx), db);
+        tx.commit();
+
+        // add item 1
+        Batch batch = ibm.get(1);
+        assertNotNull(batch);
+        BatchItemObject item1 = ibm.addLocalObject(batch, lobj);
+        item1.setState(ObjectState.LOADED);
+        ibm.update(item1);
+
+        // import
+        BatchItemObject result = fedoraImport.importItem(
+                item1, fedoraSupport.getTestUser(), true);
+        assertNotNull(result);
+        assertEquals(ObjectState.INGESTED, result.getState());
+        result = ibm.findBatchObject(batch.getId(), item1.getPid());
+        assertEquals(ObjectState.INGESTED, result.getState());
+
+        List<Item> fItems = search.find(lobj.getPid());
+        assertEquals(1, fItems.size());
+        FedoraTestSupport.assertItem(fItems, lobj.getPid());
+    }
+
+    @Test
+    public void testImportBatchParallel() throws Exception {
+        File batchFolder = temp.newFolder("batch");
+        ReplacementDataSet db = database(
+                dbsupport.loadFlatXmlDataStream(EmpireBatchDaoTest.class, "user.xml"),
+                dbsupport.loadFlatXmlDataStream(getClass(), "batch.xml")
+        );
+        db.addReplacementObject("{$parent_pid}", null);
+        SqlTransaction tx = daos.createTransaction();
+        dbsupport.cleanInsert(dbsupport.getConnection(tx), db);
+        tx.commit();
+
+        Batch batch = ibm.get(1);
+        assertNotNull(batch);
+        List<String> pids = new ArrayList<String>();
+        for (int i = 1; i <= 5; i++) {
+            LocalObject lobj = localStorage.create(new File(batchFolder, "item" + i + ".foxml"));
+            lobj.setOwner(fedoraSupport.getTestUser());
+            lobj.setLabel("item" + i);
+            RelationEditor locRels = new RelationEditor(lobj);
+            locRels.setModel("model:page");
+            locRels.write(locRels.getLastModified(), "test");
+            lobj.flush();
+            BatchItemObject item = ibm.addLocalObject(batch, lobj);
+            item.setState(ObjectState.LOADED);
+            ibm.update(item);
+            pids.add(lobj.getPid());
+        }
+
+        FedoraImport parallelImport = new FedoraImport(remoteStorage, ibm, 2);
+        Batch result = parallelImport.importBatch(batch, fedoraSupport.getTestUser(), "junit");
+        assertEquals(Batch.State.INGESTED, result.getState());
+        for (String pid : pids) {
+            BatchItemObject item = ibm.findBatchObject(batch.getId(), pid);
+            assertEquals(pid, ObjectState.INGESTED, item.getState());
+            List<Item> fItems = search.find(pid);
+            assertEquals(pid, 1, fItems.size());
+        }
+    }
+
     private RemoteObject createParent(String label, String... childPid) throws Exception {
         LocalObject lobj = localStorage.create();
         lobj.setOwner(fedoraSupport.getTestUser());
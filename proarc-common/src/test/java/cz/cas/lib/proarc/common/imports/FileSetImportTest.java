@@ -0,0 +1,223 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import cz.cas.lib.proarc.common.config.AppConfiguration;
+import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
+import cz.cas.lib.proarc.common.config.ConfigurationProfile;
+import cz.cas.lib.proarc.common.dao.Batch;
+import cz.cas.lib.proarc.common.dao.BatchItem;
+import cz.cas.lib.proarc.common.dao.BatchItem.FileState;
+import cz.cas.lib.proarc.common.dao.BatchItem.ObjectState;
+import cz.cas.lib.proarc.common.dao.BatchItemDao;
+import cz.cas.lib.proarc.common.dao.DaoFactory;
+import cz.cas.lib.proarc.common.dao.Transaction;
+import cz.cas.lib.proarc.common.export.mets.JhovePool;
+import cz.cas.lib.proarc.common.imports.ImportProcess.ImportOptions;
+import cz.cas.lib.proarc.common.object.DigitalObjectManager;
+import cz.cas.lib.proarc.common.object.model.MetaModelRepository;
+import cz.cas.lib.proarc.common.object.ndk.NdkPlugin;
+import cz.cas.lib.proarc.common.user.UserManager;
+import cz.cas.lib.proarc.common.user.UserProfile;
+import java.io.File;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.CompositeConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.easymock.EasyMock;
+import org.easymock.IAnswer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class FileSetImportTest {
+
+    private static final int PAGE_COUNT = 4;
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+    private AppConfiguration config;
+    private ImportBatchManager ibm;
+    private UserProfile junit;
+    /** item updates in the order of writes */
+    private final List<BatchItem> writes = Collections.synchronizedList(new ArrayList<BatchItem>());
+    private JhovePool jhovePool;
+
+    @Before
+    public void setUp() throws Exception {
+        junit = new UserProfile();
+        junit.setUserName("junit");
+        File root = temp.getRoot();
+        URL tiff = FileSetImportTest.class.getResource("testscan-lzw.tiff");
+        URL jp2 = FileSetImportTest.class.getResource("testscan.uc.jp2");
+        for (int i = 1; i <= PAGE_COUNT; i++) {
+            String name = "img" + i;
+            FileUtils.copyURLToFile(tiff, new File(root, name + ".tiff"));
+            FileUtils.writeStringToFile(new File(root, name + ".ocr.txt"), "test" + i, "UTF-8");
+            FileUtils.writeStringToFile(new File(root, name + ".ocr.xml"),
+                    "<alto xmlns=\"http://www.loc.gov/standards/alto/ns-v2#\">"
+                        + "<Layout><Page ID=\"Page1\" PHYSICAL_IMG_NR=\"" + i + "\"/></Layout>"
+                    + "</alto>",
+                    "UTF-8");
+            FileUtils.copyURLToFile(jp2, new File(root, name + ".ac.jp2"));
+            FileUtils.copyURLToFile(jp2, new File(root, name + ".uc.jp2"));
+        }
+        config = AppConfigurationFactory.getInstance().create(new HashMap<String, String>() {{
+            put(AppConfiguration.PROPERTY_APP_HOME, temp.getRoot().getPath());
+        }});
+        ibm = new ImportBatchManager(config, createMockDaoFactory());
+        ImportBatchManager.setInstance(config, createMockDaoFactory());
+        ImportProcess.setConsumers(Collections.singletonList(new TiffImporter(ibm)));
+        jhovePool = new JhovePool(2);
+        JhovePool.setDefault(jhovePool);
+        MetaModelRepository.setInstance(new String[]{NdkPlugin.ID});
+        DigitalObjectManager.setDefault(new DigitalObjectManager(config,
+                ibm,
+                null,
+                MetaModelRepository.getInstance(),
+                EasyMock.createNiceMock(UserManager.class))
+        );
+    }
+
+    @After
+    public void tearDown() {
+        ImportProcess.setConsumers(null);
+        JhovePool.setDefault(null);
+        jhovePool.close();
+    }
+
+    @Test
+    public void testParallelImport() throws Exception {
+        BaseConfiguration threads = new BaseConfiguration();
+        threads.setProperty(ImportProfile.PAGE_THREAD_COUNT, 2);
+        CompositeConfiguration profileConfig = new CompositeConfiguration();
+        profileConfig.addConfiguration(threads);
+        profileConfig.addConfiguration(config.getAuthenticators());
+        ImportProfile profile = new ImportProfile(profileConfig, ConfigurationProfile.DEFAULT);
+        assertEquals(2, profile.getPageThreadCount());
+
+        ImportOptions ctx = new ImportOptions(temp.getRoot(),
+                "scanner:scanner1", true, junit, profile);
+        ctx.setTargetFolder(ImportProcess.createTargetFolder(temp.getRoot()));
+        Batch batch = new Batch();
+        batch.setId(1);
+        batch.setState(Batch.State.LOADING);
+        batch.setFolder(ibm.relativizeBatchFile(temp.getRoot()));
+        ctx.setBatch(batch);
+
+        new FileSetImport().start(ctx);
+
+        assertEquals(Batch.State.LOADING, batch.getState());
+        assertEquals(PAGE_COUNT, ctx.getConsumedFileCounter());
+        // pid -> the last object state
+        Map<String, String> objects = new LinkedHashMap<String, String>();
+        List<String> fileNames = new ArrayList<String>();
+        List<String> filePids = new ArrayList<String>();
+        for (BatchItem item : writes) {
+            if (item.getType() == BatchItem.Type.OBJECT) {
+                objects.put(item.getPid(), item.getState());
+            } else if (item.getType() == BatchItem.Type.FILE) {
+                assertEquals(FileState.OK.name(), item.getState());
+                fileNames.add(item.getFile());
+                if (!filePids.contains(item.getPid())) {
+                    filePids.add(item.getPid());
+                }
+            }
+        }
+        assertEquals(PAGE_COUNT, objects.size());
+        for (String state : objects.values()) {
+            assertEquals(ObjectState.LOADED.name(), state);
+        }
+        // pages are committed in the order of file sets
+        assertEquals(new ArrayList<String>(objects.keySet()), filePids);
+        List<String> tiffNames = new ArrayList<String>();
+        for (String fileName : fileNames) {
+            if (fileName.endsWith(".tiff")) {
+                tiffNames.add(fileName);
+            }
+        }
+        assertEquals(Arrays.asList("img1.tiff", "img2.tiff", "img3.tiff", "img4.tiff"), tiffNames);
+        assertEquals(2, jhovePool.getIdleCount());
+    }
+
+    private DaoFactory createMockDaoFactory() {
+        DaoFactory daos = EasyMock.createMock(DaoFactory.class);
+        EasyMock.expect(daos.createTransaction()).andAnswer(new IAnswer<Transaction>() {
+
+            @Override
+            public Transaction answer() throws Throwable {
+                Transaction tx = EasyMock.createNiceMock(Transaction.class);
+                EasyMock.replay(tx);
+                return tx;
+            }
+        }).anyTimes();
+        EasyMock.expect(daos.createBatchItem()).andAnswer(new IAnswer<BatchItemDao>() {
+
+            @Override
+            public BatchItemDao answer() throws Throwable {
+                return createMockBatchItemDao();
+            }
+        }).anyTimes();
+        EasyMock.replay(daos);
+        return daos;
+    }
+
+    private BatchItemDao createMockBatchItemDao() {
+        BatchItemDao dao = EasyMock.createMock(BatchItemDao.class);
+        dao.update(EasyMock.<BatchItem>anyObject());
+        EasyMock.expectLastCall().andAnswer(new IAnswer<Object>() {
+
+            @Override
+            public Object answer() throws Throwable {
+                BatchItem item = (BatchItem) EasyMock.getCurrentArguments()[0];
+                BatchItem copy = new BatchItem();
+                copy.setType(item.getType());
+                copy.setFile(item.getFile());
+                copy.setPid(item.getPid());
+                copy.setState(item.getState());
+                writes.add(copy);
+                return null;
+            }
+        }).anyTimes();
+        EasyMock.expect(dao.create()).andAnswer(new IAnswer<BatchItem>() {
+
+            @Override
+            public BatchItem answer() throws Throwable {
+                return new BatchItem();
+            }
+        }).anyTimes();
+        dao.setTransaction(EasyMock.<Transaction>anyObject());
+        EasyMock.expectLastCall().anyTimes();
+        EasyMock.replay(dao);
+        return dao;
+    }
+
+}
@@ -16,6 +16,12 @@
  */
 package cz.cas.lib.proarc.common.imports;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
@@ -177,6 +183,135 @@ public class ImportDispatcherTest {
 
     }
 
+    @Test
+    public void testParallelThreads() throws Exception {
+        ImportDispatcher instance = new ImportDispatcher(2);
+        instance.init();
+        CountDownLatch started = new CountDownLatch(2);
+        CountDownLatch release = new CountDownLatch(1);
+        BlockingTask task1 = new BlockingTask(started, release, null);
+        BlockingTask task2 = new BlockingTask(started, release, null);
+        Future<BlockingTask> f1 = instance.addTask(task1);
+        Future<BlockingTask> f2 = instance.addTask(task2);
+        assertTrue("both tasks should run at once", started.await(2, TimeUnit.SECONDS));
+        assertEquals(2, instance.getRunningCount());
+        release.countDown();
+        f1.get(2, TimeUnit.SECONDS);
+        f2.get(2, TimeUnit.SECONDS);
+        instance.stop(1, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void testPriority() throws Exception {
+        ImportDispatcher instance = new ImportDispatcher(1);
+        instance.init();
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        instance.addTask(new BlockingTask(started, release, null));
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        instance.addTask(new RecordingTask(order, "low"), null, ImportDispatcher.PRIORITY_LOW, 0);
+        instance.addTask(new RecordingTask(order, "normal"), null, ImportDispatcher.PRIORITY_NORMAL, 0);
+        Future<RecordingTask> last = instance.addTask(
+                new RecordingTask(order, "high"), null, ImportDispatcher.PRIORITY_HIGH, 0);
+        assertEquals(3, instance.getQueueSize());
+        release.countDown();
+        instance.stop(2, TimeUnit.SECONDS);
+        assertTrue(last.isDone());
+        assertEquals(Arrays.asList("high", "normal", "low"), order);
+    }
+
+    @Test
+    public void testClampPriority() {
+        assertEquals(ImportDispatcher.PRIORITY_HIGH, ImportDispatcher.clampPriority(Integer.MAX_VALUE));
+        assertEquals(ImportDispatcher.PRIORITY_LOW, ImportDispatcher.clampPriority(-5));
+        assertEquals(ImportDispatcher.PRIORITY_NORMAL, ImportDispatcher.clampPriority(0));
+    }
+
+    @Test
+    public void testUserFairness() throws Exception {
+        ImportDispatcher instance = new ImportDispatcher(new ImportDispatcherOptions()
+                .setThreadCount(2).setUserThreadCount(1));
+        instance.init();
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        instance.addTask(new BlockingTask(started, release, order), "user1", ImportDispatcher.PRIORITY_NORMAL, 0);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        // user1 has reached its limit; user2 must not wait for user1 queue
+        instance.addTask(new RecordingTask(order, "user1"), "user1", ImportDispatcher.PRIORITY_NORMAL, 0);
+        Future<RecordingTask> user2 = instance.addTask(
+                new RecordingTask(order, "user2"), "user2", ImportDispatcher.PRIORITY_NORMAL, 0);
+        user2.get(2, TimeUnit.SECONDS);
+        assertEquals(1, instance.getQueueSize());
+        release.countDown();
+        instance.stop(2, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("user2", "blocking", "user1"), order);
+    }
+
+    @Test
+    public void testMemoryLimit() throws Exception {
+        ImportDispatcher instance = new ImportDispatcher(new ImportDispatcherOptions()
+                .setThreadCount(2).setMemoryLimit(100));
+        instance.init();
+        List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // the task exceeding the limit runs as the dispatcher is idle
+        instance.addTask(new BlockingTask(started, release, order), null, ImportDispatcher.PRIORITY_NORMAL, 150);
+        assertTrue(started.await(2, TimeUnit.SECONDS));
+        instance.addTask(new RecordingTask(order, "small"), null, ImportDispatcher.PRIORITY_NORMAL, 10);
+        Thread.sleep(100);
+        assertEquals("no memory left", 1, instance.getQueueSize());
+        release.countDown();
+        instance.stop(2, TimeUnit.SECONDS);
+        assertEquals(Arrays.asList("blocking", "small"), order);
+    }
+
+    private static class BlockingTask implements Runnable {
+
+        private final CountDownLatch started;
+        private final CountDownLatch release;
+        private final List<String> order;
+
+        public BlockingTask(CountDownLatch started, CountDownLatch release, List<String> order) {
+            this.started = started;
+            this.release = release;
+            this.order = order;
+        }
+
+        @Override
+        public void run() {
+            started.countDown();
+            try {
+                release.await(2, TimeUnit.SECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+            if (order != null) {
+                order.add("blocking");
+            }
+        }
+
+    }
+
+    private static class RecordingTask implements Runnable {
+
+        private final List<String> order;
+        private final String name;
+
+        public RecordingTask(List<String> order, String name) {
+            this.order = order;
+            this.name = name;
+        }
+
+        @Override
+        public void run() {
+            order.add(name);
+        }
+
+    }
+
     private static class Task implements Runnable {
 
         volatile boolean started;
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.imports;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import javax.imageio.ImageIO;
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class TiffRenditionsTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+    private BaseConfiguration conf;
+    private File tiff;
+
+    @Before
+    public void setUp() throws Exception {
+        conf = new BaseConfiguration();
+        conf.setProperty(ImportProfile.PREVIEW_MAX_HEIGHT, 100);
+        conf.setProperty(ImportProfile.THUMBNAIL_MAX_WIDTH, 20);
+        conf.setProperty(ImportProfile.THUMBNAIL_MAX_HEIGHT, 30);
+        tiff = new File(temp.getRoot(), "img1.tiff");
+        FileUtils.copyURLToFile(TiffRenditionsTest.class.getResource("testscan-lzw.tiff"), tiff);
+    }
+
+    @Test
+    public void testCreate() throws Exception {
+        TiffRenditions renditions = new TiffRenditions(new ImportProfile(conf));
+        renditions.create(tiff, temp.getRoot(), "img1.tiff");
+
+        assertEquals(new File(temp.getRoot(), "img1.tiff.full.jpg"), renditions.getFull());
+        assertEquals(new File(temp.getRoot(), "img1.tiff.preview.jpg"), renditions.getPreview());
+        assertEquals(new File(temp.getRoot(), "img1.tiff.thumb.jpg"), renditions.getThumbnail());
+        assertEquals(1, renditions.getSubsampling());
+
+        BufferedImage preview = ImageIO.read(renditions.getPreview());
+        assertTrue(preview.getHeight() <= 100);
+        BufferedImage thumb = ImageIO.read(renditions.getThumbnail());
+        assertTrue(thumb.getWidth() <= 20);
+        assertTrue(thumb.getHeight() <= 30);
+    }
+
+    @Test
+    public void testEstimateDecodedSize() throws Exception {
+        BufferedImage image = ImageIO.read(tiff);
+        long estimate = TiffRenditions.estimateDecodedSize(tiff);
+        // LZW compressed file is smaller than its raster
+        assertTrue(estimate > tiff.length());
+        assertTrue(estimate >= (long) image.getWidth() * image.getHeight());
+    }
+
+    @Test
+    public void testCreateWithFullBounds() throws Exception {
+        conf.setProperty(ImportProfile.FULL_MAX_HEIGHT, 200);
+        conf.setProperty(ImportProfile.JPEG_QUALITY, 0.9f);
+        TiffRenditions renditions = new TiffRenditions(new ImportProfile(conf));
+        renditions.create(tiff, temp.getRoot(), "img1.tiff");
+
+        BufferedImage full = ImageIO.read(renditions.getFull());
+        assertTrue(full.getHeight() <= 200);
+        BufferedImage thumb = ImageIO.read(renditions.getThumbnail());
+        assertTrue(thumb.getWidth() <= 20);
+        assertTrue(thumb.getHeight() <= 30);
+    }
+
+    @Test
+    public void testSubsampling() {
+        assertEquals(1, TiffRenditions.subsampling(1000, 2000, null, null));
+        assertEquals(1, TiffRenditions.subsampling(1000, 2000, 1000, 2000));
+        assertEquals(1, TiffRenditions.subsampling(1000, 2000, null, 1500));
+        assertEquals(2, TiffRenditions.subsampling(1000, 2000, null, 1000));
+        assertEquals(3, TiffRenditions.subsampling(1000, 2000, 300, 1000));
+    }
+
+}
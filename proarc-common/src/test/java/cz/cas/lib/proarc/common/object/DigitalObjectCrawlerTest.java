@@ -0,0 +1,71 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import cz.cas.lib.proarc.common.fedora.LocalStorage;
+import cz.cas.lib.proarc.common.fedora.LocalStorage.LocalObject;
+import cz.cas.lib.proarc.common.fedora.SearchCache;
+import cz.cas.lib.proarc.common.fedora.SearchCacheOptions;
+import cz.cas.lib.proarc.common.fedora.SearchView;
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import cz.cas.lib.proarc.common.fedora.relation.RelationEditor;
+import java.util.Arrays;
+import java.util.List;
+import org.easymock.EasyMock;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class DigitalObjectCrawlerTest {
+
+    @Test
+    public void testSearchChildren() throws Exception {
+        LocalObject parent = new LocalStorage().create("uuid:parent");
+        RelationEditor relations = new RelationEditor(parent);
+        relations.setModel("model:monograph");
+        relations.setMembers(Arrays.asList("uuid:page1", "uuid:deleted", "uuid:page2"));
+        relations.write(relations.getLastModified(), null);
+
+        DigitalObjectManager dom = EasyMock.createMock(DigitalObjectManager.class);
+        EasyMock.expect(dom.find("uuid:parent", null)).andReturn(parent).once();
+        SearchView search = EasyMock.createMock(SearchView.class);
+        // the index returns active objects in any order
+        EasyMock.expect(search.find(Arrays.asList("uuid:page1", "uuid:deleted", "uuid:page2"), true))
+                .andReturn(Arrays.asList(new Item("uuid:page2"), new Item("uuid:page1"))).once();
+        EasyMock.expect(search.find(Arrays.asList("uuid:deleted"), true))
+                .andReturn(Arrays.<Item>asList()).once();
+        EasyMock.replay(dom, search);
+
+        SearchCache sharedCache = new SearchCache(new SearchCacheOptions());
+        DigitalObjectCrawler crawler = new DigitalObjectCrawler(dom, search, null, sharedCache);
+        List<Item> children = crawler.searchChildren("uuid:parent");
+        assertEquals(2, children.size());
+        assertEquals("uuid:page1", children.get(0).getPid());
+        assertEquals("uuid:page2", children.get(1).getPid());
+
+        // the next crawler reuses members and descriptors of the shared cache
+        crawler = new DigitalObjectCrawler(dom, search, null, sharedCache);
+        children = crawler.searchChildren("uuid:parent");
+        assertEquals(2, children.size());
+        assertEquals("uuid:page1", children.get(0).getPid());
+        EasyMock.verify(dom, search);
+    }
+
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.object;
+
+import cz.cas.lib.proarc.common.CustomTemporaryFolder;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import org.apache.commons.io.FileUtils;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class FileRangeOutputTest {
+
+    @Rule
+    public CustomTemporaryFolder temp = new CustomTemporaryFolder();
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = temp.newFile("test.txt");
+        FileUtils.writeStringToFile(file, "0123456789", "UTF-8");
+    }
+
+    @Test
+    public void testParse() throws Exception {
+        assertRange("bytes=2-4", 2, 3, "234");
+        assertRange("bytes=7-", 7, 3, "789");
+        assertRange("bytes=-3", 7, 3, "789");
+        assertRange("bytes=8-100", 8, 2, "89");
+        assertRange("bytes=-100", 0, 10, "0123456789");
+    }
+
+    @Test
+    public void testParseIgnored() throws Exception {
+        assertNull(FileRangeOutput.parse(file, null));
+        assertNull(FileRangeOutput.parse(file, "items=0-1"));
+        assertNull(FileRangeOutput.parse(file, "bytes=0-1,4-5"));
+        assertNull(FileRangeOutput.parse(file, "bytes=x-1"));
+        assertNull(FileRangeOutput.parse(file, "bytes=5-3"));
+    }
+
+    @Test
+    public void testParseUnsatisfiable() throws Exception {
+        assertEquals(0, FileRangeOutput.parse(file, "bytes=10-").getLength());
+        assertEquals(0, FileRangeOutput.parse(file, "bytes=-0").getLength());
+    }
+
+    @Test
+    public void testWriteWholeFile() throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new FileRangeOutput(file).write(output);
+        assertEquals("0123456789", output.toString("UTF-8"));
+    }
+
+    private void assertRange(String header, long start, long length, String content) throws Exception {
+        FileRangeOutput range = FileRangeOutput.parse(file, header);
+        assertNotNull(header, range);
+        assertEquals(header, start, range.getStart());
+        assertEquals(header, length, range.getLength());
+        assertEquals(header, "bytes " + start + '-' + (start + length - 1) + "/10", range.getContentRange());
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        range.write(output);
+        assertEquals(header, content, output.toString("UTF-8"));
+    }
+
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.urnnbn;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ResolverRequestLimiterTest {
+
+    @Test
+    public void testMaxRequests() throws Exception {
+        final ResolverRequestLimiter limiter = new ResolverRequestLimiter(2, 0);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        // the stub resolver
+        final Callable<Integer> request = new Callable<Integer>() {
+
+            @Override
+            public Integer call() throws Exception {
+                int count = running.incrementAndGet();
+                synchronized (maxRunning) {
+                    maxRunning.set(Math.max(maxRunning.get(), count));
+                }
+                Thread.sleep(20);
+                running.decrementAndGet();
+                return count;
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(6);
+        try {
+            List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+            for (int i = 0; i < 12; i++) {
+                results.add(executor.submit(new Callable<Integer>() {
+
+                    @Override
+                    public Integer call() throws Exception {
+                        return limiter.call(request);
+                    }
+                }));
+            }
+            for (Future<Integer> result : results) {
+                assertNotNull(result.get());
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertTrue(String.valueOf(maxRunning.get()), maxRunning.get() <= 2);
+        assertEquals(0, running.get());
+    }
+
+    @Test
+    public void testRequestsPerSecond() throws Exception {
+        ResolverRequestLimiter limiter = new ResolverRequestLimiter(1, 50);
+        Callable<Long> request = new Callable<Long>() {
+
+            @Override
+            public Long call() throws Exception {
+                return System.nanoTime();
+            }
+        };
+        long start = System.nanoTime();
+        for (int i = 0; i < 6; i++) {
+            limiter.call(request);
+        }
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        // 5 delays of 20 ms at least
+        assertTrue(String.valueOf(elapsed), elapsed >= 95);
+    }
+
+}
@@ -0,0 +1,58 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.urnnbn;
+
+import org.apache.commons.configuration.BaseConfiguration;
+import org.apache.commons.configuration.Configuration;
+import org.apache.commons.configuration.ConversionException;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class UrnNbnRegistrationOptionsTest {
+
+    @Test
+    public void testFrom() {
+        Configuration config = new BaseConfiguration();
+        config.addProperty(UrnNbnRegistrationOptions.PROP_THREAD_COUNT, "4");
+        config.addProperty(UrnNbnRegistrationOptions.PROP_MAX_REQUESTS, "3");
+        config.addProperty(UrnNbnRegistrationOptions.PROP_REQUESTS_PER_SECOND, "10");
+        UrnNbnRegistrationOptions result = UrnNbnRegistrationOptions.from(config);
+        assertEquals(4, result.getThreadCount());
+        assertEquals(3, result.getMaxRequests());
+        assertEquals(10, result.getRequestsPerSecond());
+    }
+
+    @Test
+    public void testFromEmptyConfig() {
+        UrnNbnRegistrationOptions result = UrnNbnRegistrationOptions.from(new BaseConfiguration());
+        assertEquals(1, result.getThreadCount());
+        assertEquals(2, result.getMaxRequests());
+        assertEquals(0, result.getRequestsPerSecond());
+    }
+
+    @Test(expected = ConversionException.class)
+    public void testFromInvalidMaxRequests() {
+        Configuration config = new BaseConfiguration();
+        config.addProperty(UrnNbnRegistrationOptions.PROP_MAX_REQUESTS, "0");
+        UrnNbnRegistrationOptions.from(config);
+    }
+
+}
@@ -0,0 +1,205 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.urnnbn;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import cz.cas.lib.proarc.common.export.mets.JhovePool;
+import cz.cas.lib.proarc.common.fedora.LocalStorage;
+import cz.cas.lib.proarc.common.fedora.SearchView.Item;
+import cz.cas.lib.proarc.common.object.DigitalObjectElement;
+import cz.cas.lib.proarc.common.object.DigitalObjectHandler;
+import cz.cas.lib.proarc.common.urnnbn.UrnNbnStatusHandler.PidResult;
+import cz.cas.lib.proarc.common.urnnbn.UrnNbnStatusHandler.Status;
+import cz.cas.lib.proarc.urnnbn.ResolverClient;
+import cz.cas.lib.proarc.urnnbn.model.registration.DigitalDocument;
+import cz.cas.lib.proarc.urnnbn.model.registration.Import;
+import cz.cas.lib.proarc.urnnbn.model.response.UrnNbn;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class UrnNbnServiceTest {
+
+    private HttpServer resolver;
+    private ResolverClient client;
+
+    @Before
+    public void setUp() throws Exception {
+        // a context per worker
+        JhovePool.setDefault(new JhovePool(4));
+        resolver = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        resolver.createContext("/", new ResolverStub());
+        resolver.start();
+        client = new ResolverClient("http://localhost:" + resolver.getAddress().getPort(),
+                "tst001", null, "junit", "junit");
+    }
+
+    @After
+    public void tearDown() {
+        resolver.stop(0);
+        JhovePool.getDefault().close();
+        JhovePool.setDefault(null);
+    }
+
+    @Test
+    public void testRegisterFoundInOrder() throws Exception {
+        UrnNbnService service = new ResolverService(client, new UrnNbnRegistrationOptions()
+                .setThreadCount(4).setMaxRequests(4).setRequestsPerSecond(0));
+        UrnNbnStatusHandler status = new UrnNbnStatusHandler();
+        service.registerFound(createElements("uuid:1", "uuid:2", "uuid:error", "uuid:4"), status);
+
+        Map<String, PidResult> pids = status.getPids();
+        // the stub answers in the reverse order
+        assertEquals(Arrays.asList("uuid:1", "uuid:2", "uuid:error", "uuid:4"), new ArrayList<String>(pids.keySet()));
+        assertEquals("urn:nbn:cz:tst001-uuid:1", pids.get("uuid:1").getUrnNbn());
+        assertEquals("urn:nbn:cz:tst001-uuid:2", pids.get("uuid:2").getUrnNbn());
+        assertEquals("urn:nbn:cz:tst001-uuid:4", pids.get("uuid:4").getUrnNbn());
+        PidResult error = pids.get("uuid:error");
+        assertNull(error.getUrnNbn());
+        assertEquals(1, error.getErrors().size());
+        assertEquals(Status.EXCEPTION, error.getErrors().get(0).getStatus());
+        assertTrue(error.getErrors().get(0).getMessage(), error.getErrors().get(0).getMessage().startsWith("INVALID_DATA"));
+    }
+
+    @Test
+    public void testRegisterFoundFailure() throws Exception {
+        UrnNbnService service = new ResolverService(client, new UrnNbnRegistrationOptions()
+                .setThreadCount(2).setMaxRequests(2).setRequestsPerSecond(0));
+        UrnNbnStatusHandler status = new UrnNbnStatusHandler();
+        service.registerFound(createElements("uuid:failure", "uuid:slow", "uuid:3", "uuid:4"), status);
+
+        Map<String, PidResult> pids = status.getPids();
+        assertEquals(Arrays.asList("uuid:failure", "uuid:slow", "uuid:3", "uuid:4"), new ArrayList<String>(pids.keySet()));
+        assertEquals(1, pids.get("uuid:failure").getErrors().size());
+        // already running
+        assertEquals("urn:nbn:cz:tst001-uuid:slow", pids.get("uuid:slow").getUrnNbn());
+        // skipped after the failure
+        assertNull(pids.get("uuid:3").getUrnNbn());
+        assertEquals(Status.NOT_PROCESSED, pids.get("uuid:3").getWarnings().get(0).getStatus());
+        assertEquals(Status.NOT_PROCESSED, pids.get("uuid:4").getWarnings().get(0).getStatus());
+    }
+
+    private static List<DigitalObjectElement> createElements(String... pids) {
+        LocalStorage storage = new LocalStorage();
+        List<DigitalObjectElement> elms = new ArrayList<DigitalObjectElement>();
+        for (String pid : pids) {
+            elms.add(new DigitalObjectElement(new Item(pid),
+                    new DigitalObjectHandler(storage.create(pid), null)));
+        }
+        return elms;
+    }
+
+    /**
+     * Sends a registration of each object to the resolver instead of reading
+     * its metadata.
+     */
+    private static final class ResolverService extends UrnNbnService {
+
+        private final CountDownLatch slowStarted = new CountDownLatch(1);
+
+        ResolverService(ResolverClient client, UrnNbnRegistrationOptions options) {
+            super(null, null, client, options);
+        }
+
+        @Override
+        void registerObject(DigitalObjectElement elm, UrnNbnContext ctx) throws Exception {
+            if (elm.getPid().equals("uuid:slow")) {
+                slowStarted.countDown();
+            } else if (elm.getPid().equals("uuid:failure")) {
+                // fail while the other worker is busy
+                slowStarted.await();
+                throw new IllegalStateException("Cannot write URN:NBN!");
+            }
+            Import entity = new Import();
+            DigitalDocument document = new DigitalDocument();
+            document.setContractNumber(elm.getPid());
+            entity.setDigitalDocument(document);
+            UrnNbn urnNbn = new UrnNbnVisitor(null).registerEntity(entity, elm, ctx);
+            if (urnNbn != null) {
+                ctx.getStatus().ok(elm, urnNbn.getValue());
+            }
+        }
+    }
+
+    /**
+     * Answers with a URN:NBN or an error for {@code uuid:error}.
+     * Earlier objects get slower responses.
+     */
+    private static final class ResolverStub implements HttpHandler {
+
+        private static final Pattern CONTRACT_NUMBER = Pattern.compile("contractNumber>([^<]+)<");
+
+        @Override
+        public void handle(HttpExchange exchange) throws IOException {
+            String body = IOUtils.toString(exchange.getRequestBody(), "UTF-8");
+            Matcher matcher = CONTRACT_NUMBER.matcher(body);
+            String pid = matcher.find() ? matcher.group(1) : "";
+            try {
+                if (pid.equals("uuid:slow")) {
+                    Thread.sleep(500);
+                } else if (pid.equals("uuid:1")) {
+                    Thread.sleep(300);
+                } else if (pid.equals("uuid:2")) {
+                    Thread.sleep(200);
+                }
+            } catch (InterruptedException ex) {
+                throw new IOException(ex);
+            }
+            String response;
+            int httpStatus;
+            if (pid.equals("uuid:error")) {
+                httpStatus = 400;
+                response = "<response xmlns='http://resolver.nkp.cz/v3/'><error>"
+                        + "<code>INVALID_DATA</code><message>Invalid data</message>"
+                        + "</error></response>";
+            } else {
+                httpStatus = 201;
+                response = "<response xmlns='http://resolver.nkp.cz/v3/'><urnNbn>"
+                        + "<value>urn:nbn:cz:tst001-" + pid + "</value>"
+                        + "</urnNbn></response>";
+            }
+            byte[] bytes = response.getBytes("UTF-8");
+            exchange.getResponseHeaders().set("Content-Type", "application/xml");
+            exchange.sendResponseHeaders(httpStatus, bytes.length);
+            OutputStream out = exchange.getResponseBody();
+            try {
+                out.write(bytes);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+}
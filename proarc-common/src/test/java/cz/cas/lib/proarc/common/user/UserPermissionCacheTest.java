@@ -0,0 +1,75 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.common.user;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class UserPermissionCacheTest {
+
+    @Test
+    public void testGetPermissions() {
+        UserPermissionCache cache = new UserPermissionCache(60000);
+        assertNull(cache.getPermissions(1));
+        Set<Permission> permissions = new HashSet<Permission>(Arrays.asList(Permissions.ADMIN));
+        cache.putPermissions(1, permissions, cache.getVersion());
+        // the cache holds a copy
+        permissions.clear();
+        assertEquals(Collections.singleton(Permissions.ADMIN), cache.getPermissions(1));
+        assertNull(cache.getPermissions(2));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        List<Group> groups = Arrays.asList(Group.create("group1", null));
+        cache.putGroups(1, groups, cache.getVersion());
+        assertEquals(groups, cache.getGroups(1));
+
+        cache.invalidate(1);
+        assertNull(cache.getPermissions(1));
+        assertNull(cache.getGroups(1));
+    }
+
+    @Test
+    public void testStaleLoad() {
+        UserPermissionCache cache = new UserPermissionCache(60000);
+        long version = cache.getVersion();
+        // permissions changed while loading
+        cache.invalidateAll();
+        cache.putPermissions(1, Collections.singleton(Permissions.ADMIN), version);
+        assertNull(cache.getPermissions(1));
+        cache.putPermissions(1, Collections.singleton(Permissions.ADMIN), cache.getVersion());
+        assertNotNull(cache.getPermissions(1));
+    }
+
+    @Test
+    public void testExpiration() throws Exception {
+        UserPermissionCache cache = new UserPermissionCache(1);
+        cache.putPermissions(1, Collections.singleton(Permissions.ADMIN), cache.getVersion());
+        Thread.sleep(5);
+        assertNull(cache.getPermissions(1));
+    }
+
+}
@@ -192,6 +192,106 @@ public class WorkflowProfilesTest {
         assertNotNull(wp.getProfiles());
     }
 
+    @Test
+    public void testIndexedLookups() throws Exception {
+        String xml = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>\n"
+                + "<workflow xmlns='http://proarc.lib.cas.cz/xml/common/workflow/v1'>\n"
+                + "    <job name='ndk'>\n"
+                + "        <step taskRef='task.id1'/>\n"
+                + "    </job>\n"
+                + "    <material name='material0' type='FOLDER'/>\n"
+                + "    <task name='task.id1'>\n"
+                + "        <param name='param.id1' required='true'/>\n"
+                + "    </task>\n"
+                + "</workflow>\n"
+                ;
+        File xmlFile = new File(temp.getRoot(), "workflow.xml");
+        FileUtils.write(xmlFile, xml, StandardCharsets.UTF_8);
+        WorkflowProfiles profiles = new WorkflowProfiles(xmlFile);
+        WorkflowDefinition wf = profiles.getProfiles();
+        assertSame(wf, profiles.getProfiles());
+        assertSame(wf.getJobs().get(0), profiles.getProfile(wf, "ndk"));
+        assertNull(profiles.getProfile(wf, "unknown"));
+        TaskDefinition task = profiles.getTaskProfile(wf, "task.id1");
+        assertSame(wf.getTasks().get(0), task);
+        assertSame(task.getParams().get(0), profiles.getParamProfile(task, "param.id1"));
+        assertNull(profiles.getParamProfile(task, "unknown"));
+        assertSame(wf.getMaterials().get(0), profiles.getMaterialProfile(wf, "material0"));
+        assertEquals(Arrays.asList("task.id1"), wf.getJobs().get(0).getTaskNamesSortedByBlockers());
+
+        // profiles not read by the instance
+        WorkflowDefinition other = JAXB.unmarshal(xmlFile, WorkflowDefinition.class);
+        assertSame(other.getJobs().get(0), profiles.getProfile(other, "ndk"));
+        assertSame(other.getTasks().get(0), profiles.getTaskProfile(other, "task.id1"));
+    }
+
+    @Test
+    public void testWatch() throws Exception {
+        File xmlFile = new File(temp.getRoot(), "workflow.xml");
+        String xml = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>\n"
+                + "<workflow xmlns='http://proarc.lib.cas.cz/xml/common/workflow/v1'>\n"
+                + "    <task name='task.id1'/>\n"
+                + "</workflow>\n"
+                ;
+        FileUtils.write(xmlFile, xml, StandardCharsets.UTF_8);
+        WorkflowProfiles profiles = new WorkflowProfiles(xmlFile);
+        profiles.start();
+        try {
+            WorkflowDefinition wf = profiles.getProfiles();
+            assertNotNull(profiles.getTaskProfile(wf, "task.id1"));
+            String xml2 = xml.replace("task.id1", "task.id2");
+            // a partial write
+            FileUtils.write(xmlFile, xml2.substring(0, xml2.length() / 2), StandardCharsets.UTF_8);
+            Thread.sleep(200);
+            assertNotNull(profiles.getTaskProfile(profiles.getProfiles(), "task.id1"));
+            FileUtils.write(xmlFile, xml2, StandardCharsets.UTF_8);
+            long timeout = System.currentTimeMillis() + 10000;
+            do {
+                Thread.sleep(50);
+                wf = profiles.getProfiles();
+                // readers keep the last valid profiles during the rewrite
+                assertNotNull(wf);
+            } while (profiles.getTaskProfile(wf, "task.id2") == null
+                    && System.currentTimeMillis() < timeout);
+            assertNull(profiles.getTaskProfile(wf, "task.id1"));
+            assertNotNull(profiles.getTaskProfile(wf, "task.id2"));
+        } finally {
+            profiles.close();
+        }
+    }
+
+    @Test
+    public void testKeepLastValidProfiles() throws Exception {
+        File xmlFile = new File(temp.getRoot(), "workflow.xml");
+        String xml = "<?xml version='1.0' encoding='UTF-8' standalone='yes'?>\n"
+                + "<workflow xmlns='http://proarc.lib.cas.cz/xml/common/workflow/v1'>\n"
+                + "    <task name='task.id1'/>\n"
+                + "</workflow>\n"
+                ;
+        FileUtils.write(xmlFile, xml.substring(0, xml.length() / 2), StandardCharsets.UTF_8);
+        WorkflowProfiles profiles = new WorkflowProfiles(xmlFile);
+        // nothing valid yet
+        assertNull(profiles.getProfiles());
+
+        long lastModified = xmlFile.lastModified();
+        FileUtils.write(xmlFile, xml, StandardCharsets.UTF_8);
+        xmlFile.setLastModified(lastModified + 2000);
+        WorkflowDefinition wf = profiles.getProfiles();
+        assertNotNull(profiles.getTaskProfile(wf, "task.id1"));
+
+        String xml2 = xml.replace("task.id1", "task.id2");
+        FileUtils.write(xmlFile, xml2.substring(0, xml2.length() / 2), StandardCharsets.UTF_8);
+        xmlFile.setLastModified(lastModified + 4000);
+        assertSame(wf, profiles.getProfiles());
+        assertNotNull(profiles.getTaskProfile(profiles.getProfiles(), "task.id1"));
+
+        FileUtils.write(xmlFile, xml2, StandardCharsets.UTF_8);
+        xmlFile.setLastModified(lastModified + 6000);
+        wf = profiles.getProfiles();
+        assertNull(profiles.getTaskProfile(wf, "task.id1"));
+        assertNotNull(profiles.getTaskProfile(wf, "task.id2"));
+    }
+
 //    @Test
     public void testCreateSchema() throws Exception {
         JAXBContext jctx = JAXBContext.newInstance(WorkflowDefinition.class);
@@ -24,7 +24,9 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.security.MessageDigest;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.FileHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -76,6 +78,9 @@ public final class SIP2DESATransporter {
 
     private PSPSIP results = resultsFactory.createPSPSIP();
 
+    /** SIP file name -> MD5 checksum computed while the SIP was written */
+    private final Map<String, String> checksums = new HashMap<String, String>();
+
     /**
      * Returns the parsed result from the result file
      *
@@ -85,6 +90,16 @@ public final class SIP2DESATransporter {
         return results;
     }
 
+    /**
+     * Sets the MD5 checksum of a SIP file to skip its reading before the upload.
+     *
+     * @param sipFileName name of the SIP file
+     * @param md5 hex encoded checksum
+     */
+    public void setChecksum(String sipFileName, String md5) {
+        checksums.put(sipFileName, md5);
+    }
+
     /** used just in case non REST usage! */
     private File desaFolder;
 
@@ -348,7 +363,10 @@ public final class SIP2DESATransporter {
     private void uploadFile(File file, SipType sipType, boolean writeResults) {
          Holder<String> sipId = new Holder<String>(getSipId(file));
         Holder<String> idSipVersion = new Holder<String>();
-        String checksum = getMD5Checksum(file);
+        String checksum = checksums.get(file.getName());
+        if (checksum == null) {
+            checksum = getMD5Checksum(file);
+        }
         log.info("Transporting file: " + file.getName());
 
         if (useRest) {
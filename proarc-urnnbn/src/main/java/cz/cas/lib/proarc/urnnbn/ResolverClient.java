@@ -139,7 +139,7 @@ public final class ResolverClient {
         return target;
     }
 
-    Client getHttpClient() {
+    synchronized Client getHttpClient() {
         if (httpClient == null) {
             try {
                 SSLContext sslCtx = SSLContext.getInstance("SSL");
@@ -17,14 +17,27 @@
 package cz.cas.lib.proarc.webapp.server;
 
 import cz.cas.lib.proarc.authentication.Authenticators;
+import cz.cas.lib.proarc.common.catalog.CatalogCache;
+import cz.cas.lib.proarc.common.catalog.CatalogCacheOptions;
+import cz.cas.lib.proarc.common.catalog.Z3950Catalog;
 import cz.cas.lib.proarc.common.config.AppConfiguration;
 import cz.cas.lib.proarc.common.config.AppConfigurationException;
 import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
 import cz.cas.lib.proarc.common.dao.DaoFactory;
 import cz.cas.lib.proarc.common.dao.empiredb.EmpireConfiguration;
 import cz.cas.lib.proarc.common.dao.empiredb.EmpireDaoFactory;
+import cz.cas.lib.proarc.common.export.ExportDispatcher;
+import cz.cas.lib.proarc.common.export.mets.JhovePool;
 import cz.cas.lib.proarc.common.fedora.FedoraStorageInitializer;
+import cz.cas.lib.proarc.common.fedora.ObjectIndex;
+import cz.cas.lib.proarc.common.fedora.ObjectIndexOptions;
 import cz.cas.lib.proarc.common.fedora.RemoteStorage;
+import cz.cas.lib.proarc.common.fedora.RenditionCache;
+import cz.cas.lib.proarc.common.fedora.RenditionCacheOptions;
+import cz.cas.lib.proarc.common.fedora.SearchCache;
+import cz.cas.lib.proarc.common.fedora.SearchCacheOptions;
+import cz.cas.lib.proarc.common.fedora.SearchQueryExecutor;
+import cz.cas.lib.proarc.common.fedora.SearchView;
 import cz.cas.lib.proarc.common.imports.ImportBatchManager;
 import cz.cas.lib.proarc.common.imports.ImportDispatcher;
 import cz.cas.lib.proarc.common.imports.ImportProcess;
@@ -60,6 +73,7 @@ public final class ProarcInitializer {
     private final ExecutorService executor;
     private Future<Void> asyncTask;
     private DaoFactory daoFactory;
+    private ObjectIndex objectIndex;
 
     public static ProarcInitializer getInstance() {
         return INSTANCE;
@@ -88,11 +102,18 @@ public final class ProarcInitializer {
         initProarcModel(config);
         DataSource proarcSource = initProarcDb();
         initUsers(config, proarcSource, daoFactory);
+        initObjectIndex(config, daoFactory);
+        JhovePool.setDefault(new JhovePool(config.getJhovePoolSize()));
+        initRenditionCache(config);
+        initSearchCache(config);
+        initCatalogCache(config);
+        SearchQueryExecutor.setDefault(new SearchQueryExecutor(config.getSearchViewOptions()));
         initImport(config, daoFactory);
         DigitalObjectManager.setDefault(new DigitalObjectManager(
                 config, ImportBatchManager.getInstance(), null,
                 MetaModelRepository.getInstance(), UserUtil.getDefaultManger()));
         Authenticators.setInstance(new Authenticators(config.getAuthenticators()));
+        initExport(config, daoFactory, UserUtil.getDefaultManger());
         initWorkflow(config, daoFactory, UserUtil.getDefaultManger());
         asyncTask = executor.submit(new Callable<Void>() {
 
@@ -112,6 +133,40 @@ public final class ProarcInitializer {
 //        LOG.info("Destroing " + AppConfiguration.FULL_VERSION);
         ImportDispatcher importDispatcher = ImportDispatcher.getDefault();
         importDispatcher.stop();
+        ExportDispatcher exportDispatcher = ExportDispatcher.getDefault();
+        if (exportDispatcher != null) {
+            exportDispatcher.stop();
+        }
+        JhovePool.getDefault().close();
+        if (objectIndex != null) {
+            objectIndex.close();
+            objectIndex = null;
+        }
+        RenditionCache cache = RenditionCache.getDefault();
+        if (cache != null) {
+            cache.clear();
+        }
+        SearchCache searchCache = SearchCache.getDefault();
+        if (searchCache != null) {
+            searchCache.clear();
+            SearchCache.setDefault(null);
+        }
+        SearchQueryExecutor searchExecutor = SearchQueryExecutor.getDefault();
+        if (searchExecutor != null) {
+            searchExecutor.close();
+            SearchQueryExecutor.setDefault(null);
+        }
+        LOG.info("Search query latencies:\n" + SearchView.getStatistics());
+        WorkflowProfiles workflowProfiles = WorkflowProfiles.getInstance();
+        if (workflowProfiles != null) {
+            workflowProfiles.close();
+        }
+        Z3950Catalog.closeSessions();
+        CatalogCache catalogCache = CatalogCache.getDefault();
+        if (catalogCache != null) {
+            catalogCache.clear();
+            CatalogCache.setDefault(null);
+        }
         daoFactory = null;
     }
 
@@ -124,6 +179,9 @@ public final class ProarcInitializer {
         FedoraStorageInitializer rsi = new FedoraStorageInitializer(RemoteStorage.getInstance());
         rsi.init();
         UserUtil.initDefaultAdmin();
+        if (objectIndex != null && !objectIndex.isReady()) {
+            objectIndex.scheduleReconcile();
+        }
     }
 
     /**
@@ -171,20 +229,73 @@ public final class ProarcInitializer {
         }
     }
 
+    private void initObjectIndex(AppConfiguration config, DaoFactory daoFactory) {
+        ObjectIndexOptions options = config.getObjectIndexOptions();
+        if (!options.isEnabled()) {
+            return ;
+        }
+        try {
+            RemoteStorage storage = RemoteStorage.getInstance(config);
+            objectIndex = new ObjectIndex(daoFactory, storage);
+            objectIndex.setReady(!options.isReconcileOnStartup());
+            storage.setObjectIndex(objectIndex);
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void initRenditionCache(AppConfiguration config) {
+        RenditionCacheOptions options = config.getRenditionCacheOptions();
+        if (options.getDiskSize() == 0) {
+            return ;
+        }
+        try {
+            RenditionCache.setDefault(new RenditionCache(options));
+        } catch (IOException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private void initSearchCache(AppConfiguration config) {
+        SearchCacheOptions options = config.getSearchCacheOptions();
+        if (options.getSize() == 0) {
+            return ;
+        }
+        SearchCache.setDefault(new SearchCache(options));
+    }
+
+    private void initCatalogCache(AppConfiguration config) {
+        CatalogCacheOptions options = config.getCatalogCacheOptions();
+        if (options.getSize() == 0) {
+            return ;
+        }
+        CatalogCache.setDefault(new CatalogCache(options));
+    }
+
     private void initImport(AppConfiguration config, DaoFactory daoFactory) {
         ImportBatchManager.setInstance(config, daoFactory);
         ImportBatchManager ibm = ImportBatchManager.getInstance();
-        ImportDispatcher importDispatcher = new ImportDispatcher();
+        ImportDispatcher importDispatcher = new ImportDispatcher(config.getImportDispatcherOptions());
         ImportDispatcher.setDefault(importDispatcher);
         importDispatcher.init();
         ImportProcess.resumeAll(ibm, importDispatcher, config);
     }
 
+    private void initExport(AppConfiguration config, DaoFactory daoFactory, UserManager users) {
+        ExportDispatcher exportDispatcher = new ExportDispatcher(
+                config.getExportDispatcherOptions(), config, daoFactory);
+        ExportDispatcher.setDefault(exportDispatcher);
+        exportDispatcher.init();
+        exportDispatcher.resumeAll(users);
+    }
+
     private void initWorkflow(AppConfiguration config, DaoFactory daoFactory, UserManager users) {
         try {
             File workflowFile = config.getWorkflowConfiguration();
             WorkflowProfiles.copyDefaultFile(config.getWorkflowConfiguration());
-            WorkflowProfiles.setInstance(new WorkflowProfiles(workflowFile));
+            WorkflowProfiles workflowProfiles = new WorkflowProfiles(workflowFile);
+            workflowProfiles.start();
+            WorkflowProfiles.setInstance(workflowProfiles);
             WorkflowManager.setInstance(new WorkflowManager(
                     WorkflowProfiles.getInstance(), daoFactory, users));
         } catch (Exception ex) {
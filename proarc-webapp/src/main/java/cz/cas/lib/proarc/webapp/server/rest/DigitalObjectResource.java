@@ -1034,7 +1034,7 @@ public class DigitalObjectResource {
 
         DigitalObjectHandler doHandler = findHandler(pid, batchId);
         DisseminationHandler dissemination = doHandler.dissemination(dsId);
-        return dissemination.getDissemination(httpRequest);
+        return dissemination.getDissemination(httpRequest, httpHeaders);
     }
 
     /**
@@ -1324,7 +1324,7 @@ public class DigitalObjectResource {
                                 DigitalObjectResourceApi.URNNBN_RESOLVER, resolverId));
             }
             ResolverClient resolverClient = config.getClient(resolverConfig);
-            UrnNbnService service = new UrnNbnService(resolverClient);
+            UrnNbnService service = new UrnNbnService(resolverClient, config.getRegistrationOptions());
             UrnNbnStatusHandler status = service.register(pids, hierarchy);
             for (Entry<String, PidResult> entry : status.getPids().entrySet()) {
                 PidResult pidResult = entry.getValue();
@@ -19,10 +19,14 @@ package cz.cas.lib.proarc.webapp.server.rest;
 import cz.cas.lib.proarc.common.config.AppConfiguration;
 import cz.cas.lib.proarc.common.config.AppConfigurationException;
 import cz.cas.lib.proarc.common.config.AppConfigurationFactory;
+import cz.cas.lib.proarc.common.dao.Batch;
+import cz.cas.lib.proarc.common.dao.BatchItem;
 import cz.cas.lib.proarc.common.export.DataStreamExport;
 import cz.cas.lib.proarc.common.export.DesaExport;
 import cz.cas.lib.proarc.common.export.DesaExport.Result;
+import cz.cas.lib.proarc.common.export.ExportDispatcher;
 import cz.cas.lib.proarc.common.export.ExportException;
+import cz.cas.lib.proarc.common.export.ExportProcess;
 import cz.cas.lib.proarc.common.export.ExportResultLog;
 import cz.cas.lib.proarc.common.export.ExportResultLog.ResultError;
 import cz.cas.lib.proarc.common.export.Kramerius4Export;
@@ -49,6 +53,7 @@ import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import javax.servlet.http.HttpServletRequest;
+import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.FormParam;
 import javax.ws.rs.GET;
@@ -118,12 +123,16 @@ public class ExportResource {
     @Produces({MediaType.APPLICATION_JSON})
     public SmartGwtResponse<ExportResult> kramerius4(
             @FormParam(ExportResourceApi.KRAMERIUS4_PID_PARAM) List<String> pids,
-            @FormParam(ExportResourceApi.KRAMERIUS4_HIERARCHY_PARAM) @DefaultValue("true") boolean hierarchy
+            @FormParam(ExportResourceApi.KRAMERIUS4_HIERARCHY_PARAM) @DefaultValue("true") boolean hierarchy,
+            @FormParam(ExportResourceApi.ASYNC_PARAM) @DefaultValue("false") boolean async
             ) throws IOException {
 
         if (pids.isEmpty()) {
             throw RestException.plainText(Status.BAD_REQUEST, "Missing " + ExportResourceApi.KRAMERIUS4_PID_PARAM);
         }
+        if (async) {
+            return addExportJob(hierarchy ? ExportProcess.Kind.KRAMERIUS4 : ExportProcess.Kind.KRAMERIUS4_SELECTION, pids);
+        }
         Kramerius4Export export = new Kramerius4Export(
                 RemoteStorage.getInstance(appConfig), appConfig.getKramerius4Export());
         URI exportUri = user.getExportFolder();
@@ -159,7 +168,8 @@ public class ExportResource {
             throw RestException.plainText(Status.BAD_REQUEST, "Missing " + ExportResourceApi.DESA_PID_PARAM);
         }
         DesaExport export = new DesaExport(RemoteStorage.getInstance(appConfig),
-                appConfig.getDesaServices(), MetaModelRepository.getInstance());
+                appConfig.getDesaServices(), MetaModelRepository.getInstance(),
+                appConfig.getDesaExportOptions());
         URI exportUri = user.getExportFolder();
         File exportFolder = new File(exportUri);
         List<ExportResult> result = new ArrayList<ExportResult>(pids.size());
@@ -227,7 +237,8 @@ public class ExportResource {
     @Path(ExportResourceApi.NDK_PATH)
     @Produces({MediaType.APPLICATION_JSON})
     public SmartGwtResponse<ExportResult> newNdkExport(
-            @FormParam(ExportResourceApi.NDK_PID_PARAM) List<String> pids
+            @FormParam(ExportResourceApi.NDK_PID_PARAM) List<String> pids,
+            @FormParam(ExportResourceApi.ASYNC_PARAM) @DefaultValue("false") boolean async
 //            @FormParam(ExportResourceApi.DESA_HIERARCHY_PARAM) @DefaultValue("false") boolean hierarchy,
 //            @FormParam(ExportResourceApi.DESA_FORDOWNLOAD_PARAM) @DefaultValue("false") boolean forDownload,
 //            @FormParam(ExportResourceApi.DESA_DRYRUN_PARAM) @DefaultValue("false") boolean dryRun
@@ -236,10 +247,13 @@ public class ExportResource {
         if (pids.isEmpty()) {
             throw RestException.plainText(Status.BAD_REQUEST, "Missing " + ExportResourceApi.DESA_PID_PARAM);
         }
+        if (async) {
+            return addExportJob(ExportProcess.Kind.NDK, pids);
+        }
         URI exportUri = user.getExportFolder();
         File exportFolder = new File(exportUri);
         List<ExportResult> result = new ArrayList<ExportResult>(pids.size());
-        NdkExport export = new NdkExport(RemoteStorage.getInstance());
+        NdkExport export = new NdkExport(RemoteStorage.getInstance(), appConfig.getNdkExportOptions());
         List<NdkExport.Result> ndkResults = export.export(exportFolder, pids, true, true, session.asFedoraLog());
         for (NdkExport.Result r : ndkResults) {
             if (r.getValidationError() != null) {
@@ -261,12 +275,16 @@ public class ExportResource {
     @Path(ExportResourceApi.CEJSH_PATH)
     @Produces({MediaType.APPLICATION_JSON})
     public SmartGwtResponse<ExportResult> newCejshExport(
-            @FormParam(ExportResourceApi.CEJSH_PID_PARAM) List<String> pids
+            @FormParam(ExportResourceApi.CEJSH_PID_PARAM) List<String> pids,
+            @FormParam(ExportResourceApi.ASYNC_PARAM) @DefaultValue("false") boolean async
             ) {
 
         if (pids.isEmpty()) {
             throw RestException.plainText(Status.BAD_REQUEST, "Missing " + ExportResourceApi.CEJSH_PID_PARAM);
         }
+        if (async) {
+            return addExportJob(ExportProcess.Kind.CEJSH, pids);
+        }
         URI exportUri = user.getExportFolder();
         File exportFolder = new File(exportUri);
         CejshConfig cejshConfig = CejshConfig.from(appConfig.getAuthenticators());
@@ -299,12 +317,16 @@ public class ExportResource {
     @Path(ExportResourceApi.CROSSREF_PATH)
     @Produces({MediaType.APPLICATION_JSON})
     public SmartGwtResponse<ExportResult> newCrossrefExport(
-            @FormParam(ExportResourceApi.CROSSREF_PID_PARAM) List<String> pids
+            @FormParam(ExportResourceApi.CROSSREF_PID_PARAM) List<String> pids,
+            @FormParam(ExportResourceApi.ASYNC_PARAM) @DefaultValue("false") boolean async
             ) {
 
         if (pids.isEmpty()) {
             throw RestException.plainText(Status.BAD_REQUEST, "Missing " + ExportResourceApi.CROSSREF_PID_PARAM);
         }
+        if (async) {
+            return addExportJob(ExportProcess.Kind.CROSSREF, pids);
+        }
         URI exportUri = user.getExportFolder();
         File exportFolder = new File(exportUri);
 //        CejshConfig cejshConfig = CejshConfig.from(appConfig.getAuthenticators());
@@ -338,12 +360,16 @@ public class ExportResource {
     @Path(ExportResourceApi.ARCHIVE_PATH)
     @Produces({MediaType.APPLICATION_JSON})
     public SmartGwtResponse<ExportResult> newArchive(
-            @FormParam(ExportResourceApi.ARCHIVE_PID_PARAM) List<String> pids
+            @FormParam(ExportResourceApi.ARCHIVE_PID_PARAM) List<String> pids,
+            @FormParam(ExportResourceApi.ASYNC_PARAM) @DefaultValue("false") boolean async
             ) {
 
         if (pids.isEmpty()) {
             throw RestException.plainText(Status.BAD_REQUEST, "Missing " + ExportResourceApi.ARCHIVE_PID_PARAM);
         }
+        if (async) {
+            return addExportJob(ExportProcess.Kind.ARCHIVE, pids);
+        }
         URI exportUri = user.getExportFolder();
         File exportFolder = new File(exportUri);
         ExportResult result = new ExportResult();
@@ -367,6 +393,87 @@ public class ExportResource {
         return new SmartGwtResponse<ExportResult>(result);
     }
 
+    /**
+     * Gets the state and results of the export job.
+     *
+     * @param jobId the job ID returned by an export with {@code async=true}
+     * @return the job result
+     */
+    @GET
+    @Path(ExportResourceApi.JOB_PATH)
+    @Produces({MediaType.APPLICATION_JSON})
+    public SmartGwtResponse<ExportResult> getExportJob(
+            @QueryParam(ExportResourceApi.JOB_ID_PARAM) Integer jobId
+            ) {
+
+        Batch job = findExportJob(jobId);
+        List<BatchItem> items = ExportDispatcher.getDefault().findItems(job.getId());
+        return new SmartGwtResponse<ExportResult>(toJobResult(job, items));
+    }
+
+    /**
+     * Cancels the export job. The running job stops as soon as its export
+     * responds to the interruption.
+     *
+     * @param jobId the job ID
+     * @return the job result
+     */
+    @DELETE
+    @Path(ExportResourceApi.JOB_PATH)
+    @Produces({MediaType.APPLICATION_JSON})
+    public SmartGwtResponse<ExportResult> cancelExportJob(
+            @QueryParam(ExportResourceApi.JOB_ID_PARAM) Integer jobId
+            ) {
+
+        Batch job = findExportJob(jobId);
+        job = ExportDispatcher.getDefault().cancel(job.getId());
+        return new SmartGwtResponse<ExportResult>(toJobResult(job, null));
+    }
+
+    /**
+     * Plans the export to run in the background.
+     */
+    private SmartGwtResponse<ExportResult> addExportJob(ExportProcess.Kind kind, List<String> pids) {
+        Batch job = ExportDispatcher.getDefault().addExport(kind, pids, user, session.asFedoraLog());
+        return new SmartGwtResponse<ExportResult>(toJobResult(job, null));
+    }
+
+    private Batch findExportJob(Integer jobId) {
+        if (jobId == null) {
+            throw RestException.plainText(Status.BAD_REQUEST, "Missing " + ExportResourceApi.JOB_ID_PARAM);
+        }
+        Batch job = ExportDispatcher.getDefault().find(jobId);
+        // admin may see all users; XXX use permissions for this!
+        if (job == null || (user.getId() != 1 && !user.getId().equals(job.getUserId()))) {
+            throw RestException.plainText(Status.NOT_FOUND, "Not found! " + ExportResourceApi.JOB_ID_PARAM + ": " + jobId);
+        }
+        return job;
+    }
+
+    private ExportResult toJobResult(Batch job, List<BatchItem> items) {
+        ExportResult result = new ExportResult(job.getId(), null);
+        result.setState(job.getState().name());
+        if (job.getState() == Batch.State.EXPORT_DONE || job.getState() == Batch.State.EXPORT_FAILED) {
+            File target = ExportDispatcher.getDefault().resolveFolder(job);
+            result.setTarget(user.getUserHomeUri().relativize(target.toURI()).toASCIIString());
+        }
+        List<ExportError> errors = new ArrayList<ExportError>();
+        if (job.getLog() != null) {
+            errors.add(new ExportError(null, "Export failed!", false, job.getLog()));
+        }
+        if (items != null) {
+            for (BatchItem item : items) {
+                if (BatchItem.ObjectState.EXPORT_FAILED.name().equals(item.getState())) {
+                    errors.add(new ExportError(item.getPid(), "Export failed!", false, item.getLog()));
+                }
+            }
+        }
+        if (!errors.isEmpty()) {
+            result.setErrors(errors);
+        }
+        return result;
+    }
+
     /**
      * The export result.
      */
@@ -379,6 +486,12 @@ public class ExportResource {
         @XmlElement(name = ExportResourceApi.RESULT_TOKEN)
         private String token;
 
+        /**
+         * The state of the export job.
+         */
+        @XmlElement(name = ExportResourceApi.RESULT_STATE)
+        private String state;
+
         /**
          * The target folder path.
          */
@@ -445,6 +558,14 @@ public class ExportResource {
             this.token = token;
         }
 
+        public String getState() {
+            return state;
+        }
+
+        public void setState(String state) {
+            this.state = state;
+        }
+
     }
 
     /**
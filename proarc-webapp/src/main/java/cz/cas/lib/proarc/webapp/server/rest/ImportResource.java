@@ -16,6 +16,11 @@
  */
 package cz.cas.lib.proarc.webapp.server.rest;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
 import com.yourmediashelf.fedora.client.FedoraClientException;
 import cz.cas.lib.proarc.common.config.AppConfiguration;
 import cz.cas.lib.proarc.common.config.AppConfigurationException;
@@ -36,15 +41,18 @@ import cz.cas.lib.proarc.common.imports.ImportFileScanner;
 import cz.cas.lib.proarc.common.imports.ImportFileScanner.Folder;
 import cz.cas.lib.proarc.common.imports.ImportProcess;
 import cz.cas.lib.proarc.common.imports.ImportProfile;
+import cz.cas.lib.proarc.common.json.JsonUtils;
 import cz.cas.lib.proarc.common.user.UserProfile;
 import cz.cas.lib.proarc.webapp.server.ServerMessages;
 import cz.cas.lib.proarc.webapp.shared.rest.ImportResourceApi;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Set;
@@ -61,11 +69,14 @@ import javax.ws.rs.PUT;
 import javax.ws.rs.Path;
 import javax.ws.rs.Produces;
 import javax.ws.rs.QueryParam;
+import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
 import javax.ws.rs.core.SecurityContext;
+import javax.ws.rs.core.StreamingOutput;
 import javax.ws.rs.core.UriInfo;
 
 /**
@@ -162,11 +173,12 @@ public class ImportResource {
             @FormParam(ImportResourceApi.IMPORT_BATCH_FOLDER) @DefaultValue("") String path,
             @FormParam(ImportResourceApi.NEWBATCH_DEVICE_PARAM) String device,
             @FormParam(ImportResourceApi.NEWBATCH_INDICES_PARAM) @DefaultValue("true") boolean indices,
-            @FormParam(ImportResourceApi.IMPORT_BATCH_PROFILE) String profileId
+            @FormParam(ImportResourceApi.IMPORT_BATCH_PROFILE) String profileId,
+            @FormParam(ImportResourceApi.NEWBATCH_PRIORITY_PARAM) @DefaultValue("0") int priority
             ) throws URISyntaxException, IOException {
         
-        LOG.log(Level.FINE, "import path: {0}, indices: {1}, device: {2}",
-                new Object[] {path, indices, device});
+        LOG.log(Level.FINE, "import path: {0}, indices: {1}, device: {2}, priority: {3}",
+                new Object[] {path, indices, device, priority});
         String folderPath = validateParentPath(path);
         URI userRoot = user.getImportFolder();
         URI folderUri = (folderPath != null)
@@ -175,8 +187,10 @@ public class ImportResource {
                 : userRoot;
         File folder = new File(folderUri);
         ConfigurationProfile profile = findImportProfile(null, profileId);
+        // users may only pick one of the known priorities
+        priority = ImportDispatcher.clampPriority(priority);
         ImportProcess process = ImportProcess.prepare(folder, folderPath, user,
-                importManager, device, indices, appConfig.getImportConfiguration(profile));
+                importManager, device, indices, appConfig.getImportConfiguration(profile), priority);
         ImportDispatcher.getDefault().addImport(process);
         Batch batch = process.getBatch();
         return new SmartGwtResponse<BatchView>(importManager.viewBatch(batch.getId()));
@@ -195,6 +209,9 @@ public class ImportResource {
      * @param startRow optional offset of the result
      * @param sortBy optional {@link BatchView} property name to sort the result. Value syntax: {@code [-]propertyName} where
      *              {@code '-'} stands for descending sort. Default is {@code sortBy=-create}.
+     * @param afterCreate optional create dateTime of the last batch of the previous page
+     * @param afterId optional ID of the last batch of the previous page; with the default sort
+     *              the page starts right after this batch and {@code startRow} just numbers the result
      * @return the sorted list of batches.
      */
     @GET
@@ -209,23 +226,36 @@ public class ImportResource {
             @QueryParam(ImportResourceApi.IMPORT_BATCH_MODIFIED_TO) DateTimeParam modifiedTo,
             @QueryParam(ImportResourceApi.IMPORT_BATCH_DESCRIPTION) String filePattern,
             @QueryParam("_startRow") int startRow,
-            @QueryParam("_sortBy") String sortBy
+            @QueryParam("_sortBy") String sortBy,
+            @QueryParam(ImportResourceApi.IMPORT_BATCH_AFTER_CREATE) DateTimeParam afterCreate,
+            @QueryParam(ImportResourceApi.IMPORT_BATCH_AFTER_ID) Integer afterId
             ) {
 
         int pageSize = 100;
+        boolean keyset = afterId != null && afterCreate != null && (sortBy == null || sortBy.isEmpty());
+        // export jobs are kept in batches too
+        Set<Batch.State> states = batchState == null || batchState.isEmpty()
+                ? Batch.IMPORT_STATES : importStates(batchState);
+        if (states.isEmpty()) {
+            return new SmartGwtResponse<BatchView>(SmartGwtResponse.STATUS_SUCCESS,
+                    startRow, startRow, startRow, new ArrayList<BatchView>());
+        }
         BatchViewFilter filter = new BatchViewFilter()
                 .setBatchId(batchId)
                 // admin may see all users; XXX use permissions for this!
                 .setUserId(user.getId() == 1 ? null : user.getId())
-                .setState(batchState)
+                .setState(states)
                 .setCreatedFrom(createFrom == null ? null : createFrom.toTimestamp())
                 .setCreatedTo(createTo == null ? null : createTo.toTimestamp())
                 .setModifiedFrom(modifiedFrom == null ? null : modifiedFrom.toTimestamp())
                 .setModifiedTo(modifiedTo == null ? null : modifiedTo.toTimestamp())
                 .setFilePattern(filePattern)
-                .setOffset(startRow).setMaxCount(pageSize)
+                .setOffset(keyset ? 0 : startRow).setMaxCount(pageSize)
                 .setSortBy(sortBy)
                 ;
+        if (keyset) {
+            filter.setAfter(afterCreate.toTimestamp(), afterId);
+        }
         List<BatchView> batches = importManager.viewBatch(filter);
         int batchSize = batches.size();
         int endRow = startRow + batchSize;
@@ -244,14 +274,18 @@ public class ImportResource {
             @FormParam(ImportResourceApi.IMPORT_BATCH_PROFILE) String profileId
             ) throws IOException, FedoraClientException, DigitalObjectException {
 
-        Batch batch = importManager.get(batchId);
+        Batch batch = findImportBatch(batchId);
         if (batch == null) {
             throw RestException.plainNotFound(
                     ImportResourceApi.IMPORT_BATCH_ID, String.valueOf(batchId));
         }
         if (state == Batch.State.INGESTING) {
             // ingest or reingest for INGESTING_FAILED
-            batch = new FedoraImport(RemoteStorage.getInstance(appConfig), importManager)
+            String batchProfileId = batch.getProfileId() != null ? batch.getProfileId() : profileId;
+            ConfigurationProfile profile = findImportProfile(batchId,
+                    batchProfileId != null ? batchProfileId : ConfigurationProfile.DEFAULT);
+            batch = new FedoraImport(RemoteStorage.getInstance(appConfig), importManager,
+                    appConfig.getImportConfiguration(profile).getIngestThreadCount())
                     .importBatch(batch, user.getUserName(), session.asFedoraLog());
         } else if (state == Batch.State.LOADING_FAILED) {
             Batch.State realState = batch.getState();
@@ -277,7 +311,7 @@ public class ImportResource {
     @GET
     @Path(ImportResourceApi.BATCH_PATH + '/' + ImportResourceApi.BATCHITEM_PATH)
     @Produces(MediaType.APPLICATION_JSON)
-    public SmartGwtResponse<PageView.Item> listBatchItems(
+    public Response listBatchItems(
             @QueryParam(ImportResourceApi.BATCHITEM_BATCHID) Integer batchId,
             @QueryParam(ImportResourceApi.BATCHITEM_PID) String pid,
             @QueryParam("_startRow") int startRow
@@ -287,9 +321,8 @@ public class ImportResource {
         List<BatchItemObject> imports = null;
         final boolean listLoadedItems = pid == null || pid.isEmpty();
 
-        Batch batch = null;
-        if (batchId != null) {
-            batch = importManager.get(batchId);
+        Batch batch = findImportBatch(batchId);
+        if (batch != null) {
             if (batch.getState() == Batch.State.LOADING_FAILED) {
                 Locale locale = session.getLocale(httpHeaders);
                 throw RestException.plainText(Status.FORBIDDEN,
@@ -314,7 +347,8 @@ public class ImportResource {
         int totalRows = (batch.getState() == Batch.State.LOADING) ? batch.getEstimateItemNumber(): totalImports;
 
         if (totalImports == 0 || startRow >= totalImports) {
-            return new SmartGwtResponse<Item>(SmartGwtResponse.STATUS_SUCCESS, startRow, startRow, totalRows, null);
+            return Response.ok(new SmartGwtResponse<Item>(
+                    SmartGwtResponse.STATUS_SUCCESS, startRow, startRow, totalRows, null)).build();
         }
 
         int endRow = totalImports;
@@ -322,8 +356,10 @@ public class ImportResource {
         if (startRow > 0) {
             imports = imports.subList(startRow, totalImports);
         }
-        List<Item> records = new PageView().list(batchId, imports, session.getLocale(httpHeaders));
-        return new SmartGwtResponse<Item>(SmartGwtResponse.STATUS_SUCCESS, startRow, endRow, totalRows, records);
+        // large batches are written as items are read
+        BatchItemStream records = new BatchItemStream(batchId, imports, session.getLocale(httpHeaders),
+                startRow, endRow, totalRows);
+        return Response.ok(records, MediaType.APPLICATION_JSON_TYPE).build();
     }
 
     @DELETE
@@ -336,7 +372,7 @@ public class ImportResource {
 
         boolean changed = false;
         if (batchId != null && pids != null && !pids.isEmpty()) {
-            Batch batch = importManager.get(batchId);
+            Batch batch = findImportBatch(batchId);
             if (batch != null) {
                 checkBatchState(batch);
                 changed = importManager.excludeBatchObject(batch, pids);
@@ -353,6 +389,22 @@ public class ImportResource {
         }
     }
 
+    /**
+     * Gets the import batch. Export jobs kept in batches are not found.
+     *
+     * @return the batch or {@code null}
+     */
+    private Batch findImportBatch(Integer batchId) {
+        Batch batch = batchId == null ? null : importManager.get(batchId);
+        return batch == null || Batch.EXPORT_STATES.contains(batch.getState()) ? null : batch;
+    }
+
+    private static Set<Batch.State> importStates(Set<Batch.State> states) {
+        EnumSet<Batch.State> result = EnumSet.copyOf(states);
+        result.retainAll(Batch.IMPORT_STATES);
+        return result;
+    }
+
     private static String validateParentPath(String parent) {
         if (parent == null || parent.length() == 0) {
             return null;
@@ -392,4 +444,67 @@ public class ImportResource {
         return profile;
     }
 
+    /**
+     * Writes the listing of batch items in the format of {@link SmartGwtResponse}.
+     * Items are written one by one as they are read from FOXML files.
+     * The status follows the items so that a failure can still be reported
+     * when the response is already committed.
+     */
+    static class BatchItemStream implements StreamingOutput {
+
+        private final Integer batchId;
+        private final List<BatchItemObject> imports;
+        private final Locale locale;
+        private final int startRow;
+        private final int endRow;
+        private final int totalRows;
+
+        BatchItemStream(Integer batchId, List<BatchItemObject> imports, Locale locale,
+                int startRow, int endRow, int totalRows) {
+            this.batchId = batchId;
+            this.imports = imports;
+            this.locale = locale;
+            this.startRow = startRow;
+            this.endRow = endRow;
+            this.totalRows = totalRows;
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException, WebApplicationException {
+            ObjectMapper mapper = JsonUtils.defaultObjectMapper();
+            final ObjectWriter itemWriter = mapper.writerFor(Item.class)
+                    .without(SerializationFeature.WRAP_ROOT_VALUE);
+            final JsonGenerator json = mapper.getFactory().createGenerator(output, JsonEncoding.UTF8);
+            json.writeStartObject();
+            json.writeObjectFieldStart("response");
+            json.writeNumberField("startRow", startRow);
+            json.writeNumberField("endRow", endRow);
+            json.writeNumberField("totalRows", totalRows);
+            json.writeArrayFieldStart("data");
+            int status = SmartGwtResponse.STATUS_SUCCESS;
+            try {
+                list(new PageView.ItemHandler() {
+
+                    @Override
+                    public void handle(Item item) throws IOException {
+                        itemWriter.writeValue(json, item);
+                    }
+                });
+            } catch (DigitalObjectException ex) {
+                LOG.log(Level.SEVERE, String.valueOf(batchId), ex);
+                status = SmartGwtResponse.STATUS_FAILURE;
+            }
+            json.writeEndArray();
+            json.writeNumberField("status", status);
+            json.writeEndObject();
+            json.writeEndObject();
+            json.flush();
+        }
+
+        void list(PageView.ItemHandler handler) throws DigitalObjectException, IOException {
+            new PageView().list(batchId, imports, locale, handler);
+        }
+
+    }
+
 }
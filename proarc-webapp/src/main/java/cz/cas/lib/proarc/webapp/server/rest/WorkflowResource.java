@@ -106,14 +106,21 @@ public class WorkflowResource {
             @QueryParam(WorkflowModelConsts.JOB_FILTER_STATE) Job.State state,
             @QueryParam(WorkflowModelConsts.JOB_FILTER_OWNERID) BigDecimal userId,
             @QueryParam(WorkflowModelConsts.JOB_FILTER_OFFSET) int startRow,
-            @QueryParam(WorkflowModelConsts.JOB_FILTER_SORTBY) String sortBy
+            @QueryParam(WorkflowModelConsts.JOB_FILTER_SORTBY) String sortBy,
+            @QueryParam(WorkflowModelConsts.JOB_FILTER_AFTER_MODIFIED) DateTimeParam afterModified,
+            @QueryParam(WorkflowModelConsts.JOB_FILTER_AFTER_ID) BigDecimal afterId
     ) {
         int pageSize = 100;
+        // keyset paging applies to the default sort; startRow just numbers the result then
+        boolean keyset = afterId != null && afterModified != null && (sortBy == null || sortBy.isEmpty());
         JobFilter filter = new JobFilter();
         filter.setLocale(session.getLocale(httpHeaders));
         filter.setMaxCount(pageSize);
-        filter.setOffset(startRow);
+        filter.setOffset(keyset ? 0 : startRow);
         filter.setSortBy(sortBy);
+        if (keyset) {
+            filter.setAfter(afterModified.toTimestamp(), afterId);
+        }
 
         filter.setId(id);
         filter.setCreated(created);
@@ -234,14 +241,21 @@ public class WorkflowResource {
             @QueryParam(WorkflowModelConsts.TASK_FILTER_STATE) List<Task.State> state,
             @QueryParam(WorkflowModelConsts.TASK_FILTER_OWNERID) List<BigDecimal> userId,
             @QueryParam(WorkflowModelConsts.TASK_FILTER_OFFSET) int startRow,
-            @QueryParam(WorkflowModelConsts.TASK_FILTER_SORTBY) String sortBy
+            @QueryParam(WorkflowModelConsts.TASK_FILTER_SORTBY) String sortBy,
+            @QueryParam(WorkflowModelConsts.TASK_FILTER_AFTER_MODIFIED) DateTimeParam afterModified,
+            @QueryParam(WorkflowModelConsts.TASK_FILTER_AFTER_ID) BigDecimal afterId
     ) {
         int pageSize = 100;
+        // keyset paging applies to the default sort; startRow just numbers the result then
+        boolean keyset = afterId != null && afterModified != null && (sortBy == null || sortBy.isEmpty());
         TaskFilter filter = new TaskFilter();
         filter.setLocale(session.getLocale(httpHeaders));
         filter.setMaxCount(pageSize);
-        filter.setOffset(startRow);
+        filter.setOffset(keyset ? 0 : startRow);
         filter.setSortBy(sortBy);
+        if (keyset) {
+            filter.setAfter(afterModified.toTimestamp(), afterId);
+        }
 
         filter.setCreated(created);
         filter.setId(id);
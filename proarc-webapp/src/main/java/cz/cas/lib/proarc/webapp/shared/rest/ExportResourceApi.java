@@ -26,6 +26,13 @@ public final class ExportResourceApi {
 
     public static final String PATH = "export";
 
+    /** Runs the export in the background and returns the {@link #RESULT_ID job ID} at once. */
+    public static final String ASYNC_PARAM = "async";
+
+    /** Gets or cancels (DELETE) the export job. */
+    public static final String JOB_PATH = "job";
+    public static final String JOB_ID_PARAM = "exportId";
+
     public static final String ARCHIVE_PATH = "archive";
     public static final String ARCHIVE_PID_PARAM = "pid";
 
@@ -55,6 +62,7 @@ public final class ExportResourceApi {
     
     public static final String RESULT_TARGET = "target";
     public static final String RESULT_ID = "exportId";
+    public static final String RESULT_STATE = "state";
     public static final String RESULT_TOKEN = "token";
     public static final String RESULT_ERRORS = "errors";
 
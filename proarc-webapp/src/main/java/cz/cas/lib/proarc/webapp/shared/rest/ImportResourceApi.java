@@ -38,10 +38,13 @@ public final class ImportResourceApi {
     public static final String BATCH_PATH = "batch";
     public static final String NEWBATCH_DEVICE_PARAM = "device";
     public static final String NEWBATCH_INDICES_PARAM = "indices";
+    public static final String NEWBATCH_PRIORITY_PARAM = "priority";
 
     // ImportBatch
     public static final String IMPORT_BATCH_ELEMENT = "batch";
     public static final String IMPORT_BATCH_ID = "id";
+    public static final String IMPORT_BATCH_AFTER_CREATE = "afterCreate";
+    public static final String IMPORT_BATCH_AFTER_ID = "afterId";
     public static final String IMPORT_BATCH_FOLDER = "folderPath";
     public static final String IMPORT_BATCH_DESCRIPTION = "description";
     public static final String IMPORT_BATCH_PARENTPID = "parentPid";
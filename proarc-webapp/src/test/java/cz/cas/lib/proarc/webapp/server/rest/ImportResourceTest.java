@@ -0,0 +1,95 @@
+/*
+ * Copyright (C) 2016 Jan Pokorsky
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program. If not, see <http://www.gnu.org/licenses/>.
+ */
+package cz.cas.lib.proarc.webapp.server.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import cz.cas.lib.proarc.common.fedora.DigitalObjectException;
+import cz.cas.lib.proarc.common.fedora.PageView;
+import cz.cas.lib.proarc.common.fedora.PageView.Item;
+import cz.cas.lib.proarc.common.imports.ImportBatchManager.BatchItemObject;
+import cz.cas.lib.proarc.webapp.server.rest.ImportResource.BatchItemStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author Jan Pokorsky
+ */
+public class ImportResourceTest {
+
+    @Test
+    public void testBatchItemStream() throws Exception {
+        BatchItemStream stream = new TestBatchItemStream(2, false);
+        Map<?, ?> response = write(stream);
+        assertEquals(SmartGwtResponse.STATUS_SUCCESS, response.get("status"));
+        assertEquals(2, ((List<?>) response.get("data")).size());
+        assertEquals(0, response.get("startRow"));
+        assertEquals(2, response.get("endRow"));
+        assertEquals(2, response.get("totalRows"));
+    }
+
+    @Test
+    public void testBatchItemStreamFailure() throws Exception {
+        BatchItemStream stream = new TestBatchItemStream(1, true);
+        // the failure is reported with a valid JSON
+        Map<?, ?> response = write(stream);
+        assertEquals(SmartGwtResponse.STATUS_FAILURE, response.get("status"));
+        List<?> data = (List<?>) response.get("data");
+        assertEquals(1, data.size());
+        assertEquals("uuid:0", ((Map<?, ?>) data.get(0)).get("pid"));
+    }
+
+    private static Map<?, ?> write(BatchItemStream stream) throws Exception {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        stream.write(output);
+        Map<?, ?> json = new ObjectMapper().readValue(output.toByteArray(), Map.class);
+        return (Map<?, ?>) json.get("response");
+    }
+
+    /**
+     * Lists items without FOXML files.
+     */
+    private static final class TestBatchItemStream extends BatchItemStream {
+
+        private final int itemCount;
+        private final boolean fail;
+
+        TestBatchItemStream(int itemCount, boolean fail) {
+            super(1, Collections.<BatchItemObject>emptyList(), Locale.ENGLISH, 0, 2, 2);
+            this.itemCount = itemCount;
+            this.fail = fail;
+        }
+
+        @Override
+        void list(PageView.ItemHandler handler) throws DigitalObjectException, IOException {
+            for (int i = 0; i < itemCount; i++) {
+                handler.handle(new Item(1, "file" + i, "uuid:" + i, "model:page",
+                        null, null, null, 0, null, "label" + i));
+            }
+            if (fail) {
+                throw new DigitalObjectException("uuid:" + itemCount, "Cannot read FOXML!");
+            }
+        }
+    }
+
+}
@@ -51,6 +51,9 @@ import org.w3c.dom.Document;
  * Z3950Client uses prefix queries to search meta data in Marc21 format.
  * It wraps {@link SynchronousOriginBean} the same way as {@link ZClient}.
  *
+ * <p>The connection is kept alive between searches until {@link #close}.
+ * Instances share the application context and OID register.
+ *
  * <p>Not thread safe!</p>
  * <p>See  {@code src/main/resources/log4j.properties} to configure jzkit logging.</p>
  *
@@ -62,6 +65,8 @@ public final class Z3950Client {
     private static Level LEVEL = Level.FINE;
     private static final int MAX_RESULTS = 100;
     private static final int SEARCH_PAGE_SIZE = MAX_RESULTS;
+    private static ClassPathXmlApplicationContext APP_CONTEXT;
+    private static OIDRegister OID_REGISTER;
     private final SynchronousOriginBean client;
     private final int port;
     private final String host;
@@ -69,21 +74,63 @@ public final class Z3950Client {
     private String base;
     private String recordFormat;
     private final String current_result_set_name = "RS0";
+    private boolean connected;
+    private int maxResults = MAX_RESULTS;
+    private int pageSize = SEARCH_PAGE_SIZE;
 
     public Z3950Client(String host, int port, String base) {
-        ClassPathXmlApplicationContext c = new ClassPathXmlApplicationContext("/z3950/Z3950ApplicationContext.xml");
-        client = new SynchronousOriginBean(new OIDRegister("/a2j.properties"));
-        client.setApplicationContext(c);
+        client = new SynchronousOriginBean(getOidRegister());
+        client.setApplicationContext(getAppContext());
         this.host = host;
         this.port = port;
         this.recordFormat = "marc21";
         this.base = base;
     }
 
+    private static synchronized ClassPathXmlApplicationContext getAppContext() {
+        if (APP_CONTEXT == null) {
+            APP_CONTEXT = new ClassPathXmlApplicationContext("/z3950/Z3950ApplicationContext.xml");
+        }
+        return APP_CONTEXT;
+    }
+
+    private static synchronized OIDRegister getOidRegister() {
+        if (OID_REGISTER == null) {
+            OID_REGISTER = new OIDRegister("/a2j.properties");
+        }
+        return OID_REGISTER;
+    }
+
+    /**
+     * Disconnects the session.
+     */
     public void close() {
+        connected = false;
         client.disconnect();
     }
 
+    /**
+     * Is the session initialized with the server?
+     */
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Sets the max number of records of a search. The default is 100.
+     */
+    public void setMaxResults(int maxResults) {
+        this.maxResults = maxResults;
+    }
+
+    /**
+     * Sets the number of records fetched with a single present request.
+     * The default is 100.
+     */
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
     /**
      * Queries Z39.50 server.
      * @param query RPN query
@@ -94,10 +141,13 @@ public final class Z3950Client {
     public Iterable<byte[]> search(String query) throws Z3950ClientException {
         this.query = query;
         try {
-            InitializeResponse_type conn = connect(host, port);
-            logConnection(conn, host, port);
-            if (!conn.result.booleanValue()) {
-                throw new Z3950ClientException(this, "Connection failed.");
+            if (!connected) {
+                InitializeResponse_type conn = connect(host, port);
+                logConnection(conn, host, port);
+                if (!conn.result.booleanValue()) {
+                    throw new Z3950ClientException(this, "Connection failed.");
+                }
+                connected = true;
             }
 
             SearchResponse_type search = find(query);
@@ -107,13 +157,16 @@ public final class Z3950Client {
                 result = getRecords(search.records);
             }
             SearchResult searchResult = new SearchResult(
-                    Math.min(MAX_RESULTS, search.resultCount.intValue()),
+                    Math.min(maxResults, search.resultCount.intValue()),
                     search.nextResultSetPosition.intValue(),
                     result);
             return searchResult;
         } catch (Z3950ClientException ex) {
+            close();
             throw ex; // do not wrap
         } catch (Exception ex) {
+            // the session is not usable anymore
+            close();
             throw new Z3950ClientException(this, ex);
         }
     }
@@ -292,7 +345,7 @@ public final class Z3950Client {
 
             try {
                 if (records.isEmpty() || recordIndex >= records.size()) {
-                    PresentResponse_type resp = fetchRecords(resultIndex, Math.min(SEARCH_PAGE_SIZE, resultCount));
+                    PresentResponse_type resp = fetchRecords(resultIndex, Math.min(pageSize, resultCount));
                     records = getRecords(resp);
                     recordIndex = 0;
                     if (records.isEmpty()) {